@@ -0,0 +1,202 @@
+#!/bin/bash
+
+# Checks avidia's own AVD writer (core.avd_writer = native) against the cases under
+# bench/e2e/fixtures/avd. Each case directory holds:
+#
+#   case.conf            image=<package path> and device=<device id>
+#   devices.xml          that device's definition
+#   package.xml          the system image's package.xml
+#   expected.ini         the expected <name>.ini    } homes blanked to <HOME>, the SDK to <SDK>,
+#   expected-config.ini  the expected config.ini    } hw.device.hash2 left out
+#   SOURCE               what wrote the expected files
+#
+# Only a case recorded with --record holds avdmanager's output, and its SOURCE names the
+# cmdline-tools it came from. Any other case is a baseline of the native writer itself: it catches
+# changes to the writer but proves nothing about avdmanager, and is reported as "baseline".
+#
+# hw.device.hash2 is an MD5 of sdklib's Device.toString() that only Android Studio compares, and
+# avidia does not write it.
+#
+#   bench/e2e/avd-parity.sh [--jar PATH] [case...]
+#       Offline: builds a stub SDK from each case's devices.xml and package.xml, creates the AVD
+#       with `avidia apply` through the native writer and diffs the files. Exits 0 when every
+#       case matches.
+#
+#   ANDROID_SDK_ROOT=<sdk> bench/e2e/avd-parity.sh --record [--jar PATH] <image> <device> [<case>]
+#       Records a case from a real SDK with cmdline-tools and the image installed: runs
+#       avdmanager, keeps its output and the inputs it used, then checks avidia against it.
+
+set -e
+
+SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+REPO_DIR="$(cd "$SCRIPT_DIR/../.." && pwd)"
+FIXTURES="$SCRIPT_DIR/fixtures/avd"
+NAME="parity"
+
+JAR=""
+RECORD=0
+ARGS=()
+while [ $# -gt 0 ]; do
+    case "$1" in
+        --jar) JAR="$2"; shift ;;
+        --record) RECORD=1 ;;
+        *) ARGS+=("$1") ;;
+    esac
+    shift
+done
+
+WORK_DIR="$(mktemp -d)"
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+if [ -z "$JAR" ]; then
+    mkdir -p "$WORK_DIR/classes"
+    find "$REPO_DIR/sources" -name '*.java' -not -path '*/tui/*' > "$WORK_DIR/sources.txt"
+    javac -encoding UTF-8 -nowarn -d "$WORK_DIR/classes" @"$WORK_DIR/sources.txt"
+    JAR="$WORK_DIR/classes"
+fi
+
+# <home> <sdk> < file: the machine-specific parts blanked out
+normalize() {
+    sed -e "s|$2|<SDK>|g" -e "s|$1|<HOME>|g" | grep -v '^hw.device.hash2=' || true
+}
+
+record() {
+    local image="$1" device="$2" case_dir="$3"
+    local sdk="${ANDROID_SDK_ROOT:-$ANDROID_HOME}"
+    if [ -z "$sdk" ] || [ ! -x "$sdk/cmdline-tools/latest/bin/avdmanager" ]; then
+        echo "Set ANDROID_SDK_ROOT to an SDK with cmdline-tools installed" >&2
+        exit 1
+    fi
+    local image_dir
+    image_dir="$sdk/$(cut -d';' -f1-4 <<< "$image" | tr ';' '/')"
+    if [ ! -f "$image_dir/package.xml" ]; then
+        echo "Install $image first" >&2
+        exit 1
+    fi
+
+    # avidia keeps its AVDs in ~/.avidia/avd; avdmanager is pointed at the same layout
+    local home="$WORK_DIR/record"
+    rm -rf "$home"
+    mkdir -p "$home/.avidia/avd" "$case_dir"
+    if ! echo no | HOME="$home" AVD_HOME="$home/.avidia/avd" \
+            "$sdk/cmdline-tools/latest/bin/avdmanager" create avd -n "$NAME" -k "$image" -d "$device" \
+            > "$WORK_DIR/avdmanager.log" 2>&1; then
+        cat "$WORK_DIR/avdmanager.log" >&2
+        exit 1
+    fi
+
+    printf 'image=%s\ndevice=%s\n' "$image" "$device" > "$case_dir/case.conf"
+    normalize "$home" "$sdk" < "$home/.avidia/avd/$NAME.ini" > "$case_dir/expected.ini"
+    normalize "$home" "$sdk" < "$home/.avidia/avd/$NAME.avd/config.ini" > "$case_dir/expected-config.ini"
+    cp "$image_dir/package.xml" "$case_dir/package.xml"
+
+    # The one device, cut out of whichever devices.xml avdmanager found it in
+    python3 - "$device" "$case_dir/devices.xml" "$image_dir/devices.xml" "$sdk"/cmdline-tools/latest/lib/*.jar << 'PYEOF'
+import re
+import sys
+import zipfile
+
+device, target, sources = sys.argv[1], sys.argv[2], sys.argv[3:]
+texts = []
+for source in sources:
+    if source.endswith(".jar"):
+        with zipfile.ZipFile(source) as jar:
+            for name in jar.namelist():
+                if name.startswith("com/android/sdklib/devices/") and name.endswith(".xml"):
+                    texts.append(jar.read(name).decode("utf-8"))
+    else:
+        try:
+            with open(source, encoding="utf-8") as f:
+                texts.append(f.read())
+        except OSError:
+            pass
+for text in texts:
+    root = re.search(r"<(\w+:)?devices\b[^>]*>", text)
+    if not root:
+        continue
+    prefix = root.group(1) or ""
+    for block in re.findall(r"<%sdevice>.*?</%sdevice>" % (prefix, prefix), text, re.S):
+        if re.search(r"<%sid>\s*%s\s*</%sid>" % (prefix, re.escape(device), prefix), block):
+            with open(target, "w", encoding="utf-8") as f:
+                f.write('<?xml version="1.0" encoding="UTF-8"?>\n')
+                f.write(root.group(0) + "\n  " + block + "\n</" + prefix + "devices>\n")
+            sys.exit(0)
+sys.exit("device " + device + " not found in the SDK's device definitions")
+PYEOF
+
+    local revision
+    revision=$(grep -s '^Pkg.Revision=' "$sdk/cmdline-tools/latest/source.properties" | cut -d= -f2)
+    echo "avdmanager from cmdline-tools ${revision:-unknown}" > "$case_dir/SOURCE"
+    echo "recorded: $case_dir"
+}
+
+check() {
+    local case_dir="$1" image device
+    image=$(sed -n 's/^image=//p' "$case_dir/case.conf")
+    device=$(sed -n 's/^device=//p' "$case_dir/case.conf")
+
+    # A stub SDK whose only device and image are the case's
+    local home="$WORK_DIR/check/$(basename "$case_dir")"
+    local sdk="$home/.avidia/sdk"
+    mkdir -p "$home/.avidia/avd"
+    printf '[core]\navd_writer = native\n' > "$home/.avidia/avidia.conf"
+    "$SCRIPT_DIR/stub-sdk.sh" "$sdk"
+    mkdir -p "$WORK_DIR/jar/com/android/sdklib/devices"
+    cp "$case_dir/devices.xml" "$WORK_DIR/jar/com/android/sdklib/devices/devices.xml"
+    (cd "$WORK_DIR/jar" && jar cf "$sdk/cmdline-tools/latest/lib/devices.jar" com)
+    rm -rf "$WORK_DIR/jar"
+    local image_dir
+    image_dir="$sdk/$(cut -d';' -f1-4 <<< "$image" | tr ';' '/')"
+    mkdir -p "$image_dir"
+    cp "$case_dir/package.xml" "$image_dir/package.xml"
+
+    printf 'lab: parity\navds:\n  - name: %s\n    image: "%s"\n    device: %s\n' "$NAME" "$image" "$device" \
+        > "$home/lab.yaml"
+    if ! HOME="$home" AVIDIA_DAEMON=off ANDROID_SDK_ROOT= ANDROID_HOME= java -Duser.home="$home" -cp "$JAR" \
+            org.jimedrand.avidia.avidia apply "$home/lab.yaml" > "$home/avidia.log" 2>&1; then
+        cat "$home/avidia.log" >&2
+        return 1
+    fi
+
+    local status=0
+    diff -u --label "avdmanager/$NAME.ini" --label "avidia/$NAME.ini" "$case_dir/expected.ini" \
+        <(normalize "$home" "$sdk" < "$home/.avidia/avd/$NAME.ini") || status=1
+    diff -u --label "avdmanager/config.ini" --label "avidia/config.ini" "$case_dir/expected-config.ini" \
+        <(normalize "$home" "$sdk" < "$home/.avidia/avd/$NAME.avd/config.ini") || status=1
+    if [ $status -eq 0 ]; then
+        if grep -q '^avdmanager ' "$case_dir/SOURCE"; then
+            echo "match: $(basename "$case_dir") ($image on $device)"
+        else
+            echo "baseline: $(basename "$case_dir") ($image on $device), not recorded from avdmanager"
+        fi
+    fi
+    return $status
+}
+
+if [ "$RECORD" = "1" ]; then
+    if [ ${#ARGS[@]} -lt 2 ]; then
+        echo "Usage: $0 --record [--jar PATH] <image> <device> [<case>]" >&2
+        exit 1
+    fi
+    case_name="${ARGS[2]:-$(cut -d';' -f2-4 <<< "${ARGS[0]}" | tr ';' '_')_${ARGS[1]}}"
+    record "${ARGS[0]}" "${ARGS[1]}" "$FIXTURES/$case_name"
+    check "$FIXTURES/$case_name"
+    exit $?
+fi
+
+cases=()
+if [ ${#ARGS[@]} -gt 0 ]; then
+    for name in "${ARGS[@]}"; do
+        cases+=("$FIXTURES/$name")
+    done
+else
+    for dir in "$FIXTURES"/*/; do
+        cases+=("${dir%/}")
+    done
+fi
+
+status=0
+for case_dir in "${cases[@]}"; do
+    check "$case_dir" || status=1
+done
+exit $status
@@ -0,0 +1,269 @@
+#!/bin/bash
+
+# End-to-end latency of avidia commands against the stub SDK from stub-sdk.sh. Everything
+# happens under a throwaway HOME, so it runs offline on any Linux box and never touches a
+# real SDK or AVD.
+#
+# Usage: bench/e2e/run.sh [options]
+#   --sizes "0 100 500"   AVDs already in the inventory for each round (default "0 100 500")
+#   --runs N              samples per command and size (default 20)
+#   --latency MS          delay added to every sdkmanager/avdmanager/emulator call (default 0)
+#   --packages N          packages in the stub catalog (default 2000)
+#   --catalog SOURCE      repository (manifests from stub-repository.sh, default) or sdkmanager
+#   --http                serve the stub repository over loopback HTTP (serve.py) instead of as a directory
+#   --image-mb N          give the stub images real N MB archives and measure installing one
+#   --kvm on|off          whether avidia sees a KVM device (default on)
+#   --daemon              send commands through `avidia daemon` (Java 16+)
+#   --jar PATH            benchmark an avidia.jar instead of compiling ./sources
+#
+# Each sample is wall time of one CLI invocation, JVM start included. Commands measured:
+# list, create, clone (of the AVD just created), start (--detach --no-wait), stop, boot (start
+# --detach against the stand-in console and adb server of stub-device.py, which report the
+# device booted at once), delete, and
+# catalog (refresh-catalog from the chosen source) and, with --image-mb, install (install-sdk of
+# one system image: download, checksum and unpack, with the image removed before each sample).
+#
+# Before sampling, avd-parity.sh checks the native AVD writer against its fixtures (avdmanager's
+# output once recorded with --record, the writer's own baseline until then), and the
+# boot probe is checked against the stand-ins: a slow boot it has to back
+# off for, a device that never boots (the --timeout path), and the console-only fallback.
+
+set -e
+
+SIZES="0 100 500"
+RUNS=20
+LATENCY=0
+PACKAGES=2000
+CATALOG=repository
+HTTP=0
+IMAGE_MB=0
+KVM=on
+DAEMON=0
+JAR=""
+
+while [ $# -gt 0 ]; do
+    case "$1" in
+        --sizes) SIZES="$2"; shift ;;
+        --runs) RUNS="$2"; shift ;;
+        --latency) LATENCY="$2"; shift ;;
+        --packages) PACKAGES="$2"; shift ;;
+        --catalog) CATALOG="$2"; shift ;;
+        --http) HTTP=1 ;;
+        --image-mb) IMAGE_MB="$2"; shift ;;
+        --kvm) KVM="$2"; shift ;;
+        --daemon) DAEMON=1 ;;
+        --jar) JAR="$2"; shift ;;
+        *) echo "Unknown option: $1" >&2; exit 1 ;;
+    esac
+    shift
+done
+
+SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+REPO_DIR="$(cd "$SCRIPT_DIR/../.." && pwd)"
+WORK_DIR="$(mktemp -d)"
+BENCH_HOME="$WORK_DIR/home"
+AVD_DIR="$BENCH_HOME/.avidia/avd"
+SDK_DIR="$BENCH_HOME/.avidia/sdk"
+MAIN_CLASS="org.jimedrand.avidia.avidia"
+IMAGE="system-images;android-34;google_apis_playstore;x86_64"
+
+# Commands are the same for every sample; only the knobs below reach the stubs
+export HOME="$BENCH_HOME"
+export STUB_LATENCY_MS="$LATENCY"
+export STUB_PACKAGES="$PACKAGES"
+unset ANDROID_SDK_ROOT ANDROID_HOME ANDROID_AVD_HOME
+# The stand-in adb server gets a port of its own, clear of any real adb on 5037
+ANDROID_ADB_SERVER_PORT=$(python3 -c 'import socket; s = socket.socket(); s.bind(("127.0.0.1", 0)); print(s.getsockname()[1])')
+export ANDROID_ADB_SERVER_PORT
+export STUB_BOOT_MS=0
+if [ "$KVM" = "on" ]; then
+    export AVIDIA_KVM_DEVICE="$SDK_DIR/kvm"
+else
+    export AVIDIA_KVM_DEVICE="$WORK_DIR/no-kvm"
+fi
+if [ "$DAEMON" = "1" ]; then
+    export AVIDIA_DAEMON=on
+else
+    export AVIDIA_DAEMON=off
+fi
+
+cleanup() {
+    if [ -n "$CLASSPATH_ARG" ] && [ "$DAEMON" = "1" ]; then
+        avidia daemon stop > /dev/null 2>&1 || true
+    fi
+    pkill -f "[s]dk/emulator/emulator -avd e2e_" 2>/dev/null || true
+    if [ -x "$SDK_DIR/platform-tools/adb" ]; then
+        "$SDK_DIR/platform-tools/adb" kill-server 2>/dev/null || true
+    fi
+    if [ -n "$HTTP_PID" ]; then
+        kill "$HTTP_PID" 2>/dev/null || true
+    fi
+    rm -rf "$WORK_DIR"
+}
+trap cleanup EXIT
+
+# Build: the tui package is skipped when Lanterna is not around, since only `avidia tui` loads it
+CLASSPATH_ARG=""
+if [ -n "$JAR" ]; then
+    CLASSPATH_ARG="$JAR"
+else
+    echo "Compiling sources..."
+    mkdir -p "$WORK_DIR/classes"
+    LANTERNA_JAR="${LANTERNA_JAR:-}"
+    if [ -n "$LANTERNA_JAR" ] && [ -f "$LANTERNA_JAR" ]; then
+        find "$REPO_DIR/sources" -name '*.java' > "$WORK_DIR/sources.txt"
+    else
+        find "$REPO_DIR/sources" -name '*.java' -not -path '*/tui/*' > "$WORK_DIR/sources.txt"
+    fi
+    javac -encoding UTF-8 -nowarn -cp "${LANTERNA_JAR:-.}" -d "$WORK_DIR/classes" @"$WORK_DIR/sources.txt"
+    # CDS cannot archive directories, so package the classes like install.sh does
+    (cd "$WORK_DIR/classes" && jar cf "$WORK_DIR/avidia.jar" .)
+    CLASSPATH_ARG="$WORK_DIR/avidia.jar"
+fi
+
+avidia() {
+    java -Duser.home="$BENCH_HOME" -cp "$CLASSPATH_ARG" "$MAIN_CLASS" "$@"
+}
+
+# Milliseconds taken by one command; its output goes to the log in case something fails
+timed() {
+    local start end
+    start=$(date +%s%N)
+    if ! avidia "$@" >> "$WORK_DIR/avidia.log" 2>&1; then
+        echo "avidia $* failed:" >&2
+        tail -20 "$WORK_DIR/avidia.log" >&2
+        exit 1
+    fi
+    end=$(date +%s%N)
+    echo $(( (end - start) / 1000000 ))
+}
+
+# Nearest-rank percentile of the numbers in a file
+percentile() {
+    local count rank
+    count=$(wc -l < "$1")
+    rank=$(( ($2 * count + 99) / 100 ))
+    [ "$rank" -lt 1 ] && rank=1
+    sort -n "$1" | sed -n "${rank}p"
+}
+
+echo "Creating stub SDK..."
+mkdir -p "$AVD_DIR"
+"$SCRIPT_DIR/stub-sdk.sh" "$SDK_DIR"
+
+if [ "$CATALOG" = "sdkmanager" ]; then
+    printf '[cache]\ncatalog_source = sdkmanager\n' > "$BENCH_HOME/.avidia/avidia.conf"
+else
+    "$SCRIPT_DIR/stub-repository.sh" "$WORK_DIR/repository" "$PACKAGES" "$IMAGE_MB"
+    export AVIDIA_REPOSITORY_URL="$WORK_DIR/repository"
+    if [ "$HTTP" = "1" ]; then
+        python3 "$SCRIPT_DIR/serve.py" "$WORK_DIR/repository" > "$WORK_DIR/serve.port" 2> /dev/null &
+        HTTP_PID=$!
+        while [ ! -s "$WORK_DIR/serve.port" ]; do
+            sleep 0.1
+        done
+        export AVIDIA_REPOSITORY_URL="http://127.0.0.1:$(head -1 "$WORK_DIR/serve.port")/"
+    fi
+fi
+COMMANDS="list create clone apply reapply start stop boot delete catalog"
+if [ "$IMAGE_MB" -gt 0 ] && [ "$CATALOG" != "sdkmanager" ]; then
+    COMMANDS="$COMMANDS install"
+    INSTALL_IMAGE=$(grep -o -m1 'system-images;[^"]*' "$WORK_DIR/repository/sys-img/default/sys-img2-3.xml")
+    IFS=';' read -r _ INSTALL_API INSTALL_TAG INSTALL_ABI <<< "$INSTALL_IMAGE"
+fi
+# Installed up front so create measures creation, not the one-off image install
+ANDROID_SDK_ROOT="$SDK_DIR" "$SDK_DIR/cmdline-tools/latest/bin/sdkmanager" "$IMAGE" > /dev/null
+
+# apply creates a lab of ten AVDs, reapply measures the no-op second run; the empty spec
+# deletes the lab again between runs
+printf 'lab: bench\navds:\n  - name: lab\n    count: 10\n    image: %s\n    hardware: {hw.ramSize: 2048}\n' \
+    "$IMAGE" > "$WORK_DIR/lab.yaml"
+printf 'lab: bench\navds: []\n' > "$WORK_DIR/lab-empty.yaml"
+
+# The stand-in console asks for this like a real one
+echo "e2e-console-token" > "$BENCH_HOME/.emulator_console_auth_token"
+
+# Runs one probed start and checks how it ended; the emulator is stopped again either way
+expect_boot() {
+    local expected="$1" output status
+    shift
+    set +e
+    output=$(AVIDIA_DAEMON=off avidia start e2e_probe --detach "$@" 2>&1)
+    status=$?
+    set -e
+    AVIDIA_DAEMON=off avidia stop e2e_probe > /dev/null 2>&1
+    if ! grep -q "$expected" <<< "$output"; then
+        echo "Boot probe check failed: expected '$expected' (exit $status):" >&2
+        echo "$output" >&2
+        exit 1
+    fi
+    echo "  $(grep "$expected" <<< "$output" | sed 's/\x1b\[[0-9;]*m//g')"
+}
+
+echo "Checking AVD writer parity..."
+if ! "$SCRIPT_DIR/avd-parity.sh" --jar "$CLASSPATH_ARG" > "$WORK_DIR/parity.log" 2>&1; then
+    cat "$WORK_DIR/parity.log" >&2
+    exit 1
+fi
+sed 's/^/  /' "$WORK_DIR/parity.log"
+
+echo "Checking the boot probe..."
+AVIDIA_DAEMON=off avidia create e2e_probe > /dev/null
+# Console up after 0.5 s, booted after 2 s: several backed-off polls before boot_completed is 1
+STUB_CONSOLE_DELAY_MS=500 STUB_BOOT_MS=2000 expect_boot "booted in" --timeout 30
+# Never boots: the probe must give up at the deadline
+STUB_BOOT_MS=-1 expect_boot "Boot not completed" --timeout 3
+# Without adb the console's `avd status` is all there is
+chmod -x "$SDK_DIR/platform-tools/adb"
+ANDROID_ADB_SERVER_PORT=1 expect_boot "console is up" --timeout 30
+chmod +x "$SDK_DIR/platform-tools/adb"
+AVIDIA_DAEMON=off avidia delete e2e_probe > /dev/null
+
+if [ "$DAEMON" = "1" ]; then
+    avidia daemon start > /dev/null
+fi
+
+echo ""
+echo "runs=$RUNS latency=${LATENCY}ms packages=$PACKAGES catalog=$CATALOG$([ "$HTTP" = "1" ] && echo "+http") image=${IMAGE_MB}MB kvm=$KVM daemon=$([ "$DAEMON" = "1" ] && echo on || echo off)"
+printf '%-8s %-8s %10s %10s\n' "avds" "command" "p50 ms" "p99 ms"
+
+for size in $SIZES; do
+    # Fill the inventory straight through the stub, which writes what avdmanager would
+    rm -rf "$AVD_DIR"
+    mkdir -p "$AVD_DIR"
+    for ((i = 0; i < size; i++)); do
+        echo no | AVD_HOME="$AVD_DIR" "$SDK_DIR/cmdline-tools/latest/bin/avdmanager" \
+            create avd -n "inventory_$i" -k "$IMAGE" -d pixel_5 > /dev/null
+    done
+    if [ "$DAEMON" = "1" ]; then
+        # Let the daemon's watcher settle on the new inventory before sampling
+        avidia list > /dev/null
+    fi
+
+    rm -f "$WORK_DIR"/*.ms
+    for ((run = 0; run < RUNS; run++)); do
+        name="e2e_$run"
+        timed list >> "$WORK_DIR/list.ms"
+        timed create "$name" >> "$WORK_DIR/create.ms"
+        timed clone "$name" "${name}_clone" >> "$WORK_DIR/clone.ms"
+        avidia delete "${name}_clone" >> "$WORK_DIR/avidia.log" 2>&1
+        timed apply "$WORK_DIR/lab.yaml" >> "$WORK_DIR/apply.ms"
+        timed apply "$WORK_DIR/lab.yaml" >> "$WORK_DIR/reapply.ms"
+        avidia apply "$WORK_DIR/lab-empty.yaml" >> "$WORK_DIR/avidia.log" 2>&1
+        timed start "$name" --detach --no-wait >> "$WORK_DIR/start.ms"
+        timed stop "$name" >> "$WORK_DIR/stop.ms"
+        timed start "$name" --detach --timeout 30 >> "$WORK_DIR/boot.ms"
+        avidia stop "$name" >> "$WORK_DIR/avidia.log" 2>&1
+        timed delete "$name" >> "$WORK_DIR/delete.ms"
+        timed refresh-catalog >> "$WORK_DIR/catalog.ms"
+        if [ -n "$INSTALL_IMAGE" ]; then
+            rm -rf "$SDK_DIR/system-images/$INSTALL_API/$INSTALL_TAG/$INSTALL_ABI"
+            timed install-sdk "$INSTALL_IMAGE" >> "$WORK_DIR/install.ms"
+        fi
+    done
+
+    for command in $COMMANDS; do
+        printf '%-8s %-8s %10s %10s\n' "$size" "$command" \
+            "$(percentile "$WORK_DIR/$command.ms" 50)" "$(percentile "$WORK_DIR/$command.ms" 99)"
+    done
+done
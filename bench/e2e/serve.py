@@ -0,0 +1,115 @@
+#!/usr/bin/env python3
+
+# Serves a stub repository over loopback with what the installer relies on from
+# dl.google.com: single-range requests (206), ETag / Last-Modified validators and 304s.
+# --rate caps each connection in bytes per second, to make segment parallelism and resume
+# observable on a fast disk.
+#
+# Usage: bench/e2e/serve.py <dir> [--port N] [--rate BYTES]   (prints the port it bound)
+
+import argparse
+import email.utils
+import os
+import sys
+import time
+from http.server import SimpleHTTPRequestHandler, ThreadingHTTPServer
+
+CHUNK = 64 * 1024
+
+
+class Handler(SimpleHTTPRequestHandler):
+    protocol_version = "HTTP/1.1"
+    rate = 0
+
+    def log_message(self, format, *args):
+        pass
+
+    def send_head(self):
+        path = self.translate_path(self.path)
+        if not os.path.isfile(path):
+            self.send_error(404)
+            return None
+        stat = os.stat(path)
+        size = stat.st_size
+        etag = '"%x-%x"' % (int(stat.st_mtime), size)
+        modified = email.utils.formatdate(stat.st_mtime, usegmt=True)
+
+        if self.headers.get("If-None-Match") == etag or (
+                self.headers.get("If-None-Match") is None and self.headers.get("If-Modified-Since") == modified):
+            self.send_response(304)
+            self.send_header("ETag", etag)
+            self.send_header("Content-Length", "0")
+            self.end_headers()
+            return None
+
+        start, end = 0, size - 1
+        ranged = False
+        spec = self.headers.get("Range", "")
+        if spec.startswith("bytes=") and "," not in spec:
+            first, _, last = spec[len("bytes="):].partition("-")
+            try:
+                start = int(first) if first else size - int(last)
+                end = int(last) if first and last else size - 1
+                ranged = True
+            except ValueError:
+                pass
+            if ranged and (start >= size or start > end):
+                self.send_response(416)
+                self.send_header("Content-Range", "bytes */%d" % size)
+                self.send_header("Content-Length", "0")
+                self.end_headers()
+                return None
+            end = min(end, size - 1)
+
+        self.send_response(206 if ranged else 200)
+        self.send_header("Content-Type", "application/octet-stream")
+        self.send_header("Accept-Ranges", "bytes")
+        self.send_header("ETag", etag)
+        self.send_header("Last-Modified", modified)
+        self.send_header("Content-Length", str(end - start + 1))
+        if ranged:
+            self.send_header("Content-Range", "bytes %d-%d/%d" % (start, end, size))
+        self.end_headers()
+        self.range = (start, end)
+        return open(path, "rb")
+
+    def copyfile(self, source, outputfile):
+        start, end = self.range
+        source.seek(start)
+        remaining = end - start + 1
+        began = time.monotonic()
+        sent = 0
+        while remaining > 0:
+            data = source.read(min(CHUNK, remaining))
+            if not data:
+                break
+            outputfile.write(data)
+            remaining -= len(data)
+            sent += len(data)
+            if self.rate:
+                ahead = sent / self.rate - (time.monotonic() - began)
+                if ahead > 0:
+                    time.sleep(ahead)
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("directory")
+    parser.add_argument("--port", type=int, default=0)
+    parser.add_argument("--rate", type=int, default=0)
+    args = parser.parse_args()
+
+    Handler.rate = args.rate
+    os.chdir(args.directory)
+    server = ThreadingHTTPServer(("127.0.0.1", args.port), Handler)
+    server.daemon_threads = True
+    print(server.server_address[1], flush=True)
+    try:
+        server.serve_forever()
+    except KeyboardInterrupt:
+        pass
+    sys.exit(0)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,167 @@
+#!/usr/bin/env python3
+
+# Loopback stand-ins for what avidia talks to once an emulator is up, so `start --detach` can
+# wait for a boot offline:
+#
+#   console PORT   the emulator console: banner, auth against ~/.emulator_console_auth_token
+#                  when that file exists, `avd status`, and `getprop NAME` (a stand-in extra
+#                  the adb server below uses); anything else is KO
+#   adb PORT       enough of the adb host protocol for `shell:getprop`, answered by asking
+#                  the console of the emulator-<port> serial
+#
+# The console's boot is scripted through the environment:
+#   STUB_CONSOLE_DELAY_MS   before the console accepts connections (default 0)
+#   STUB_BOOT_MS            before sys.boot_completed reads 1 (default 0; -1 never boots)
+#
+# Usage: stub-device.py console|adb PORT
+
+import os
+import socket
+import socketserver
+import sys
+import time
+
+STARTED = time.monotonic()
+
+
+def elapsed_ms():
+    return (time.monotonic() - STARTED) * 1000
+
+
+def booted():
+    boot_ms = int(os.environ.get("STUB_BOOT_MS", "0"))
+    return boot_ms >= 0 and elapsed_ms() >= boot_ms
+
+
+class Console(socketserver.StreamRequestHandler):
+    def reply(self, *lines, ok=True):
+        payload = "".join(line + "\r\n" for line in lines)
+        payload += "OK\r\n" if ok else ""
+        self.wfile.write(payload.encode())
+
+    def handle(self):
+        token_file = os.path.join(os.path.expanduser("~"), ".emulator_console_auth_token")
+        token = None
+        if os.path.isfile(token_file):
+            with open(token_file) as f:
+                token = f.read().strip()
+        if token is not None:
+            self.reply("Android Console: Authentication required",
+                       "Android Console: type 'auth <auth_token>' to authenticate")
+        else:
+            self.reply("Android Console: type 'help' for a list of commands")
+        authenticated = token is None
+
+        for raw in self.rfile:
+            command = raw.decode(errors="replace").strip()
+            if command == "quit":
+                return
+            if command.startswith("auth "):
+                authenticated = command[5:].strip() == token
+                if authenticated:
+                    self.reply("Android Console: type 'help' for a list of commands")
+                else:
+                    self.reply("KO: authentication token does not match", ok=False)
+            elif not authenticated:
+                self.reply("KO: unknown command, try 'help'", ok=False)
+            elif command == "avd status":
+                self.reply("virtual device is running")
+            elif command == "getprop sys.boot_completed":
+                self.reply("1" if booted() else "")
+            elif command.startswith("getprop "):
+                self.reply("")
+            else:
+                self.reply("KO: unknown command, try 'help'", ok=False)
+
+
+def ask_console(port, command):
+    token_file = os.path.join(os.path.expanduser("~"), ".emulator_console_auth_token")
+    with socket.create_connection(("127.0.0.1", port), timeout=5) as conn:
+        reader = conn.makefile("rb")
+
+        def read_reply():
+            lines = []
+            for raw in reader:
+                line = raw.decode().strip()
+                if line == "OK":
+                    return lines
+                if line.startswith("KO"):
+                    raise OSError(line)
+                lines.append(line)
+            raise OSError("console closed")
+
+        banner = read_reply()
+        if any("Authentication required" in line for line in banner):
+            with open(token_file) as f:
+                conn.sendall(("auth " + f.read().strip() + "\r\n").encode())
+            read_reply()
+        conn.sendall((command + "\r\n").encode())
+        return read_reply()
+
+
+class Adb(socketserver.StreamRequestHandler):
+    def request_string(self):
+        length = self.rfile.read(4)
+        if len(length) < 4:
+            return None
+        return self.rfile.read(int(length, 16)).decode()
+
+    def fail(self, message):
+        data = message.encode()
+        self.wfile.write(b"FAIL" + b"%04x" % len(data) + data)
+
+    def handle(self):
+        request = self.request_string()
+        if request == "host:version":
+            self.wfile.write(b"OKAY0004001f")
+            return
+        if request == "host:kill":
+            self.wfile.write(b"OKAY")
+            self.server.shutdown_requested = True
+            return
+        if request is None or not request.startswith("host:transport:emulator-"):
+            self.fail("unsupported request")
+            return
+        port = int(request.rsplit("-", 1)[1])
+        try:
+            ask_console(port, "avd status")
+        except OSError:
+            self.fail("device '" + request.split(":", 2)[2] + "' not found")
+            return
+        self.wfile.write(b"OKAY")
+
+        command = self.request_string() or ""
+        if not command.startswith("shell:getprop "):
+            self.fail("unsupported shell command")
+            return
+        try:
+            value = ask_console(port, command[len("shell:"):])
+        except OSError as e:
+            self.fail(str(e))
+            return
+        self.wfile.write(b"OKAY" + ("\n".join(value) + "\n").encode())
+
+
+class Server(socketserver.ThreadingTCPServer):
+    allow_reuse_address = True
+    daemon_threads = True
+    shutdown_requested = False
+
+    def service_actions(self):
+        if self.shutdown_requested:
+            raise SystemExit(0)
+
+
+def main():
+    if len(sys.argv) != 3 or sys.argv[1] not in ("console", "adb"):
+        print("Usage: stub-device.py console|adb PORT", file=sys.stderr)
+        sys.exit(1)
+    mode, port = sys.argv[1], int(sys.argv[2])
+    if mode == "console":
+        time.sleep(int(os.environ.get("STUB_CONSOLE_DELAY_MS", "0")) / 1000)
+    with Server(("127.0.0.1", port), Console if mode == "console" else Adb) as server:
+        server.serve_forever(poll_interval=0.1)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,129 @@
+#!/bin/bash
+
+# Writes a stand-in SDK repository: the manifests `avidia refresh-catalog` reads in place of
+# `sdkmanager --list`, with the same package mix as the stub sdkmanager from stub-sdk.sh.
+#
+#   <dir>/addons_list-5.xml                   names the sys-img sites below
+#   <dir>/repository2-3.xml                   platforms, build-tools, emulator
+#   <dir>/sys-img/<tag>/sys-img2-3.xml        system images of one tag
+#   <dir>/images/<abi>.zip                    with [image-mb]: a real archive per ABI that every
+#                                             image of that ABI points at, with its true size and
+#                                             sha1, for `avidia install-sdk` to download
+#
+# Point avidia at it as a directory, or serve it over loopback to go through the HTTP cache
+# (serve.py answers range requests and conditional GETs like dl.google.com):
+#
+#   AVIDIA_REPOSITORY_URL=<dir> avidia refresh-catalog
+#   bench/e2e/serve.py <dir> --port 8080 &
+#   AVIDIA_REPOSITORY_URL=http://127.0.0.1:8080/ avidia install-sdk "system-images;android-34;default;x86_64"
+#
+# Usage: bench/e2e/stub-repository.sh <dir> [packages] [image-mb]   (default 2000 packages, no archives)
+
+set -e
+
+if [ $# -lt 1 ]; then
+    echo "Usage: $0 <dir> [packages]" >&2
+    exit 1
+fi
+
+DIR="$1"
+COUNT="${2:-2000}"
+IMAGE_MB="${3:-0}"
+TAGS=(default google_apis google_apis_playstore google_atd android-tv android-wear)
+ABIS=(x86 x86_64 arm64-v8a armeabi-v7a)
+CHECKSUM="0000000000000000000000000000000000000000"
+
+mkdir -p "$DIR"
+
+declare -A ARCHIVES
+# A quarter zeros, the rest random, so the archive deflates about as well as a real image
+if ((IMAGE_MB > 0)); then
+    mkdir -p "$DIR/images"
+    for abi in "${ABIS[@]}"; do
+        python3 - "$DIR/images/$abi.zip" "$abi" "$IMAGE_MB" <<'PY'
+import os, sys, zipfile
+path, abi, mb = sys.argv[1], sys.argv[2], int(sys.argv[3])
+with zipfile.ZipFile(path, "w", zipfile.ZIP_DEFLATED) as archive:
+    with archive.open(abi + "/system.img", "w") as image:
+        for i in range(mb * 4):
+            image.write(bytes(256 * 1024) if i % 4 == 0 else os.urandom(256 * 1024))
+    archive.writestr(abi + "/source.properties", "Pkg.Revision=1\nSystemImage.Abi=" + abi + "\n")
+    archive.writestr(abi + "/build.prop", "ro.product.cpu.abi=" + abi + "\n")
+PY
+        ARCHIVES[$abi]="../../images/$abi.zip $(stat -c %s "$DIR/images/$abi.zip") $(sha1sum "$DIR/images/$abi.zip" | cut -d' ' -f1)"
+    done
+fi
+
+# archive <abi> <fallback name>: "url size sha1" of the fixture zip, or a placeholder
+archive() {
+    if ((IMAGE_MB > 0)); then
+        echo "${ARCHIVES[$1]}"
+    else
+        echo "$2 1024 $CHECKSUM"
+    fi
+}
+
+header() {
+    echo '<?xml version="1.0" encoding="UTF-8" standalone="no"?>'
+    echo "<$1 xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+    echo '  <license id="android-sdk-license" type="text">Stub license</license>'
+    echo '  <channel id="channel-0">stable</channel>'
+    echo '  <channel id="channel-3">canary</channel>'
+}
+
+# remote_package <path> <revision> <display name> <archive> [type-details]
+# <archive> is a url, or "url size sha1"
+remote_package() {
+    local url size sha1
+    read -r url size sha1 <<< "$4"
+    echo "  <remotePackage path=\"$1\">"
+    [ -n "$5" ] && echo "    $5"
+    echo "    <revision><major>$2</major></revision>"
+    echo "    <display-name>$3</display-name>"
+    echo '    <uses-license ref="android-sdk-license"/>'
+    echo '    <channelRef ref="channel-0"/>'
+    echo "    <archives><archive><complete><size>${size:-1024}</size><checksum type=\"sha1\">${sha1:-$CHECKSUM}</checksum><url>$url</url></complete></archive></archives>"
+    echo '  </remotePackage>'
+}
+
+{
+    echo '<?xml version="1.0" encoding="UTF-8" standalone="no"?>'
+    echo '<common:site-list xmlns:common="http://schemas.android.com/repository/android/sites-common/1" xmlns:sdk="http://schemas.android.com/sdk/android/addons-list/5" xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance">'
+    for tag in "${TAGS[@]}"; do
+        echo "  <site xsi:type=\"sdk:sysImgSiteType\"><displayName>$tag System Images</displayName><url>sys-img/$tag/sys-img2-3.xml</url></site>"
+    done
+    echo '</common:site-list>'
+} > "$DIR/addons_list-5.xml"
+
+for tag in "${TAGS[@]}"; do
+    mkdir -p "$DIR/sys-img/$tag"
+    header "sys-img:sdk-sys-img xmlns:sys-img=\"http://schemas.android.com/sdk/android/repo/sys-img2/03\"" \
+        > "$DIR/sys-img/$tag/sys-img2-3.xml"
+done
+
+{
+    header "sdk:sdk-repository xmlns:sdk=\"http://schemas.android.com/sdk/android/repo/repository2/03\""
+    remote_package "emulator" 35 "Android Emulator" "emulator-linux_x64.zip"
+    # A canary-only package, which the catalog must leave out
+    echo '  <remotePackage path="emulator-canary"><revision><major>36</major></revision><display-name>Canary</display-name><channelRef ref="channel-3"/></remotePackage>'
+    for ((i = 0; i < COUNT; i++)); do
+        api=$((16 + i % 20))
+        if ((i % 3 == 0)); then
+            tag=${TAGS[$(((i / 3) % ${#TAGS[@]}))]}
+            abi=${ABIS[$(((i / 3 / ${#TAGS[@]}) % ${#ABIS[@]}))]}
+            remote_package "system-images;android-$api;$tag;$abi" $((1 + i % 14)) "$tag $abi System Image" \
+                "$(archive "$abi" "$abi-${api}_r$((1 + i % 14)).zip")" \
+                "<type-details xsi:type=\"sys-img:sysImgDetailsType\"><api-level>$api</api-level><tag><id>$tag</id><display>$tag</display></tag><abi>$abi</abi></type-details>" \
+                >> "$DIR/sys-img/$tag/sys-img2-3.xml"
+        elif ((i % 3 == 1)); then
+            remote_package "platforms;android-$api" $((1 + i % 3)) "Android SDK Platform $api" "platform-${api}_r0$((1 + i % 3)).zip"
+        else
+            remote_package "build-tools;$api.0.$((i % 4))" "$api" "Android SDK Build-Tools $api" "build-tools_r$api-linux.zip"
+        fi
+    done
+    echo '</sdk:sdk-repository>'
+} > "$DIR/repository2-3.xml"
+
+for tag in "${TAGS[@]}"; do
+    echo '</sys-img:sdk-sys-img>' >> "$DIR/sys-img/$tag/sys-img2-3.xml"
+done
@@ -0,0 +1,288 @@
+#!/bin/bash
+
+# Writes a stand-in Android SDK of scripted fake binaries, so avidia's own overhead can be
+# measured offline. Layout matches what avidia looks for:
+#
+#   <sdk>/cmdline-tools/latest/bin/sdkmanager   --list, install, --update
+#   <sdk>/cmdline-tools/latest/bin/avdmanager   create avd, delete avd, list avd
+#   <sdk>/cmdline-tools/latest/lib/devices.jar  pixel_5's devices.xml, for avidia's own AVD writer
+#   <sdk>/emulator/emulator                     runs until SIGTERM, like a booted device; with
+#                                               -port it serves a stand-in console there
+#   <sdk>/emulator/stub-device.py               the stand-in console and adb server
+#   <sdk>/platform-tools/adb                    `adb devices`, and start-server / kill-server
+#                                               for the stand-in adb server
+#   <sdk>/kvm                                   point AVIDIA_KVM_DEVICE here to fake /dev/kvm
+#
+# The stubs read their knobs at run time, so one SDK serves every benchmark setting:
+#   STUB_LATENCY_MS   delay before every stub call does its work (default 0)
+#   STUB_PACKAGES     rows printed by `sdkmanager --list` (default 2000)
+#   STUB_CONSOLE_DELAY_MS, STUB_BOOT_MS   the stand-in device's boot, see stub-device.py
+#
+# Usage: bench/e2e/stub-sdk.sh <sdk-dir>
+
+set -e
+
+if [ $# -ne 1 ]; then
+    echo "Usage: $0 <sdk-dir>" >&2
+    exit 1
+fi
+
+SDK="$1"
+SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+BIN="$SDK/cmdline-tools/latest/bin"
+mkdir -p "$BIN" "$SDK/emulator" "$SDK/platform-tools" "$SDK/system-images"
+touch "$SDK/kvm"
+
+# Shared prologue: the configured latency, expressed for sleep(1)
+read -r -d '' PROLOGUE << 'EOF' || true
+stub_latency() {
+    local ms="${STUB_LATENCY_MS:-0}"
+    if [ "$ms" -gt 0 ]; then
+        sleep "$(printf '%d.%03d' $((ms / 1000)) $((ms % 1000)))"
+    fi
+}
+stub_latency
+EOF
+
+# The built-in device definitions avdmanager ships in its jars, cut down to the one device
+WORK="$(mktemp -d)"
+DEVICES="$WORK/com/android/sdklib/devices"
+mkdir -p "$DEVICES" "$SDK/cmdline-tools/latest/lib"
+cat > "$DEVICES/devices.xml" << 'EOF'
+<?xml version="1.0" encoding="UTF-8"?>
+<d:devices xmlns:d="http://schemas.android.com/sdk/devices/7">
+  <d:device>
+    <d:name>Pixel 5</d:name>
+    <d:id>pixel_5</d:id>
+    <d:manufacturer>Google</d:manufacturer>
+    <d:playstore-enabled>true</d:playstore-enabled>
+    <d:hardware>
+      <d:screen>
+        <d:diagonal-length>6.0</d:diagonal-length>
+        <d:pixel-density>440dpi</d:pixel-density>
+        <d:dimensions><d:x-dimension>1080</d:x-dimension><d:y-dimension>2340</d:y-dimension></d:dimensions>
+      </d:screen>
+      <d:sensors>Accelerometer Barometer Compass GPS Gyroscope LightSensor ProximitySensor</d:sensors>
+      <d:mic>true</d:mic>
+      <d:keyboard>nokeys</d:keyboard>
+      <d:nav>nonav</d:nav>
+      <d:ram unit="GiB">2</d:ram>
+      <d:buttons>soft</d:buttons>
+      <d:removable-storage unit="TiB"></d:removable-storage>
+      <d:abi>x86 x86_64 arm64-v8a armeabi-v7a</d:abi>
+      <d:power-type>battery</d:power-type>
+    </d:hardware>
+    <d:state default="true" name="Portrait"><d:keyboard-state>keyssoft</d:keyboard-state></d:state>
+  </d:device>
+</d:devices>
+EOF
+(cd "$WORK" && jar cf "$SDK/cmdline-tools/latest/lib/devices.jar" com)
+rm -rf "$WORK"
+
+cat > "$BIN/sdkmanager" << EOF
+#!/bin/bash
+$PROLOGUE
+EOF
+cat >> "$BIN/sdkmanager" << 'EOF'
+
+SDK="${ANDROID_SDK_ROOT:-$(cd "$(dirname "$0")/../../.." && pwd)}"
+TAGS=(default google_apis google_apis_playstore google_atd android-tv android-wear)
+ABIS=(x86 x86_64 arm64-v8a armeabi-v7a)
+
+case "$1" in
+    --list|--list_installed)
+        echo "Installed packages:"
+        echo "  Path                                        | Version | Description                    | Location"
+        echo "  -------                                     | ------- | -------                        | -------"
+        echo "  emulator                                    | 35.1.4  | Android Emulator               | emulator"
+        echo ""
+        echo "Available Packages:"
+        echo "  Path                                                    | Version | Description"
+        echo "  -------                                                 | ------- | -------"
+        count="${STUB_PACKAGES:-2000}"
+        for ((i = 0; i < count; i++)); do
+            api=$((16 + i % 20))
+            if ((i % 3 == 0)); then
+                tag=${TAGS[$(((i / 3) % ${#TAGS[@]}))]}
+                abi=${ABIS[$(((i / 3 / ${#TAGS[@]}) % ${#ABIS[@]}))]}
+                echo "  system-images;android-$api;$tag;$abi | $((1 + i % 14)) | $tag $abi System Image"
+            elif ((i % 3 == 1)); then
+                echo "  platforms;android-$api | $((1 + i % 3)) | Android SDK Platform $api"
+            else
+                echo "  build-tools;$api.0.$((i % 4)) | $api.0.$((i % 4)) | Android SDK Build-Tools $api"
+            fi
+        done
+        ;;
+    --update)
+        echo "No updates available"
+        ;;
+    *)
+        # Treat every non-option argument as a package to install
+        for package in "$@"; do
+            case "$package" in
+                -*) continue ;;
+                system-images\;*)
+                    IFS=';' read -r _ api tag abi <<< "$package"
+                    dir="$SDK/system-images/$api/$tag/$abi"
+                    mkdir -p "$dir"
+                    cat > "$dir/package.xml" << XML
+<?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+<ns2:repository xmlns:ns2="http://schemas.android.com/repository/android/common/02"><localPackage path="$package" obsolete="false"><revision><major>1</major><minor>0</minor><micro>0</micro></revision><display-name>Stub System Image</display-name></localPackage></ns2:repository>
+XML
+                    ;;
+            esac
+            echo "[=======================================] 100% Unzipping... $package"
+        done
+        ;;
+esac
+EOF
+
+cat > "$BIN/avdmanager" << EOF
+#!/bin/bash
+$PROLOGUE
+EOF
+cat >> "$BIN/avdmanager" << 'EOF'
+
+AVD_DIR="${AVD_HOME:-$HOME/.android/avd}"
+action="$1 $2"
+shift 2 || true
+
+name=""
+package=""
+device="pixel_5"
+while [ $# -gt 0 ]; do
+    case "$1" in
+        -n|--name) name="$2"; shift ;;
+        -k|--package) package="$2"; shift ;;
+        -d|--device) device="$2"; shift ;;
+    esac
+    shift
+done
+
+case "$action" in
+    "create avd")
+        # avidia answers the custom hardware profile prompt on stdin
+        read -r _ || true
+        IFS=';' read -r _ api tag abi <<< "$package"
+        mkdir -p "$AVD_DIR/$name.avd"
+        cat > "$AVD_DIR/$name.ini" << INI
+avd.ini.encoding=UTF-8
+path=$AVD_DIR/$name.avd
+path.rel=avd/$name.avd
+target=$api
+INI
+        cat > "$AVD_DIR/$name.avd/config.ini" << INI
+AvdId=$name
+abi.type=$abi
+avd.ini.displayname=$name
+avd.ini.encoding=UTF-8
+hw.cpu.arch=x86_64
+hw.device.name=$device
+hw.lcd.density=440
+hw.lcd.height=2340
+hw.lcd.width=1080
+hw.ramSize=2048
+image.sysdir.1=system-images/$api/$tag/$abi/
+tag.display=$tag
+tag.id=$tag
+INI
+        ;;
+    "delete avd")
+        read -r _ || true
+        if [ ! -f "$AVD_DIR/$name.ini" ]; then
+            echo "Error: There is no Android Virtual Device named '$name'." >&2
+            exit 1
+        fi
+        rm -rf "$AVD_DIR/$name.avd" "$AVD_DIR/$name.ini"
+        echo "AVD '$name' deleted."
+        ;;
+    "list avd")
+        for ini in "$AVD_DIR"/*.ini; do
+            [ -f "$ini" ] && echo "    Name: $(basename "$ini" .ini)"
+        done
+        ;;
+    "list device")
+        echo "pixel_5"
+        ;;
+    *)
+        echo "stub avdmanager: unsupported '$action'" >&2
+        exit 1
+        ;;
+esac
+EOF
+
+cat > "$SDK/emulator/emulator" << EOF
+#!/bin/bash
+$PROLOGUE
+EOF
+cat >> "$SDK/emulator/emulator" << 'EOF'
+
+case "$1" in
+    -list-avds)
+        for ini in "${AVD_HOME:-$HOME/.android/avd}"/*.ini; do
+            [ -f "$ini" ] && basename "$ini" .ini
+        done
+        exit 0
+        ;;
+    -accel-check)
+        echo "accel:"
+        echo "0"
+        echo "KVM (version 12) is installed and usable."
+        exit 0
+        ;;
+esac
+
+port=""
+while [ $# -gt 0 ]; do
+    [ "$1" = "-port" ] && port="$2"
+    shift
+done
+
+# Stay up like a running device; the process name stays "emulator" so avidia finds it
+echo "stub emulator, console port ${port:-none}"
+if [ -n "$port" ]; then
+    python3 "$(dirname "$0")/stub-device.py" console "$port" &
+else
+    sleep 86400 &
+fi
+trap 'kill $! 2>/dev/null; exit 0' TERM INT
+wait $!
+EOF
+cp "$SCRIPT_DIR/stub-device.py" "$SDK/emulator/stub-device.py"
+
+cat > "$SDK/platform-tools/adb" << EOF
+#!/bin/bash
+$PROLOGUE
+EOF
+cat >> "$SDK/platform-tools/adb" << 'EOF'
+
+port="${ANDROID_ADB_SERVER_PORT:-5037}"
+listening() {
+    (exec 3<> "/dev/tcp/127.0.0.1/$port") 2> /dev/null
+}
+
+case "$1" in
+    devices) echo "List of devices attached" ;;
+    start-server)
+        if ! listening; then
+            setsid python3 "$(dirname "$0")/../emulator/stub-device.py" adb "$port" < /dev/null > /dev/null 2>&1 &
+            for _ in $(seq 50); do
+                listening && exit 0
+                sleep 0.1
+            done
+            exit 1
+        fi
+        ;;
+    kill-server)
+        # host:kill, framed like any adb request
+        if listening; then
+            exec 3<> "/dev/tcp/127.0.0.1/$port"
+            printf '0009host:kill' >&3
+            exec 3>&-
+        fi
+        ;;
+    *) exit 1 ;;
+esac
+EOF
+
+chmod +x "$BIN/sdkmanager" "$BIN/avdmanager" "$SDK/emulator/emulator" "$SDK/platform-tools/adb"
@@ -0,0 +1,87 @@
+package org.jimedrand.avidia.bench;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.jimedrand.avidia.core.PackageIndex;
+import org.jimedrand.avidia.core.RemotePackage;
+import org.jimedrand.avidia.core.RepositoryReader;
+import org.jimedrand.avidia.core.SdkPackage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The package catalog: parsing `sdkmanager --list` or a sys-img2 manifest, reading it back
+// from the cache and querying the system image index
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogBenchmark {
+    @Param({"1000", "5000"})
+    public int packages;
+
+    private String listing;
+    private byte[] manifest;
+    private PackageIndex index;
+    private Path cacheDir;
+    private Path cacheFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        listing = Fixtures.sdkmanagerList(packages);
+        manifest = Fixtures.sysImgManifest(packages);
+        cacheDir = Files.createTempDirectory("avidia-bench-catalog");
+        cacheFile = cacheDir.resolve("packages.tsv");
+        index = PackageIndex.parse(new BufferedReader(new StringReader(listing)));
+        index.write(cacheFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteTree(cacheDir);
+    }
+
+    @Benchmark
+    public PackageIndex parseSdkmanagerList() throws IOException {
+        return PackageIndex.parse(new BufferedReader(new StringReader(listing)));
+    }
+
+    @Benchmark
+    public Map<String, RemotePackage> parseRepositoryManifest() throws Exception {
+        Map<String, RemotePackage> remote = new HashMap<>();
+        RepositoryReader.parse(new ByteArrayInputStream(manifest),
+            URI.create("https://dl.google.com/android/repository/sys-img/google_apis/sys-img2-3.xml"), remote);
+        return remote;
+    }
+
+    @Benchmark
+    public PackageIndex readCatalogCache() {
+        return PackageIndex.read(cacheFile);
+    }
+
+    // What `avidia images --api 30 --abi x86_64` asks of an already loaded index
+    @Benchmark
+    public List<SdkPackage> querySystemImages() {
+        return index.systemImages("30", null, "x86_64");
+    }
+}
@@ -0,0 +1,46 @@
+package org.jimedrand.avidia.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.jimedrand.avidia.core.DeviceCatalog;
+import org.jimedrand.avidia.core.DeviceDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Device definitions: the streaming devices.xml parse behind loadDeviceDefinitions()
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceCatalogBenchmark {
+    @Param({"100", "800"})
+    public int devices;
+
+    private byte[] xml;
+
+    @Setup
+    public void setUp() {
+        xml = Fixtures.devicesXml(devices);
+    }
+
+    @Benchmark
+    public Map<String, DeviceDefinition> parseDevicesXml() throws IOException {
+        Map<String, DeviceDefinition> parsed = new LinkedHashMap<>();
+        DeviceCatalog.parse(new ByteArrayInputStream(xml), "built-in", parsed);
+        return parsed;
+    }
+}
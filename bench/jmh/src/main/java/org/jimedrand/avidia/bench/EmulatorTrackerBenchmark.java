@@ -0,0 +1,54 @@
+package org.jimedrand.avidia.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jimedrand.avidia.core.EmulatorInstance;
+import org.jimedrand.avidia.core.EmulatorTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Running-emulator detection, which replaced the `ps aux` parsing in getRunningAVDs():
+// decoding /proc/<pid>/cmdline, and a full scan of this host's process table
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmulatorTrackerBenchmark {
+    @Param({"300"})
+    public int emulators;
+
+    private byte[][] cmdlines;
+
+    @Setup
+    public void setUp() {
+        cmdlines = new byte[emulators][];
+        for (int i = 0; i < emulators; i++) {
+            cmdlines[i] = Fixtures.emulatorCmdline(i);
+        }
+    }
+
+    @Benchmark
+    public void parseCmdlines(Blackhole blackhole) {
+        for (byte[] raw : cmdlines) {
+            blackhole.consume(EmulatorTracker.parseCmdline(raw));
+        }
+    }
+
+    // Depends on the host; compare runs from the same machine only
+    @Benchmark
+    public List<EmulatorInstance> scanProcesses() {
+        return EmulatorTracker.scan();
+    }
+}
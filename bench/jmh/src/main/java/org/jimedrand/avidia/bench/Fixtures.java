@@ -0,0 +1,296 @@
+package org.jimedrand.avidia.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+// Generated inputs shaped like what a farm host sees: sdkmanager listings with thousands of
+// packages, devices.xml with hundreds of definitions, and AVD homes with hundreds of devices
+final class Fixtures {
+    static final String[] TAGS = {
+        "default", "google_apis", "google_apis_playstore", "google_atd", "aosp_atd",
+        "android-tv", "google-tv", "android-wear", "android-automotive"
+    };
+    static final String[] ABIS = {"x86", "x86_64", "arm64-v8a", "armeabi-v7a"};
+
+    private Fixtures() {
+    }
+
+    // `sdkmanager --list` output with roughly the requested number of package rows, a third
+    // of them system images and the rest platforms, build-tools, sources and extras
+    static String sdkmanagerList(int packages) {
+        StringBuilder out = new StringBuilder(packages * 100);
+        out.append("Installed packages:\n");
+        out.append("  Path                                        | Version | Description                                | Location\n");
+        out.append("  -------                                     | ------- | -------                                    | -------\n");
+        out.append("  emulator                                    | 35.1.4  | Android Emulator                           | emulator\n");
+        out.append("  platform-tools                              | 35.0.1  | Android SDK Platform-Tools                 | platform-tools\n");
+        out.append("\nAvailable Packages:\n");
+        out.append("  Path                                                                    | Version       | Description\n");
+        out.append("  -------                                                                 | -------       | -------\n");
+
+        int written = 0;
+        for (int i = 0; written < packages; i++) {
+            int api = 16 + i % 20;
+            switch (i % 6) {
+                case 0:
+                case 1:
+                    String tag = TAGS[(i / 6) % TAGS.length];
+                    String abi = ABIS[(i / 6 / TAGS.length) % ABIS.length];
+                    String suffix = i % 12 == 0 ? "-ext" + (8 + i % 5) : "";
+                    out.append("  system-images;android-").append(api).append(suffix).append(';').append(tag)
+                        .append(';').append(abi).append(" | ").append(1 + i % 14)
+                        .append("            | ").append(tag).append(' ').append(abi).append(" System Image\n");
+                    break;
+                case 2:
+                    out.append("  platforms;android-").append(api).append(" | ").append(1 + i % 3)
+                        .append("             | Android SDK Platform ").append(api).append('\n');
+                    break;
+                case 3:
+                    out.append("  build-tools;").append(api).append('.').append(i % 4).append(".").append(i % 3)
+                        .append(" | ").append(api).append(".0.0        | Android SDK Build-Tools ").append(api).append('\n');
+                    break;
+                case 4:
+                    out.append("  sources;android-").append(api).append(" | 1             | Sources for Android ")
+                        .append(api).append('\n');
+                    break;
+                default:
+                    out.append("  extras;google;m2repository;").append(i).append(" | 58            | Google Repository\n");
+                    break;
+            }
+            written++;
+        }
+        return out.toString();
+    }
+
+    // A sys-img2 manifest with the given number of system images, each with the archive
+    // variants (per host OS) and the type-details a real one carries
+    static byte[] sysImgManifest(int images) {
+        StringBuilder out = new StringBuilder(images * 1200);
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+        out.append("<sys-img:sdk-sys-img xmlns:sys-img=\"http://schemas.android.com/sdk/android/repo/sys-img2/03\"")
+            .append(" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+        out.append("  <license id=\"android-sdk-license\" type=\"text\">Terms and conditions</license>\n");
+        out.append("  <channel id=\"channel-0\">stable</channel>\n");
+        out.append("  <channel id=\"channel-3\">canary</channel>\n");
+        for (int i = 0; i < images; i++) {
+            int api = 16 + i % 20;
+            String tag = TAGS[(i / 20) % TAGS.length];
+            String abi = ABIS[(i / 20 / TAGS.length) % ABIS.length];
+            out.append("  <remotePackage path=\"system-images;android-").append(api).append(';').append(tag)
+                .append(';').append(abi).append("\">\n");
+            out.append("    <type-details xsi:type=\"sys-img:sysImgDetailsType\"><api-level>").append(api)
+                .append("</api-level><tag><id>").append(tag).append("</id><display>").append(tag)
+                .append("</display></tag><vendor><id>google</id><display>Google Inc.</display></vendor><abi>")
+                .append(abi).append("</abi></type-details>\n");
+            out.append("    <revision><major>").append(1 + i % 14).append("</major></revision>\n");
+            out.append("    <display-name>").append(tag).append(' ').append(abi).append(" System Image</display-name>\n");
+            out.append("    <uses-license ref=\"android-sdk-license\"/>\n");
+            out.append("    <channelRef ref=\"channel-").append(i % 7 == 0 ? 3 : 0).append("\"/>\n");
+            out.append("    <archives>\n");
+            for (String os : new String[] {"linux", "macosx", "windows"}) {
+                out.append("      <archive><complete><size>").append(1_000_000_000L + i)
+                    .append("</size><checksum type=\"sha1\">").append(String.format("%040x", i))
+                    .append("</checksum><url>").append(abi).append('-').append(api).append('_').append(os)
+                    .append(".zip</url></complete><host-os>").append(os).append("</host-os></archive>\n");
+            }
+            out.append("    </archives>\n");
+            out.append("  </remotePackage>\n");
+        }
+        out.append("</sys-img:sdk-sys-img>\n");
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // A devices.xml in the sdk:devices schema with the fields DeviceCatalog reads plus the
+    // bulk of the hardware section it skips
+    static byte[] devicesXml(int devices) {
+        StringBuilder out = new StringBuilder(devices * 1500);
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.append("<d:devices xmlns:d=\"http://schemas.android.com/sdk/devices/7\">\n");
+        for (int i = 0; i < devices; i++) {
+            int width = 720 + (i % 5) * 180;
+            int height = width * 2 + (i % 3) * 40;
+            out.append("  <d:device>\n");
+            out.append("    <d:name>Device ").append(i).append("</d:name>\n");
+            out.append("    <d:id>device_").append(i).append("</d:id>\n");
+            out.append("    <d:manufacturer>Vendor ").append(i % 12).append("</d:manufacturer>\n");
+            out.append("    <d:hardware>\n");
+            out.append("      <d:screen>\n");
+            out.append("        <d:screen-size>normal</d:screen-size>\n");
+            out.append("        <d:diagonal-length>").append(5 + (i % 30) / 10.0).append("</d:diagonal-length>\n");
+            out.append("        <d:pixel-density>").append(i % 2 == 0 ? "xxhdpi" : "420dpi").append("</d:pixel-density>\n");
+            out.append("        <d:screen-ratio>long</d:screen-ratio>\n");
+            out.append("        <d:dimensions>\n");
+            out.append("          <d:x-dimension>").append(width).append("</d:x-dimension>\n");
+            out.append("          <d:y-dimension>").append(height).append("</d:y-dimension>\n");
+            out.append("        </d:dimensions>\n");
+            out.append("        <d:xdpi>420</d:xdpi>\n");
+            out.append("        <d:ydpi>420</d:ydpi>\n");
+            out.append("        <d:touch>\n");
+            out.append("          <d:multitouch>jazz-hands</d:multitouch>\n");
+            out.append("          <d:mechanism>finger</d:mechanism>\n");
+            out.append("          <d:screen-type>capacitive</d:screen-type>\n");
+            out.append("        </d:touch>\n");
+            out.append("      </d:screen>\n");
+            out.append("      <d:networking>\nBluetooth\nWifi\nNFC\n      </d:networking>\n");
+            out.append("      <d:sensors>\nAccelerometer\nBarometer\nCompass\nGPS\nGyroscope\nLightSensor\nProximitySensor\n      </d:sensors>\n");
+            out.append("      <d:mic>true</d:mic>\n");
+            out.append("      <d:camera>\n        <d:location>back</d:location>\n        <d:autofocus>true</d:autofocus>\n        <d:flash>true</d:flash>\n      </d:camera>\n");
+            out.append("      <d:keyboard>nokeys</d:keyboard>\n");
+            out.append("      <d:nav>nonav</d:nav>\n");
+            out.append("      <d:ram unit=\"").append(i % 4 == 0 ? "GiB" : "MiB").append("\">")
+                .append(i % 4 == 0 ? 4 : 2048 + (i % 8) * 512).append("</d:ram>\n");
+            out.append("      <d:buttons>soft</d:buttons>\n");
+            out.append("      <d:internal-storage unit=\"GiB\">\n8\n      </d:internal-storage>\n");
+            out.append("      <d:cpu>Generic CPU</d:cpu>\n");
+            out.append("      <d:gpu>Generic GPU</d:gpu>\n");
+            out.append("      <d:abi>\n").append(ABIS[i % ABIS.length]).append('\n').append(ABIS[(i + 1) % ABIS.length])
+                .append("\n      </d:abi>\n");
+            out.append("      <d:power-type>battery</d:power-type>\n");
+            out.append("    </d:hardware>\n");
+            out.append("    <d:software>\n      <d:api-level>-</d:api-level>\n      <d:live-wallpaper-support>true</d:live-wallpaper-support>\n    </d:software>\n");
+            out.append("    <d:state default=\"true\" name=\"Portrait\">\n      <d:description>The device in portrait orientation</d:description>\n      <d:screen-orientation>port</d:screen-orientation>\n      <d:keyboard-state>keyssoft</d:keyboard-state>\n      <d:nav-state>navhidden</d:nav-state>\n    </d:state>\n");
+            if (i % 3 == 0) {
+                out.append("    <d:tag-id>").append(i % 2 == 0 ? "android-tv" : "android-wear").append("</d:tag-id>\n");
+            }
+            out.append("  </d:device>\n");
+        }
+        out.append("</d:devices>\n");
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // NUL-separated /proc/<pid>/cmdline of an emulator launched the way avidia launches it
+    static byte[] emulatorCmdline(int index) {
+        String[] argv = {
+            "/home/ci/.avidia/sdk/emulator/qemu/linux-x86_64/qemu-system-x86_64",
+            "-avd", "farm_device_" + index,
+            "-port", Integer.toString(5554 + (index % 64) * 2),
+            "-memory", "2048",
+            "-cores", "2",
+            "-gpu", "swiftshader_indirect",
+            "-no-window", "-no-audio", "-no-boot-anim",
+            "-snapshot", "golden",
+            "-no-snapshot-save",
+            "-qemu", "-enable-kvm"
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String arg : argv) {
+            byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, bytes.length);
+            out.write(0);
+        }
+        return out.toByteArray();
+    }
+
+    // An AVD home laid out as avdmanager leaves it: <name>.ini pointing at <name>.avd/config.ini
+    static void avdHome(Path home, int avds) throws IOException {
+        Files.createDirectories(home);
+        for (int i = 0; i < avds; i++) {
+            String name = "farm_device_" + i;
+            Path avdDir = home.resolve(name + ".avd");
+            Files.createDirectories(avdDir);
+            String target = "android-" + (28 + i % 8);
+            Files.write(home.resolve(name + ".ini"), ("avd.ini.encoding=UTF-8\n"
+                + "path=" + avdDir + "\n"
+                + "path.rel=avd/" + name + ".avd\n"
+                + "target=" + target + "\n").getBytes(StandardCharsets.UTF_8));
+            Files.write(avdDir.resolve("config.ini"), avdConfig(name, target, i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String avdConfig(String name, String target, int index) {
+        String tag = TAGS[index % 3];
+        String abi = ABIS[1 + index % 2];
+        return "AvdId=" + name + "\n"
+            + "PlayStore.enabled=" + tag.endsWith("playstore") + "\n"
+            + "abi.type=" + abi + "\n"
+            + "avd.ini.displayname=" + name.replace('_', ' ') + "\n"
+            + "avd.ini.encoding=UTF-8\n"
+            + "disk.dataPartition.size=6442450944\n"
+            + "fastboot.chosenSnapshotFile=\n"
+            + "fastboot.forceChosenSnapshotBoot=no\n"
+            + "fastboot.forceColdBoot=no\n"
+            + "fastboot.forceFastBoot=yes\n"
+            + "hw.accelerometer=yes\n"
+            + "hw.arc=false\n"
+            + "hw.audioInput=yes\n"
+            + "hw.battery=yes\n"
+            + "hw.camera.back=virtualscene\n"
+            + "hw.camera.front=emulated\n"
+            + "hw.cpu.arch=" + (abi.startsWith("arm") ? "arm64" : "x86_64") + "\n"
+            + "hw.cpu.ncore=" + (2 + index % 3) + "\n"
+            + "hw.dPad=no\n"
+            + "hw.device.hash2=MD5:3db3250dab5d0d93b29353040181c7e9\n"
+            + "hw.device.manufacturer=Google\n"
+            + "hw.device.name=pixel_" + (index % 8) + "\n"
+            + "hw.gps=yes\n"
+            + "hw.gpu.enabled=yes\n"
+            + "hw.gpu.mode=auto\n"
+            + "hw.initialOrientation=Portrait\n"
+            + "hw.keyboard=yes\n"
+            + "hw.lcd.density=420\n"
+            + "hw.lcd.height=2400\n"
+            + "hw.lcd.width=1080\n"
+            + "hw.mainKeys=no\n"
+            + "hw.ramSize=" + (2048 + (index % 4) * 512) + "\n"
+            + "hw.sdCard=yes\n"
+            + "hw.sensors.orientation=yes\n"
+            + "hw.sensors.proximity=yes\n"
+            + "hw.trackBall=no\n"
+            + "image.sysdir.1=system-images/" + target + "/" + tag + "/" + abi + "/\n"
+            + "runtime.network.latency=none\n"
+            + "runtime.network.speed=full\n"
+            + "sdcard.size=512M\n"
+            + "showDeviceFrame=no\n"
+            + "skin.dynamic=yes\n"
+            + "skin.name=1080x2400\n"
+            + "skin.path=_no_skin\n"
+            + "tag.display=" + tag + "\n"
+            + "tag.id=" + tag + "\n"
+            + "vm.heapSize=256\n";
+    }
+
+    // system-images/android-<api>/<tag>/<abi> with a package.xml and a few placeholder files
+    static void systemImages(Path root, int images) throws IOException {
+        for (int i = 0; i < images; i++) {
+            int api = 16 + i % 20;
+            String tag = TAGS[(i / 20) % TAGS.length];
+            String abi = ABIS[(i / 20 / TAGS.length) % ABIS.length];
+            Path dir = root.resolve("android-" + api).resolve(tag).resolve(abi);
+            Files.createDirectories(dir);
+            Files.write(dir.resolve("package.xml"), ("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<ns2:repository xmlns:ns2=\"http://schemas.android.com/repository/android/common/02\">"
+                + "<localPackage path=\"system-images;android-" + api + ";" + tag + ";" + abi + "\" obsolete=\"false\">"
+                + "<type-details><api-level>" + api + "</api-level><tag><id>" + tag + "</id></tag><abi>" + abi + "</abi></type-details>"
+                + "<revision><major>" + (1 + i % 9) + "</major><minor>0</minor><micro>0</micro></revision>"
+                + "<display-name>" + tag + " " + abi + " System Image</display-name>"
+                + "</localPackage></ns2:repository>\n").getBytes(StandardCharsets.UTF_8));
+            Files.write(dir.resolve("build.prop"), new byte[2048]);
+            Files.write(dir.resolve("system.img"), new byte[4096]);
+        }
+    }
+
+    static void deleteTree(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package org.jimedrand.avidia.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.jimedrand.avidia.core.AvdInventory;
+import org.jimedrand.avidia.core.Environment;
+import org.jimedrand.avidia.core.InstalledImage;
+import org.jimedrand.avidia.core.InstalledImageIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// On-disk state: the AVD inventory (<name>.ini files), each AVD's config.ini, and the
+// installed system image index. Files stay in the page cache, so this measures parsing
+// and directory walking, not the disk.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryBenchmark {
+    @Param({"100", "500"})
+    public int avds;
+
+    @Param({"200"})
+    public int images;
+
+    private Path root;
+    private Path avdHome;
+    private Path imageRoot;
+    private Path[] configFiles;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("avidia-bench-inventory");
+        avdHome = root.resolve("avd");
+        imageRoot = root.resolve("sdk").resolve("system-images");
+        Fixtures.avdHome(avdHome, avds);
+        Fixtures.systemImages(imageRoot, images);
+
+        configFiles = new Path[avds];
+        for (int i = 0; i < avds; i++) {
+            configFiles[i] = avdHome.resolve("farm_device_" + i + ".avd").resolve("config.ini");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixtures.deleteTree(root);
+    }
+
+    @Benchmark
+    public List<String> loadInventory() {
+        return new AvdInventory(avdHome).names();
+    }
+
+    @Benchmark
+    public void readAvdConfigs(Blackhole blackhole) {
+        for (Path config : configFiles) {
+            blackhole.consume(Environment.readIni(config));
+        }
+    }
+
+    @Benchmark
+    public Map<String, InstalledImage> indexInstalledImages() {
+        return new InstalledImageIndex(imageRoot).images();
+    }
+}
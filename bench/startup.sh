@@ -0,0 +1,73 @@
+#!/bin/bash
+
+# Startup benchmark: time from launch to the first line of `avidia list`, for a base
+# revision against the working tree, plus how many Lanterna classes each one loads.
+#
+# Usage: bench/startup.sh [base-ref] [runs]
+#   base-ref  git revision to compare against (default: the last single-class build)
+#   runs      launches per build (default: 20)
+#
+# Uses the SDK and AVDs under ~/.avidia, so run it on an installed machine. The daemon is
+# bypassed so both builds do the full in-process startup; extra JVM flags go in JAVA_OPTS.
+
+set -e
+
+BASE_REF="${1:-d473b2b}"
+RUNS="${2:-20}"
+REPO_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")/.." && pwd)"
+LANTERNA_JAR="${LANTERNA_JAR:-$HOME/.avidia/lib/lanterna.jar}"
+MAIN_CLASS="org.jimedrand.avidia.avidia"
+
+if [ ! -f "$LANTERNA_JAR" ]; then
+    echo "Lanterna not found at $LANTERNA_JAR (set LANTERNA_JAR)" >&2
+    exit 1
+fi
+
+WORK_DIR="$(mktemp -d)"
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+# build <name> <source dir>
+build() {
+    mkdir -p "$WORK_DIR/$1/classes"
+    find "$2" -name '*.java' > "$WORK_DIR/$1/sources.txt"
+    javac -encoding UTF-8 -nowarn -cp "$LANTERNA_JAR" -d "$WORK_DIR/$1/classes" @"$WORK_DIR/$1/sources.txt"
+}
+
+# Milliseconds from launch until the first line of output
+first_output_ms() {
+    local start end
+    start=$(date +%s%N)
+    AVIDIA_DAEMON=off java $JAVA_OPTS -cp "$1:$LANTERNA_JAR" "$MAIN_CLASS" list | {
+        IFS= read -r _
+        end=$(date +%s%N)
+        cat > /dev/null
+        echo $(( (end - start) / 1000000 ))
+    }
+}
+
+# measure <name>
+measure() {
+    local classes="$WORK_DIR/$1/classes"
+    local times=()
+    first_output_ms "$classes" > /dev/null
+    for ((i = 0; i < RUNS; i++)); do
+        times+=("$(first_output_ms "$classes")")
+    done
+    local sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+    local p50=${sorted[$(( RUNS / 2 ))]}
+    local p90=${sorted[$(( RUNS * 9 / 10 ))]}
+    local lanterna
+    lanterna=$(AVIDIA_DAEMON=off java $JAVA_OPTS -verbose:class -cp "$classes:$LANTERNA_JAR" "$MAIN_CLASS" list \
+        | grep -c 'com.googlecode.lanterna' || true)
+    printf '%-12s p50 %5d ms   p90 %5d ms   lanterna classes %4d\n' "$1" "$p50" "$p90" "$lanterna"
+}
+
+echo "Building $BASE_REF and the working tree..."
+mkdir -p "$WORK_DIR/base-src"
+git -C "$REPO_DIR" archive "$BASE_REF" sources | tar -x -C "$WORK_DIR/base-src"
+build base "$WORK_DIR/base-src/sources"
+build current "$REPO_DIR/sources"
+
+echo "avidia list, $RUNS runs each:"
+measure base
+measure current
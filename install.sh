@@ -168,77 +168,79 @@ compile_avidia() {
     print_step "Compiling Avidia..."
 
     # Create source directory
+    rm -rf "$AVIDIA_HOME/src"
     mkdir -p "$AVIDIA_HOME/src"
 
-    # Find avidia.java in multiple possible locations
+    # Find the sources directory (avidia.java plus the cli, core and tui packages)
     SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
-    JAVA_SOURCE=""
+    SOURCE_DIR=""
 
     # Check possible locations
     local possible_locations=(
-        "avidia.java"
-        "$SCRIPT_DIR/avidia.java"
-        "$SCRIPT_DIR/sources/avidia.java"
-        "sources/avidia.java"
+        "sources"
+        "$SCRIPT_DIR/sources"
     )
 
     for location in "${possible_locations[@]}"; do
-        if [ -f "$location" ]; then
-            JAVA_SOURCE="$location"
+        if [ -f "$location/avidia.java" ]; then
+            SOURCE_DIR="$location"
             break
         fi
     done
 
     # If not found locally, offer to download from GitHub
-    if [ -z "$JAVA_SOURCE" ]; then
-        print_warning "avidia.java not found locally!"
+    if [ -z "$SOURCE_DIR" ]; then
+        print_warning "Avidia sources not found locally!"
         echo ""
         echo "Searched in:"
         for location in "${possible_locations[@]}"; do
             echo "  - $location"
         done
         echo ""
-        echo "Would you like to download it from GitHub?"
-        echo "  URL: https://raw.githubusercontent.com/jimed-rand/avidia/refs/heads/main/sources/avidia.java"
+        echo "Would you like to download them from GitHub?"
+        echo "  URL: https://github.com/jimed-rand/avidia"
         echo ""
         read -p "Download from GitHub? (yes/no) [yes]: " download_choice
         
         if [[ "${download_choice:-yes}" =~ ^(yes|y)$ ]]; then
-            print_step "Downloading avidia.java from GitHub..."
+            print_step "Downloading Avidia sources from GitHub..."
             
-            local github_url="https://raw.githubusercontent.com/jimed-rand/avidia/refs/heads/main/sources/avidia.java"
-            local download_path="$AVIDIA_HOME/src/avidia.java"
+            local github_url="https://codeload.github.com/jimed-rand/avidia/tar.gz/refs/heads/main"
+            local download_path="$AVIDIA_HOME/avidia-src.tar.gz"
             
             if command -v wget &> /dev/null; then
-                if wget -q --show-progress -O "$download_path" "$github_url"; then
-                    print_success "Downloaded avidia.java successfully"
-                    JAVA_SOURCE="$download_path"
-                else
-                    print_error "Failed to download avidia.java"
+                if ! wget -q --show-progress -O "$download_path" "$github_url"; then
+                    print_error "Failed to download Avidia sources"
                     exit 1
                 fi
             elif command -v curl &> /dev/null; then
-                if curl -L --progress-bar -o "$download_path" "$github_url"; then
-                    print_success "Downloaded avidia.java successfully"
-                    JAVA_SOURCE="$download_path"
-                else
-                    print_error "Failed to download avidia.java"
+                if ! curl -L --progress-bar -o "$download_path" "$github_url"; then
+                    print_error "Failed to download Avidia sources"
                     exit 1
                 fi
             else
                 print_error "Neither wget nor curl found"
-                echo "Please install wget or curl, or manually place avidia.java in one of the searched locations"
+                echo "Please install wget or curl, or run the installer from a checkout of the repository"
+                exit 1
+            fi
+
+            if tar -xzf "$download_path" -C "$AVIDIA_HOME/src" --strip-components=2 --wildcards '*/sources/*'; then
+                print_success "Downloaded Avidia sources successfully"
+                rm -f "$download_path"
+            else
+                print_error "Failed to extract Avidia sources"
+                rm -f "$download_path"
                 exit 1
             fi
         else
             print_error "Installation cancelled"
-            echo "Please place avidia.java in one of the above locations and run the installer again"
+            echo "Please run the installer from a checkout of the repository"
             exit 1
         fi
     else
-        print_info "Found source: $JAVA_SOURCE"
-        # Copy source file
-        cp "$JAVA_SOURCE" "$AVIDIA_HOME/src/"
+        print_info "Found sources: $SOURCE_DIR"
+        # Copy the source tree
+        cp -r "$SOURCE_DIR"/. "$AVIDIA_HOME/src/"
     fi
 
     # Compile
@@ -256,12 +258,14 @@ compile_avidia() {
     
     PACKAGE_PATH=$(echo "$PACKAGE_NAME" | tr '.' '/')
 
-    # Create package directory structure
+    # Create package directory structure (dropping classes left by an older build)
+    rm -rf "$AVIDIA_HOME/classes"
     mkdir -p "$AVIDIA_HOME/classes/$PACKAGE_PATH"
 
     # Compile with classpath
-    print_info "Compiling Java source..."
-    javac -cp "$AVIDIA_LIB_DIR/lanterna.jar" -d "$AVIDIA_HOME/classes" avidia.java
+    print_info "Compiling Java sources..."
+    find . -name '*.java' > sources.txt
+    javac -encoding UTF-8 -cp "$AVIDIA_LIB_DIR/lanterna.jar" -d "$AVIDIA_HOME/classes" @sources.txt
 
     if [ $? -eq 0 ]; then
         print_success "Compilation successful"
@@ -283,6 +287,9 @@ EOF
     jar cfm "$AVIDIA_LIB_DIR/avidia.jar" manifest.txt .
     rm manifest.txt
 
+    # An AppCDS archive only matches the jar it was dumped from
+    rm -f "$AVIDIA_LIB_DIR/avidia.jsa" "$AVIDIA_LIB_DIR/avidia.jsa.java"
+
     if [ -f "$AVIDIA_LIB_DIR/avidia.jar" ]; then
         print_success "JAR file created successfully"
     else
@@ -343,8 +350,15 @@ fi
 mkdir -p "$AVD_HOME"
 mkdir -p "$ANDROID_SDK_ROOT"
 
+# AppCDS archive from `avidia warmup`, used only with the JVM that created it
+CDS_OPTS=()
+if [ -f "$AVIDIA_LIB/avidia.jsa" ] && [ -f "$AVIDIA_LIB/avidia.jsa.java" ] \
+    && [ "$(readlink -f "$(command -v java)")" = "$(cat "$AVIDIA_LIB/avidia.jsa.java")" ]; then
+    CDS_OPTS=(-XX:SharedArchiveFile="$AVIDIA_LIB/avidia.jsa" -Xshare:auto -Xlog:cds=off -Xlog:cds+dynamic=off)
+fi
+
 # Run Java application (main class is org.jimedrand.avidia.avidia)
-java -cp "$AVIDIA_LIB/avidia.jar:$AVIDIA_LIB/lanterna.jar" org.jimedrand.avidia.avidia "$@"
+java ${CDS_OPTS[@]+"${CDS_OPTS[@]}"} -cp "$AVIDIA_LIB/avidia.jar:$AVIDIA_LIB/lanterna.jar" org.jimedrand.avidia.avidia "$@"
 EOF
 
     chmod +x "$AVIDIA_SCRIPT_PATH"
@@ -408,6 +422,8 @@ version = $AVIDIA_VERSION
 home = $AVIDIA_HOME
 sdk_path = $AVIDIA_SDK_DIR
 avd_path = $AVIDIA_AVD_DIR
+# How create writes AVDs: avdmanager, or native (config.ini written directly, opt-in)
+avd_writer = avdmanager
 
 [environment]
 android_sdk_root = $AVIDIA_SDK_DIR
@@ -416,14 +432,35 @@ avd_home = $AVIDIA_AVD_DIR
 
 [performance]
 kvm_acceleration = auto
+# Launch profile: auto, fast, dense or ci
+profile = auto
+# Upper bounds per emulator for the auto profile
 ram_size = 4096
-gpu_mode = host
 cores = 2
+# GPU mode when a display and GPU are present
+gpu_mode = host
+# Archive entries unpacked at once when installing images (empty means one per core)
+extract_threads =
+# System images the terminal UI downloads at once in the background
+background_installs = 3
+
+[cache]
+catalog_ttl_hours = 24
+# Where refresh-catalog reads packages: auto (repository, else sdkmanager), repository or sdkmanager
+catalog_source = auto
 
 [network]
 proxy_host =
 proxy_port =
 timeout = 30
+# SDK repository mirror: an http(s) URL or a local directory (empty means Google's)
+repository_url =
+# Parallel range requests per system-image download
+download_connections = 4
+# Cap on total download speed, e.g. 10M or 512K (empty means none)
+max_download_rate =
+# Minutes before a hung sdkmanager install is stopped
+install_timeout_minutes = 60
 
 [logging]
 level = INFO
@@ -589,6 +626,10 @@ show_instructions() {
     echo "  ${CYAN}avidia list${NC}             - List AVDs"
     echo "  ${CYAN}avidia create <name>${NC}    - Create AVD"
     echo "  ${CYAN}avidia start <name>${NC}     - Start AVD"
+    echo "  ${CYAN}avidia refresh-catalog${NC}  - Refresh SDK package catalog"
+    echo "  ${CYAN}avidia images --api 34${NC}  - List system images in the SDK catalog"
+    echo "  ${CYAN}avidia daemon start${NC}     - Keep Avidia resident for faster commands"
+    echo "  ${CYAN}avidia warmup${NC}           - Build a class archive for faster startup (Java 13+)"
     echo "  ${CYAN}avidia --help${NC}           - Show help"
     echo ""
     echo "For troubleshooting, check: ${CYAN}$AVIDIA_HOME/avidia.log${NC}"
@@ -742,68 +783,7 @@ repair_avidia() {
 
     print_step "Repairing Avidia installation..."
 
-    # Check if source file is available
-    SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
-    JAVA_SOURCE=""
-
-    local possible_locations=(
-        "avidia.java"
-        "$SCRIPT_DIR/avidia.java"
-        "$SCRIPT_DIR/sources/avidia.java"
-        "sources/avidia.java"
-    )
-
-    for location in "${possible_locations[@]}"; do
-        if [ -f "$location" ]; then
-            JAVA_SOURCE="$location"
-            break
-        fi
-    done
-
-    # If not found locally, offer to download from GitHub
-    if [ -z "$JAVA_SOURCE" ]; then
-        print_warning "Source file not found locally"
-        echo ""
-        echo "Would you like to download it from GitHub?"
-        read -p "Download from GitHub? (yes/no) [yes]: " download_choice
-        
-        if [[ "${download_choice:-yes}" =~ ^(yes|y)$ ]]; then
-            print_step "Downloading avidia.java from GitHub..."
-            
-            local github_url="https://raw.githubusercontent.com/jimed-rand/avidia/refs/heads/main/sources/avidia.java"
-            local download_path="$AVIDIA_HOME/src/avidia.java"
-            
-            mkdir -p "$AVIDIA_HOME/src"
-            
-            if command -v wget &> /dev/null; then
-                if wget -q --show-progress -O "$download_path" "$github_url"; then
-                    print_success "Downloaded successfully"
-                else
-                    print_error "Failed to download avidia.java"
-                    exit 1
-                fi
-            elif command -v curl &> /dev/null; then
-                if curl -L --progress-bar -o "$download_path" "$github_url"; then
-                    print_success "Downloaded successfully"
-                else
-                    print_error "Failed to download avidia.java"
-                    exit 1
-                fi
-            else
-                print_error "Neither wget nor curl found"
-                exit 1
-            fi
-        else
-            print_error "Cannot repair without source file"
-            echo "Searched in:"
-            for location in "${possible_locations[@]}"; do
-                echo "  - $location"
-            done
-            exit 1
-        fi
-    fi
-
-    # Recompile Avidia
+    # Recompile Avidia (looks for local sources first, then offers GitHub)
     compile_avidia
 
     # Recreate script
@@ -1,96 +1,16 @@
 package org.jimedrand.avidia;
 
-import com.googlecode.lanterna.TerminalSize;
-import com.googlecode.lanterna.TextColor;
-import com.googlecode.lanterna.graphics.TextGraphics;
-import com.googlecode.lanterna.input.KeyStroke;
-import com.googlecode.lanterna.input.KeyType;
-import com.googlecode.lanterna.screen.Screen;
-import com.googlecode.lanterna.screen.TerminalScreen;
-import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
-import com.googlecode.lanterna.terminal.Terminal;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
-import java.util.regex.Pattern;
+import org.jimedrand.avidia.cli.Commands;
+import org.jimedrand.avidia.cli.DaemonClient;
+import org.jimedrand.avidia.core.Environment;
 
+// Entry point. Commands live in .cli, shared services in .core and the Lanterna UI in .tui;
+// this class only picks between the daemon and an in-process run.
 public class avidia {
-    private static final String RESET = "\033[0m";
-    private static final String RED = "\033[0;31m";
-    private static final String GREEN = "\033[0;32m";
-    private static final String YELLOW = "\033[0;33m";
-    private static final String BLUE = "\033[0;34m";
-    private static final String CYAN = "\033[0;36m";
-    private static final String MAGENTA = "\033[0;35m";
-    private static final String BOLD = "\033[1m";
-    private static final String UNDERLINE = "\033[4m";
-    
-    private static String sdkPath;
-    private static String userName;
-    private static String homeDir;
-    private static String avdHome;
-    private static String avidiaHome;
-    private static Screen screen;
-    private static TextGraphics graphics;
-    
-    private static final Map<String, String> ANDROID_VERSIONS = new LinkedHashMap<>();
-    
-    private static final String[] ABI_TYPES = {
-        "x86_64 (Intel/AMD 64-bit, recommended)",
-        "x86 (Intel/AMD 32-bit)",
-        "arm64-v8a (ARM 64-bit, slower emulation)"
-    };
-    
-    private static final String[][] IMAGE_TYPES = {
-        {"google_apis_playstore", "Google Play Store (Recommended for app testing)"},
-        {"google_apis", "Google APIs (No Play Store, with Google Services)"},
-        {"android", "AOSP (Android Open Source Project, no Google services)"}
-    };
-    
-    private static final List<String[]> DEVICE_DEFINITIONS = new ArrayList<>();
-
-    private static void createAVDFromName(String avdName) {
-        String apiLevel = "34";
-        String imageType = "google_apis_playstore";
-        String abi = "x86_64";
-        String deviceId = "pixel_5";
-
-        String packageName = String.format("system-images;android-%s;%s;%s", apiLevel, imageType, abi);
-
-        if (!isSystemImageInstalled(packageName)) {
-            System.out.println(YELLOW + "Required system image not installed. Installing now..." + RESET);
-            if (!installSDKPackage(packageName)) {
-                System.err.println(RED + "Failed to install system image. Aborting." + RESET);
-                return;
-            }
-        }
-
-        System.out.println(CYAN + "Creating AVD: " + avdName + RESET);
-        boolean success = createAVD(avdName, packageName, deviceId);
-        if (success) {
-            System.out.println(GREEN + "AVD '" + avdName + "' created successfully!" + RESET);
-        } else {
-            System.err.println(RED + "Failed to create AVD '" + avdName + "'" + RESET);
-        }
-    }
-
     public static void main(String[] args) {
         if (args.length < 1) {
             System.err.println("Usage: avidia <command>");
-            System.err.println("Commands: tui, list, create <name>, start <name>, delete <name>, install-sdk, help");
+            System.err.println("Commands: tui, list, create <name>, start <name>, stop <name>, start-fleet <name...>, snapshot <op> <name>, clone <src> <dst>, delete <name>, images, batch <file>, apply <spec>, install-sdk [package...], refresh-catalog, daemon, warmup, help");
             System.err.println("Run 'avidia tui' for graphical interface");
             System.exit(1);
         }
@@ -99,1918 +19,23 @@ public class avidia {
         
         // Special case for help
         if (mode.equals("--help") || mode.equals("-h") || mode.equals("help")) {
-            printHelp();
+            Commands.printHelp();
             System.exit(0);
         }
         
-        if (!validateEnvironment()) {
-            System.exit(1);
-        }
-        
-        userName = System.getProperty("user.name");
-        homeDir = System.getProperty("user.home");
-        avidiaHome = homeDir + "/.avidia";
-        avdHome = avidiaHome + "/avd";
-        
-        loadAndroidVersions();
-        loadDeviceDefinitions();
-        
-        try {
-            switch (mode) {
-                case "tui":
-                    startTerminalUI();
-                    break;
-                case "list":
-                    listAVDs();
-                    break;
-                case "create":
-                    if (args.length < 2) {
-                        System.err.println("Usage: create <name>");
-                        System.err.println("Example: avidia create my_android");
-                        System.exit(1);
-                    }
-                    createAVDFromName(args[1]);
-                    break;
-                case "start":
-                    if (args.length < 2) {
-                        System.err.println("Usage: start <name>");
-                        listAVDs();
-                        System.exit(1);
-                    }
-                    startAVD(args[1]);
-                    break;
-                case "delete":
-                    if (args.length < 2) {
-                        System.err.println("Usage: delete <name>");
-                        listAVDs();
-                        System.exit(1);
-                    }
-                    deleteAVD(args[1]);
-                    break;
-                case "install-sdk":
-                    installSDKPackage("");
-                    break;
-                case "setup":
-                    setupAvidia();
-                    break;
-                default:
-                    System.err.println("Unknown operation: " + mode);
-                    printHelp();
-                    System.exit(1);
-            }
-        } finally {
-            cleanupTerminal();
-        }
-    }
-    
-    private static void printHelp() {
-        System.out.println(CYAN + BOLD + "================================================");
-        System.out.println("                    AVIDIA HELP                      ");
-        System.out.println("================================================" + RESET);
-        System.out.println();
-        System.out.println(GREEN + "AVIDIA - Android Virtual Device Manager (User-Centric)" + RESET);
-        System.out.println();
-        System.out.println(YELLOW + "Available Commands:" + RESET);
-        System.out.println("  " + GREEN + "tui" + RESET + "              - Launch Text User Interface");
-        System.out.println("  " + GREEN + "list" + RESET + "             - List all available AVDs");
-        System.out.println("  " + GREEN + "create <name>" + RESET + "    - Create new AVD with default settings");
-        System.out.println("  " + GREEN + "start <name>" + RESET + "     - Start an AVD");
-        System.out.println("  " + GREEN + "delete <name>" + RESET + "    - Delete an AVD");
-        System.out.println("  " + GREEN + "setup" + RESET + "            - Setup Avidia environment");
-        System.out.println("  " + GREEN + "install-sdk" + RESET + "      - Install SDK package");
-        System.out.println();
-        System.out.println(YELLOW + "Quick Start:" + RESET);
-        System.out.println("  1. First time? Run: " + CYAN + "avidia setup" + RESET);
-        System.out.println("  2. For full control: " + CYAN + "avidia tui" + RESET);
-        System.out.println("  3. Or use commands: " + CYAN + "avidia create my_android" + RESET);
-        System.out.println("                     " + CYAN + "avidia start my_android" + RESET);
-        System.out.println();
-        System.out.println(YELLOW + "Installation Directory:" + RESET);
-        System.out.println("  " + avidiaHome);
-        System.out.println();
-    }
-
-    private static void setupAvidia() {
-        System.out.println(CYAN + BOLD + "\n================================================");
-        System.out.println("                AVIDIA SETUP                   ");
-        System.out.println("================================================" + RESET);
-        
-        // Create directory structure
-        File avidiaDir = new File(avidiaHome);
-        if (!avidiaDir.exists()) {
-            System.out.println(YELLOW + "Creating Avidia directory: " + avidiaHome + RESET);
-            if (avidiaDir.mkdirs()) {
-                System.out.println(GREEN + "✓ Created Avidia directory" + RESET);
-            } else {
-                System.err.println(RED + "✗ Failed to create Avidia directory" + RESET);
-                return;
-            }
-        }
-        
-        File sdkDir = new File(avidiaHome + "/sdk");
-        if (!sdkDir.exists()) {
-            System.out.println(YELLOW + "Creating SDK directory..." + RESET);
-            if (sdkDir.mkdirs()) {
-                System.out.println(GREEN + "✓ Created SDK directory" + RESET);
-            }
-        }
-        
-        File avdDir = new File(avdHome);
-        if (!avdDir.exists()) {
-            System.out.println(YELLOW + "Creating AVD directory..." + RESET);
-            if (avdDir.mkdirs()) {
-                System.out.println(GREEN + "✓ Created AVD directory" + RESET);
-            }
-        }
-        
-        // Create environment file
-        try {
-            Path envFile = Paths.get(avidiaHome, "env.sh");
-            String envContent = String.join("\n",
-                "#!/bin/bash",
-                "# AVIDIA Environment Configuration",
-                "# Generated on: " + java.time.LocalDateTime.now(),
-                "",
-                "export ANDROID_SDK_ROOT=\"" + sdkDir.getAbsolutePath() + "\"",
-                "export ANDROID_HOME=\"" + sdkDir.getAbsolutePath() + "\"",
-                "export AVD_HOME=\"" + avdDir.getAbsolutePath() + "\"",
-                "export PATH=\"\\$PATH:" + sdkDir.getAbsolutePath() + "/cmdline-tools/latest/bin\"",
-                "export PATH=\"\\$PATH:" + sdkDir.getAbsolutePath() + "/platform-tools\"",
-                "export PATH=\"\\$PATH:" + sdkDir.getAbsolutePath() + "/emulator\"",
-                "",
-                "# Auto-load environment",
-                "echo -e \"\\033[0;32m[AVIDIA] Environment loaded\\033[0m\""
-            );
-            
-            Files.write(envFile, envContent.getBytes());
-            System.out.println(GREEN + "✓ Created environment file: " + envFile + RESET);
-            
-            // Make it executable
-            envFile.toFile().setExecutable(true);
-            
-        } catch (IOException e) {
-            System.err.println(RED + "✗ Failed to create environment file: " + e.getMessage() + RESET);
-        }
-        
-        System.out.println(GREEN + "\n✓ Setup completed successfully!" + RESET);
-        System.out.println(YELLOW + "\nNext steps:" + RESET);
-        System.out.println("  1. Load environment: " + CYAN + "source " + avidiaHome + "/env.sh" + RESET);
-        System.out.println("  2. Install CLI tools: " + CYAN + "avidia install-sdk" + RESET);
-        System.out.println("  3. Launch TUI: " + CYAN + "avidia tui" + RESET);
-        System.out.println();
-        System.out.println("Or run: " + CYAN + "avidia tui" + RESET + " for interactive setup");
-    }
-
-    private static void loadAndroidVersions() {
-        ANDROID_VERSIONS.clear();
-        
-        try {
-            if (sdkPath == null || !new File(sdkPath + "/cmdline-tools/latest/bin/sdkmanager").exists()) {
-                // Fallback to default versions
-                setDefaultAndroidVersions();
-                return;
-            }
-            
-            ProcessBuilder pb = new ProcessBuilder(
-                sdkPath + "/cmdline-tools/latest/bin/sdkmanager",
-                "--list"
-            );
-            
-            Map<String, String> env = pb.environment();
-            env.put("ANDROID_HOME", sdkPath);
-            env.put("ANDROID_SDK_ROOT", sdkPath);
-            env.put("AVD_HOME", avdHome);
-            
-            Process process = pb.start();
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.contains("system-images;android-")) {
-                    String[] parts = line.split("system-images;android-");
-                    if (parts.length > 1) {
-                        String apiPart = parts[1].split(";")[0];
-                        String apiLevel = apiPart.trim();
-                        String versionName = "Android API " + apiLevel;
-                        if (!ANDROID_VERSIONS.containsValue(apiLevel)) {
-                            ANDROID_VERSIONS.put(versionName, apiLevel);
-                        }
-                    }
-                }
-            }
-            process.waitFor();
-            
-            if (ANDROID_VERSIONS.isEmpty()) {
-                setDefaultAndroidVersions();
-            }
-        } catch (Exception e) {
-            setDefaultAndroidVersions();
-        }
-    }
-    
-    private static void setDefaultAndroidVersions() {
-        ANDROID_VERSIONS.put("Android 14 (API 34)", "34");
-        ANDROID_VERSIONS.put("Android 13 (API 33)", "33");
-        ANDROID_VERSIONS.put("Android 12 (API 32)", "32");
-        ANDROID_VERSIONS.put("Android 11 (API 30)", "30");
-        ANDROID_VERSIONS.put("Android 10 (API 29)", "29");
-    }
-
-    private static void loadDeviceDefinitions() {
-        DEVICE_DEFINITIONS.clear();
-        
-        try {
-            if (sdkPath == null || !new File(sdkPath + "/cmdline-tools/latest/bin/avdmanager").exists()) {
-                // Fallback to default devices
-                setDefaultDeviceDefinitions();
-                return;
-            }
-            
-            ProcessBuilder pb = new ProcessBuilder(
-                sdkPath + "/cmdline-tools/latest/bin/avdmanager",
-                "list", "device"
-            );
-            
-            Map<String, String> env = pb.environment();
-            env.put("ANDROID_HOME", sdkPath);
-            env.put("ANDROID_SDK_ROOT", sdkPath);
-            env.put("AVD_HOME", avdHome);
-            
-            Process process = pb.start();
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-            
-            String line;
-            String currentId = null;
-            String currentName = null;
-            
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.startsWith("id:")) {
-                    String[] idParts = line.split(":");
-                    if (idParts.length > 1) {
-                        currentId = idParts[1].trim().split(" ")[0];
-                    }
-                } else if (line.startsWith("Name:")) {
-                    currentName = line.substring(5).trim();
-                    if (currentId != null && currentName != null) {
-                        DEVICE_DEFINITIONS.add(new String[]{currentId, currentName});
-                    }
-                } else if (line.isEmpty()) {
-                    currentId = null;
-                    currentName = null;
-                }
-            }
-            process.waitFor();
-            
-            if (DEVICE_DEFINITIONS.isEmpty()) {
-                setDefaultDeviceDefinitions();
-            }
-        } catch (Exception e) {
-            setDefaultDeviceDefinitions();
-        }
-    }
-    
-    private static void setDefaultDeviceDefinitions() {
-        DEVICE_DEFINITIONS.addAll(Arrays.asList(new String[][] {
-            {"pixel_7", "Google Pixel 7"},
-            {"pixel_6", "Google Pixel 6"},
-            {"pixel_5", "Google Pixel 5 (Recommended)"},
-            {"pixel_4", "Google Pixel 4"},
-            {"Nexus_6P", "Nexus 6P"},
-            {"Nexus_5X", "Nexus 5X"},
-            {"Nexus_5", "Nexus 5"}
-        }));
-    }
-
-    private static void startTerminalUI() {
-        try {
-            Terminal terminal = new DefaultTerminalFactory().createTerminal();
-            screen = new TerminalScreen(terminal);
-            screen.startScreen();
-            screen.doResizeIfNecessary();
-            graphics = screen.newTextGraphics();
-            
-            showMainMenu();
-        } catch (Exception e) {
-            System.err.println(RED + "Terminal UI error: " + e.getMessage() + RESET);
-            System.out.println("Falling back to command-line interface...");
-            showCLIMenu();
-        }
-    }
-
-    private static void cleanupTerminal() {
-        if (screen != null) {
-            try {
-                screen.stopScreen();
-            } catch (IOException e) {
-                // Ignore
-            }
-        }
-    }
-
-    private static void showMainMenu() throws IOException {
-        boolean running = true;
-        int selectedItem = 0;
-        final String[] menuItems = {
-            "List Virtual Devices",
-            "Create New Device",
-            "Start Virtual Device",
-            "Stop Virtual Device",
-            "Remove Virtual Device",
-            "Install System Image",
-            "System Information",
-            "Exit to Shell"
-        };
-        
-        while (running) {
-            screen.clear();
-            drawHeader("AVIDIA - Android Virtual Device Manager");
-            
-            int menuStartY = 6;
-            for (int i = 0; i < menuItems.length; i++) {
-                if (i == selectedItem) {
-                    graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-                    graphics.putString(4, menuStartY + i, "> " + menuItems[i]);
-                } else {
-                    graphics.setForegroundColor(TextColor.ANSI.WHITE);
-                    graphics.putString(4, menuStartY + i, "  " + menuItems[i]);
-                }
-            }
-            
-            drawFooter("Use Arrow keys to navigate, Enter to select, Q to quit");
-            screen.refresh();
-            
-            KeyStroke keyStroke = screen.readInput();
-            if (keyStroke != null) {
-                switch (keyStroke.getKeyType()) {
-                    case ArrowDown:
-                        selectedItem = (selectedItem + 1) % menuItems.length;
-                        break;
-                    case ArrowUp:
-                        selectedItem = (selectedItem - 1 + menuItems.length) % menuItems.length;
-                        break;
-                    case Enter:
-                        switch (selectedItem) {
-                            case 0:
-                                listAVDsTUI();
-                                break;
-                            case 1:
-                                createAVDTUI();
-                                break;
-                            case 2:
-                                startAVDTUI();
-                                break;
-                            case 3:
-                                stopAVDTUI();
-                                break;
-                            case 4:
-                                deleteAVDTUI();
-                                break;
-                            case 5:
-                                installImageTUI();
-                                break;
-                            case 6:
-                                showSystemInfo();
-                                break;
-                            case 7:
-                                running = false;
-                                break;
-                        }
-                        break;
-                    case Character:
-                        if (Character.toLowerCase(keyStroke.getCharacter()) == 'q') {
-                            running = false;
-                        }
-                        break;
-                    case Escape:
-                        running = false;
-                        break;
-                    default:
-                        break;
-                }
-            }
-        }
-        
-        cleanupTerminal();
-        System.out.println(CYAN + "\nReturning to Terminal..." + RESET);
-    }
-
-    private static void drawHeader(String title) {
-        int width = screen.getTerminalSize().getColumns();
-        graphics.setForegroundColor(TextColor.ANSI.CYAN);
-        graphics.putString(0, 0, "=".repeat(width));
-        graphics.putString(0, 1, centerText(title, width));
-        graphics.putString(0, 2, "=".repeat(width));
-    }
-
-    private static void drawFooter(String text) {
-        int width = screen.getTerminalSize().getColumns();
-        int height = screen.getTerminalSize().getRows();
-        
-        graphics.setForegroundColor(TextColor.ANSI.BLUE);
-        graphics.putString(0, height - 2, "-".repeat(width));
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(0, height - 1, centerText(text, width));
-    }
-
-    private static String centerText(String text, int width) {
-        int padding = (width - text.length()) / 2;
-        return " ".repeat(Math.max(0, padding)) + text;
-    }
-
-    private static void listAVDsTUI() throws IOException {
-        screen.clear();
-        drawHeader("AVAILABLE VIRTUAL DEVICES");
-        
-        List<String> avds = getAvailableAVDs();
-        if (avds.isEmpty()) {
-            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-            graphics.putString(4, 6, "No virtual devices found.");
-            graphics.setForegroundColor(TextColor.ANSI.WHITE);
-            graphics.putString(4, 8, "Create one using the 'Create New Device' option");
-        } else {
-            graphics.setForegroundColor(TextColor.ANSI.WHITE);
-            graphics.putString(4, 5, "Available AVDs:");
-            for (int i = 0; i < avds.size() && i < 15; i++) {
-                graphics.putString(6, 7 + i, "[" + (i+1) + "] " + avds.get(i));
-            }
-            if (avds.size() > 15) {
-                graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-                graphics.putString(6, 23, "Showing first 15 devices of " + avds.size() + " total");
-            }
-        }
-        
-        drawFooter("Press Enter to return to main menu");
-        screen.refresh();
-        waitForEnter();
-    }
-
-    private static void createAVDTUI() throws IOException {
-        screen.clear();
-        drawHeader("CREATE NEW VIRTUAL DEVICE");
-        
-        String avdName = inputField(4, 5, "Device name:", 30);
-        if (avdName == null || avdName.trim().isEmpty()) {
-            showMessage("Error", "Device name cannot be empty");
-            return;
-        }
-        
-        // Validate name (alphanumeric and underscores only)
-        if (!Pattern.matches("[a-zA-Z0-9_]+", avdName)) {
-            showMessage("Error", "Device name can only contain letters, numbers, and underscores");
-            return;
-        }
-        
-        String apiLevel = selectFromList(4, 8, "Select Android version:", ANDROID_VERSIONS.entrySet().stream()
-            .map(e -> e.getKey() + " (API " + e.getValue() + ")")
-            .toArray(String[]::new), 20);
-        if (apiLevel == null) return;
-        
-        String selectedApi = ANDROID_VERSIONS.entrySet().stream()
-            .filter(e -> (e.getKey() + " (API " + e.getValue() + ")").equals(apiLevel))
-            .findFirst()
-            .map(Map.Entry::getValue)
-            .orElse("34");
-        
-        String abiSelection = selectFromList(4, 12, "Select Architecture:", ABI_TYPES, 15);
-        if (abiSelection == null) return;
-        
-        String abi = "x86_64";
-        if (abiSelection.contains("x86 (")) abi = "x86";
-        else if (abiSelection.contains("arm64-v8a")) abi = "arm64-v8a";
-        
-        String[][] filteredImageTypes = IMAGE_TYPES;
-        if (selectedApi.equals("23") || Integer.parseInt(selectedApi) < 23) {
-            filteredImageTypes = new String[][] {
-                {"google_apis", "Google APIs (No Play Store, with Google Services)"},
-                {"android", "AOSP (Android Open Source Project, no Google services)"}
-            };
-        }
-        
-        String imageTypeSelection = selectFromList(4, 16, "Select Image Type:",
-            Arrays.stream(filteredImageTypes)
-                .map(t -> t[1])
-                .toArray(String[]::new), 15);
-        if (imageTypeSelection == null) return;
-        
-        String imageType = "google_apis";
-        for (String[] type : filteredImageTypes) {
-            if (type[1].equals(imageTypeSelection)) {
-                imageType = type[0];
-                break;
-            }
-        }
-        
-        String[] deviceNames = DEVICE_DEFINITIONS.stream()
-            .map(d -> d[1])
-            .toArray(String[]::new);
-        
-        String deviceSelection = selectFromList(4, 20, "Select Device Model:", deviceNames, 15);
-        if (deviceSelection == null) return;
-        
-        String deviceId = "pixel_5";
-        for (String[] device : DEVICE_DEFINITIONS) {
-            if (device[1].equals(deviceSelection)) {
-                deviceId = device[0];
-                break;
-            }
-        }
-        
-        String packageName = String.format("system-images;android-%s;%s;%s", selectedApi, imageType, abi);
-        
-        if (!isSystemImageInstalled(packageName)) {
-            screen.clear();
-            drawHeader("SYSTEM IMAGE NOT INSTALLED");
-            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-            graphics.putString(4, 6, "The required system image is not installed:");
-            graphics.setForegroundColor(TextColor.ANSI.WHITE);
-            graphics.putString(6, 8, packageName);
-            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-            graphics.putString(4, 10, "Would you like to install it now?");
-            
-            String confirm = selectYesNo(4, 12);
-            if (!"yes".equals(confirm)) {
-                showMessage("Cancelled", "AVD creation cancelled");
-                return;
-            }
-            
-            screen.clear();
-            drawHeader("INSTALLING SYSTEM IMAGE");
-            graphics.setForegroundColor(TextColor.ANSI.WHITE);
-            graphics.putString(4, 6, "Installing: " + packageName);
-            graphics.putString(4, 8, "This may take several minutes depending on your internet connection...");
-            screen.refresh();
-            
-            if (!installSDKPackage(packageName)) {
-                showMessage("Installation Failed", "Failed to install system image. Check your internet connection.");
-                return;
-            }
-        }
-        
-        screen.clear();
-        drawHeader("CREATE VIRTUAL DEVICE - CONFIRMATION");
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 6, "Device Name: " + avdName);
-        graphics.putString(4, 8, "Android Version: " + apiLevel);
-        graphics.putString(4, 10, "Architecture: " + abiSelection.split(" ")[0]);
-        graphics.putString(4, 12, "Image Type: " + imageTypeSelection);
-        graphics.putString(4, 14, "Device Model: " + deviceSelection);
-        
-        graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-        graphics.putString(4, 17, "Do you want to create this virtual device?");
-        String confirm = selectYesNo(4, 19);
-        if (!"yes".equals(confirm)) {
-            showMessage("Cancelled", "AVD creation cancelled");
-            return;
-        }
-        
-        screen.clear();
-        drawHeader("CREATING VIRTUAL DEVICE");
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 6, "Creating AVD: " + avdName);
-        graphics.putString(4, 8, "Please wait...");
-        screen.refresh();
-        
-        boolean success = createAVD(avdName, packageName, deviceId);
-        if (success) {
-            showMessage("Success", "Virtual device created successfully!\nStart it with:\navidia start " + avdName);
-        } else {
-            showMessage("Error", "Failed to create virtual device");
-        }
-    }
-
-    private static String inputField(int x, int y, String prompt, int maxLength) throws IOException {
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(x, y, prompt);
-        
-        StringBuilder input = new StringBuilder();
-        int cursorPos = 0;
-        
-        while (true) {
-            graphics.setForegroundColor(TextColor.ANSI.WHITE);
-            graphics.putString(x + prompt.length() + 1, y, " ".repeat(maxLength));
-            graphics.putString(x + prompt.length() + 1, y, input.toString());
-            
-            graphics.setForegroundColor(TextColor.ANSI.GREEN);
-            if (cursorPos < input.length()) {
-                graphics.putString(x + prompt.length() + 1 + cursorPos, y, input.charAt(cursorPos) + "");
-            } else {
-                graphics.putString(x + prompt.length() + 1 + cursorPos, y, "_");
-            }
-            
-            screen.refresh();
-            KeyStroke keyStroke = screen.readInput();
-            if (keyStroke == null) continue;
-            
-            switch (keyStroke.getKeyType()) {
-                case Enter:
-                    return input.toString();
-                case Backspace:
-                    if (cursorPos > 0) {
-                        input.deleteCharAt(cursorPos - 1);
-                        cursorPos--;
-                    }
-                    break;
-                case Delete:
-                    if (cursorPos < input.length()) {
-                        input.deleteCharAt(cursorPos);
-                    }
-                    break;
-                case ArrowLeft:
-                    cursorPos = Math.max(0, cursorPos - 1);
-                    break;
-                case ArrowRight:
-                    cursorPos = Math.min(input.length(), cursorPos + 1);
-                    break;
-                case Character:
-                    char c = keyStroke.getCharacter();
-                    if (Character.isLetterOrDigit(c) || "-_.".indexOf(c) >= 0) {
-                        if (input.length() < maxLength) {
-                            input.insert(cursorPos, c);
-                            cursorPos++;
-                        }
-                    }
-                    break;
-                case Escape:
-                    return null;
-                default:
-                    break;
-            }
-        }
-    }
-
-    private static String selectFromList(int x, int y, String title, String[] options, int maxHeight) throws IOException {
-        if (options.length == 0) {
-            showMessage("Error", "No options available");
-            return null;
-        }
-        
-        int selectedIndex = 0;
-        int currentPage = 0;
-        int itemsPerPage = Math.min(maxHeight, options.length);
-        int totalPages = (options.length + itemsPerPage - 1) / itemsPerPage;
-        
-        while (true) {
-            screen.clear();
-            drawHeader(title);
-            
-            if (totalPages > 1) {
-                graphics.setForegroundColor(TextColor.ANSI.CYAN);
-                graphics.putString(x, y, "Page " + (currentPage + 1) + "/" + totalPages);
-                y += 2;
-            }
-            
-            int startIndex = currentPage * itemsPerPage;
-            int endIndex = Math.min(startIndex + itemsPerPage, options.length);
-            
-            for (int i = startIndex; i < endIndex; i++) {
-                if (i == selectedIndex) {
-                    graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-                    graphics.putString(x + 1, y + (i - startIndex), "> " + options[i]);
-                } else {
-                    graphics.setForegroundColor(TextColor.ANSI.WHITE);
-                    graphics.putString(x + 2, y + (i - startIndex), "  " + options[i]);
-                }
-            }
-            
-            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-            graphics.putString(x, y + itemsPerPage + 2, "Use arrow keys to navigate, Enter to select, Esc to cancel");
-            screen.refresh();
-            
-            KeyStroke keyStroke = screen.readInput();
-            if (keyStroke == null) continue;
-            
-            switch (keyStroke.getKeyType()) {
-                case Enter:
-                    return options[selectedIndex];
-                case ArrowUp:
-                    if (selectedIndex > 0) {
-                        selectedIndex--;
-                        if (selectedIndex < startIndex) {
-                            currentPage = Math.max(0, currentPage - 1);
-                        }
-                    }
-                    break;
-                case ArrowDown:
-                    if (selectedIndex < options.length - 1) {
-                        selectedIndex++;
-                        if (selectedIndex >= endIndex) {
-                            currentPage = Math.min(totalPages - 1, currentPage + 1);
-                        }
-                    }
-                    break;
-                case Escape:
-                    return null;
-                case Character:
-                    char c = keyStroke.getCharacter();
-                    if (Character.isDigit(c)) {
-                        int num = Character.getNumericValue(c);
-                        if (num > 0 && num <= options.length) {
-                            return options[num - 1];
-                        }
-                    } else if (Character.toLowerCase(c) == 'q') {
-                        return null;
-                    }
-                    break;
-                default:
-                    break;
-            }
-        }
-    }
-
-    private static String selectYesNo(int x, int y) throws IOException {
-        int selected = 0;
-        String[] options = {"Yes", "No"};
-        
-        while (true) {
-            for (int i = 0; i < options.length; i++) {
-                if (i == selected) {
-                    graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-                    graphics.putString(x + (i * 10), y, "[ " + options[i] + " ]");
-                } else {
-                    graphics.setForegroundColor(TextColor.ANSI.WHITE);
-                    graphics.putString(x + (i * 10), y, "  " + options[i] + "  ");
-                }
-            }
-            
-            screen.refresh();
-            KeyStroke keyStroke = screen.readInput();
-            if (keyStroke == null) continue;
-            
-            switch (keyStroke.getKeyType()) {
-                case ArrowLeft:
-                    selected = Math.max(0, selected - 1);
-                    break;
-                case ArrowRight:
-                    selected = Math.min(1, selected + 1);
-                    break;
-                case Enter:
-                    return selected == 0 ? "yes" : "no";
-                case Character:
-                    char c = Character.toLowerCase(keyStroke.getCharacter());
-                    if (c == 'y') return "yes";
-                    if (c == 'n') return "no";
-                    if (c == 'q' || keyStroke.getKeyType() == KeyType.Escape) return "no";
-                    break;
-                case Escape:
-                    return "no";
-                default:
-                    break;
-            }
-        }
-    }
-
-    private static void showMessage(String title, String message) throws IOException {
-        screen.clear();
-        drawHeader(title);
-        
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        String[] lines = message.split("\n");
-        for (int i = 0; i < lines.length; i++) {
-            graphics.putString(4, 6 + i, lines[i]);
-        }
-        
-        drawFooter("Press Enter to continue");
-        screen.refresh();
-        waitForEnter();
-    }
-
-    private static void waitForEnter() throws IOException {
-        while (true) {
-            KeyStroke keyStroke = screen.readInput();
-            if (keyStroke == null) continue;
-            if (keyStroke.getKeyType() == KeyType.Enter ||
-                (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == '\n') ||
-                keyStroke.getKeyType() == KeyType.Escape) {
-                break;
-            }
-        }
-    }
-
-    private static boolean isSystemImageInstalled(String packageName) {
-        try {
-            ProcessBuilder pb = new ProcessBuilder(
-                sdkPath + "/cmdline-tools/latest/bin/sdkmanager",
-                "--list_installed"
-            );
-            
-            Map<String, String> env = pb.environment();
-            env.put("ANDROID_HOME", sdkPath);
-            env.put("ANDROID_SDK_ROOT", sdkPath);
-            env.put("AVD_HOME", avdHome);
-            
-            Process process = pb.start();
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().contains(packageName)) {
-                    process.destroy();
-                    return true;
-                }
-            }
-            process.waitFor();
-            process.destroy();
-            return false;
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    private static boolean installSDKPackage(String packageName) {
-        try {
-            List<String> command = new ArrayList<>();
-            command.add(sdkPath + "/cmdline-tools/latest/bin/sdkmanager");
-            
-            if (packageName.isEmpty()) {
-                command.add("--update");
-            } else {
-                command.add(packageName);
-            }
-            
-            command.add("--verbose");
-            
-            ProcessBuilder pb = new ProcessBuilder(command);
-            
-            Map<String, String> env = pb.environment();
-            env.put("ANDROID_HOME", sdkPath);
-            env.put("ANDROID_SDK_ROOT", sdkPath);
-            env.put("AVD_HOME", avdHome);
-            
-            // Add SDK tools to PATH
-            String currentPath = env.get("PATH");
-            env.put("PATH", currentPath + ":" + sdkPath + "/cmdline-tools/latest/bin");
-            
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            
-            // Auto-accept licenses in a separate thread
-            Thread acceptThread = new Thread(() -> {
-                try {
-                    OutputStreamWriter writer = new OutputStreamWriter(process.getOutputStream());
-                    // Send 'y' to accept licenses
-                    writer.write("y\n");
-                    writer.flush();
-                    writer.close();
-                } catch (Exception e) {
-                    // Ignore
-                }
-            });
-            
-            // Read output
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
-            }
-            
-            int exitCode = process.waitFor();
-            return exitCode == 0;
-        } catch (Exception e) {
-            System.err.println(RED + "Error installing package: " + e.getMessage() + RESET);
-            return false;
-        }
-    }
-
-    private static boolean createAVD(String avdName, String packageName, String deviceId) {
-        try {
-            List<String> command = new ArrayList<>();
-            command.add(sdkPath + "/cmdline-tools/latest/bin/avdmanager");
-            command.add("create");
-            command.add("avd");
-            command.add("-n");
-            command.add(avdName);
-            command.add("-k");
-            command.add(packageName);
-            command.add("-d");
-            command.add(deviceId);
-            command.add("--force"); // Overwrite if exists
-            
-            ProcessBuilder pb = new ProcessBuilder(command);
-            
-            Map<String, String> env = pb.environment();
-            env.put("ANDROID_HOME", sdkPath);
-            env.put("ANDROID_SDK_ROOT", sdkPath);
-            env.put("AVD_HOME", avdHome);
-            
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            
-            // Auto-answer "no" to custom hardware profile
-            OutputStream os = process.getOutputStream();
-            os.write("no\n".getBytes());
-            os.flush();
-            os.close();
-            
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
-            }
-            
-            int exitCode = process.waitFor();
-            return exitCode == 0;
-        } catch (Exception e) {
-            System.err.println(RED + "Error during device creation: " + e.getMessage() + RESET);
-            return false;
-        }
-    }
-
-    private static void startAVDTUI() throws IOException {
-        List<String> avds = getAvailableAVDs();
-        if (avds.isEmpty()) {
-            showMessage("No AVDs Found", "No Android Virtual Devices found.\nCreate one using the 'Create New Device' option.");
-            return;
-        }
-        
-        String selectedAvd = selectFromList(4, 5, "SELECT AVD TO START",
-            avds.toArray(new String[0]), 15);
-        if (selectedAvd == null) return;
-        
-        screen.clear();
-        drawHeader("START VIRTUAL DEVICE: " + selectedAvd);
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 6, "Starting AVD: " + selectedAvd);
-        
-        File kvm = new File("/dev/kvm");
-        if (kvm.exists()) {
-            graphics.setForegroundColor(TextColor.ANSI.GREEN);
-            graphics.putString(4, 8, "KVM acceleration: ENABLED");
-        } else {
-            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-            graphics.putString(4, 8, "KVM acceleration: DISABLED (software emulation only)");
-        }
-        
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 10, "Controls:");
-        graphics.putString(6, 12, "- Press Ctrl+C to stop the emulator");
-        graphics.putString(6, 13, "- Press F1 inside emulator for help");
-        
-        graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-        graphics.putString(4, 16, "Start this virtual device?");
-        String confirm = selectYesNo(4, 18);
-        if (!"yes".equals(confirm)) {
-            showMessage("Cancelled", "AVD start cancelled");
-            return;
-        }
-        
-        cleanupTerminal();
-        System.out.println(CYAN + "\nStarting " + selectedAvd + "...\n" + RESET);
-        startAVD(selectedAvd);
-        
-        // Return to TUI after emulator closes
-        System.out.println(YELLOW + "\nEmulator closed. Returning to Avidia..." + RESET);
-        startTerminalUI();
-    }
-
-    private static void startAVD(String avdName) {
-        System.out.println(CYAN + "\nStarting virtual device: " + avdName + RESET);
-        System.out.println(YELLOW + "Press Ctrl+C to stop the emulator" + RESET);
-        
-        try {
-            File kvm = new File("/dev/kvm");
-            List<String> command = new ArrayList<>();
-            command.add(sdkPath + "/emulator/emulator");
-            command.add("-avd");
-            command.add(avdName);
-            command.add("-gpu");
-            command.add("host");
-            command.add("-memory");
-            command.add("4096");
-            command.add("-no-snapshot-load");
-            command.add("-netdelay");
-            command.add("none");
-            command.add("-netspeed");
-            command.add("full");
-            command.add("-no-boot-anim");
-            command.add("-no-audio");
-            
-            if (kvm.exists()) {
-                command.add("-accel");
-                command.add("kvm");
-                System.out.println(GREEN + "KVM acceleration enabled" + RESET);
-            } else {
-                System.out.println(YELLOW + "KVM not available, using software emulation" + RESET);
-            }
-            
-            ProcessBuilder pb = new ProcessBuilder(command);
-            pb.inheritIO();
-            
-            Map<String, String> env = pb.environment();
-            env.put("ANDROID_HOME", sdkPath);
-            env.put("ANDROID_SDK_ROOT", sdkPath);
-            env.put("AVD_HOME", avdHome);
-            
-            Process process = pb.start();
-            process.waitFor();
-        } catch (Exception e) {
-            System.err.println(RED + "Failed to start virtual device: " + e.getMessage() + RESET);
-            System.out.println(YELLOW + "Press Enter to continue..." + RESET);
-            try {
-                System.in.read();
-            } catch (IOException io) {
-                // Ignore
-            }
-        }
-    }
-
-    private static void stopAVDTUI() throws IOException {
-        List<String> avds = getRunningAVDs();
-        if (avds.isEmpty()) {
-            showMessage("No Running AVDs", "No Android Virtual Devices are currently running.");
-            return;
-        }
-        
-        String selectedAvd = selectFromList(4, 5, "SELECT AVD TO STOP",
-            avds.toArray(new String[0]), 15);
-        if (selectedAvd == null) return;
-        
-        String avdName = selectedAvd.split(" ")[0];
-        
-        screen.clear();
-        drawHeader("STOP VIRTUAL DEVICE");
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 6, "Stop AVD: " + avdName);
-        
-        graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-        graphics.putString(4, 9, "Are you sure you want to stop this AVD?");
-        graphics.putString(4, 11, "All unsaved data will be lost.");
-        
-        String confirm = selectYesNo(4, 14);
-        if (!"yes".equals(confirm)) {
-            showMessage("Cancelled", "AVD stop cancelled");
-            return;
-        }
-        
-        screen.clear();
-        drawHeader("STOPPING VIRTUAL DEVICE");
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 6, "Stopping AVD: " + avdName);
-        graphics.putString(4, 8, "Please wait...");
-        screen.refresh();
-        
-        stopAVD(avdName);
-        showMessage("Success", "AVD '" + avdName + "' stopped successfully");
-    }
-
-    private static void stopAVD(String avdName) {
-        try {
-            ProcessBuilder pb = new ProcessBuilder("pgrep", "-f", "emulator.*-avd " + avdName);
-            Process process = pb.start();
-            
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-            
-            String line;
-            List<String> pids = new ArrayList<>();
-            while ((line = reader.readLine()) != null) {
-                pids.add(line.trim());
-            }
-            process.waitFor();
-            
-            if (pids.isEmpty()) {
-                System.out.println(YELLOW + "No running emulator found for AVD '" + avdName + "'" + RESET);
-                return;
-            }
-            
-            for (String pid : pids) {
-                try {
-                    new ProcessBuilder("kill", pid).start().waitFor();
-                    System.out.println(GREEN + "Stopped process: " + pid + RESET);
-                } catch (Exception e) {
-                    try {
-                        new ProcessBuilder("kill", "-9", pid).start().waitFor();
-                        System.out.println(YELLOW + "Force stopped process: " + pid + RESET);
-                    } catch (Exception e2) {
-                        System.err.println(RED + "Failed to stop process: " + pid + RESET);
-                    }
-                }
-            }
-            
-            Thread.sleep(1000);
-            System.out.println(GREEN + "AVD '" + avdName + "' stopped successfully" + RESET);
-        } catch (Exception e) {
-            System.err.println(RED + "Error stopping AVD: " + e.getMessage() + RESET);
-        }
-    }
-
-    private static List<String> getRunningAVDs() {
-        List<String> avds = new ArrayList<>();
-        try {
-            ProcessBuilder pb = new ProcessBuilder("ps", "aux");
-            Process process = pb.start();
-            
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.contains("emulator") && line.contains("-avd")) {
-                    String[] parts = line.split("-avd");
-                    if (parts.length > 1) {
-                        String avdPart = parts[1].trim();
-                        String avdName = avdPart.split(" ")[0];
-                        String pid = line.trim().split("\\s+")[1];
-                        avds.add(avdName + " (PID: " + pid + ")");
-                    }
-                }
-            }
-            process.waitFor();
-        } catch (Exception e) {
-            // Ignore
-        }
-        return avds;
-    }
-
-    private static void deleteAVDTUI() throws IOException {
-        List<String> avds = getAvailableAVDs();
-        if (avds.isEmpty()) {
-            showMessage("No AVDs Found", "No Android Virtual Devices found.");
-            return;
-        }
-        
-        String selectedAvd = selectFromList(4, 5, "SELECT AVD TO DELETE",
-            avds.toArray(new String[0]), 15);
-        if (selectedAvd == null) return;
-        
-        screen.clear();
-        drawHeader("DELETE VIRTUAL DEVICE");
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 6, "Delete AVD: " + selectedAvd);
-        
-        if (isAVDRunning(selectedAvd)) {
-            graphics.setForegroundColor(TextColor.ANSI.RED);
-            graphics.putString(4, 9, "WARNING: This AVD is currently running!");
-            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-            graphics.putString(4, 11, "It must be stopped before deletion.");
-            graphics.putString(4, 13, "Stop and delete this AVD?");
-        } else {
-            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-            graphics.putString(4, 9, "This will permanently delete:");
-            graphics.putString(6, 11, "- AVD configuration");
-            graphics.putString(6, 12, "- User data");
-            graphics.putString(6, 13, "- SD card contents");
-            graphics.putString(4, 15, "Are you sure you want to delete this AVD?");
-        }
-        
-        String confirm = selectYesNo(4, 18);
-        if (!"yes".equals(confirm)) {
-            showMessage("Cancelled", "AVD deletion cancelled");
-            return;
-        }
-        
-        if (isAVDRunning(selectedAvd)) {
-            screen.clear();
-            drawHeader("STOPPING AVD");
-            graphics.setForegroundColor(TextColor.ANSI.WHITE);
-            graphics.putString(4, 6, "Stopping running AVD before deletion...");
-            screen.refresh();
-            stopAVD(selectedAvd);
-            try {
-                Thread.sleep(1000);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                showMessage("Error", "Thread was interrupted while waiting for AVD to stop.");
-                return;
-            }
-        }
-        
-        screen.clear();
-        drawHeader("DELETING VIRTUAL DEVICE");
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 6, "Deleting AVD: " + selectedAvd);
-        graphics.putString(4, 8, "Please wait...");
-        screen.refresh();
-        
-        boolean success = deleteAVD(selectedAvd);
-        if (success) {
-            showMessage("Success", "AVD '" + selectedAvd + "' deleted successfully");
-        } else {
-            showMessage("Error", "Failed to delete AVD '" + selectedAvd + "'");
-        }
-    }
-
-    private static boolean isAVDRunning(String avdName) {
-        try {
-            ProcessBuilder pb = new ProcessBuilder("pgrep", "-f", "emulator.*-avd " + avdName);
-            Process process = pb.start();
-            int exitCode = process.waitFor();
-            return exitCode == 0;
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    private static boolean deleteAVD(String avdName) {
-        try {
-            List<String> command = new ArrayList<>();
-            command.add(sdkPath + "/cmdline-tools/latest/bin/avdmanager");
-            command.add("delete");
-            command.add("avd");
-            command.add("-n");
-            command.add(avdName);
-            
-            ProcessBuilder pb = new ProcessBuilder(command);
-            
-            Map<String, String> env = pb.environment();
-            env.put("ANDROID_HOME", sdkPath);
-            env.put("ANDROID_SDK_ROOT", sdkPath);
-            env.put("AVD_HOME", avdHome);
-            
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            
-            // Auto-confirm deletion
-            OutputStream os = process.getOutputStream();
-            os.write("yes\n".getBytes());
-            os.flush();
-            os.close();
-            
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
-            }
-            
-            int exitCode = process.waitFor();
-            return exitCode == 0;
-        } catch (Exception e) {
-            System.err.println(RED + "Error during device deletion: " + e.getMessage() + RESET);
-            return false;
-        }
-    }
-
-    private static void installImageTUI() throws IOException {
-        screen.clear();
-        drawHeader("INSTALL SYSTEM IMAGE");
-        
-        String apiSelection = selectFromList(4, 5, "Select Android version:", ANDROID_VERSIONS.entrySet().stream()
-            .map(e -> e.getKey() + " (API " + e.getValue() + ")")
-            .toArray(String[]::new), 15);
-        if (apiSelection == null) return;
-        
-        String apiLevel = ANDROID_VERSIONS.entrySet().stream()
-            .filter(e -> (e.getKey() + " (API " + e.getValue() + ")").equals(apiSelection))
-            .findFirst()
-            .map(Map.Entry::getValue)
-            .orElse("34");
-        
-        String imageTypeSelection = selectFromList(4, 10, "Select Image Type:",
-            Arrays.stream(IMAGE_TYPES)
-                .map(t -> t[1])
-                .toArray(String[]::new), 15);
-        if (imageTypeSelection == null) return;
-        
-        String imageType = "google_apis";
-        for (String[] type : IMAGE_TYPES) {
-            if (type[1].equals(imageTypeSelection)) {
-                imageType = type[0];
-                break;
-            }
-        }
-        
-        String abiSelection = selectFromList(4, 15, "Select Architecture:", ABI_TYPES, 10);
-        if (abiSelection == null) return;
-        
-        String abi = "x86_64";
-        if (abiSelection.contains("x86 (")) abi = "x86";
-        else if (abiSelection.contains("arm64-v8a")) abi = "arm64-v8a";
-        
-        String packageName = String.format("system-images;android-%s;%s;%s", apiLevel, imageType, abi);
-        
-        screen.clear();
-        drawHeader("INSTALL SYSTEM IMAGE - CONFIRMATION");
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 6, "Android Version: " + apiSelection);
-        graphics.putString(4, 8, "Image Type: " + imageTypeSelection);
-        graphics.putString(4, 10, "Architecture: " + abiSelection);
-        graphics.putString(4, 12, "Package: " + packageName);
-        
-        graphics.setForegroundColor(TextColor.ANSI.YELLOW);
-        graphics.putString(4, 15, "This will download approximately 1-2 GB of data.");
-        graphics.putString(4, 17, "Do you want to proceed with installation?");
-        
-        String confirm = selectYesNo(4, 19);
-        if (!"yes".equals(confirm)) {
-            showMessage("Cancelled", "Installation cancelled");
-            return;
-        }
-        
-        screen.clear();
-        drawHeader("INSTALLING SYSTEM IMAGE");
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 6, "Installing: " + packageName);
-        graphics.putString(4, 8, "This may take several minutes depending on your internet connection...");
-        graphics.putString(4, 10, "Please wait, do not close this window.");
-        screen.refresh();
-        
-        if (installSDKPackage(packageName)) {
-            showMessage("Success", "System image installed successfully!");
-        } else {
-            showMessage("Error", "Failed to install system image. Check your internet connection.");
-        }
-    }
-
-    private static void showSystemInfo() throws IOException {
-        screen.clear();
-        drawHeader("SYSTEM INFORMATION");
-        
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 5, "AVIDIA Status: Operational");
-        graphics.putString(4, 7, "Android SDK Path: " + sdkPath);
-        graphics.putString(4, 9, "AVD Home: " + avdHome);
-        
-        graphics.putString(4, 11, "Java Environment:");
-        try {
-            Process process = Runtime.getRuntime().exec("java -version");
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getErrorStream())
-            );
-            String line = reader.readLine();
-            if (line != null) {
-                graphics.putString(6, 13, line.trim());
-            }
-        } catch (Exception e) {
-            graphics.putString(6, 13, "Error retrieving Java version");
-        }
-        
-        File kvm = new File("/dev/kvm");
-        graphics.putString(4, 15, "Hardware Acceleration:");
-        if (kvm.exists()) {
-            graphics.setForegroundColor(TextColor.ANSI.GREEN);
-            graphics.putString(6, 17, "[✓] KVM available");
-        } else {
-            graphics.setForegroundColor(TextColor.ANSI.RED);
-            graphics.putString(6, 17, "[✗] KVM not available");
-        }
-        
-        List<String> avds = getAvailableAVDs();
-        graphics.setForegroundColor(TextColor.ANSI.WHITE);
-        graphics.putString(4, 19, "Virtual Devices:");
-        graphics.putString(6, 21, "Total AVDs: " + avds.size());
-        
-        drawFooter("Press Enter to return to main menu");
-        screen.refresh();
-        waitForEnter();
-    }
-
-    private static List<String> getAvailableAVDs() {
-        List<String> avds = new ArrayList<>();
-        try {
-            if (sdkPath == null || !new File(sdkPath + "/emulator/emulator").exists()) {
-                return avds;
-            }
-            
-            ProcessBuilder pb = new ProcessBuilder(
-                sdkPath + "/emulator/emulator", "-list-avds"
-            );
-            
-            Map<String, String> env = pb.environment();
-            env.put("ANDROID_HOME", sdkPath);
-            env.put("ANDROID_SDK_ROOT", sdkPath);
-            env.put("AVD_HOME", avdHome);
-            
-            Process process = pb.start();
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    avds.add(line.trim());
-                }
-            }
-            process.waitFor();
-        } catch (Exception e) {
-            // Ignore errors
-        }
-        return avds;
-    }
-
-    private static void listAVDs() {
-        System.out.println(YELLOW + "\n================================================" + RESET);
-        System.out.println(BOLD + "           AVAILABLE VIRTUAL DEVICES           " + RESET);
-        System.out.println(YELLOW + "================================================" + RESET);
-        
-        List<String> avds = getAvailableAVDs();
-        
-        if (avds.isEmpty()) {
-            System.out.println(YELLOW + "  No virtual devices found." + RESET);
-            System.out.println("  Create one using: " + CYAN + "avidia tui" + RESET + " or " + CYAN + "avidia create <name>" + RESET);
-        } else {
-            for (int i = 0; i < avds.size(); i++) {
-                System.out.println(GREEN + "  [" + (i+1) + "] " + RESET + avds.get(i));
-            }
-            System.out.println(YELLOW + "\n  Total: " + avds.size() + " device(s)" + RESET);
-        }
-        
-        System.out.println(YELLOW + "================================================" + RESET);
-    }
-
-    private static void showCLIMenu() {
-        Scanner scanner = new Scanner(System.in);
-        boolean running = true;
-        
-        while (running) {
-            printHeader();
-            System.out.println(BLUE + "================================================" + RESET);
-            System.out.println(BOLD + "                 MAIN OPERATIONS                " + RESET);
-            System.out.println(BLUE + "================================================" + RESET);
-            System.out.println(GREEN + " [1]" + RESET + " List Virtual Devices");
-            System.out.println("     Display all available Android Virtual Devices");
-            System.out.println();
-            System.out.println(GREEN + " [2]" + RESET + " Create New Device");
-            System.out.println("     Configure and create a new Android Virtual Device");
-            System.out.println();
-            System.out.println(GREEN + " [3]" + RESET + " Start Virtual Device");
-            System.out.println("     Launch an existing Android Virtual Device");
-            System.out.println();
-            System.out.println(GREEN + " [4]" + RESET + " Stop Virtual Device");
-            System.out.println("     Stop a running Android Virtual Device");
-            System.out.println();
-            System.out.println(GREEN + " [5]" + RESET + " Remove Virtual Device");
-            System.out.println("     Delete an Android Virtual Device permanently");
-            System.out.println();
-            System.out.println(GREEN + " [6]" + RESET + " Install System Image");
-            System.out.println("     Install new Android system images for emulation");
-            System.out.println();
-            System.out.println(GREEN + " [7]" + RESET + " System Information");
-            System.out.println("     View system configuration and environment status");
-            System.out.println();
-            System.out.println(GREEN + " [0]" + RESET + " Exit to Shell");
-            System.out.println(BLUE + "================================================" + RESET);
-            
-            System.out.print("\n" + CYAN + "Enter selection: " + RESET);
-            String choice = scanner.nextLine().trim();
-            
-            switch (choice) {
-                case "1":
-                    listAVDs();
-                    waitForEnter(scanner);
-                    break;
-                case "2":
-                    createAVDCLI(scanner);
-                    break;
-                case "3":
-                    startAVDCLI(scanner);
-                    break;
-                case "4":
-                    stopAVDCLI(scanner);
-                    break;
-                case "5":
-                    deleteAVDCLI(scanner);
-                    break;
-                case "6":
-                    installImageCLI(scanner);
-                    break;
-                case "7":
-                    showSystemInfoCLI();
-                    waitForEnter(scanner);
-                    break;
-                case "0":
-                    System.out.println(CYAN + "\nReturning to Terminal..." + RESET);
-                    running = false;
-                    break;
-                default:
-                    System.out.println(RED + "Invalid selection! Please choose 0-7." + RESET);
-                    waitForEnter(scanner);
-            }
-        }
-        scanner.close();
-    }
-
-    private static void waitForEnter(Scanner scanner) {
-        System.out.print("\n" + YELLOW + "Press Enter to continue..." + RESET);
-        scanner.nextLine();
-    }
-
-    private static void createAVDCLI(Scanner scanner) {
-        System.out.println(YELLOW + "\n================================================" + RESET);
-        System.out.println(BOLD + "           CREATE VIRTUAL DEVICE              " + RESET);
-        System.out.println(YELLOW + "================================================" + RESET);
-        
-        System.out.print("\n" + CYAN + "Virtual device name: " + RESET);
-        String avdName = scanner.nextLine().trim();
-        if (avdName.isEmpty()) {
-            System.err.println(RED + "Device name cannot be empty!" + RESET);
-            return;
-        }
-        
-        if (!Pattern.matches("[a-zA-Z0-9_]+", avdName)) {
-            System.err.println(RED + "Device name can only contain letters, numbers, and underscores!" + RESET);
-            return;
-        }
-        
-        System.out.println("\n" + CYAN + "Android Version:" + RESET);
-        System.out.println("------------------------------------------------");
-        int i = 1;
-        for (Map.Entry<String, String> entry : ANDROID_VERSIONS.entrySet()) {
-            System.out.printf("  [%d] %-25s (API %s)\n", i++, entry.getKey(), entry.getValue());
-        }
-        
-        System.out.print("\n" + CYAN + "Select version [1]: " + RESET);
-        String apiInput = scanner.nextLine().trim();
-        String apiLevel = "34";
-        
-        if (!apiInput.isEmpty() && apiInput.matches("\\d+")) {
-            int index = Integer.parseInt(apiInput) - 1;
-            if (index >= 0 && index < ANDROID_VERSIONS.size()) {
-                apiLevel = (String) ANDROID_VERSIONS.values().toArray()[index];
-            }
-        }
-        
-        System.out.println("\n" + CYAN + "Architecture:" + RESET);
-        System.out.println(" [1] x86_64 (Intel/AMD 64-bit, recommended)");
-        System.out.println(" [2] x86 (Intel/AMD 32-bit)");
-        System.out.println(" [3] arm64-v8a (ARM 64-bit, slower emulation)");
-        System.out.print("Select [1]: " + RESET);
-        String archChoice = scanner.nextLine().trim();
-        String abi = "x86_64";
-        if ("2".equals(archChoice)) abi = "x86";
-        else if ("3".equals(archChoice)) abi = "arm64-v8a";
-        
-        System.out.println("\n" + CYAN + "Image Type:" + RESET);
-        System.out.println(" [1] Google Play Store (Recommended for app testing)");
-        System.out.println(" [2] Google APIs (No Play Store, with Google Services)");
-        System.out.println(" [3] AOSP (Android Open Source Project, no Google services)");
-        System.out.print("Select [1]: " + RESET);
-        String typeChoice = scanner.nextLine().trim();
-        String imageType = "google_apis_playstore";
-        if ("2".equals(typeChoice)) imageType = "google_apis";
-        else if ("3".equals(typeChoice)) imageType = "android";
-        
-        String packageName = String.format("system-images;android-%s;%s;%s", apiLevel, imageType, abi);
-        
-        System.out.println("\n" + CYAN + "Device Model:" + RESET);
-        System.out.println(" Available options:");
-        for (int j = 0; j < DEVICE_DEFINITIONS.size(); j++) {
-            System.out.printf("  [%d] %s\n", j+1, DEVICE_DEFINITIONS.get(j)[1]);
-        }
-        
-        System.out.print("\nSelect device number [3]: " + RESET);
-        String deviceChoice = scanner.nextLine().trim();
-        String deviceId = "pixel_5";
-        if (deviceChoice.matches("\\d+")) {
-            int index = Integer.parseInt(deviceChoice) - 1;
-            if (index >= 0 && index < DEVICE_DEFINITIONS.size()) {
-                deviceId = DEVICE_DEFINITIONS.get(index)[0];
-            }
-        }
-        
-        if (!isSystemImageInstalled(packageName)) {
-            System.out.println(RED + "\nSystem image not installed!" + RESET);
-            System.out.println("Package: " + packageName);
-            System.out.print(YELLOW + "Do you want to install it now? (yes/no): " + RESET);
-            String installChoice = scanner.nextLine().trim().toLowerCase();
-            if (installChoice.equals("yes") || installChoice.equals("y")) {
-                if (!installSDKPackage(packageName)) {
-                    System.out.println(RED + "Failed to install system image. Aborting." + RESET);
-                    return;
-                }
-            } else {
-                System.out.println(YELLOW + "AVD creation cancelled." + RESET);
-                return;
-            }
-        }
-        
-        System.out.println("\n" + CYAN + "================================================" + RESET);
-        System.out.println(BOLD + "        CONFIGURATION SUMMARY             " + RESET);
-        System.out.println(CYAN + "================================================" + RESET);
-        System.out.println(" Name       : " + GREEN + avdName + RESET);
-        System.out.println(" API Level  : " + GREEN + apiLevel + RESET);
-        System.out.println(" Architecture: " + GREEN + abi + RESET);
-        System.out.println(" Image Type : " + GREEN + imageType + RESET);
-        System.out.println(" Device     : " + GREEN + deviceId + RESET);
-        System.out.println(CYAN + "================================================" + RESET);
-        
-        System.out.print("\n" + CYAN + "Create virtual device? (yes/no): " + RESET);
-        String confirm = scanner.nextLine().trim().toLowerCase();
-        if (confirm.equals("yes") || confirm.equals("y")) {
-            boolean success = createAVD(avdName, packageName, deviceId);
-            if (success) {
-                System.out.println(GREEN + "\nAVD created successfully!" + RESET);
-                System.out.println("Start it with: " + CYAN + "avidia start " + avdName + RESET);
-            } else {
-                System.err.println(RED + "\nFailed to create AVD." + RESET);
-            }
-        } else {
-            System.out.println(YELLOW + "Device creation cancelled." + RESET);
-        }
-    }
-
-    private static void startAVDCLI(Scanner scanner) {
-        List<String> avds = getAvailableAVDs();
-        if (avds.isEmpty()) {
-            System.out.println(RED + "No AVDs found. Create one first." + RESET);
-            return;
-        }
-        
-        System.out.println("\n" + CYAN + "Available AVDs:" + RESET);
-        for (int i = 0; i < avds.size(); i++) {
-            System.out.println(" [" + (i + 1) + "] " + avds.get(i));
-        }
-        
-        System.out.print("\n" + CYAN + "Select AVD number: " + RESET);
-        String choice = scanner.nextLine().trim();
-        try {
-            int idx = Integer.parseInt(choice) - 1;
-            if (idx >= 0 && idx < avds.size()) {
-                startAVD(avds.get(idx));
-            } else {
-                System.out.println(RED + "Invalid selection." + RESET);
-            }
-        } catch (NumberFormatException e) {
-            System.out.println(RED + "Invalid number." + RESET);
-        }
-    }
-
-    private static void stopAVDCLI(Scanner scanner) {
-        List<String> runningAvds = getRunningAVDs();
-        if (runningAvds.isEmpty()) {
-            System.out.println(YELLOW + "No AVDs are currently running." + RESET);
-            return;
-        }
-        
-        System.out.println("\n" + CYAN + "Running AVDs:" + RESET);
-        for (int i = 0; i < runningAvds.size(); i++) {
-            System.out.println(" [" + (i + 1) + "] " + runningAvds.get(i));
-        }
-        
-        System.out.print("\n" + CYAN + "Select AVD number to stop: " + RESET);
-        String choice = scanner.nextLine().trim();
-        try {
-            int idx = Integer.parseInt(choice) - 1;
-            if (idx >= 0 && idx < runningAvds.size()) {
-                String avdName = runningAvds.get(idx).split(" ")[0];
-                stopAVD(avdName);
-            } else {
-                System.out.println(RED + "Invalid selection." + RESET);
-            }
-        } catch (NumberFormatException e) {
-            System.out.println(RED + "Invalid number." + RESET);
-        }
-    }
-
-    private static void deleteAVDCLI(Scanner scanner) {
-        List<String> avds = getAvailableAVDs();
-        if (avds.isEmpty()) {
-            System.out.println(RED + "No AVDs found." + RESET);
-            return;
-        }
-        
-        System.out.println("\n" + CYAN + "Available AVDs:" + RESET);
-        for (int i = 0; i < avds.size(); i++) {
-            System.out.println(" [" + (i + 1) + "] " + avds.get(i));
-        }
-        
-        System.out.print("\n" + CYAN + "Select AVD number to delete: " + RESET);
-        String choice = scanner.nextLine().trim();
-        try {
-            int idx = Integer.parseInt(choice) - 1;
-            if (idx >= 0 && idx < avds.size()) {
-                String avdName = avds.get(idx);
-                if (isAVDRunning(avdName)) {
-                    System.out.println(RED + "WARNING: This AVD is currently running!" + RESET);
-                    System.out.print(YELLOW + "Do you want to stop and delete it? (yes/no): " + RESET);
-                    String confirm = scanner.nextLine().trim().toLowerCase();
-                    if (!confirm.equals("yes") && !confirm.equals("y")) {
-                        System.out.println(YELLOW + "Deletion cancelled." + RESET);
-                        return;
-                    }
-                    stopAVD(avdName);
-                }
-                
-                System.out.println("\n" + RED + "WARNING: This will permanently delete all data associated with this AVD!" + RESET);
-                System.out.print(YELLOW + "Are you sure you want to delete '" + avdName + "'? (yes/no): " + RESET);
-                String confirm = scanner.nextLine().trim().toLowerCase();
-                if (confirm.equals("yes") || confirm.equals("y")) {
-                    deleteAVD(avdName);
-                } else {
-                    System.out.println(YELLOW + "Deletion cancelled." + RESET);
-                }
-            } else {
-                System.out.println(RED + "Invalid selection." + RESET);
-            }
-        } catch (NumberFormatException e) {
-            System.out.println(RED + "Invalid number." + RESET);
-        }
-    }
-
-    private static void installImageCLI(Scanner scanner) {
-        System.out.println(YELLOW + "\n================================================" + RESET);
-        System.out.println(BOLD + "        INSTALL SYSTEM IMAGE                  " + RESET);
-        System.out.println(YELLOW + "================================================" + RESET);
-        
-        System.out.println("\n" + CYAN + "Available Android Versions:" + RESET);
-        int index = 1;
-        for (Map.Entry<String, String> entry : ANDROID_VERSIONS.entrySet()) {
-            System.out.printf("  [%d] %-25s (API %s)\n", index++, entry.getKey(), entry.getValue());
-        }
-        
-        System.out.print("\n" + CYAN + "Select version number [1]: " + RESET);
-        String versionInput = scanner.nextLine().trim();
-        String apiLevel = "34";
-        
-        if (!versionInput.isEmpty() && versionInput.matches("\\d+")) {
-            int versionIndex = Integer.parseInt(versionInput) - 1;
-            if (versionIndex >= 0 && versionIndex < ANDROID_VERSIONS.size()) {
-                apiLevel = (String) ANDROID_VERSIONS.values().toArray()[versionIndex];
-            }
-        }
-        
-        System.out.println("\n" + CYAN + "Image Types:" + RESET);
-        System.out.println(" [1] Google Play Store (Recommended for app testing)");
-        System.out.println(" [2] Google APIs (No Play Store, with Google Services)");
-        System.out.println(" [3] AOSP (Android Open Source Project, no Google services)");
-        System.out.print("Select [1]: " + RESET);
-        String typeChoice = scanner.nextLine().trim();
-        String imageType = "google_apis_playstore";
-        if ("2".equals(typeChoice)) imageType = "google_apis";
-        else if ("3".equals(typeChoice)) imageType = "android";
-        
-        System.out.println("\n" + CYAN + "Architecture:" + RESET);
-        System.out.println(" [1] x86_64 (Intel/AMD 64-bit, recommended)");
-        System.out.println(" [2] x86 (Intel/AMD 32-bit)");
-        System.out.println(" [3] arm64-v8a (ARM 64-bit, slower emulation)");
-        System.out.print("Select [1]: " + RESET);
-        String archChoice = scanner.nextLine().trim();
-        String abi = "x86_64";
-        if ("2".equals(archChoice)) abi = "x86";
-        else if ("3".equals(archChoice)) abi = "arm64-v8a";
-        
-        String packageName = String.format("system-images;android-%s;%s;%s", apiLevel, imageType, abi);
-        
-        System.out.println("\n" + CYAN + "Package to install:" + RESET);
-        System.out.println(" " + packageName);
-        System.out.println(YELLOW + "\nThis will download approximately 1-2 GB of data." + RESET);
-        
-        System.out.print("\n" + CYAN + "Proceed with installation? (yes/no): " + RESET);
-        String confirm = scanner.nextLine().trim().toLowerCase();
-        if (confirm.equals("yes") || confirm.equals("y")) {
-            installSDKPackage(packageName);
-        } else {
-            System.out.println(YELLOW + "Installation cancelled." + RESET);
-        }
-    }
-
-    private static void showSystemInfoCLI() {
-        printHeader();
-        System.out.println(BOLD + "System Information:" + RESET);
-        System.out.println("===================");
-        System.out.println();
-        System.out.println("AVIDIA Status:    Operational");
-        System.out.println("Android SDK:      " + sdkPath);
-        System.out.println("AVD Home:         " + avdHome);
-        System.out.println();
-        
-        System.out.println("Java Version:");
-        try {
-            Process process = Runtime.getRuntime().exec("java -version");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("  " + line);
-            }
-        } catch (Exception e) {
-            System.out.println(RED + "  Error retrieving Java version: " + e.getMessage() + RESET);
-        }
-        
-        System.out.println();
-        
-        System.out.println("KVM Status:");
-        File kvm = new File("/dev/kvm");
-        if (kvm.exists()) {
-            System.out.println(GREEN + "  Available (Hardware acceleration enabled)" + RESET);
-        } else {
-            System.out.println(RED + "  Not available (Software acceleration only)" + RESET);
-        }
-        
-        System.out.println();
-        
-        List<String> avds = getAvailableAVDs();
-        System.out.println("Virtual Devices:");
-        System.out.println("  Total AVDs: " + avds.size());
-        if (!avds.isEmpty()) {
-            for (String avd : avds) {
-                System.out.println("    - " + avd);
-            }
-        }
-    }
-
-    private static boolean validateEnvironment() {
-        homeDir = System.getProperty("user.home");
-        avidiaHome = homeDir + "/.avidia";
-        avdHome = avidiaHome + "/avd";
-        
-        // Check if Avidia is setup
-        File avidiaDir = new File(avidiaHome);
-        if (!avidiaDir.exists()) {
-            System.err.println(RED + "AVIDIA not initialized!" + RESET);
-            System.err.println("Please run: " + CYAN + "avidia setup" + RESET);
-            return false;
-        }
-        
-        // Try to find SDK in multiple locations
-        String[] possiblePaths = {
-            avidiaHome + "/sdk",
-            System.getenv("ANDROID_SDK_ROOT"),
-            System.getenv("ANDROID_HOME"),
-            homeDir + "/Android/Sdk",
-            "/usr/share/android",
-            "/usr/lib/android-sdk"
-        };
-        
-        for (String path : possiblePaths) {
-            if (path != null && !path.isEmpty()) {
-                File sdkDir = new File(path);
-                if (sdkDir.exists() && sdkDir.isDirectory()) {
-                    sdkPath = path;
-                    break;
-                }
-            }
-        }
-        
-        // If not found, use Avidia's SDK directory
-        if (sdkPath == null) {
-            sdkPath = avidiaHome + "/sdk";
-        }
-        
-        File sdkDir = new File(sdkPath);
-        if (!sdkDir.exists()) {
-            System.err.println(YELLOW + "Android SDK not found at: " + sdkPath + RESET);
-            System.err.println("Please install Android CLI tools first.");
-            System.err.println("Run: " + CYAN + "avidia tui" + RESET + " and select 'Install System Image'");
-            return false;
-        }
-        
-        // Check for required tools
-        File emulator = new File(sdkPath + "/emulator/emulator");
-        File avdmanager = new File(sdkPath + "/cmdline-tools/latest/bin/avdmanager");
-        File sdkmanager = new File(sdkPath + "/cmdline-tools/latest/bin/sdkmanager");
-        
-        boolean toolsAvailable = true;
-        
-        if (!emulator.exists() || !emulator.canExecute()) {
-            System.err.println(YELLOW + "Emulator not found at: " + emulator.getAbsolutePath() + RESET);
-            toolsAvailable = false;
+        // A running daemon answers without the environment checks and catalog loading below
+        Integer forwarded = DaemonClient.forward(args);
+        if (forwarded != null) {
+            System.exit(forwarded);
         }
         
-        if (!avdmanager.exists() || !avdmanager.canExecute()) {
-            System.err.println(YELLOW + "AVD Manager not found at: " + avdmanager.getAbsolutePath() + RESET);
-            toolsAvailable = false;
-        }
-        
-        if (!sdkmanager.exists() || !sdkmanager.canExecute()) {
-            System.err.println(YELLOW + "SDK Manager not found at: " + sdkmanager.getAbsolutePath() + RESET);
-            toolsAvailable = false;
+        if (!Environment.validateEnvironment()) {
+            System.exit(1);
         }
         
-        if (!toolsAvailable) {
-            System.err.println("\nPlease install Android CLI tools:");
-            System.err.println("  1. Run: " + CYAN + "avidia tui" + RESET);
-            System.err.println("  2. Select 'Install System Image'");
-            System.err.println("  3. Or download manually and extract to: " + sdkPath);
-            return false;
+        int exitCode = Commands.run(args);
+        if (exitCode != 0) {
+            System.exit(exitCode);
         }
-        
-        // Set environment variables for child processes
-        System.setProperty("ANDROID_SDK_ROOT", sdkPath);
-        System.setProperty("ANDROID_HOME", sdkPath);
-        System.setProperty("AVD_HOME", avdHome);
-        
-        // Ensure AVD directory exists
-        File avdDir = new File(avdHome);
-        if (!avdDir.exists()) {
-            avdDir.mkdirs();
-        }
-        
-        return true;
-    }
-
-    private static void printHeader() {
-        System.out.println(CYAN + BOLD);
-        System.out.println("================================================");
-        System.out.println("                    AVIDIA                      ");
-        System.out.println("    Android Virtual Device Manager (User)      ");
-        System.out.println("================================================");
-        System.out.println(RESET);
     }
 }
@@ -0,0 +1,247 @@
+package org.jimedrand.avidia.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.jimedrand.avidia.core.LabSpec;
+
+import static org.jimedrand.avidia.cli.Commands.*;
+import static org.jimedrand.avidia.cli.RoutedOutput.*;
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// `avidia apply`: brings the AVDs on disk in line with a lab spec
+public final class Apply {
+    private static final class Step {
+        final String action;
+        final String target;
+        volatile String status = "PENDING";
+        volatile long millis;
+        volatile String output = "";
+
+        Step(String action, String target) {
+            this.action = action;
+            this.target = target;
+        }
+    }
+
+    private Apply() {
+    }
+
+    // Plans against the current AVDs, then runs the changes, `parallel` at a time. Each system
+    // image the creates need is installed once, on its own thread, and only the creates that
+    // need it wait for it; updates and deletes start at once.
+    static boolean applyCommand(String[] args) {
+        String usage = "Usage: apply <spec.yaml|spec.json> [--parallel N] [--dry-run] [--verbose]";
+        String source = null;
+        int parallel = Runtime.getRuntime().availableProcessors();
+        boolean dryRun = false;
+        boolean verbose = false;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--parallel":
+                        parallel = Integer.parseInt(args[++i]);
+                        if (parallel < 1) {
+                            throw new IllegalArgumentException("--parallel must be positive");
+                        }
+                        break;
+                    case "--dry-run":
+                        dryRun = true;
+                        break;
+                    case "--verbose":
+                        verbose = true;
+                        break;
+                    default:
+                        if (source != null || args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("unexpected argument " + args[i]);
+                        }
+                        source = args[i];
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(RED + "Invalid apply arguments: " + e.getMessage() + RESET);
+            System.err.println(usage);
+            return false;
+        }
+        if (source == null) {
+            System.err.println(usage);
+            return false;
+        }
+
+        LabSpec spec;
+        try {
+            spec = LabSpec.read(resolvePath(source));
+        } catch (IOException e) {
+            System.err.println(RED + "Cannot read " + source + ": " + e.getMessage() + RESET);
+            return false;
+        } catch (IllegalArgumentException e) {
+            System.err.println(RED + source + ": " + e.getMessage() + RESET);
+            return false;
+        }
+
+        List<LabSpec.Change> changes = spec.plan();
+        if (changes.isEmpty()) {
+            System.out.println(GREEN + "Lab '" + spec.name + "' is up to date (" + spec.avds.size() + " AVD(s))" + RESET);
+            return true;
+        }
+        System.out.println(CYAN + "Lab '" + spec.name + "': " + changes.size() + " change(s)" + RESET);
+        for (LabSpec.Change change : changes) {
+            System.out.println("  " + symbol(change.action) + " " + change.name + "  " + change.reason);
+        }
+        if (dryRun) {
+            return true;
+        }
+
+        // One install per distinct missing image, whatever number of AVDs share it
+        Map<String, Step> installs = new LinkedHashMap<>();
+        for (LabSpec.Change change : changes) {
+            boolean creates = change.action == LabSpec.Action.CREATE || change.action == LabSpec.Action.RECREATE;
+            if (creates && !installs.containsKey(change.avd.image) && !isSystemImageInstalled(change.avd.image)) {
+                installs.put(change.avd.image, new Step("install", change.avd.image));
+            }
+        }
+
+        installOutputRouting();
+        long startedAt = System.nanoTime();
+        ExecutorService installer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "avidia-apply-install");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, CompletableFuture<Boolean>> installed = new LinkedHashMap<>();
+        boolean showAll = verbose;
+        for (Step install : installs.values()) {
+            installed.put(install.target, CompletableFuture.supplyAsync(() -> runStep(install, showAll, () -> {
+                // The same lock `avidia create` takes, so a parallel batch or daemon client
+                // does not install the same image at the same time
+                synchronized (INSTALL_LOCK) {
+                    return isSystemImageInstalled(install.target) || installSDKPackage(install.target);
+                }
+            }), installer));
+        }
+        installer.shutdown();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallel, changes.size()), runnable -> {
+            Thread thread = new Thread(runnable, "avidia-apply");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Step> steps = new ArrayList<>(installs.values());
+        List<Future<?>> pending = new ArrayList<>();
+        // Whatever does not wait for an install goes first, so it never queues behind a download
+        List<LabSpec.Change> ordered = new ArrayList<>();
+        List<LabSpec.Change> waiting = new ArrayList<>();
+        for (LabSpec.Change change : changes) {
+            (change.avd != null && installed.containsKey(change.avd.image) ? waiting : ordered).add(change);
+        }
+        ordered.addAll(waiting);
+        for (LabSpec.Change change : ordered) {
+            Step step = new Step(change.action.name().toLowerCase(), change.name);
+            steps.add(step);
+            CompletableFuture<Boolean> image = change.avd != null ? installed.get(change.avd.image) : null;
+            pending.add(pool.submit(() -> {
+                if (image != null && !image.join()) {
+                    step.status = "SKIPPED";
+                    reportStep(step, false);
+                    return;
+                }
+                runStep(step, showAll, () -> spec.apply(change));
+            }));
+        }
+        pool.shutdown();
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                System.err.println(RED + "Apply worker failed: " + e.getCause() + RESET);
+            }
+        }
+
+        int ok = 0;
+        int failed = 0;
+        int skipped = 0;
+        for (Step step : steps) {
+            if (step.status.equals("OK")) {
+                ok++;
+            } else if (step.status.equals("SKIPPED")) {
+                skipped++;
+            } else {
+                failed++;
+            }
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        System.out.println(YELLOW + "\n================================================" + RESET);
+        System.out.println(String.format("  %s%d ok%s, %s%d failed%s, %d skipped in %.1fs",
+            GREEN, ok, RESET, failed > 0 ? RED : "", failed, RESET, skipped, seconds));
+        System.out.println(YELLOW + "================================================" + RESET);
+        return failed == 0 && skipped == 0;
+    }
+
+    // Runs one step with its output captured, shown only when it fails or with --verbose
+    private static boolean runStep(Step step, boolean verbose, BooleanSupplier work) {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        OutputStream previousOut = stdoutRouter.route(captured);
+        OutputStream previousErr = stderrRouter.route(captured);
+        long startedAt = System.nanoTime();
+        boolean success;
+        try {
+            success = work.getAsBoolean();
+        } catch (RuntimeException e) {
+            System.err.println(RED + "Step failed: " + e + RESET);
+            success = false;
+        } finally {
+            System.out.flush();
+            System.err.flush();
+            stdoutRouter.route(previousOut);
+            stderrRouter.route(previousErr);
+        }
+        step.millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        step.output = new String(captured.toByteArray(), StandardCharsets.UTF_8);
+        step.status = success ? "OK" : "FAILED";
+        reportStep(step, verbose || !success);
+        return success;
+    }
+
+    private static synchronized void reportStep(Step step, boolean showOutput) {
+        String color = step.status.equals("OK") ? GREEN : step.status.equals("SKIPPED") ? YELLOW : RED;
+        String time = step.status.equals("SKIPPED") ? "-" : String.format("%.1fs", step.millis / 1000.0);
+        System.out.printf("%s%-7s%s %7s  %-8s %s%n", color, step.status, RESET, time, step.action, step.target);
+        if (showOutput && !step.output.isEmpty()) {
+            for (String line : step.output.split("\n")) {
+                // Progress bars redraw with \r; keep only their last state
+                String shown = line.substring(line.lastIndexOf('\r') + 1);
+                System.out.println("        │ " + shown);
+            }
+        }
+    }
+
+    private static String symbol(LabSpec.Action action) {
+        switch (action) {
+            case CREATE:
+                return GREEN + "+" + RESET;
+            case RECREATE:
+                return YELLOW + "±" + RESET;
+            case UPDATE:
+                return YELLOW + "~" + RESET;
+            default:
+                return RED + "-" + RESET;
+        }
+    }
+}
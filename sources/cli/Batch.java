@@ -0,0 +1,294 @@
+package org.jimedrand.avidia.cli;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.jimedrand.avidia.cli.Commands.*;
+import static org.jimedrand.avidia.cli.RoutedOutput.*;
+import static org.jimedrand.avidia.core.Ansi.*;
+
+// `avidia batch`: many commands in one process
+public final class Batch {
+    private static final class BatchCommand {
+        final int line;
+        final String[] args;
+        volatile String status = "PENDING";
+        volatile long millis;
+        volatile String output = "";
+
+        BatchCommand(int line, String[] args) {
+            this.line = line;
+            this.args = args;
+        }
+
+        String text() {
+            return String.join(" ", args);
+        }
+
+        // Commands naming one AVD keep their order per AVD; everything else shares one ordered group
+        String group() {
+            switch (args[0]) {
+                case "create":
+                case "start":
+                case "stop":
+                case "delete":
+                    return args.length > 1 ? args[1] : "";
+                case "snapshot":
+                    return args.length > 2 ? args[2] : "";
+                default:
+                    return "";
+            }
+        }
+    }
+
+    // Runs one command per line in this process. Commands for different AVDs run in parallel,
+    // commands for the same AVD in file order; a failure skips the rest of that AVD's commands.
+    static boolean batchCommand(String[] args) {
+        String usage = "Usage: batch <file|-> [--parallel N] [--verbose]";
+        String source = null;
+        int parallel = Runtime.getRuntime().availableProcessors();
+        boolean verbose = false;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--parallel":
+                        parallel = Math.max(1, Integer.parseInt(args[++i]));
+                        break;
+                    case "--verbose":
+                        verbose = true;
+                        break;
+                    default:
+                        if (source != null) {
+                            throw new IllegalArgumentException("unexpected argument " + args[i]);
+                        }
+                        source = args[i];
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(RED + "Invalid batch arguments: " + e.getMessage() + RESET);
+            System.err.println(usage);
+            return false;
+        }
+        if (source == null) {
+            System.err.println(usage);
+            return false;
+        }
+
+        List<BatchCommand> commands = new ArrayList<>();
+        try (BufferedReader reader = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(resolvePath(source), StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] command = splitCommandLine(line);
+                if (command.length > 0 && command[0].equals("avidia")) {
+                    command = Arrays.copyOfRange(command, 1, command.length);
+                }
+                String problem = batchProblem(command);
+                if (problem != null) {
+                    System.err.println(RED + source + ":" + number + ": " + problem + RESET);
+                    return false;
+                }
+                if (command[0].equals("start") && !Arrays.asList(command).contains("--detach")) {
+                    // A foreground emulator would hold its worker until it exits
+                    command = Arrays.copyOf(command, command.length + 1);
+                    command[command.length - 1] = "--detach";
+                }
+                commands.add(new BatchCommand(number, command));
+            }
+        } catch (IOException e) {
+            System.err.println(RED + "Cannot read " + source + ": " + e.getMessage() + RESET);
+            return false;
+        } catch (IllegalArgumentException e) {
+            System.err.println(RED + source + ": " + e.getMessage() + RESET);
+            return false;
+        }
+        if (commands.isEmpty()) {
+            System.out.println(YELLOW + "No commands in " + source + RESET);
+            return true;
+        }
+
+        Map<String, List<BatchCommand>> groups = new LinkedHashMap<>();
+        for (BatchCommand command : commands) {
+            groups.computeIfAbsent(command.group(), key -> new ArrayList<>()).add(command);
+        }
+        int workers = Math.min(parallel, groups.size());
+        System.out.println(CYAN + "Running " + commands.size() + " command(s) for " + groups.size()
+            + " target(s), " + workers + " at a time" + RESET);
+
+        installOutputRouting();
+        long startedAt = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "avidia-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> pending = new ArrayList<>();
+        for (List<BatchCommand> group : groups.values()) {
+            final boolean showOutput = verbose;
+            pending.add(pool.submit(() -> runBatchGroup(group, showOutput)));
+        }
+        pool.shutdown();
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                System.err.println(RED + "Batch worker failed: " + e.getCause() + RESET);
+            }
+        }
+
+        int ok = 0;
+        int failed = 0;
+        int skipped = 0;
+        for (BatchCommand command : commands) {
+            if (command.status.equals("OK")) {
+                ok++;
+            } else if (command.status.equals("SKIPPED")) {
+                skipped++;
+            } else {
+                failed++;
+            }
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        System.out.println(YELLOW + "\n================================================" + RESET);
+        System.out.println(String.format("  %s%d ok%s, %s%d failed%s, %d skipped in %.1fs",
+            GREEN, ok, RESET, failed > 0 ? RED : "", failed, RESET, skipped, seconds));
+        System.out.println(YELLOW + "================================================" + RESET);
+        return failed == 0 && skipped == 0;
+    }
+
+    static void runBatchGroup(List<BatchCommand> group, boolean verbose) {
+        boolean skipRest = false;
+        for (BatchCommand command : group) {
+            if (skipRest) {
+                command.status = "SKIPPED";
+                reportBatchCommand(command, false);
+                continue;
+            }
+
+            ByteArrayOutputStream captured = new ByteArrayOutputStream();
+            OutputStream previousOut = stdoutRouter.route(captured);
+            OutputStream previousErr = stderrRouter.route(captured);
+            long startedAt = System.nanoTime();
+            int exitCode;
+            try {
+                exitCode = run(command.args);
+            } catch (RuntimeException e) {
+                System.err.println(RED + "Command failed: " + e + RESET);
+                exitCode = 1;
+            } finally {
+                System.out.flush();
+                System.err.flush();
+                stdoutRouter.route(previousOut);
+                stderrRouter.route(previousErr);
+            }
+            command.millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            command.output = new String(captured.toByteArray(), StandardCharsets.UTF_8);
+            command.status = exitCode == 0 ? "OK" : "FAILED";
+            reportBatchCommand(command, verbose || exitCode != 0);
+            skipRest = exitCode != 0 && !command.group().isEmpty();
+        }
+    }
+
+    static synchronized void reportBatchCommand(BatchCommand command, boolean showOutput) {
+        String color = command.status.equals("OK") ? GREEN : command.status.equals("SKIPPED") ? YELLOW : RED;
+        String time = command.status.equals("SKIPPED") ? "-" : String.format("%.1fs", command.millis / 1000.0);
+        System.out.printf("%s%-7s%s %7s  line %-4d %s%n", color, command.status, RESET, time, command.line, command.text());
+        if (showOutput && !command.output.isEmpty()) {
+            for (String line : command.output.split("\n")) {
+                System.out.println("        │ " + line);
+            }
+        }
+    }
+
+    // Why a line cannot run inside a batch, or null when it can
+    static String batchProblem(String[] command) {
+        if (command.length == 0) {
+            return "empty command";
+        }
+        switch (command[0]) {
+            case "list":
+            case "create":
+            case "start":
+            case "stop":
+            case "start-fleet":
+            case "snapshot":
+            case "images":
+            case "clone":
+            case "apply":
+            case "delete":
+            case "refresh-catalog":
+                return null;
+            case "tui":
+            case "setup":
+            case "install-sdk":
+            case "batch":
+            case "daemon":
+                return "'" + command[0] + "' cannot run inside a batch";
+            default:
+                return "unknown command '" + command[0] + "'";
+        }
+    }
+
+    // Splits a line on whitespace; single or double quotes keep spaces inside one argument
+    static String[] splitCommandLine(String line) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    word.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inWord = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inWord) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                    inWord = false;
+                }
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException("unterminated quote in: " + line);
+        }
+        if (inWord) {
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+}
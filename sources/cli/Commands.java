@@ -0,0 +1,957 @@
+package org.jimedrand.avidia.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.jimedrand.avidia.core.AvdCloner;
+import org.jimedrand.avidia.core.BootProbe;
+import org.jimedrand.avidia.core.EmulatorConsole;
+import org.jimedrand.avidia.core.EmulatorInstance;
+import org.jimedrand.avidia.core.EmulatorTracker;
+import org.jimedrand.avidia.core.InstalledImageIndex;
+import org.jimedrand.avidia.core.LaunchProfile;
+import org.jimedrand.avidia.core.PackageIndex;
+import org.jimedrand.avidia.core.SdkPackage;
+
+import static org.jimedrand.avidia.cli.Batch.*;
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Catalogs.*;
+import static org.jimedrand.avidia.core.Emulators.*;
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Non-interactive commands; run() is the single dispatch point for main(), batches and the daemon
+public final class Commands {
+    private static final String TERMINAL_UI_CLASS = "org.jimedrand.avidia.tui.TerminalUI";
+    // Working directory of the client a daemon thread is serving; unset when running in-process
+    static final InheritableThreadLocal<Path> WORKING_DIR = new InheritableThreadLocal<>();
+
+    // Resolves a path argument against the caller's directory, which for a forwarded command
+    // is the client's and not the daemon's
+    static Path resolvePath(String path) {
+        Path dir = WORKING_DIR.get();
+        return dir != null ? dir.resolve(path) : Paths.get(path);
+    }
+
+    // Runs one command against an initialised environment and returns its exit code; shared by
+    // main() and the daemon, so commands report failure through the return value, not System.exit
+    public static int run(String[] args) {
+        String mode = args[0];
+        
+        switch (mode) {
+            case "tui":
+                return launchTerminalUI();
+            case "list":
+                listAVDs();
+                break;
+            case "create":
+                if (args.length < 2) {
+                    System.err.println("Usage: create <name>");
+                    System.err.println("Example: avidia create my_android");
+                    return 1;
+                }
+                return createAVDFromName(args[1]) ? 0 : 1;
+            case "start":
+                if (args.length < 2) {
+                    System.err.println("Usage: start <name>");
+                    listAVDs();
+                    return 1;
+                }
+                if (args.length > 2) {
+                    return startCommand(args) ? 0 : 1;
+                }
+                startAVD(args[1], false, LaunchProfile.resolve(null, 1));
+                break;
+            case "stop":
+                if (args.length < 2) {
+                    System.err.println("Usage: stop <name>");
+                    return 1;
+                }
+                return stopAVD(args[1]) ? 0 : 1;
+            case "start-fleet":
+                return startFleetCommand(args) ? 0 : 1;
+            case "batch":
+                return batchCommand(args) ? 0 : 1;
+            case "apply":
+                return Apply.applyCommand(args) ? 0 : 1;
+            case "snapshot":
+                return snapshotCommand(args) ? 0 : 1;
+            case "images":
+                return imagesCommand(args) ? 0 : 1;
+            case "clone":
+                return cloneCommand(args) ? 0 : 1;
+            case "delete":
+                if (args.length < 2) {
+                    System.err.println("Usage: delete <name>");
+                    listAVDs();
+                    return 1;
+                }
+                return deleteAVD(args[1]) ? 0 : 1;
+            case "install-sdk":
+                if (args.length < 2) {
+                    return installSDKPackage("") ? 0 : 1;
+                }
+                for (int i = 1; i < args.length; i++) {
+                    if (!installSDKPackage(args[i])) {
+                        return 1;
+                    }
+                }
+                break;
+            case "setup":
+                setupAvidia();
+                break;
+            case "refresh-catalog":
+                boolean background = args.length > 1 && args[1].equals("--background");
+                if (!refreshCatalog(background)) {
+                    return 1;
+                }
+                invalidateCatalogs();
+                break;
+            case "daemon":
+                return Daemon.command(args);
+            case "warmup":
+                return Warmup.command(args) ? 0 : 1;
+            default:
+                System.err.println("Unknown operation: " + mode);
+                printHelp();
+                return 1;
+        }
+        return 0;
+    }
+
+    // The TUI and Lanterna are loaded only here, so no other command pays for them
+    private static int launchTerminalUI() {
+        // Catalogs are only loaded by the commands that show them
+        prefetchAndroidVersions();
+        prefetchDeviceDefinitions();
+
+        try {
+            Class.forName(TERMINAL_UI_CLASS).getMethod("startTerminalUI").invoke(null);
+            return 0;
+        } catch (InvocationTargetException e) {
+            System.err.println(RED + "Terminal UI error: " + e.getCause() + RESET);
+            return 1;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println(RED + "Terminal UI not available (" + e + ")" + RESET);
+            System.out.println("Falling back to command-line interface...");
+            InteractiveMenu.showCLIMenu();
+            return 0;
+        }
+    }
+
+    public static void printHelp() {
+        System.out.println(CYAN + BOLD + "================================================");
+        System.out.println("                    AVIDIA HELP                      ");
+        System.out.println("================================================" + RESET);
+        System.out.println();
+        System.out.println(GREEN + "AVIDIA - Android Virtual Device Manager (User-Centric)" + RESET);
+        System.out.println();
+        System.out.println(YELLOW + "Available Commands:" + RESET);
+        System.out.println("  " + GREEN + "tui" + RESET + "              - Launch Text User Interface");
+        System.out.println("  " + GREEN + "list" + RESET + "             - List all available AVDs");
+        System.out.println("  " + GREEN + "create <name>" + RESET + "    - Create new AVD with default settings");
+        System.out.println("  " + GREEN + "start <name>" + RESET + "     - Start an AVD");
+        System.out.println("                     [--detach] return once booted [--timeout SECONDS] [--no-wait]");
+        System.out.println("                     [--cold-boot] ignore snapshots and boot from scratch");
+        System.out.println("                     [--profile auto|fast|dense|ci] memory, cores and GPU per instance");
+        System.out.println("  " + GREEN + "stop <name>" + RESET + "      - Stop a running AVD");
+        System.out.println("  " + GREEN + "start-fleet <name...>" + RESET + " - Boot many AVDs in the background");
+        System.out.println("                     [--spec file] [--parallel N] [--timeout SECONDS] [--profile NAME] [--cold-boot]");
+        System.out.println("  " + GREEN + "snapshot <op> <name>" + RESET + " - Manage quickboot snapshots");
+        System.out.println("                     list <name> | save|load|delete <name> <tag>");
+        System.out.println("                     golden <name> [<tag>|--clear] - snapshot that start boots from");
+        System.out.println("  " + GREEN + "clone <src> <dst>" + RESET + " - Copy a stopped AVD with its quickboot snapshot");
+        System.out.println("                     [--count N] makes <dst>_1..<dst>_N [--parallel N]");
+        System.out.println("  " + GREEN + "delete <name>" + RESET + "    - Delete an AVD");
+        System.out.println("  " + GREEN + "images" + RESET + "           - List system images in the SDK catalog");
+        System.out.println("                     [--api LEVEL] [--tag TAG] [--abi ABI] [--installed]");
+        System.out.println("  " + GREEN + "batch <file|->" + RESET + "   - Run one command per line in a single process");
+        System.out.println("                     [--parallel N] AVDs at once [--verbose] show all output");
+        System.out.println("  " + GREEN + "apply <spec>" + RESET + "     - Create, update and delete AVDs to match a YAML/JSON lab spec");
+        System.out.println("                     [--parallel N] changes at once [--dry-run] [--verbose]");
+        System.out.println("  " + GREEN + "setup" + RESET + "            - Setup Avidia environment");
+        System.out.println("  " + GREEN + "install-sdk [package...]" + RESET + " - Install SDK packages (all updates if none);");
+        System.out.println("                     system images are downloaded directly, resuming if interrupted");
+        System.out.println("  " + GREEN + "refresh-catalog" + RESET + "  - Re-read the SDK package catalog now");
+        System.out.println("  " + GREEN + "daemon [start|stop|status]" + RESET + " - Keep Avidia resident; other commands");
+        System.out.println("                     are forwarded to it (Java 16+, AVIDIA_DAEMON=off to bypass)");
+        System.out.println("  " + GREEN + "warmup [--clear]" + RESET + " - Build an AppCDS archive for faster startup (Java 13+)");
+        System.out.println();
+        System.out.println(YELLOW + "Quick Start:" + RESET);
+        System.out.println("  1. First time? Run: " + CYAN + "avidia setup" + RESET);
+        System.out.println("  2. For full control: " + CYAN + "avidia tui" + RESET);
+        System.out.println("  3. Or use commands: " + CYAN + "avidia create my_android" + RESET);
+        System.out.println("                     " + CYAN + "avidia start my_android" + RESET);
+        System.out.println();
+        System.out.println(YELLOW + "Installation Directory:" + RESET);
+        System.out.println("  " + avidiaHome);
+        System.out.println();
+    }
+
+    static void setupAvidia() {
+        System.out.println(CYAN + BOLD + "\n================================================");
+        System.out.println("                AVIDIA SETUP                   ");
+        System.out.println("================================================" + RESET);
+        
+        // Create directory structure
+        File avidiaDir = new File(avidiaHome);
+        if (!avidiaDir.exists()) {
+            System.out.println(YELLOW + "Creating Avidia directory: " + avidiaHome + RESET);
+            if (avidiaDir.mkdirs()) {
+                System.out.println(GREEN + "✓ Created Avidia directory" + RESET);
+            } else {
+                System.err.println(RED + "✗ Failed to create Avidia directory" + RESET);
+                return;
+            }
+        }
+        
+        File sdkDir = new File(avidiaHome + "/sdk");
+        if (!sdkDir.exists()) {
+            System.out.println(YELLOW + "Creating SDK directory..." + RESET);
+            if (sdkDir.mkdirs()) {
+                System.out.println(GREEN + "✓ Created SDK directory" + RESET);
+            }
+        }
+        
+        File avdDir = new File(avdHome);
+        if (!avdDir.exists()) {
+            System.out.println(YELLOW + "Creating AVD directory..." + RESET);
+            if (avdDir.mkdirs()) {
+                System.out.println(GREEN + "✓ Created AVD directory" + RESET);
+            }
+        }
+        
+        // Create environment file
+        try {
+            Path envFile = Paths.get(avidiaHome, "env.sh");
+            String envContent = String.join("\n",
+                "#!/bin/bash",
+                "# AVIDIA Environment Configuration",
+                "# Generated on: " + java.time.LocalDateTime.now(),
+                "",
+                "export ANDROID_SDK_ROOT=\"" + sdkDir.getAbsolutePath() + "\"",
+                "export ANDROID_HOME=\"" + sdkDir.getAbsolutePath() + "\"",
+                "export AVD_HOME=\"" + avdDir.getAbsolutePath() + "\"",
+                "export PATH=\"\\$PATH:" + sdkDir.getAbsolutePath() + "/cmdline-tools/latest/bin\"",
+                "export PATH=\"\\$PATH:" + sdkDir.getAbsolutePath() + "/platform-tools\"",
+                "export PATH=\"\\$PATH:" + sdkDir.getAbsolutePath() + "/emulator\"",
+                "",
+                "# Auto-load environment",
+                "echo -e \"\\033[0;32m[AVIDIA] Environment loaded\\033[0m\""
+            );
+            
+            Files.write(envFile, envContent.getBytes());
+            System.out.println(GREEN + "✓ Created environment file: " + envFile + RESET);
+            
+            // Make it executable
+            envFile.toFile().setExecutable(true);
+            
+        } catch (IOException e) {
+            System.err.println(RED + "✗ Failed to create environment file: " + e.getMessage() + RESET);
+        }
+        
+        System.out.println(GREEN + "\n✓ Setup completed successfully!" + RESET);
+        System.out.println(YELLOW + "\nNext steps:" + RESET);
+        System.out.println("  1. Load environment: " + CYAN + "source " + avidiaHome + "/env.sh" + RESET);
+        System.out.println("  2. Install CLI tools: " + CYAN + "avidia install-sdk" + RESET);
+        System.out.println("  3. Launch TUI: " + CYAN + "avidia tui" + RESET);
+        System.out.println();
+        System.out.println("Or run: " + CYAN + "avidia tui" + RESET + " for interactive setup");
+    }
+
+    static boolean createAVDFromName(String avdName) {
+        String apiLevel = "34";
+        String imageType = "google_apis_playstore";
+        String abi = "x86_64";
+        String deviceId = "pixel_5";
+
+        String packageName = String.format("system-images;android-%s;%s;%s", apiLevel, imageType, abi);
+
+        // Parallel creates in a batch or the daemon must not run sdkmanager twice for one image
+        synchronized (INSTALL_LOCK) {
+            if (!isSystemImageInstalled(packageName)) {
+                System.out.println(YELLOW + "Required system image not installed. Installing now..." + RESET);
+                if (!installSDKPackage(packageName)) {
+                    System.err.println(RED + "Failed to install system image. Aborting." + RESET);
+                    return false;
+                }
+            }
+        }
+
+        System.out.println(CYAN + "Creating AVD: " + avdName + RESET);
+        boolean success = createAVD(avdName, packageName, deviceId);
+        if (success) {
+            System.out.println(GREEN + "AVD '" + avdName + "' created successfully!" + RESET);
+        } else {
+            System.err.println(RED + "Failed to create AVD '" + avdName + "'" + RESET);
+        }
+        return success;
+    }
+
+    static void listAVDs() {
+        System.out.println(YELLOW + "\n================================================" + RESET);
+        System.out.println(BOLD + "           AVAILABLE VIRTUAL DEVICES           " + RESET);
+        System.out.println(YELLOW + "================================================" + RESET);
+        
+        List<String> avds = getAvailableAVDs();
+        
+        if (avds.isEmpty()) {
+            System.out.println(YELLOW + "  No virtual devices found." + RESET);
+            System.out.println("  Create one using: " + CYAN + "avidia tui" + RESET + " or " + CYAN + "avidia create <name>" + RESET);
+        } else {
+            for (int i = 0; i < avds.size(); i++) {
+                System.out.println(GREEN + "  [" + (i+1) + "] " + RESET + avds.get(i));
+            }
+            System.out.println(YELLOW + "\n  Total: " + avds.size() + " device(s)" + RESET);
+        }
+        
+        System.out.println(YELLOW + "================================================" + RESET);
+    }
+
+    static boolean startCommand(String[] args) {
+        String avdName = args[1];
+        boolean detach = false;
+        boolean wait = true;
+        boolean coldBoot = false;
+        String profileName = null;
+        long timeoutSeconds = 300;
+
+        try {
+            for (int i = 2; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--detach":
+                        detach = true;
+                        break;
+                    case "--no-wait":
+                        wait = false;
+                        break;
+                    case "--cold-boot":
+                        coldBoot = true;
+                        break;
+                    case "--profile":
+                        profileName = args[++i];
+                        break;
+                    case "--timeout":
+                        timeoutSeconds = Long.parseLong(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(RED + "Invalid start arguments: " + e.getMessage() + RESET);
+            System.err.println("Usage: start <name> [--profile NAME] [--cold-boot] [--detach [--timeout SECONDS] [--no-wait]]");
+            return false;
+        }
+
+        LaunchProfile profile;
+        try {
+            profile = LaunchProfile.resolve(profileName, 1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(RED + "Invalid start arguments: " + e.getMessage() + RESET);
+            return false;
+        }
+
+        if (!detach) {
+            startAVD(avdName, coldBoot, profile);
+            return true;
+        }
+        return startDetached(avdName, timeoutSeconds, wait, coldBoot, profile);
+    }
+
+    // Starts the emulator in the background and returns once the guest has booted
+    static boolean startDetached(String avdName, long timeoutSeconds, boolean wait, boolean coldBoot,
+                                         LaunchProfile profile) {
+        if (!getInventory().contains(avdName)) {
+            System.err.println(RED + "AVD '" + avdName + "' not found" + RESET);
+            return false;
+        }
+        if (EmulatorTracker.isRunning(avdName)) {
+            System.out.println(YELLOW + "AVD '" + avdName + "' is already running" + RESET);
+            return true;
+        }
+
+        int consolePort = allocateConsolePort(new HashSet<>());
+        if (consolePort < 0) {
+            System.err.println(RED + "No free emulator console port between 5554 and 5682" + RESET);
+            return false;
+        }
+
+        long launchedAt = System.nanoTime();
+        Process process;
+        try {
+            process = launchDetached(avdName, consolePort, coldBoot, profile);
+        } catch (IOException e) {
+            System.err.println(RED + "Failed to start virtual device: " + e.getMessage() + RESET);
+            return false;
+        }
+        System.out.println(CYAN + "Started " + avdName + " on port " + consolePort
+            + " (PID " + process.pid() + ", serial emulator-" + consolePort + ")" + RESET);
+        System.out.println("Log: " + Paths.get(avidiaHome, "logs", avdName + ".log"));
+        System.out.println(describeBoot(avdName, coldBoot));
+        System.out.println(profile.describe());
+        if (!wait) {
+            return true;
+        }
+
+        System.out.println("Waiting for boot to complete...");
+        long deadline = launchedAt + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        String result = BootProbe.waitForBoot(process, consolePort, deadline);
+        double seconds = (System.nanoTime() - launchedAt) / 1e9;
+
+        switch (result) {
+            case "READY":
+                System.out.println(GREEN + String.format("✓ %s booted in %.1fs", avdName, seconds) + RESET);
+                return true;
+            case "CONSOLE":
+                System.out.println(YELLOW + String.format("%s console is up after %.1fs (adb not available, "
+                    + "boot completion not verified)", avdName, seconds) + RESET);
+                return true;
+            case "EXITED":
+                System.err.println(RED + "Emulator exited during boot, see the log above" + RESET);
+                return false;
+            default:
+                System.err.println(RED + String.format("Boot not completed after %.1fs (%s)",
+                    seconds, result.toLowerCase()) + RESET);
+                return false;
+        }
+    }
+
+    static boolean startFleetCommand(String[] args) {
+        List<String> names = new ArrayList<>();
+        int parallel = 0;
+        long timeoutSeconds = 600;
+        boolean coldBoot = false;
+        String profileName = null;
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--spec":
+                        for (String line : Files.readAllLines(resolvePath(args[++i]), StandardCharsets.UTF_8)) {
+                            line = line.trim();
+                            if (!line.isEmpty() && !line.startsWith("#")) {
+                                names.add(line.split("\\s+")[0]);
+                            }
+                        }
+                        break;
+                    case "--parallel":
+                        parallel = Integer.parseInt(args[++i]);
+                        break;
+                    case "--timeout":
+                        timeoutSeconds = Long.parseLong(args[++i]);
+                        break;
+                    case "--cold-boot":
+                        coldBoot = true;
+                        break;
+                    case "--profile":
+                        profileName = args[++i];
+                        break;
+                    default:
+                        names.add(args[i]);
+                }
+            }
+        } catch (IOException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(RED + "Invalid start-fleet arguments: " + e.getMessage() + RESET);
+            System.err.println("Usage: start-fleet <name...> | --spec <file> [--parallel N] [--timeout SECONDS] [--profile NAME] [--cold-boot]");
+            return false;
+        }
+
+        if (names.isEmpty()) {
+            System.err.println("Usage: start-fleet <name...> | --spec <file> [--parallel N] [--timeout SECONDS] [--profile NAME] [--cold-boot]");
+            return false;
+        }
+
+        LaunchProfile profile;
+        try {
+            profile = LaunchProfile.resolve(profileName, names.size());
+        } catch (IllegalArgumentException e) {
+            System.err.println(RED + "Invalid start-fleet arguments: " + e.getMessage() + RESET);
+            return false;
+        }
+
+        return startFleet(names, parallel, timeoutSeconds, coldBoot, profile);
+    }
+
+    private static final class FleetMember {
+        final String avdName;
+        volatile int consolePort;
+        volatile long pid;
+        volatile String status = "PENDING";
+        volatile long readyMillis = -1;
+
+        FleetMember(String avdName) {
+            this.avdName = avdName;
+        }
+    }
+
+    // Boots many AVDs at once. The number of emulators booting at the same time is bounded by
+    // cores and available memory; each one gets its own console port and log file.
+    static boolean startFleet(List<String> names, int parallel, long timeoutSeconds, boolean coldBoot,
+                                      LaunchProfile profile) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long availableMb = readMemInfo().getOrDefault("MemAvailable", 0L) / 1024;
+        int byCores = Math.max(1, cores / 2);
+        int byMemory = availableMb > 0 ? (int) Math.max(1, availableMb / profile.memoryMb) : byCores;
+        int limit = parallel > 0 ? parallel : Math.min(byCores, byMemory);
+
+        System.out.println(CYAN + "Starting " + names.size() + " device(s), " + limit
+            + " booting at a time (deadline " + timeoutSeconds + "s)" + RESET);
+        System.out.println(profile.describe());
+
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        Set<Integer> reservedPorts = new HashSet<>();
+        List<FleetMember> members = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(limit);
+
+        for (String name : names) {
+            FleetMember member = new FleetMember(name);
+            members.add(member);
+            pool.submit(() -> bootFleetMember(member, reservedPorts, deadline, coldBoot, profile));
+        }
+        pool.shutdown();
+
+        try {
+            long remaining = deadline - System.nanoTime();
+            if (!pool.awaitTermination(Math.max(0, remaining) + TimeUnit.SECONDS.toNanos(5), TimeUnit.NANOSECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        System.out.println(YELLOW + "\n================================================" + RESET);
+        System.out.println(BOLD + "                 FLEET SUMMARY                 " + RESET);
+        System.out.println(YELLOW + "================================================" + RESET);
+        int ready = 0;
+        for (FleetMember member : members) {
+            boolean memberReady = member.readyMillis >= 0;
+            if (memberReady) {
+                ready++;
+            }
+            String time = memberReady ? String.format("%.1fs", member.readyMillis / 1000.0) : "-";
+            String color = memberReady ? GREEN : RED;
+            System.out.printf("  %-24s %s%-9s%s port %-5s %8s%n", member.avdName, color, member.status, RESET,
+                member.consolePort > 0 ? Integer.toString(member.consolePort) : "-", time);
+        }
+        System.out.println(YELLOW + "\n  Ready: " + ready + "/" + members.size() + RESET);
+        System.out.println("  Logs: " + Paths.get(avidiaHome, "logs"));
+        return ready == members.size();
+    }
+
+    static void bootFleetMember(FleetMember member, Set<Integer> reservedPorts, long deadline,
+                                        boolean coldBoot, LaunchProfile profile) {
+        if (System.nanoTime() >= deadline) {
+            member.status = "SKIPPED";
+            return;
+        }
+        if (!getInventory().contains(member.avdName)) {
+            member.status = "UNKNOWN";
+            System.out.println(RED + "  " + member.avdName + ": no such AVD" + RESET);
+            return;
+        }
+        if (EmulatorTracker.isRunning(member.avdName)) {
+            member.status = "RUNNING";
+            System.out.println(YELLOW + "  " + member.avdName + ": already running" + RESET);
+            return;
+        }
+
+        member.consolePort = allocateConsolePort(reservedPorts);
+        if (member.consolePort < 0) {
+            member.status = "NO-PORT";
+            return;
+        }
+
+        try {
+            long launchedAt = System.nanoTime();
+            Process process = launchDetached(member.avdName, member.consolePort, coldBoot, profile);
+            member.pid = process.pid();
+            member.status = "BOOTING";
+            System.out.println("  " + member.avdName + ": launched on port " + member.consolePort
+                + " (PID " + member.pid + ")");
+
+            String result = BootProbe.waitForBoot(process, member.consolePort, deadline);
+            member.status = result;
+            if (result.equals("READY") || result.equals("CONSOLE")) {
+                member.readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launchedAt);
+                System.out.println(GREEN + "  " + member.avdName + ": ready in "
+                    + String.format("%.1fs", member.readyMillis / 1000.0) + RESET);
+            } else {
+                System.out.println(RED + "  " + member.avdName + ": " + result.toLowerCase() + RESET);
+            }
+        } catch (IOException e) {
+            member.status = "FAILED";
+            System.err.println(RED + "  " + member.avdName + ": " + e.getMessage() + RESET);
+        }
+    }
+
+    // Copies a stopped AVD, disks and quickboot snapshot included, to <dst> or <dst>_1..<dst>_N
+    static boolean cloneCommand(String[] args) {
+        String usage = "Usage: clone <src> <dst> [--count N] [--parallel N]";
+        if (args.length < 3) {
+            System.err.println(usage);
+            return false;
+        }
+        String source = args[1];
+        String target = args[2];
+        int count = 1;
+        int parallel = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 3; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--count":
+                        count = Integer.parseInt(args[++i]);
+                        break;
+                    case "--parallel":
+                        parallel = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+            if (count < 1 || parallel < 1) {
+                throw new IllegalArgumentException("--count and --parallel must be positive");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(RED + "Invalid clone arguments: " + e.getMessage() + RESET);
+            System.err.println(usage);
+            return false;
+        }
+
+        if (!getInventory().contains(source)) {
+            System.err.println(RED + "AVD '" + source + "' not found" + RESET);
+            return false;
+        }
+        // A running emulator keeps writing its disks; the copy would be torn
+        if (isAVDRunning(source)) {
+            System.err.println(RED + "AVD '" + source + "' is running; stop it before cloning" + RESET);
+            return false;
+        }
+        List<String> targets = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            String name = count == 1 ? target : target + "_" + i;
+            if (!name.matches("[A-Za-z0-9._-]+")) {
+                System.err.println(RED + "Invalid AVD name '" + name + "'" + RESET);
+                return false;
+            }
+            if (getInventory().contains(name)) {
+                System.err.println(RED + "AVD '" + name + "' already exists" + RESET);
+                return false;
+            }
+            targets.add(name);
+        }
+
+        System.out.println(CYAN + "Cloning " + source + " to " + targets.size() + " AVD(s)..." + RESET);
+        long startedAt = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallel, targets.size()));
+        List<Future<AvdCloner.Method>> clones = new ArrayList<>();
+        for (String name : targets) {
+            clones.add(pool.submit(() -> AvdCloner.cloneAVD(source, name)));
+        }
+        pool.shutdown();
+
+        int cloned = 0;
+        Set<AvdCloner.Method> methods = new HashSet<>();
+        for (int i = 0; i < targets.size(); i++) {
+            try {
+                methods.add(clones.get(i).get());
+                cloned++;
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.err.println(RED + "Failed to clone '" + targets.get(i) + "': " + cause.getMessage() + RESET);
+            }
+        }
+
+        String how = methods.contains(AvdCloner.Method.SPARSE_COPY) ? "sparse copies" : "reflinks";
+        System.out.printf((cloned == targets.size() ? GREEN : YELLOW) + "Cloned %d/%d AVD(s) in %.1fs (%s)" + RESET + "%n",
+            cloned, targets.size(), (System.nanoTime() - startedAt) / 1e9, how);
+        return cloned == targets.size();
+    }
+
+    static boolean imagesCommand(String[] args) {
+        String apiLevel = null;
+        String tag = null;
+        String abi = null;
+        boolean installedOnly = false;
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--api":
+                        apiLevel = args[++i];
+                        break;
+                    case "--tag":
+                        tag = args[++i];
+                        break;
+                    case "--abi":
+                        abi = args[++i];
+                        break;
+                    case "--installed":
+                        installedOnly = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(RED + "Invalid images arguments: " + e.getMessage() + RESET);
+            System.err.println("Usage: images [--api LEVEL] [--tag TAG] [--abi ABI] [--installed]");
+            return false;
+        }
+
+        PackageIndex index = awaitPackageIndex();
+        if (!index.hasSystemImages()) {
+            // No cached catalog yet; this command is worth the wait for a fresh one
+            System.out.println(CYAN + "Reading the package catalog from " + catalogSourceName() + "..." + RESET);
+            if (!refreshCatalog(true)) {
+                System.err.println(RED + "No package catalog available; run: avidia refresh-catalog" + RESET);
+                return false;
+            }
+            index = PACKAGE_INDEX;
+        }
+
+        List<SdkPackage> images = index.systemImages(apiLevel, tag, abi);
+        // Installed state comes from disk, which may have changed since the catalog was read;
+        // one scan serves the whole listing
+        Set<String> installedImages = getInstalledImages().images().keySet();
+        int shown = 0;
+        for (SdkPackage image : images) {
+            boolean installed = installedImages.contains(image.path);
+            if (installedOnly && !installed) {
+                continue;
+            }
+            String status = image.hasUpdate() ? YELLOW + "update available" + RESET
+                : installed ? GREEN + "installed" + RESET : "";
+            System.out.printf("  %-56s %-8s %s%n", image.path, image.revision(), status);
+            shown++;
+        }
+        if (shown == 0) {
+            System.out.println(YELLOW + "No system images match" + RESET);
+        }
+        return true;
+    }
+
+    static boolean snapshotCommand(String[] args) {
+        String usage = "Usage: snapshot list <name> | snapshot save|load|delete <name> <tag> [--golden]"
+            + " | snapshot golden <name> [<tag>|--clear]";
+        if (args.length < 3) {
+            System.err.println(usage);
+            return false;
+        }
+
+        String op = args[1];
+        String avdName = args[2];
+        if (!getInventory().contains(avdName)) {
+            System.err.println(RED + "AVD '" + avdName + "' not found" + RESET);
+            return false;
+        }
+
+        // --golden can go anywhere after the name; what is left is the tag
+        boolean golden = false;
+        List<String> rest = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            if (args[i].equals("--golden")) {
+                golden = true;
+            } else {
+                rest.add(args[i]);
+            }
+        }
+        if (rest.size() > 1) {
+            System.err.println(RED + "Unexpected argument '" + rest.get(1) + "'" + RESET);
+            System.err.println(usage);
+            return false;
+        }
+        String tag = rest.isEmpty() ? null : rest.get(0);
+        boolean clear = op.equals("golden") && "--clear".equals(tag);
+        // A leading '-' would reach the console as an option, and a leading '.' names a hidden directory
+        if (tag != null && !clear && !tag.matches("[A-Za-z0-9_][A-Za-z0-9._-]*")) {
+            System.err.println(RED + "Invalid snapshot tag '" + tag
+                + "' (use letters, digits, '.', '_' and '-', not starting with '-' or '.')" + RESET);
+            return false;
+        }
+
+        switch (op) {
+            case "list":
+                return listSnapshots(avdName);
+            case "golden":
+                return goldenSnapshotCommand(avdName, tag);
+            case "save":
+            case "load":
+            case "delete":
+                if (tag == null) {
+                    System.err.println(usage);
+                    return false;
+                }
+                break;
+            default:
+                System.err.println(RED + "Unknown snapshot operation: " + op + RESET);
+                System.err.println(usage);
+                return false;
+        }
+
+        if (op.equals("delete")) {
+            return deleteSnapshot(avdName, tag);
+        }
+
+        // save and load need a running emulator; its console does the work
+        List<EmulatorInstance> running = EmulatorTracker.find(avdName);
+        if (running.isEmpty()) {
+            System.err.println(RED + "AVD '" + avdName + "' is not running; start it first" + RESET);
+            return false;
+        }
+        int consolePort = running.get(0).consolePort;
+        if (consolePort <= 0) {
+            System.err.println(RED + "Cannot find the console port of " + avdName + RESET);
+            return false;
+        }
+
+        long startedAt = System.nanoTime();
+        try (EmulatorConsole console = new EmulatorConsole(consolePort)) {
+            // Saving a large RAM image can take well over the default reply timeout
+            console.setTimeout(SNAPSHOT_TIMEOUT_MILLIS);
+            console.command("avd snapshot " + op + " " + tag);
+        } catch (IOException e) {
+            System.err.println(RED + "Snapshot " + op + " failed: " + e.getMessage() + RESET);
+            return false;
+        }
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        System.out.println(GREEN + String.format("✓ %s snapshot '%s' of %s in %.1fs",
+            op.equals("save") ? "Saved" : "Loaded", tag, avdName, seconds) + RESET);
+
+        if (op.equals("save") && golden) {
+            return goldenSnapshotCommand(avdName, tag);
+        }
+        return true;
+    }
+
+    static boolean listSnapshots(String avdName) {
+        Path snapshots = avdDirectory(avdName).resolve("snapshots");
+        String golden = getGoldenSnapshot(avdName);
+
+        List<Path> dirs = new ArrayList<>();
+        if (Files.isDirectory(snapshots)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(snapshots, Files::isDirectory)) {
+                for (Path dir : stream) {
+                    dirs.add(dir);
+                }
+            } catch (IOException e) {
+                System.err.println(RED + "Cannot read " + snapshots + ": " + e.getMessage() + RESET);
+                return false;
+            }
+        }
+        dirs.sort(Comparator.comparing(dir -> dir.getFileName().toString()));
+
+        System.out.println(CYAN + "Snapshots of " + avdName + ":" + RESET);
+        if (dirs.isEmpty()) {
+            System.out.println(YELLOW + "  No snapshots" + RESET);
+        }
+        for (Path dir : dirs) {
+            String tag = dir.getFileName().toString();
+            String note = tag.equals(golden) ? GREEN + " (golden)" + RESET
+                : tag.equals(QUICKBOOT_SNAPSHOT) ? " (quickboot)" : "";
+            String modified = "-";
+            try {
+                modified = Files.getLastModifiedTime(dir).toInstant().toString().replace('T', ' ').substring(0, 19);
+            } catch (IOException e) {
+                // Leave the date blank
+            }
+            System.out.printf("  %-24s %10s  %s%s%n", tag,
+                formatSize(InstalledImageIndex.directorySize(dir)), modified, note);
+        }
+        if (golden != null && !dirs.contains(snapshots.resolve(golden))) {
+            System.out.println(YELLOW + "  Golden snapshot '" + golden + "' is missing" + RESET);
+        }
+        return true;
+    }
+
+    static boolean goldenSnapshotCommand(String avdName, String tag) {
+        try {
+            if (tag == null) {
+                String golden = getGoldenSnapshot(avdName);
+                System.out.println(golden != null
+                    ? "Golden snapshot of " + avdName + ": " + golden
+                    : "No golden snapshot set for " + avdName + "; start uses quickboot");
+                return true;
+            }
+            if (tag.equals("--clear")) {
+                setGoldenSnapshot(avdName, null);
+                System.out.println(GREEN + "✓ Cleared golden snapshot of " + avdName + RESET);
+                return true;
+            }
+            if (!Files.isDirectory(snapshotDir(avdName, tag))) {
+                System.err.println(RED + "Snapshot '" + tag + "' of " + avdName + " does not exist" + RESET);
+                return false;
+            }
+            setGoldenSnapshot(avdName, tag);
+            System.out.println(GREEN + "✓ " + avdName + " will boot from snapshot '" + tag + "'" + RESET);
+            return true;
+        } catch (IOException e) {
+            System.err.println(RED + "Failed to update golden snapshot: " + e.getMessage() + RESET);
+            return false;
+        }
+    }
+
+    static boolean deleteSnapshot(String avdName, String tag) {
+        Path dir = snapshotDir(avdName, tag);
+        List<EmulatorInstance> running = EmulatorTracker.find(avdName);
+        try {
+            if (!running.isEmpty() && running.get(0).consolePort > 0) {
+                // Let the running emulator drop it so its own bookkeeping stays consistent
+                try (EmulatorConsole console = new EmulatorConsole(running.get(0).consolePort)) {
+                    console.setTimeout(SNAPSHOT_TIMEOUT_MILLIS);
+                    console.command("avd snapshot delete " + tag);
+                }
+            } else if (Files.isDirectory(dir)) {
+                Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        Files.delete(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                        Files.delete(d);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } else {
+                System.err.println(RED + "Snapshot '" + tag + "' of " + avdName + " does not exist" + RESET);
+                return false;
+            }
+
+            if (tag.equals(getGoldenSnapshot(avdName))) {
+                setGoldenSnapshot(avdName, null);
+                System.out.println(YELLOW + "Cleared golden snapshot of " + avdName + RESET);
+            }
+        } catch (IOException e) {
+            System.err.println(RED + "Failed to delete snapshot: " + e.getMessage() + RESET);
+            return false;
+        }
+        System.out.println(GREEN + "✓ Deleted snapshot '" + tag + "' of " + avdName + RESET);
+        return true;
+    }
+}
@@ -0,0 +1,306 @@
+package org.jimedrand.avidia.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.jimedrand.avidia.cli.Commands.*;
+import static org.jimedrand.avidia.cli.RoutedOutput.*;
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Catalogs.*;
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Resident process that keeps the inventory watcher, catalogs and image index loaded and
+// runs forwarded commands on their own threads
+final class Daemon {
+    static final String DAEMON_SOCKET = "avidia.sock";
+
+    // Wire format, both directions over one connection:
+    //   request:  int version, UTF working directory, int argc, UTF args...,
+    //             int envc, UTF name + UTF value of each caller variable
+    //   response: frames of byte type + payload; 'O'/'E' carry int length + bytes of
+    //             stdout/stderr, 'X' carries the int exit code and ends the response;
+    //             a lone 'L' sends the command back to run in the client's process
+    static final int DAEMON_PROTOCOL = 2;
+    // A daemon of another version answers with this on stderr and exit code 2, before running anything
+    static final String PROTOCOL_MISMATCH = "The avidia daemon speaks another protocol";
+    static final int PROTOCOL_MISMATCH_EXIT = 2;
+
+    private static final long STARTED_AT = System.currentTimeMillis();
+    private static final AtomicLong REQUESTS = new AtomicLong();
+    private static volatile ServerSocketChannel server;
+    private static volatile long catalogStamp;
+
+    // In a directory only this user can enter, so the socket is never reachable by others, not
+    // even between binding it and narrowing its own permissions
+    static Path socketPath() {
+        return Paths.get(System.getProperty("user.home"), ".avidia", "run", DAEMON_SOCKET);
+    }
+
+    static int command(String[] args) {
+        String action = args.length > 1 ? args[1] : "run";
+        switch (action) {
+            case "run":
+                return serve();
+            case "start":
+                return startInBackground();
+            case "status":
+            case "stop":
+                // Reached only when forwarding found no daemon to talk to
+                System.out.println(YELLOW + "No avidia daemon is running" + RESET);
+                return action.equals("stop") ? 0 : 1;
+            default:
+                System.err.println("Usage: daemon [run|start|stop|status]");
+                return 1;
+        }
+    }
+
+    private static int serve() {
+        if (!UnixSockets.isSupported()) {
+            System.err.println(RED + "The daemon needs Java 16 or newer (running "
+                + System.getProperty("java.version") + ")" + RESET);
+            return 1;
+        }
+
+        Path socket = socketPath();
+        if (Files.exists(socket) && UnixSockets.isListening(socket)) {
+            System.err.println(RED + "An avidia daemon is already listening on " + socket + RESET);
+            return 1;
+        }
+
+        try {
+            Path runDir = socket.getParent();
+            Files.createDirectories(runDir.getParent());
+            try {
+                Files.createDirectory(runDir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } catch (FileAlreadyExistsException e) {
+                // Made by an earlier daemon; narrowed below all the same
+            }
+            Files.setPosixFilePermissions(runDir, PosixFilePermissions.fromString("rwx------"));
+            // Left over from a daemon that died
+            Files.deleteIfExists(socket);
+            server = UnixSockets.bind(socket);
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+        } catch (IOException | UnsupportedOperationException e) {
+            System.err.println(RED + "Cannot listen on " + socket + ": " + e.getMessage() + RESET);
+            return 1;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(socket);
+            } catch (IOException e) {
+                // Nothing left to do at exit
+            }
+        }));
+
+        installOutputRouting();
+
+        warmUp();
+        System.out.println(GREEN + "avidia daemon listening on " + socket + " (PID "
+            + ProcessHandle.current().pid() + ")" + RESET);
+
+        while (server.isOpen()) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (IOException e) {
+                break;
+            }
+            Thread thread = new Thread(() -> handle(client), "avidia-daemon-client");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        System.out.println("avidia daemon stopped after " + REQUESTS.get() + " request(s)");
+        return 0;
+    }
+
+    private static void warmUp() {
+        getInventory().watch();
+        getInstalledImages().images();
+        catalogStamp = catalogModified();
+        prefetchAndroidVersions();
+        prefetchDeviceDefinitions();
+    }
+
+    // A background refresh rewrites the catalog cache from another process
+    private static synchronized void reloadIfChanged() {
+        long modified = catalogModified();
+        if (modified != catalogStamp) {
+            catalogStamp = modified;
+            invalidateCatalogs();
+            prefetchAndroidVersions();
+            prefetchDeviceDefinitions();
+        }
+    }
+
+    private static long catalogModified() {
+        try {
+            return Files.getLastModifiedTime(Paths.get(avidiaHome, "cache", CATALOG_CACHE_FILE)).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void handle(SocketChannel client) {
+        try (SocketChannel channel = client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            int version = in.readInt();
+            if (version != DAEMON_PROTOCOL) {
+                // Clients since protocol 2 fall back to running the command themselves; older ones
+                // show the message
+                byte[] message = (YELLOW + PROTOCOL_MISMATCH + " (" + DAEMON_PROTOCOL + ", client "
+                    + version + "); restart it with: avidia daemon stop" + RESET + "\n").getBytes(StandardCharsets.UTF_8);
+                new FrameOutput(out, 'E').write(message);
+                FrameOutput.exit(out, PROTOCOL_MISMATCH_EXIT);
+                return;
+            }
+            Path workingDir = Paths.get(in.readUTF());
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+            Map<String, String> env = new HashMap<>();
+            int envCount = in.readInt();
+            for (int i = 0; i < envCount; i++) {
+                env.put(in.readUTF(), in.readUTF());
+            }
+            // The SDK this daemon resolved at startup is not the one the caller would find
+            if (!Objects.equals(env.get("ANDROID_SDK_ROOT"), System.getenv("ANDROID_SDK_ROOT"))
+                    || !Objects.equals(env.get("ANDROID_HOME"), System.getenv("ANDROID_HOME"))) {
+                out.writeByte('L');
+                out.flush();
+                return;
+            }
+
+            REQUESTS.incrementAndGet();
+            stdoutRouter.route(new FrameOutput(out, 'O'));
+            stderrRouter.route(new FrameOutput(out, 'E'));
+            WORKING_DIR.set(workingDir);
+            setCallerEnvironment(env);
+            int exitCode;
+            try {
+                exitCode = dispatch(args);
+            } catch (RuntimeException e) {
+                System.err.println(RED + "Command failed: " + e + RESET);
+                exitCode = 1;
+            } finally {
+                System.out.flush();
+                System.err.flush();
+                stdoutRouter.route(null);
+                stderrRouter.route(null);
+                WORKING_DIR.remove();
+                setCallerEnvironment(null);
+            }
+            FrameOutput.exit(out, exitCode);
+
+            if (args[0].equals("daemon") && args.length > 1 && args[1].equals("stop")) {
+                server.close();
+            }
+        } catch (IOException e) {
+            // Client went away; the command, if any, has already run to completion
+        }
+    }
+
+    private static int dispatch(String[] args) {
+        if (args[0].equals("daemon")) {
+            String action = args.length > 1 ? args[1] : "";
+            if (action.equals("status")) {
+                long uptime = (System.currentTimeMillis() - STARTED_AT) / 1000;
+                System.out.println(GREEN + "avidia daemon is running" + RESET);
+                System.out.println("  PID:      " + ProcessHandle.current().pid());
+                System.out.println("  Socket:   " + socketPath());
+                System.out.println("  Uptime:   " + String.format("%dh %02dm %02ds", uptime / 3600, uptime / 60 % 60, uptime % 60));
+                System.out.println("  Requests: " + REQUESTS.get());
+                System.out.println("  AVDs:     " + getInventory().names().size());
+                System.out.println("  Java:     " + System.getProperty("java.version"));
+                return 0;
+            }
+            if (action.equals("stop")) {
+                System.out.println(GREEN + "✓ avidia daemon stopping" + RESET);
+                return 0;
+            }
+            System.err.println(RED + "The daemon is already running" + RESET);
+            return 1;
+        }
+        reloadIfChanged();
+        return run(args);
+    }
+
+    // Spawns `avidia daemon run` detached and waits until it answers on the socket
+    private static int startInBackground() {
+        if (!UnixSockets.isSupported()) {
+            System.err.println(RED + "The daemon needs Java 16 or newer (running "
+                + System.getProperty("java.version") + ")" + RESET);
+            return 1;
+        }
+        if (UnixSockets.isListening(socketPath())) {
+            System.out.println(YELLOW + "An avidia daemon is already running" + RESET);
+            return 0;
+        }
+        Path log = Paths.get(avidiaHome, "logs", "daemon.log");
+        try {
+            Files.createDirectories(log.getParent());
+            List<String> command = new ArrayList<>();
+            if (new File("/usr/bin/setsid").canExecute()) {
+                command.add("/usr/bin/setsid");
+            }
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            command.add("-Duser.home=" + homeDir);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(MAIN_CLASS);
+            command.add("daemon");
+            command.add("run");
+
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()));
+            pb.redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")));
+            Process process = pb.start();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    System.err.println(RED + "The daemon exited, see " + log + RESET);
+                    return 1;
+                }
+                if (UnixSockets.isListening(socketPath())) {
+                    System.out.println(GREEN + "✓ avidia daemon started (PID " + process.pid() + ")" + RESET);
+                    System.out.println("Log: " + log);
+                    return 0;
+                }
+                Thread.sleep(100);
+            }
+            System.err.println(RED + "The daemon did not come up within 30s, see " + log + RESET);
+            return 1;
+        } catch (IOException e) {
+            System.err.println(RED + "Failed to start the daemon: " + e.getMessage() + RESET);
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+}
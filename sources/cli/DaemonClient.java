@@ -0,0 +1,136 @@
+package org.jimedrand.avidia.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.jimedrand.avidia.cli.Daemon.*;
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Client half of the daemon: forwards non-interactive commands and replays the output.
+// Returns null when the command has to run in this process.
+public final class DaemonClient {
+    public static Integer forward(String[] args) {
+        if (!isForwardable(args) || "off".equals(System.getenv("AVIDIA_DAEMON"))) {
+            return null;
+        }
+        Path socket = Daemon.socketPath();
+        if (!Files.exists(socket) || !UnixSockets.isSupported()) {
+            return null;
+        }
+
+        SocketChannel channel;
+        try {
+            channel = UnixSockets.connect(socket);
+        } catch (IOException e) {
+            // Stale socket from a daemon that is gone
+            return null;
+        }
+
+        try (SocketChannel connection = channel) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(connection)));
+            out.writeInt(DAEMON_PROTOCOL);
+            out.writeUTF(Paths.get("").toAbsolutePath().toString());
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            // Display and ANDROID_* variables decide how emulators launch, so the daemon uses ours
+            Map<String, String> env = new HashMap<>();
+            for (Map.Entry<String, String> entry : System.getenv().entrySet()) {
+                if (isCallerVariable(entry.getKey())) {
+                    env.put(entry.getKey(), entry.getValue());
+                }
+            }
+            out.writeInt(env.size());
+            for (Map.Entry<String, String> entry : env.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(connection)));
+            OutputStream stdout = new FileOutputStream(FileDescriptor.out);
+            OutputStream stderr = new FileOutputStream(FileDescriptor.err);
+            boolean first = true;
+            while (true) {
+                byte type = in.readByte();
+                if (type == 'L') {
+                    // The daemon found a different SDK than this environment points at
+                    return null;
+                }
+                if (type == 'X') {
+                    int code = in.readInt();
+                    // A protocol 1 daemon turns a newer client away with a bare exit code
+                    if (first && code == PROTOCOL_MISMATCH_EXIT) {
+                        return runHere();
+                    }
+                    return code;
+                }
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                if (first && type == 'E' && new String(data, StandardCharsets.UTF_8).contains(PROTOCOL_MISMATCH)) {
+                    return runHere();
+                }
+                first = false;
+                try {
+                    (type == 'E' ? stderr : stdout).write(data);
+                } catch (IOException e) {
+                    // Our own output was closed (e.g. piped into head); keep draining until the exit code
+                }
+            }
+        } catch (IOException e) {
+            // The command may already have run, so it is not retried in-process
+            System.err.println(RED + "Lost connection to the avidia daemon: " + e.getMessage() + RESET);
+            return 1;
+        }
+    }
+
+    // The daemon is from another avidia version and ran nothing, so the command runs in this process
+    private static Integer runHere() {
+        System.err.println(YELLOW + "The running avidia daemon is from another version; restart it with: avidia daemon stop" + RESET);
+        return null;
+    }
+
+    // Interactive commands and foreground emulators need this process's terminal
+    private static boolean isForwardable(String[] args) {
+        switch (args[0]) {
+            case "list":
+            case "create":
+            case "stop":
+            case "start-fleet":
+            case "snapshot":
+            case "images":
+            case "clone":
+            case "apply":
+            case "delete":
+                return true;
+            case "start":
+                return Arrays.asList(args).contains("--detach");
+            case "refresh-catalog":
+                return !Arrays.asList(args).contains("--background");
+            case "batch":
+                // The daemon cannot read this process's stdin
+                return !Arrays.asList(args).contains("-");
+            case "daemon":
+                return args.length > 1 && (args[1].equals("status") || args[1].equals("stop"));
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.jimedrand.avidia.cli;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+final class FrameOutput extends OutputStream {
+    private final DataOutputStream out;
+    private final byte type;
+
+    FrameOutput(DataOutputStream out, char type) {
+        this.out = out;
+        this.type = (byte) type;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        synchronized (out) {
+            out.writeByte(type);
+            out.writeInt(len);
+            out.write(b, off, len);
+            out.flush();
+        }
+    }
+
+    static void exit(DataOutputStream out, int code) throws IOException {
+        synchronized (out) {
+            out.writeByte('X');
+            out.writeInt(code);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package org.jimedrand.avidia.cli;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.regex.Pattern;
+import org.jimedrand.avidia.core.DeviceDefinition;
+import org.jimedrand.avidia.core.InstalledImage;
+import org.jimedrand.avidia.core.LaunchProfile;
+
+import static org.jimedrand.avidia.cli.Commands.*;
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Catalogs.*;
+import static org.jimedrand.avidia.core.Emulators.*;
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Numbered text menu used when the terminal UI cannot start
+public final class InteractiveMenu {
+    public static void showCLIMenu() {
+        Scanner scanner = new Scanner(System.in);
+        boolean running = true;
+        
+        while (running) {
+            printHeader();
+            System.out.println(BLUE + "================================================" + RESET);
+            System.out.println(BOLD + "                 MAIN OPERATIONS                " + RESET);
+            System.out.println(BLUE + "================================================" + RESET);
+            System.out.println(GREEN + " [1]" + RESET + " List Virtual Devices");
+            System.out.println("     Display all available Android Virtual Devices");
+            System.out.println();
+            System.out.println(GREEN + " [2]" + RESET + " Create New Device");
+            System.out.println("     Configure and create a new Android Virtual Device");
+            System.out.println();
+            System.out.println(GREEN + " [3]" + RESET + " Start Virtual Device");
+            System.out.println("     Launch an existing Android Virtual Device");
+            System.out.println();
+            System.out.println(GREEN + " [4]" + RESET + " Stop Virtual Device");
+            System.out.println("     Stop a running Android Virtual Device");
+            System.out.println();
+            System.out.println(GREEN + " [5]" + RESET + " Remove Virtual Device");
+            System.out.println("     Delete an Android Virtual Device permanently");
+            System.out.println();
+            System.out.println(GREEN + " [6]" + RESET + " Install System Image");
+            System.out.println("     Install new Android system images for emulation");
+            System.out.println();
+            System.out.println(GREEN + " [7]" + RESET + " System Information");
+            System.out.println("     View system configuration and environment status");
+            System.out.println();
+            System.out.println(GREEN + " [0]" + RESET + " Exit to Shell");
+            System.out.println(BLUE + "================================================" + RESET);
+            
+            System.out.print("\n" + CYAN + "Enter selection: " + RESET);
+            String choice = scanner.nextLine().trim();
+            
+            switch (choice) {
+                case "1":
+                    listAVDs();
+                    waitForEnter(scanner);
+                    break;
+                case "2":
+                    createAVDCLI(scanner);
+                    break;
+                case "3":
+                    startAVDCLI(scanner);
+                    break;
+                case "4":
+                    stopAVDCLI(scanner);
+                    break;
+                case "5":
+                    deleteAVDCLI(scanner);
+                    break;
+                case "6":
+                    installImageCLI(scanner);
+                    break;
+                case "7":
+                    showSystemInfoCLI();
+                    waitForEnter(scanner);
+                    break;
+                case "0":
+                    System.out.println(CYAN + "\nReturning to Terminal..." + RESET);
+                    running = false;
+                    break;
+                default:
+                    System.out.println(RED + "Invalid selection! Please choose 0-7." + RESET);
+                    waitForEnter(scanner);
+            }
+        }
+        scanner.close();
+    }
+
+    static void waitForEnter(Scanner scanner) {
+        System.out.print("\n" + YELLOW + "Press Enter to continue..." + RESET);
+        scanner.nextLine();
+    }
+
+    static void createAVDCLI(Scanner scanner) {
+        awaitAndroidVersions();
+        System.out.println(YELLOW + "\n================================================" + RESET);
+        System.out.println(BOLD + "           CREATE VIRTUAL DEVICE              " + RESET);
+        System.out.println(YELLOW + "================================================" + RESET);
+        
+        System.out.print("\n" + CYAN + "Virtual device name: " + RESET);
+        String avdName = scanner.nextLine().trim();
+        if (avdName.isEmpty()) {
+            System.err.println(RED + "Device name cannot be empty!" + RESET);
+            return;
+        }
+        
+        if (!Pattern.matches("[a-zA-Z0-9_]+", avdName)) {
+            System.err.println(RED + "Device name can only contain letters, numbers, and underscores!" + RESET);
+            return;
+        }
+        
+        System.out.println("\n" + CYAN + "Android Version:" + RESET);
+        System.out.println("------------------------------------------------");
+        int i = 1;
+        for (Map.Entry<String, String> entry : ANDROID_VERSIONS.entrySet()) {
+            System.out.printf("  [%d] %-25s (API %s)\n", i++, entry.getKey(), entry.getValue());
+        }
+        
+        System.out.print("\n" + CYAN + "Select version [1]: " + RESET);
+        String apiInput = scanner.nextLine().trim();
+        String apiLevel = "34";
+        
+        if (!apiInput.isEmpty() && apiInput.matches("\\d+")) {
+            int index = Integer.parseInt(apiInput) - 1;
+            if (index >= 0 && index < ANDROID_VERSIONS.size()) {
+                apiLevel = (String) ANDROID_VERSIONS.values().toArray()[index];
+            }
+        }
+        
+        System.out.println("\n" + CYAN + "Architecture:" + RESET);
+        System.out.println(" [1] x86_64 (Intel/AMD 64-bit, recommended)");
+        System.out.println(" [2] x86 (Intel/AMD 32-bit)");
+        System.out.println(" [3] arm64-v8a (ARM 64-bit, slower emulation)");
+        System.out.print("Select [1]: " + RESET);
+        String archChoice = scanner.nextLine().trim();
+        String abi = "x86_64";
+        if ("2".equals(archChoice)) abi = "x86";
+        else if ("3".equals(archChoice)) abi = "arm64-v8a";
+        
+        System.out.println("\n" + CYAN + "Image Type:" + RESET);
+        System.out.println(" [1] Google Play Store (Recommended for app testing)");
+        System.out.println(" [2] Google APIs (No Play Store, with Google Services)");
+        System.out.println(" [3] AOSP (Android Open Source Project, no Google services)");
+        System.out.print("Select [1]: " + RESET);
+        String typeChoice = scanner.nextLine().trim();
+        String imageType = "google_apis_playstore";
+        if ("2".equals(typeChoice)) imageType = "google_apis";
+        else if ("3".equals(typeChoice)) imageType = "android";
+        
+        String packageName = String.format("system-images;android-%s;%s;%s", apiLevel, imageType, abi);
+        
+        awaitDeviceDefinitions();
+        System.out.println("\n" + CYAN + "Device Model:" + RESET);
+        System.out.println(" Available options:");
+        List<DeviceDefinition> devices = devicesFor(imageType, abi);
+        for (int j = 0; j < devices.size(); j++) {
+            System.out.printf("  [%d] %s\n", j+1, devices.get(j).label());
+        }
+        
+        System.out.print("\nSelect device number [3]: " + RESET);
+        String deviceChoice = scanner.nextLine().trim();
+        String deviceId = "pixel_5";
+        if (deviceChoice.matches("\\d+")) {
+            int index = Integer.parseInt(deviceChoice) - 1;
+            if (index >= 0 && index < devices.size()) {
+                deviceId = devices.get(index).id;
+            }
+        }
+        
+        if (!isSystemImageInstalled(packageName)) {
+            System.out.println(RED + "\nSystem image not installed!" + RESET);
+            System.out.println("Package: " + packageName);
+            System.out.print(YELLOW + "Do you want to install it now? (yes/no): " + RESET);
+            String installChoice = scanner.nextLine().trim().toLowerCase();
+            if (installChoice.equals("yes") || installChoice.equals("y")) {
+                if (!installSDKPackage(packageName)) {
+                    System.out.println(RED + "Failed to install system image. Aborting." + RESET);
+                    return;
+                }
+            } else {
+                System.out.println(YELLOW + "AVD creation cancelled." + RESET);
+                return;
+            }
+        }
+        
+        System.out.println("\n" + CYAN + "================================================" + RESET);
+        System.out.println(BOLD + "        CONFIGURATION SUMMARY             " + RESET);
+        System.out.println(CYAN + "================================================" + RESET);
+        System.out.println(" Name       : " + GREEN + avdName + RESET);
+        System.out.println(" API Level  : " + GREEN + apiLevel + RESET);
+        System.out.println(" Architecture: " + GREEN + abi + RESET);
+        System.out.println(" Image Type : " + GREEN + imageType + RESET);
+        System.out.println(" Device     : " + GREEN + deviceId + RESET);
+        System.out.println(CYAN + "================================================" + RESET);
+        
+        System.out.print("\n" + CYAN + "Create virtual device? (yes/no): " + RESET);
+        String confirm = scanner.nextLine().trim().toLowerCase();
+        if (confirm.equals("yes") || confirm.equals("y")) {
+            boolean success = createAVD(avdName, packageName, deviceId);
+            if (success) {
+                System.out.println(GREEN + "\nAVD created successfully!" + RESET);
+                System.out.println("Start it with: " + CYAN + "avidia start " + avdName + RESET);
+            } else {
+                System.err.println(RED + "\nFailed to create AVD." + RESET);
+            }
+        } else {
+            System.out.println(YELLOW + "Device creation cancelled." + RESET);
+        }
+    }
+
+    static void startAVDCLI(Scanner scanner) {
+        List<String> avds = getAvailableAVDs();
+        if (avds.isEmpty()) {
+            System.out.println(RED + "No AVDs found. Create one first." + RESET);
+            return;
+        }
+        
+        System.out.println("\n" + CYAN + "Available AVDs:" + RESET);
+        for (int i = 0; i < avds.size(); i++) {
+            System.out.println(" [" + (i + 1) + "] " + avds.get(i));
+        }
+        
+        System.out.print("\n" + CYAN + "Select AVD number: " + RESET);
+        String choice = scanner.nextLine().trim();
+        try {
+            int idx = Integer.parseInt(choice) - 1;
+            if (idx >= 0 && idx < avds.size()) {
+                startAVD(avds.get(idx), false, LaunchProfile.resolve(null, 1));
+            } else {
+                System.out.println(RED + "Invalid selection." + RESET);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println(RED + "Invalid number." + RESET);
+        }
+    }
+
+    static void stopAVDCLI(Scanner scanner) {
+        List<String> runningAvds = getRunningAVDs();
+        if (runningAvds.isEmpty()) {
+            System.out.println(YELLOW + "No AVDs are currently running." + RESET);
+            return;
+        }
+        
+        System.out.println("\n" + CYAN + "Running AVDs:" + RESET);
+        for (int i = 0; i < runningAvds.size(); i++) {
+            System.out.println(" [" + (i + 1) + "] " + runningAvds.get(i));
+        }
+        
+        System.out.print("\n" + CYAN + "Select AVD number to stop: " + RESET);
+        String choice = scanner.nextLine().trim();
+        try {
+            int idx = Integer.parseInt(choice) - 1;
+            if (idx >= 0 && idx < runningAvds.size()) {
+                String avdName = runningAvds.get(idx).split(" ")[0];
+                stopAVD(avdName);
+            } else {
+                System.out.println(RED + "Invalid selection." + RESET);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println(RED + "Invalid number." + RESET);
+        }
+    }
+
+    static void deleteAVDCLI(Scanner scanner) {
+        List<String> avds = getAvailableAVDs();
+        if (avds.isEmpty()) {
+            System.out.println(RED + "No AVDs found." + RESET);
+            return;
+        }
+        
+        System.out.println("\n" + CYAN + "Available AVDs:" + RESET);
+        for (int i = 0; i < avds.size(); i++) {
+            System.out.println(" [" + (i + 1) + "] " + avds.get(i));
+        }
+        
+        System.out.print("\n" + CYAN + "Select AVD number to delete: " + RESET);
+        String choice = scanner.nextLine().trim();
+        try {
+            int idx = Integer.parseInt(choice) - 1;
+            if (idx >= 0 && idx < avds.size()) {
+                String avdName = avds.get(idx);
+                if (isAVDRunning(avdName)) {
+                    System.out.println(RED + "WARNING: This AVD is currently running!" + RESET);
+                    System.out.print(YELLOW + "Do you want to stop and delete it? (yes/no): " + RESET);
+                    String confirm = scanner.nextLine().trim().toLowerCase();
+                    if (!confirm.equals("yes") && !confirm.equals("y")) {
+                        System.out.println(YELLOW + "Deletion cancelled." + RESET);
+                        return;
+                    }
+                    stopAVD(avdName);
+                }
+                
+                System.out.println("\n" + RED + "WARNING: This will permanently delete all data associated with this AVD!" + RESET);
+                System.out.print(YELLOW + "Are you sure you want to delete '" + avdName + "'? (yes/no): " + RESET);
+                String confirm = scanner.nextLine().trim().toLowerCase();
+                if (confirm.equals("yes") || confirm.equals("y")) {
+                    deleteAVD(avdName);
+                } else {
+                    System.out.println(YELLOW + "Deletion cancelled." + RESET);
+                }
+            } else {
+                System.out.println(RED + "Invalid selection." + RESET);
+            }
+        } catch (NumberFormatException e) {
+            System.out.println(RED + "Invalid number." + RESET);
+        }
+    }
+
+    static void installImageCLI(Scanner scanner) {
+        awaitAndroidVersions();
+        System.out.println(YELLOW + "\n================================================" + RESET);
+        System.out.println(BOLD + "        INSTALL SYSTEM IMAGE                  " + RESET);
+        System.out.println(YELLOW + "================================================" + RESET);
+        
+        System.out.println("\n" + CYAN + "Available Android Versions:" + RESET);
+        int index = 1;
+        for (Map.Entry<String, String> entry : ANDROID_VERSIONS.entrySet()) {
+            System.out.printf("  [%d] %-25s (API %s)\n", index++, entry.getKey(), entry.getValue());
+        }
+        
+        System.out.print("\n" + CYAN + "Select version number [1]: " + RESET);
+        String versionInput = scanner.nextLine().trim();
+        String apiLevel = "34";
+        
+        if (!versionInput.isEmpty() && versionInput.matches("\\d+")) {
+            int versionIndex = Integer.parseInt(versionInput) - 1;
+            if (versionIndex >= 0 && versionIndex < ANDROID_VERSIONS.size()) {
+                apiLevel = (String) ANDROID_VERSIONS.values().toArray()[versionIndex];
+            }
+        }
+        
+        System.out.println("\n" + CYAN + "Image Types:" + RESET);
+        System.out.println(" [1] Google Play Store (Recommended for app testing)");
+        System.out.println(" [2] Google APIs (No Play Store, with Google Services)");
+        System.out.println(" [3] AOSP (Android Open Source Project, no Google services)");
+        System.out.print("Select [1]: " + RESET);
+        String typeChoice = scanner.nextLine().trim();
+        String imageType = "google_apis_playstore";
+        if ("2".equals(typeChoice)) imageType = "google_apis";
+        else if ("3".equals(typeChoice)) imageType = "android";
+        
+        System.out.println("\n" + CYAN + "Architecture:" + RESET);
+        System.out.println(" [1] x86_64 (Intel/AMD 64-bit, recommended)");
+        System.out.println(" [2] x86 (Intel/AMD 32-bit)");
+        System.out.println(" [3] arm64-v8a (ARM 64-bit, slower emulation)");
+        System.out.print("Select [1]: " + RESET);
+        String archChoice = scanner.nextLine().trim();
+        String abi = "x86_64";
+        if ("2".equals(archChoice)) abi = "x86";
+        else if ("3".equals(archChoice)) abi = "arm64-v8a";
+        
+        String packageName = String.format("system-images;android-%s;%s;%s", apiLevel, imageType, abi);
+        
+        System.out.println("\n" + CYAN + "Package to install:" + RESET);
+        System.out.println(" " + packageName);
+        System.out.println(YELLOW + "\nThis will download approximately 1-2 GB of data." + RESET);
+        
+        System.out.print("\n" + CYAN + "Proceed with installation? (yes/no): " + RESET);
+        String confirm = scanner.nextLine().trim().toLowerCase();
+        if (confirm.equals("yes") || confirm.equals("y")) {
+            installSDKPackage(packageName);
+        } else {
+            System.out.println(YELLOW + "Installation cancelled." + RESET);
+        }
+    }
+
+    static void showSystemInfoCLI() {
+        printHeader();
+        System.out.println(BOLD + "System Information:" + RESET);
+        System.out.println("===================");
+        System.out.println();
+        System.out.println("AVIDIA Status:    Operational");
+        System.out.println("Android SDK:      " + sdkPath);
+        System.out.println("AVD Home:         " + avdHome);
+        System.out.println();
+        
+        System.out.println("Java Version:");
+        try {
+            Process process = Runtime.getRuntime().exec("java -version");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                System.out.println("  " + line);
+            }
+        } catch (Exception e) {
+            System.out.println(RED + "  Error retrieving Java version: " + e.getMessage() + RESET);
+        }
+        
+        System.out.println();
+        
+        System.out.println("KVM Status:");
+        if (isKvmAvailable()) {
+            System.out.println(GREEN + "  Available (Hardware acceleration enabled)" + RESET);
+        } else {
+            System.out.println(RED + "  Not available (Software acceleration only)" + RESET);
+        }
+        
+        System.out.println();
+        
+        System.out.println("Installed System Images:");
+        Map<String, InstalledImage> images = getInstalledImages().images();
+        if (images.isEmpty()) {
+            System.out.println(YELLOW + "  None" + RESET);
+        }
+        for (InstalledImage image : images.values()) {
+            System.out.printf("  %-50s r%-8s %s\n", image.packagePath,
+                image.revision != null ? image.revision : "?", formatSize(image.sizeBytes));
+        }
+        
+        System.out.println();
+        
+        List<String> avds = getAvailableAVDs();
+        System.out.println("Virtual Devices:");
+        System.out.println("  Total AVDs: " + avds.size());
+        if (!avds.isEmpty()) {
+            for (String avd : avds) {
+                System.out.println("    - " + avd);
+            }
+        }
+    }
+
+    static void printHeader() {
+        System.out.println(CYAN + BOLD);
+        System.out.println("================================================");
+        System.out.println("                    AVIDIA                      ");
+        System.out.println("    Android Virtual Device Manager (User)      ");
+        System.out.println("================================================");
+        System.out.println(RESET);
+    }
+}
@@ -0,0 +1,64 @@
+package org.jimedrand.avidia.cli;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// Sends output to the stream of whichever client the current thread is serving. Threads a
+// command starts inherit the target, so fleet workers still reach the right client.
+public final class RoutedOutput extends OutputStream {
+    public static RoutedOutput stdoutRouter;
+
+    public static RoutedOutput stderrRouter;
+
+    // Replaces System.out/err once with streams that can be redirected per thread
+    public static synchronized void installOutputRouting() {
+        if (stdoutRouter == null) {
+            stdoutRouter = new RoutedOutput(new FileOutputStream(FileDescriptor.out));
+            stderrRouter = new RoutedOutput(new FileOutputStream(FileDescriptor.err));
+            System.setOut(new PrintStream(stdoutRouter, true));
+            System.setErr(new PrintStream(stderrRouter, true));
+        }
+    }
+
+    private final OutputStream fallback;
+    private final InheritableThreadLocal<OutputStream> target = new InheritableThreadLocal<>();
+
+    RoutedOutput(OutputStream fallback) {
+        this.fallback = fallback;
+    }
+
+    // Sends this thread's output to out (null restores the process output) and returns
+    // the previous target so nested captures can put it back
+    public OutputStream route(OutputStream out) {
+        OutputStream previous = target.get();
+        if (out == null) {
+            target.remove();
+        } else {
+            target.set(out);
+        }
+        return previous;
+    }
+
+    private OutputStream current() {
+        OutputStream out = target.get();
+        return out != null ? out : fallback;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        current().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        current().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        current().flush();
+    }
+}
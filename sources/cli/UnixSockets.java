@@ -0,0 +1,81 @@
+package org.jimedrand.avidia.cli;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+// Unix domain sockets arrived in Java 16; Avidia still builds on 11, so the API is reached
+// through reflection and the daemon is simply unavailable on older runtimes
+final class UnixSockets {
+    static boolean isSupported() {
+        try {
+            Class.forName("java.net.UnixDomainSocketAddress");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    static ServerSocketChannel bind(Path path) throws IOException {
+        ServerSocketChannel server = (ServerSocketChannel) open(ServerSocketChannel.class);
+        server.bind(address(path));
+        return server;
+    }
+
+    static SocketChannel connect(Path path) throws IOException {
+        SocketChannel channel = (SocketChannel) open(SocketChannel.class);
+        try {
+            channel.connect(address(path));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    static boolean isListening(Path path) {
+        try {
+            connect(path).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Object open(Class<?> channelType) throws IOException {
+        try {
+            ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+            return invoke(channelType.getMethod("open", ProtocolFamily.class), null, unix);
+        } catch (NoSuchMethodException | IllegalArgumentException e) {
+            throw new IOException("Unix domain sockets need Java 16 or newer");
+        }
+    }
+
+    private static SocketAddress address(Path path) throws IOException {
+        try {
+            Class<?> type = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress) invoke(type.getMethod("of", Path.class), null, path);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new IOException("Unix domain sockets need Java 16 or newer");
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... arguments) throws IOException {
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+}
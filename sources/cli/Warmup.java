@@ -0,0 +1,232 @@
+package org.jimedrand.avidia.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jimedrand.avidia.core.LaunchProfile;
+import org.jimedrand.avidia.core.ProcessRunner;
+
+import static org.jimedrand.avidia.cli.Batch.*;
+import static org.jimedrand.avidia.cli.Commands.*;
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Catalogs.*;
+import static org.jimedrand.avidia.core.Emulators.*;
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Dumps a dynamic AppCDS archive of the classes a short training run loads, so the launcher
+// can map them instead of parsing and verifying the jars on every start
+final class Warmup {
+    static final String CDS_ARCHIVE = "avidia.jsa";
+
+    // Holds the real path of the java binary that wrote the archive; the launcher only passes
+    // the archive to that JVM, since any other one would reject it with a warning
+    static final String CDS_STAMP = "avidia.jsa.java";
+
+    // Dynamic archives (-XX:ArchiveClassesAtExit) arrived in JDK 13
+    private static final int CDS_MIN_JAVA = 13;
+    private static final int MEASURE_RUNS = 5;
+    private static final long TRAINING_TIMEOUT_SECONDS = 120;
+
+    // Must match the launcher install.sh writes
+    private static final String LAUNCHER_JAVA_LINE =
+        "# Run Java application (main class is org.jimedrand.avidia.avidia)\n"
+        + "java -cp \"$AVIDIA_LIB/avidia.jar:$AVIDIA_LIB/lanterna.jar\" org.jimedrand.avidia.avidia \"$@\"";
+    private static final String LAUNCHER_CDS_BLOCK =
+        "# AppCDS archive from `avidia warmup`, used only with the JVM that created it\n"
+        + "CDS_OPTS=()\n"
+        + "if [ -f \"$AVIDIA_LIB/" + CDS_ARCHIVE + "\" ] && [ -f \"$AVIDIA_LIB/" + CDS_STAMP + "\" ] \\\n"
+        + "    && [ \"$(readlink -f \"$(command -v java)\")\" = \"$(cat \"$AVIDIA_LIB/" + CDS_STAMP + "\")\" ]; then\n"
+        + "    CDS_OPTS=(-XX:SharedArchiveFile=\"$AVIDIA_LIB/" + CDS_ARCHIVE + "\" -Xshare:auto -Xlog:cds=off -Xlog:cds+dynamic=off)\n"
+        + "fi\n"
+        + "\n"
+        + "# Run Java application (main class is org.jimedrand.avidia.avidia)\n"
+        + "java ${CDS_OPTS[@]+\"${CDS_OPTS[@]}\"} -cp \"$AVIDIA_LIB/avidia.jar:$AVIDIA_LIB/lanterna.jar\" org.jimedrand.avidia.avidia \"$@\"";
+
+    static boolean command(String[] args) {
+        if (args.length > 1 && args[1].equals("--train")) {
+            train();
+            return true;
+        }
+        if (args.length > 1 && args[1].equals("--clear")) {
+            return clearArchive();
+        }
+        if (args.length > 1) {
+            System.err.println("Usage: warmup [--clear]");
+            return false;
+        }
+
+        int feature = Runtime.version().feature();
+        if (feature < CDS_MIN_JAVA) {
+            System.out.println(YELLOW + "AppCDS archives need Java " + CDS_MIN_JAVA + " or newer (running "
+                + System.getProperty("java.version") + "); avidia keeps starting without one" + RESET);
+            return true;
+        }
+
+        String classPath = System.getProperty("java.class.path");
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (!entry.endsWith(".jar")) {
+                System.err.println(RED + "AppCDS only archives classes loaded from jars, but the class path has "
+                    + entry + RESET);
+                System.err.println("Run warmup through the installed launcher.");
+                return false;
+            }
+        }
+
+        Path libDir = Paths.get(avidiaHome, "lib");
+        Path archive = libDir.resolve(CDS_ARCHIVE);
+        Path stamp = libDir.resolve(CDS_STAMP);
+        Path tmpArchive = libDir.resolve(CDS_ARCHIVE + ".tmp");
+        String java = javaBinary();
+
+        System.out.println(CYAN + "Training on list, snapshot, catalog and batch paths..." + RESET);
+        try {
+            Files.createDirectories(libDir);
+            Files.deleteIfExists(tmpArchive);
+            int exitCode = runQuietly(Arrays.asList(java, "-XX:ArchiveClassesAtExit=" + tmpArchive,
+                "-Duser.home=" + homeDir, "-cp", classPath, MAIN_CLASS, "warmup", "--train"));
+            if (exitCode != 0 || !Files.exists(tmpArchive)) {
+                System.err.println(RED + "The JVM did not write an archive (exit " + exitCode
+                    + "); it may lack the default CDS archive" + RESET);
+                Files.deleteIfExists(tmpArchive);
+                return false;
+            }
+            Files.move(tmpArchive, archive, StandardCopyOption.REPLACE_EXISTING);
+            Files.write(stamp, Paths.get(java).toRealPath().toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | InterruptedException e) {
+            System.err.println(RED + "Warmup failed: " + e.getMessage() + RESET);
+            return false;
+        }
+        System.out.println(GREEN + "✓ Archive written to " + archive + " ("
+            + formatSize(archive.toFile().length()) + ")" + RESET);
+
+        updateLauncher();
+
+        System.out.println(CYAN + "Measuring `avidia list`, " + MEASURE_RUNS + " runs each..." + RESET);
+        long before = medianStartupMillis(java, classPath, null);
+        long after = medianStartupMillis(java, classPath, archive);
+        if (before > 0 && after > 0) {
+            System.out.println("  Without archive: " + before + " ms");
+            System.out.println("  With archive:    " + after + " ms"
+                + (after < before ? GREEN + "  (" + (100 * (before - after) / before) + "% faster)" + RESET : ""));
+        }
+        System.out.println("Run " + CYAN + "avidia warmup" + RESET + " again after upgrading Java or Avidia.");
+        return true;
+    }
+
+    // The training run itself: exercises the common commands in one JVM, whose loaded classes
+    // are dumped at exit. Output goes nowhere; the parent discards it.
+    private static void train() {
+        printHelp();
+        run(new String[] {"list"});
+
+        List<String> avds = getAvailableAVDs();
+        if (!avds.isEmpty()) {
+            String avd = avds.get(0);
+            run(new String[] {"snapshot", "list", avd});
+            LaunchProfile profile = LaunchProfile.resolve(null, 1);
+            profile.describe();
+            describeBoot(avd, false);
+            buildEmulatorCommand(avd, false, profile);
+        }
+
+        batchProblem(splitCommandLine("start-fleet a b --parallel 2 --profile ci"));
+        batchProblem(splitCommandLine("snapshot save \"a\" golden --golden"));
+
+        prefetchAndroidVersions();
+        prefetchDeviceDefinitions();
+        awaitAndroidVersions();
+        awaitDeviceDefinitions();
+    }
+
+    private static boolean clearArchive() {
+        Path libDir = Paths.get(avidiaHome, "lib");
+        try {
+            boolean removed = Files.deleteIfExists(libDir.resolve(CDS_ARCHIVE));
+            Files.deleteIfExists(libDir.resolve(CDS_STAMP));
+            System.out.println(removed ? GREEN + "✓ AppCDS archive removed" + RESET
+                : YELLOW + "No AppCDS archive to remove" + RESET);
+            return true;
+        } catch (IOException e) {
+            System.err.println(RED + "Failed to remove the archive: " + e.getMessage() + RESET);
+            return false;
+        }
+    }
+
+    // Launchers from older installs run java directly; switch them to the archive-aware form
+    private static void updateLauncher() {
+        Path launcher = Paths.get(homeDir, ".local", "bin", "avidia");
+        try {
+            if (!Files.isRegularFile(launcher)) {
+                return;
+            }
+            String script = new String(Files.readAllBytes(launcher), StandardCharsets.UTF_8);
+            if (script.contains(CDS_ARCHIVE)) {
+                return;
+            }
+            if (!script.contains(LAUNCHER_JAVA_LINE)) {
+                System.out.println(YELLOW + "Launcher " + launcher + " is customised; add -XX:SharedArchiveFile="
+                    + Paths.get(avidiaHome, "lib", CDS_ARCHIVE) + " to its java line to use the archive" + RESET);
+                return;
+            }
+            // Replaced, not rewritten: bash is reading this very file to run the current command
+            Path tmp = launcher.resolveSibling("avidia.tmp");
+            Files.write(tmp, script.replace(LAUNCHER_JAVA_LINE, LAUNCHER_CDS_BLOCK)
+                .getBytes(StandardCharsets.UTF_8));
+            Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(launcher));
+            Files.move(tmp, launcher, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println(GREEN + "✓ Launcher " + launcher + " now uses the archive" + RESET);
+        } catch (IOException e) {
+            System.out.println(YELLOW + "Could not update " + launcher + ": " + e.getMessage() + RESET);
+        }
+    }
+
+    // Median wall time of `avidia list` from launch to exit, or -1 if a run fails
+    private static long medianStartupMillis(String java, String classPath, Path archive) {
+        List<String> command = new ArrayList<>(Arrays.asList(java, "-Xshare:auto"));
+        if (archive != null) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.addAll(Arrays.asList("-Duser.home=" + homeDir, "-cp", classPath, MAIN_CLASS, "list"));
+
+        long[] times = new long[MEASURE_RUNS];
+        try {
+            // One unmeasured run so both sides start with a warm page cache
+            runQuietly(command);
+            for (int i = 0; i < MEASURE_RUNS; i++) {
+                long start = System.nanoTime();
+                if (runQuietly(command) != 0) {
+                    return -1;
+                }
+                times[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+        } catch (IOException | InterruptedException e) {
+            return -1;
+        }
+        Arrays.sort(times);
+        return times[MEASURE_RUNS / 2];
+    }
+
+    // Runs a child JVM with the daemon bypassed, so the work happens in that process
+    private static int runQuietly(List<String> command) throws IOException, InterruptedException {
+        ProcessRunner.Result result = new ProcessRunner(command)
+            .environment("AVIDIA_DAEMON", "off")
+            .discardOutput()
+            .timeout(Duration.ofSeconds(TRAINING_TIMEOUT_SECONDS))
+            .run();
+        return result.timedOut ? -1 : result.exitCode;
+    }
+
+    private static String javaBinary() {
+        return Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    }
+}
@@ -0,0 +1,123 @@
+package org.jimedrand.avidia.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Minimal client for the adb host protocol on localhost:5037
+final class AdbClient {
+    private static volatile boolean serverStarted;
+
+    static String shell(String serial, String command) throws IOException {
+        try (Socket socket = connect()) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            send(out, "host:transport:" + serial);
+            expectOkay(in);
+            send(out, "shell:" + command);
+            expectOkay(in);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toString("UTF-8");
+        }
+    }
+
+    static boolean isAvailable() {
+        if (new File(sdkPath + "/platform-tools/adb").canExecute()) {
+            return true;
+        }
+        try {
+            new Socket(InetAddress.getLoopbackAddress(), serverPort()).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // ANDROID_ADB_SERVER_PORT moves the server the same way it does for adb itself
+    private static int serverPort() {
+        try {
+            String port = getenv("ANDROID_ADB_SERVER_PORT");
+            return port == null || port.isEmpty() ? 5037 : Integer.parseInt(port);
+        } catch (NumberFormatException e) {
+            return 5037;
+        }
+    }
+
+    private static Socket connect() throws IOException {
+        try {
+            return new Socket(InetAddress.getLoopbackAddress(), serverPort());
+        } catch (IOException e) {
+            startServer();
+            return new Socket(InetAddress.getLoopbackAddress(), serverPort());
+        }
+    }
+
+    private static synchronized void startServer() throws IOException {
+        if (serverStarted) {
+            return;
+        }
+        File adb = new File(sdkPath + "/platform-tools/adb");
+        if (!adb.canExecute()) {
+            throw new IOException("adb not found at " + adb);
+        }
+        try {
+            new ProcessRunner(adb.getPath(), "start-server")
+                .discardOutput()
+                .timeout(Duration.ofSeconds(30))
+                .run();
+            serverStarted = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while starting adb server");
+        }
+    }
+
+    private static void send(OutputStream out, String request) throws IOException {
+        byte[] payload = request.getBytes(StandardCharsets.UTF_8);
+        out.write(String.format("%04x", payload.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+        out.flush();
+    }
+
+    private static void expectOkay(InputStream in) throws IOException {
+        byte[] status = readFully(in, 4);
+        String code = new String(status, StandardCharsets.US_ASCII);
+        if (code.equals("OKAY")) {
+            return;
+        }
+        if (code.equals("FAIL")) {
+            int length = Integer.parseInt(new String(readFully(in, 4), StandardCharsets.US_ASCII), 16);
+            throw new IOException(new String(readFully(in, length), StandardCharsets.UTF_8));
+        }
+        throw new IOException("Unexpected adb response: " + code);
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] data = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(data, offset, length - offset);
+            if (read < 0) {
+                throw new IOException("adb server closed the connection");
+            }
+            offset += read;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,14 @@
+package org.jimedrand.avidia.core;
+
+// Terminal colors shared by every command and the text menus
+public final class Ansi {
+    public static final String RESET = "\033[0m";
+    public static final String RED = "\033[0;31m";
+    public static final String GREEN = "\033[0;32m";
+    public static final String YELLOW = "\033[0;33m";
+    public static final String BLUE = "\033[0;34m";
+    public static final String CYAN = "\033[0;36m";
+    static final String MAGENTA = "\033[0;35m";
+    public static final String BOLD = "\033[1m";
+    static final String UNDERLINE = "\033[4m";
+}
@@ -0,0 +1,140 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Unpacks an SDK archive the way sdkmanager lays it out: the single top-level directory of the
+// zip ("x86_64/", "emulator/") is dropped, so its contents land directly in the package directory.
+// Entries are inflated in parallel, largest first, and written through SparseWriter, so
+// system.img and friends come out as sparse files.
+final class ArchiveExtractor {
+    // What one extraction wrote: bytes is the unpacked size, allocated what was not left as holes
+    static final class Result {
+        final int files;
+        final long bytes;
+        final long allocated;
+        final long nanos;
+
+        Result(int files, long bytes, long allocated, long nanos) {
+            this.files = files;
+            this.bytes = bytes;
+            this.allocated = allocated;
+            this.nanos = nanos;
+        }
+
+        double bytesPerSecond() {
+            return bytes / Math.max(1e-9, nanos / 1e9);
+        }
+    }
+
+    private ArchiveExtractor() {
+    }
+
+    // Threads from [performance] extract_threads, default one per core
+    static Result extract(Path archive, Path staging) throws IOException, InterruptedException {
+        int threads = (int) getConfigLong("performance.extract_threads", Runtime.getRuntime().availableProcessors());
+        return extract(archive, staging, threads);
+    }
+
+    // Extracts into staging, which must not exist yet
+    static Result extract(Path archive, Path staging, int threads) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        Path root = staging.toAbsolutePath().normalize();
+        Files.createDirectories(root);
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            String prefix = commonPrefix(zip);
+            List<ZipEntry> files = new ArrayList<>();
+            List<Path> targets = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName().substring(prefix.length());
+                if (name.isEmpty()) {
+                    continue;
+                }
+                Path target = root.resolve(name).normalize();
+                // Entries like "../../.bashrc" must not escape the package directory
+                if (!target.startsWith(root)) {
+                    throw new IOException("archive entry outside the package: " + entry.getName());
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    files.add(entry);
+                }
+            }
+            // Biggest first, so the one huge image starts at once instead of finishing last
+            files.sort(Comparator.comparingLong(ZipEntry::getSize).reversed());
+            for (ZipEntry entry : files) {
+                targets.add(root.resolve(entry.getName().substring(prefix.length())).normalize());
+            }
+
+            AtomicLong bytes = new AtomicLong();
+            AtomicLong allocated = new AtomicLong();
+            int workers = Math.max(1, Math.min(threads, files.size()));
+            ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "avidia-extract");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<?>> pending = new ArrayList<>();
+                for (int i = 0; i < files.size(); i++) {
+                    ZipEntry entry = files.get(i);
+                    Path target = targets.get(i);
+                    pending.add(pool.submit(() -> {
+                        // ZipFile hands each stream its own inflater, so entries inflate concurrently
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            long[] written = SparseWriter.write(in, target);
+                            bytes.addAndGet(written[0]);
+                            allocated.addAndGet(written[1]);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : pending) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause.toString(), cause);
+            } finally {
+                pool.shutdownNow();
+            }
+            return new Result(files.size(), bytes.get(), allocated.get(), System.nanoTime() - started);
+        }
+    }
+
+    // "x86_64/" when every entry sits under that one directory, otherwise ""
+    private static String commonPrefix(ZipFile zip) {
+        String prefix = null;
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            int slash = name.indexOf('/');
+            if (slash < 0 || (prefix != null && !name.startsWith(prefix))) {
+                return "";
+            }
+            if (prefix == null) {
+                prefix = name.substring(0, slash + 1);
+            }
+        }
+        return prefix == null ? "" : prefix;
+    }
+}
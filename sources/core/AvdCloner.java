@@ -0,0 +1,247 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.jimedrand.avidia.core.Emulators.*;
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Copies a stopped AVD, quickboot snapshot included, under a new name. The tree goes through
+// `cp --reflink=always` so copy-on-write filesystems (btrfs, XFS) share every block with the
+// source; elsewhere each file is copied with its zero blocks left as holes. Paths and names in
+// the .ini files and the backing-file paths of qcow2 overlays are then pointed at the clone.
+public final class AvdCloner {
+    // Keys that carry the AVD's own name
+    private static final Set<String> NAME_KEYS = new HashSet<>(Arrays.asList(
+        "AvdId", "avd.ini.displayname", "avd.name", "avd.id"));
+    private static final int QCOW2_MAGIC = 0x514649fb;
+    private static final Duration REFLINK_TIMEOUT = Duration.ofMinutes(10);
+
+    // Null until the first clone finds out whether this filesystem can share blocks
+    private static volatile Boolean reflinkSupported;
+
+    public enum Method { REFLINK, SPARSE_COPY }
+
+    private AvdCloner() {
+    }
+
+    // Clones source to target, which must not exist yet. The target's .ini is written last,
+    // so the inventory never lists a half-copied AVD.
+    public static Method cloneAVD(String source, String target) throws IOException, InterruptedException {
+        AvdInfo info = getInventory().get(source);
+        if (info == null) {
+            throw new IOException("AVD '" + source + "' not found");
+        }
+        Path home = Paths.get(avdHome);
+        Path sourceDir = info.avdDir.toAbsolutePath().normalize();
+        Path targetDir = home.resolve(target + ".avd").toAbsolutePath().normalize();
+        Path targetIni = home.resolve(target + ".ini");
+        if (Files.exists(targetDir) || Files.exists(targetIni)) {
+            throw new IOException("'" + target + "' already exists");
+        }
+        // A dot and no .ini: invisible to the inventory while it is filled in
+        Path staging = home.resolve("." + target + ".avd.cloning");
+        deleteTree(staging);
+
+        Method method;
+        try {
+            method = reflinkTree(sourceDir, staging) ? Method.REFLINK : Method.SPARSE_COPY;
+            if (method == Method.SPARSE_COPY) {
+                copyTree(sourceDir, staging);
+            }
+            retarget(staging, sourceDir.toString(), targetDir.toString(), target);
+            Files.move(staging, targetDir, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | InterruptedException e) {
+            deleteTree(staging);
+            throw e;
+        }
+
+        writeIni(info.iniFile, targetIni, targetDir, home);
+        getInventory().refresh(target);
+        return method;
+    }
+
+    // One cp for the whole tree; false when the filesystem cannot clone blocks or cp is not GNU's
+    private static boolean reflinkTree(Path sourceDir, Path staging) throws IOException, InterruptedException {
+        if (Boolean.FALSE.equals(reflinkSupported)) {
+            return false;
+        }
+        ProcessRunner.Result result;
+        try {
+            result = new ProcessRunner("cp", "-R", "--reflink=always", sourceDir.toString(), staging.toString())
+                .discardOutput()
+                .timeout(REFLINK_TIMEOUT)
+                .run();
+        } catch (IOException e) {
+            reflinkSupported = false;
+            return false;
+        }
+        if (!result.succeeded()) {
+            reflinkSupported = false;
+            deleteTree(staging);
+            return false;
+        }
+        reflinkSupported = true;
+        deleteLocks(staging);
+        return true;
+    }
+
+    private static void copyTree(Path sourceDir, Path staging) throws IOException {
+        Files.walkFileTree(sourceDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                // Lock files of a past run may be directories; they belong to the source alone
+                if (!dir.equals(sourceDir) && isLock(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                Files.createDirectories(staging.resolve(sourceDir.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (isLock(file) || !attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path copy = staging.resolve(sourceDir.relativize(file).toString());
+                try (InputStream in = Files.newInputStream(file)) {
+                    SparseWriter.write(in, copy);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void deleteLocks(Path dir) throws IOException {
+        List<Path> locks = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.filter(AvdCloner::isLock).forEach(locks::add);
+        }
+        for (Path lock : locks) {
+            deleteTree(lock);
+        }
+    }
+
+    private static boolean isLock(Path path) {
+        return path.getFileName().toString().endsWith(".lock");
+    }
+
+    // Points every .ini and qcow2 overlay in the copy at the clone's directory and name
+    private static void retarget(Path dir, String sourcePath, String targetPath, String target) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.filter(Files::isRegularFile).forEach(files::add);
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".ini")) {
+                rewriteIni(file, sourcePath, targetPath, target);
+            } else if (name.endsWith(".qcow2")) {
+                rewriteBackingFile(file, sourcePath, targetPath);
+            }
+        }
+    }
+
+    // Line by line, so comments, order and the emulator's " = " spacing all survive
+    private static void rewriteIni(Path file, String sourcePath, String targetPath, String target) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        List<String> rewritten = new ArrayList<>(lines.size());
+        boolean avidiaIni = file.getFileName().toString().equals(AVIDIA_AVD_INI);
+        for (String line : lines) {
+            int eq = line.indexOf('=');
+            if (avidiaIni && eq > 0 && line.substring(0, eq).trim().equals(LabSpec.LAB_KEY)) {
+                // A clone is the user's own, not one more AVD of the source's lab
+                continue;
+            }
+            if (eq > 0 && NAME_KEYS.contains(line.substring(0, eq).trim())) {
+                String separator = line.substring(eq).startsWith("= ") ? "= " : "=";
+                line = line.substring(0, eq) + separator + target;
+            } else {
+                line = line.replace(sourcePath, targetPath);
+            }
+            rewritten.add(line);
+        }
+        if (!rewritten.equals(lines)) {
+            Files.write(file, rewritten, StandardCharsets.UTF_8);
+        }
+    }
+
+    // The emulator's overlays (userdata-qemu.img.qcow2 and friends) name their base image by
+    // absolute path. The name lives in the header cluster after the fixed fields, so a longer
+    // path fits as long as it stays clear of the first table the header points at.
+    private static void rewriteBackingFile(Path file, String sourcePath, String targetPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(72);
+            if (channel.read(header, 0) < 72 || header.getInt(0) != QCOW2_MAGIC) {
+                return;
+            }
+            long nameOffset = header.getLong(8);
+            int nameLength = header.getInt(16);
+            if (nameOffset == 0 || nameLength <= 0 || nameLength > 4096) {
+                return;
+            }
+            ByteBuffer name = ByteBuffer.allocate(nameLength);
+            channel.read(name, nameOffset);
+            String backing = new String(name.array(), StandardCharsets.UTF_8);
+            if (!backing.startsWith(sourcePath + "/")) {
+                // A system image in the SDK, shared by every clone as it is
+                return;
+            }
+
+            byte[] replaced = (targetPath + backing.substring(sourcePath.length())).getBytes(StandardCharsets.UTF_8);
+            long limit = 1L << header.getInt(20);
+            limit = Math.min(limit, header.getLong(40));
+            limit = Math.min(limit, header.getLong(48));
+            if (header.getInt(60) > 0) {
+                limit = Math.min(limit, header.getLong(64));
+            }
+            if (nameOffset + replaced.length > limit) {
+                throw new IOException("no room for the new backing path in " + file);
+            }
+            channel.write(ByteBuffer.wrap(replaced), nameOffset);
+            if (replaced.length < nameLength) {
+                channel.write(ByteBuffer.allocate(nameLength - replaced.length), nameOffset + replaced.length);
+            }
+            ByteBuffer length = ByteBuffer.allocate(4).putInt(0, replaced.length);
+            channel.write(length, 16);
+        }
+    }
+
+    // The source's <name>.ini with path and path.rel moved to the clone
+    private static void writeIni(Path sourceIni, Path targetIni, Path targetDir, Path home) throws IOException {
+        List<String> lines = Files.readAllLines(sourceIni, StandardCharsets.UTF_8);
+        List<String> rewritten = new ArrayList<>(lines.size());
+        Path parent = home.toAbsolutePath().getParent();
+        for (String line : lines) {
+            String key = line.indexOf('=') > 0 ? line.substring(0, line.indexOf('=')).trim() : "";
+            if (key.equals("path")) {
+                line = "path=" + targetDir;
+            } else if (key.equals("path.rel")) {
+                line = "path.rel=" + (parent != null ? parent.relativize(targetDir) : targetDir);
+            }
+            rewritten.add(line);
+        }
+        Path temp = targetIni.resolveSibling("." + targetIni.getFileName() + ".tmp");
+        Files.write(temp, rewritten, StandardCharsets.UTF_8);
+        Files.move(temp, targetIni, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,35 @@
+package org.jimedrand.avidia.core;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.jimedrand.avidia.core.Environment.*;
+
+final class AvdInfo {
+    final String name;
+    final Path iniFile;
+    final Path avdDir;
+    final Map<String, String> ini;
+    private volatile Map<String, String> config;
+
+    AvdInfo(String name, Path iniFile, Path avdDir, Map<String, String> ini) {
+        this.name = name;
+        this.iniFile = iniFile;
+        this.avdDir = avdDir;
+        this.ini = ini;
+    }
+
+    // config.ini is only read when someone asks for it
+    Map<String, String> config() {
+        Map<String, String> current = config;
+        if (current == null) {
+            current = readIni(avdDir.resolve("config.ini"));
+            config = current;
+        }
+        return current;
+    }
+
+    void invalidateConfig() {
+        config = null;
+    }
+}
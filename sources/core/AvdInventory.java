@@ -0,0 +1,200 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.jimedrand.avidia.core.Environment.*;
+
+// In-process replacement for `emulator -list-avds`: scans <avdHome>/*.ini once
+// and, when watch() has been called, keeps the cache current from a WatchService.
+public final class AvdInventory {
+    private final Path home;
+    private final Map<String, AvdInfo> avds = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    private WatchService watcher;
+
+    public AvdInventory(Path home) {
+        this.home = home;
+    }
+
+    public List<String> names() {
+        ensureLoaded();
+        List<String> names = new ArrayList<>(avds.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    public AvdInfo get(String name) {
+        ensureLoaded();
+        return avds.get(name);
+    }
+
+    public boolean contains(String name) {
+        return get(name) != null;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            reload();
+        }
+    }
+
+    public synchronized void reload() {
+        Map<String, AvdInfo> found = new HashMap<>();
+        if (Files.isDirectory(home)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(home, "*.ini")) {
+                for (Path iniFile : stream) {
+                    AvdInfo info = readEntry(iniFile);
+                    if (info != null) {
+                        found.put(info.name, info);
+                    }
+                }
+            } catch (IOException e) {
+                // Leave whatever we could read
+            }
+        }
+        avds.keySet().retainAll(found.keySet());
+        avds.putAll(found);
+        loaded = true;
+        if (watcher != null) {
+            for (AvdInfo info : found.values()) {
+                registerAvdDir(info.avdDir);
+            }
+        }
+    }
+
+    // Re-reads a single entry, e.g. right after we created or deleted it ourselves
+    public void refresh(String name) {
+        if (!loaded) {
+            reload();
+            return;
+        }
+        AvdInfo info = readEntry(home.resolve(name + ".ini"));
+        if (info == null) {
+            avds.remove(name);
+        } else {
+            avds.put(name, info);
+            if (watcher != null) {
+                registerAvdDir(info.avdDir);
+            }
+        }
+    }
+
+    private AvdInfo readEntry(Path iniFile) {
+        if (!Files.isRegularFile(iniFile)) {
+            return null;
+        }
+        String fileName = iniFile.getFileName().toString();
+        String name = fileName.substring(0, fileName.length() - ".ini".length());
+        Map<String, String> ini = readIni(iniFile);
+
+        Path avdDir = null;
+        String path = ini.get("path");
+        if (path != null && !path.isEmpty() && Files.isDirectory(Paths.get(path))) {
+            avdDir = Paths.get(path);
+        }
+        String relative = ini.get("path.rel");
+        if (avdDir == null && relative != null && !relative.isEmpty()) {
+            // path.rel is relative to the parent of the AVD home (e.g. avd/foo.avd)
+            Path parent = home.getParent();
+            Path candidate = parent != null ? parent.resolve(relative) : Paths.get(relative);
+            if (Files.isDirectory(candidate)) {
+                avdDir = candidate;
+            }
+        }
+        if (avdDir == null) {
+            avdDir = home.resolve(name + ".avd");
+        }
+        return new AvdInfo(name, iniFile, avdDir, ini);
+    }
+
+    // Starts a daemon thread that keeps the cache in sync; only worth it for long-lived sessions
+    public synchronized void watch() {
+        if (watcher != null || !Files.isDirectory(home)) {
+            return;
+        }
+        try {
+            watcher = home.getFileSystem().newWatchService();
+            WatchKey key = home.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirs.put(key, home);
+        } catch (IOException e) {
+            watcher = null;
+            return;
+        }
+        ensureLoaded();
+        for (AvdInfo info : avds.values()) {
+            registerAvdDir(info.avdDir);
+        }
+
+        Thread thread = new Thread(this::processEvents, "avidia-avd-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void registerAvdDir(Path avdDir) {
+        if (!Files.isDirectory(avdDir) || watchedDirs.containsValue(avdDir)) {
+            return;
+        }
+        try {
+            WatchKey key = avdDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirs.put(key, avdDir);
+        } catch (IOException e) {
+            // Config changes for this AVD will be picked up on the next reload
+        }
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path dir = watchedDirs.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    reload();
+                    continue;
+                }
+                String changed = event.context().toString();
+                if (home.equals(dir)) {
+                    if (changed.endsWith(".ini")) {
+                        refresh(changed.substring(0, changed.length() - ".ini".length()));
+                    } else if (changed.endsWith(".avd")
+                            && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        registerAvdDir(home.resolve(changed));
+                    }
+                } else if (dir != null && changed.equals("config.ini")) {
+                    for (AvdInfo info : avds.values()) {
+                        if (info.avdDir.equals(dir)) {
+                            info.invalidateConfig();
+                        }
+                    }
+                }
+            }
+
+            if (!key.reset()) {
+                watchedDirs.remove(key);
+            }
+        }
+    }
+}
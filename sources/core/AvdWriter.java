@@ -0,0 +1,187 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Catalogs.*;
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Writes <name>.ini and <name>.avd/config.ini the way `avdmanager create avd -n <name> -k <image>
+// -d <device>` does, from the installed image and the device's devices.xml entry, so creating an
+// AVD costs a few small writes instead of starting avdmanager's JVM
+public final class AvdWriter {
+    private AvdWriter() {
+    }
+
+    // [core] avd_writer = native opts in; until its fixtures are recorded from avdmanager
+    // (bench/e2e/avd-parity.sh --record), creates go through avdmanager by default
+    static boolean enabled() {
+        return getConfig().getOrDefault("core.avd_writer", "avdmanager").equals("native");
+    }
+
+    // False when the image is not installed or the device has no hardware definition, which
+    // avdmanager can still handle. Like avdmanager --force, an existing AVD is replaced.
+    static boolean create(String avdName, String packagePath, String deviceId) throws IOException {
+        InstalledImage image = getInstalledImages().images().get(packagePath);
+        DeviceDefinition device = findDevice(deviceId);
+        if (image == null || device == null || device.hardwareConfig.isEmpty()) {
+            return false;
+        }
+
+        Path home = Paths.get(avdHome);
+        Path avdDir = home.resolve(avdName + ".avd").toAbsolutePath().normalize();
+        Path iniFile = home.resolve(avdName + ".ini");
+        Files.createDirectories(home);
+
+        // The new AVD is written in full under dot names first, so a failed write leaves any
+        // existing AVD untouched and nothing lists a half-written one
+        Path staging = home.resolve("." + avdName + ".avd.creating");
+        Path temp = home.resolve("." + avdName + ".ini.tmp");
+        Path replaced = home.resolve("." + avdName + ".avd.replaced");
+        Map<String, String> ini = new TreeMap<>();
+        ini.put("avd.ini.encoding", "UTF-8");
+        ini.put("path", avdDir.toString());
+        Path parent = home.toAbsolutePath().getParent();
+        ini.put("path.rel", (parent != null ? parent.relativize(avdDir) : avdDir).toString());
+        ini.put("target", packagePath.split(";")[1]);
+        try {
+            deleteTree(staging);
+            deleteTree(replaced);
+            Files.createDirectories(staging);
+            writeIni(staging.resolve("config.ini"), config(image, device));
+            writeIni(temp, ini);
+        } catch (IOException e) {
+            discard(e, staging, temp);
+            throw e;
+        }
+
+        // Then swapped in: the old directory aside, the new one in place, <name>.ini last
+        boolean hadAvd = Files.exists(avdDir);
+        try {
+            if (hadAvd) {
+                Files.move(avdDir, replaced, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(staging, avdDir, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(temp, iniFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            restore(avdDir, staging, replaced, hadAvd, e);
+            discard(e, staging, temp);
+            throw e;
+        }
+
+        // Only the finished replacement is worth keeping; a leftover here is cleared next time
+        try {
+            deleteTree(replaced);
+        } catch (IOException e) {
+            System.err.println(YELLOW + "Could not remove the replaced AVD at " + replaced + ": " + e.getMessage() + RESET);
+        }
+        return true;
+    }
+
+    // Puts the old AVD directory back after a failed swap
+    private static void restore(Path avdDir, Path staging, Path replaced, boolean hadAvd, IOException failure) {
+        try {
+            if (Files.exists(replaced)) {
+                if (Files.exists(avdDir)) {
+                    Files.move(avdDir, staging, StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.move(replaced, avdDir, StandardCopyOption.ATOMIC_MOVE);
+            } else if (!hadAvd && Files.exists(avdDir)) {
+                Files.move(avdDir, staging, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    // Removes staged files after a failure without hiding the failure
+    private static void discard(IOException failure, Path... paths) {
+        for (Path path : paths) {
+            try {
+                deleteTree(path);
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    // Sorted, as avdmanager writes it
+    static Map<String, String> config(InstalledImage image, DeviceDefinition device) {
+        Map<String, String> config = new TreeMap<>(device.hardwareProperties());
+        boolean playStore = image.tag.contains("playstore");
+        config.put("PlayStore.enabled", Boolean.toString(playStore && Boolean.parseBoolean(config.get("PlayStore.enabled"))));
+        config.put("abi.type", image.abi);
+        config.put("avd.ini.encoding", "UTF-8");
+        config.put("hw.cpu.arch", cpuArch(image.abi));
+        Path sdkRoot = Paths.get(sdkPath).toAbsolutePath().normalize();
+        config.put("image.sysdir.1", sdkRoot.relativize(image.directory.toAbsolutePath().normalize()) + "/");
+        config.put("tag.display", image.tagDisplay);
+        config.put("tag.id", image.tag);
+        return config;
+    }
+
+    // Sets keys in an existing config.ini line by line, keeping its order and every other line;
+    // keys it does not have yet go at the end
+    static void updateConfig(Path file, Map<String, String> values) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Map<String, String> pending = new LinkedHashMap<>(values);
+        List<String> updated = new ArrayList<>(lines.size() + pending.size());
+        for (String line : lines) {
+            int eq = line.indexOf('=');
+            String key = eq > 0 ? line.substring(0, eq).trim() : "";
+            if (pending.containsKey(key)) {
+                line = key + "=" + pending.remove(key);
+            }
+            updated.add(line);
+        }
+        for (Map.Entry<String, String> entry : pending.entrySet()) {
+            updated.add(entry.getKey() + "=" + entry.getValue());
+        }
+        if (!updated.equals(lines)) {
+            Path temp = file.resolveSibling("." + file.getFileName() + ".tmp");
+            Files.write(temp, updated, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static DeviceDefinition findDevice(String deviceId) {
+        awaitDeviceDefinitions();
+        for (DeviceDefinition device : DEVICE_DEFINITIONS) {
+            if (device.id.equals(deviceId)) {
+                return device;
+            }
+        }
+        return null;
+    }
+
+    private static String cpuArch(String abi) {
+        switch (abi) {
+            case "arm64-v8a":
+                return "arm64";
+            case "armeabi-v7a":
+            case "armeabi":
+                return "arm";
+            default:
+                return abi;
+        }
+    }
+
+    private static void writeIni(Path file, Map<String, String> values) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,44 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Waits for sys.boot_completed over the adb wire protocol, backing off exponentially between
+// polls. Without adb it falls back to the emulator console, which only proves the VM is up.
+public final class BootProbe {
+    private static final long INITIAL_DELAY_MILLIS = 250;
+    private static final long MAX_DELAY_MILLIS = 5000;
+
+    public static String waitForBoot(Process process, int consolePort, long deadline) {
+        String serial = "emulator-" + consolePort;
+        boolean useAdb = AdbClient.isAvailable();
+        long delay = INITIAL_DELAY_MILLIS;
+
+        while (System.nanoTime() < deadline) {
+            if (process != null && !process.isAlive()) {
+                return "EXITED";
+            }
+            if (useAdb) {
+                try {
+                    if ("1".equals(AdbClient.shell(serial, "getprop sys.boot_completed").trim())) {
+                        return "READY";
+                    }
+                } catch (IOException e) {
+                    // Device not registered with adb yet
+                }
+            } else if (EmulatorConsole.isRunning(consolePort)) {
+                return "CONSOLE";
+            }
+
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            try {
+                Thread.sleep(Math.max(1, Math.min(delay, remainingMillis)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "CANCELLED";
+            }
+            delay = Math.min(delay * 2, MAX_DELAY_MILLIS);
+        }
+        return "TIMEOUT";
+    }
+}
@@ -0,0 +1,337 @@
+package org.jimedrand.avidia.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Android version and device catalogs, loaded from the on-disk caches in the background
+public final class Catalogs {
+    // Replaced as a whole when a catalog is (re)loaded, so readers never see a half-filled map
+    public static volatile Map<String, String> ANDROID_VERSIONS = new LinkedHashMap<>();
+    // Every package sdkmanager reported at the last refresh; empty until one has run
+    public static volatile PackageIndex PACKAGE_INDEX = PackageIndex.empty();
+
+    public static final String[] ABI_TYPES = {
+        "x86_64 (Intel/AMD 64-bit, recommended)",
+        "x86 (Intel/AMD 32-bit)",
+        "arm64-v8a (ARM 64-bit, slower emulation)"
+    };
+
+    public static final String[][] IMAGE_TYPES = {
+        {"google_apis_playstore", "Google Play Store (Recommended for app testing)"},
+        {"google_apis", "Google APIs (No Play Store, with Google Services)"},
+        {"android", "AOSP (Android Open Source Project, no Google services)"}
+    };
+
+    static volatile List<DeviceDefinition> DEVICE_DEFINITIONS = new ArrayList<>();
+    static ExecutorService catalogLoader;
+    static CompletableFuture<Void> androidVersionsLoad;
+    static CompletableFuture<Void> deviceDefinitionsLoad;
+    public static final String CATALOG_CACHE_FILE = "packages.tsv";
+    static final String CATALOG_LOCK_FILE = "catalog.lock";
+    private static final Duration SDKMANAGER_LIST_TIMEOUT = Duration.ofMinutes(5);
+    // The full list is a few hundred KB; a cut-off list would drop packages silently
+    private static final long SDKMANAGER_LIST_MAX_OUTPUT = 16 * 1024 * 1024;
+
+    // Starts loading in the background; awaitAndroidVersions() resolves it at first use
+    public static synchronized CompletableFuture<Void> prefetchAndroidVersions() {
+        if (androidVersionsLoad == null) {
+            androidVersionsLoad = CompletableFuture.runAsync(Catalogs::loadAndroidVersions, catalogLoader());
+        }
+        return androidVersionsLoad;
+    }
+
+    public static synchronized CompletableFuture<Void> prefetchDeviceDefinitions() {
+        if (deviceDefinitionsLoad == null) {
+            deviceDefinitionsLoad = CompletableFuture.runAsync(Catalogs::loadDeviceDefinitions, catalogLoader());
+        }
+        return deviceDefinitionsLoad;
+    }
+
+    public static void awaitAndroidVersions() {
+        prefetchAndroidVersions().join();
+    }
+
+    public static void awaitDeviceDefinitions() {
+        prefetchDeviceDefinitions().join();
+    }
+
+    static synchronized ExecutorService catalogLoader() {
+        if (catalogLoader == null) {
+            catalogLoader = Executors.newFixedThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable, "avidia-catalog-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return catalogLoader;
+    }
+
+    static void loadAndroidVersions() {
+        Path cacheFile = Paths.get(avidiaHome, "cache", CATALOG_CACHE_FILE);
+        PackageIndex index = PackageIndex.read(cacheFile);
+        if (index != null && index.hasSystemImages()) {
+            PACKAGE_INDEX = index;
+            ANDROID_VERSIONS = index.androidVersions();
+            if (isCatalogStale(cacheFile)) {
+                refreshCatalogInBackground();
+            }
+            return;
+        }
+
+        // Nothing cached yet: never block on sdkmanager, use the defaults until the refresh lands
+        Map<String, String> versions = new LinkedHashMap<>();
+        setDefaultAndroidVersions(versions);
+        ANDROID_VERSIONS = versions;
+        refreshCatalogInBackground();
+    }
+
+    // The package index once the background load has finished; empty without a cached catalog
+    public static PackageIndex awaitPackageIndex() {
+        awaitAndroidVersions();
+        return PACKAGE_INDEX;
+    }
+
+    // Drops the loaded catalogs; the next await reloads them. Used by the daemon when the
+    // cache on disk changes underneath it.
+    public static synchronized void invalidateCatalogs() {
+        androidVersionsLoad = null;
+        deviceDefinitionsLoad = null;
+    }
+
+    // Runs sdkmanager --list and replaces the on-disk catalog; used by `avidia refresh-catalog`
+    public static boolean refreshCatalog(boolean quiet) {
+        Path cacheDir = Paths.get(avidiaHome, "cache");
+        Path lockFile = cacheDir.resolve(CATALOG_LOCK_FILE);
+
+        try {
+            Files.createDirectories(cacheDir);
+        } catch (IOException e) {
+            System.err.println(RED + "Cannot create cache directory: " + e.getMessage() + RESET);
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock == null) {
+                if (!quiet) {
+                    System.out.println(YELLOW + "Another catalog refresh is already running" + RESET);
+                }
+                return false;
+            }
+
+            PackageIndex index = fetchPackageIndex(quiet);
+            if (index == null) {
+                if (!quiet) {
+                    System.err.println(RED + "Failed to read the package catalog" + RESET);
+                }
+                return false;
+            }
+
+            index.write(cacheDir.resolve(CATALOG_CACHE_FILE));
+            PACKAGE_INDEX = index;
+            ANDROID_VERSIONS = index.androidVersions();
+            if (!quiet) {
+                System.out.println(GREEN + "✓ Catalog refreshed: " + index.size() + " package(s), "
+                    + index.apiLevels().size() + " Android version(s)" + RESET);
+            }
+            return true;
+        } catch (IOException e) {
+            if (!quiet) {
+                System.err.println(RED + "Failed to refresh catalog: " + e.getMessage() + RESET);
+            }
+            return false;
+        }
+    }
+
+    // Spawns a detached `avidia refresh-catalog --background` so the current command never waits
+    static void refreshCatalogInBackground() {
+        boolean sdkmanagerOnly = getConfig().getOrDefault("cache.catalog_source", "auto").equals("sdkmanager");
+        if (sdkmanagerOnly && (sdkPath == null || !new File(sdkPath + "/cmdline-tools/latest/bin/sdkmanager").exists())) {
+            return;
+        }
+
+        Path cacheDir = Paths.get(avidiaHome, "cache");
+        Path lockFile = cacheDir.resolve(CATALOG_LOCK_FILE);
+        try {
+            // A refresh started in the last few minutes is either running or has just failed
+            if (Files.exists(lockFile)
+                    && System.currentTimeMillis() - Files.getLastModifiedTime(lockFile).toMillis() < 10 * 60 * 1000L) {
+                return;
+            }
+            Files.createDirectories(cacheDir);
+            Files.write(lockFile, new byte[0]);
+
+            ProcessBuilder pb = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Duser.home=" + homeDir,
+                "-cp", System.getProperty("java.class.path"),
+                MAIN_CLASS,
+                "refresh-catalog", "--background"
+            );
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.appendTo(cacheDir.resolve("catalog-refresh.log").toFile()));
+            pb.start().getOutputStream().close();
+        } catch (IOException e) {
+            // The stale or default catalog is still usable
+        }
+    }
+
+    static boolean isCatalogStale(Path cacheFile) {
+        long ttlHours = getConfigLong("cache.catalog_ttl_hours", 24);
+        try {
+            long age = System.currentTimeMillis() - Files.getLastModifiedTime(cacheFile).toMillis();
+            return age > TimeUnit.HOURS.toMillis(ttlHours);
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    // Where fetchPackageIndex goes first, for progress messages
+    public static String catalogSourceName() {
+        String source = getConfig().getOrDefault("cache.catalog_source", "auto");
+        return source.equals("sdkmanager") ? "sdkmanager" : RepositoryReader.configuredUrl();
+    }
+
+    // Reads the repository manifests directly unless cache.catalog_source says otherwise;
+    // sdkmanager is the fallback when the repository cannot be read
+    static PackageIndex fetchPackageIndex(boolean quiet) {
+        String source = getConfig().getOrDefault("cache.catalog_source", "auto");
+        if (!source.equals("sdkmanager")) {
+            PackageIndex index = readRepository(quiet);
+            if (index != null || source.equals("repository")) {
+                return index;
+            }
+        }
+        return runSdkmanagerList();
+    }
+
+    static PackageIndex readRepository(boolean quiet) {
+        RepositoryReader reader = new RepositoryReader(RepositoryReader.configuredUrl(),
+            Paths.get(avidiaHome, "cache", "repository"));
+        try {
+            Map<String, RemotePackage> remote = reader.read();
+            Map<String, String> installed = new LinkedHashMap<>();
+            if (sdkPath != null) {
+                for (InstalledImage image : getInstalledImages().images().values()) {
+                    if (image.revision != null) {
+                        installed.put(image.packagePath, image.revision);
+                    }
+                }
+            }
+            PackageIndex index = PackageIndex.fromRepository(installed, remote.values());
+            if (!quiet) {
+                System.out.println("Read " + reader.baseUrl()
+                    + (reader.unchanged() > 0 ? " (" + reader.unchanged() + " manifest(s) unchanged)" : ""));
+            }
+            return index.hasSystemImages() ? index : null;
+        } catch (IOException e) {
+            if (!quiet) {
+                System.out.println(YELLOW + "Cannot read the repository at " + reader.baseUrl() + ": "
+                    + e.getMessage() + RESET);
+            }
+            return null;
+        }
+    }
+
+    // Null when sdkmanager is missing, fails or lists no system images
+    static PackageIndex runSdkmanagerList() {
+        try {
+            if (sdkPath == null || !new File(sdkPath + "/cmdline-tools/latest/bin/sdkmanager").exists()) {
+                return null;
+            }
+            
+            ProcessRunner.Result result = new ProcessRunner(sdkPath + "/cmdline-tools/latest/bin/sdkmanager", "--list")
+                .sdkEnvironment()
+                .timeout(SDKMANAGER_LIST_TIMEOUT)
+                .maxOutput(SDKMANAGER_LIST_MAX_OUTPUT)
+                .run();
+            if (!result.succeeded() || result.truncated) {
+                return null;
+            }
+            PackageIndex index = PackageIndex.parse(new BufferedReader(new StringReader(result.output)));
+            return index.hasSystemImages() ? index : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    static void setDefaultAndroidVersions(Map<String, String> versions) {
+        versions.put("Android 14 (API 34)", "34");
+        versions.put("Android 13 (API 33)", "33");
+        versions.put("Android 12 (API 32)", "32");
+        versions.put("Android 11 (API 30)", "30");
+        versions.put("Android 10 (API 29)", "29");
+    }
+
+    static void loadDeviceDefinitions() {
+        List<DeviceDefinition> devices = new ArrayList<>();
+        
+        try {
+            if (sdkPath != null) {
+                devices.addAll(new DeviceCatalog(Paths.get(sdkPath),
+                    Paths.get(avidiaHome, "cache", "devices.idx")).load());
+            }
+        } catch (Exception e) {
+            // Fall through to the defaults below
+        }
+        
+        if (devices.isEmpty()) {
+            setDefaultDeviceDefinitions(devices);
+        }
+        DEVICE_DEFINITIONS = devices;
+    }
+
+    static void setDefaultDeviceDefinitions(List<DeviceDefinition> devices) {
+        String[][] defaults = {
+            {"pixel_7", "Google Pixel 7"},
+            {"pixel_6", "Google Pixel 6"},
+            {"pixel_5", "Google Pixel 5 (Recommended)"},
+            {"pixel_4", "Google Pixel 4"},
+            {"Nexus_6P", "Nexus 6P"},
+            {"Nexus_5X", "Nexus 5X"},
+            {"Nexus_5", "Nexus 5"}
+        };
+        for (String[] device : defaults) {
+            devices.add(new DeviceDefinition(device[0], device[1], "Google", "",
+                0, 0, 0, 0, 0, "", "default", ""));
+        }
+    }
+
+    // Devices that can run the chosen image: matching tag-id (wear, tv, ...) and ABI hints
+    public static List<DeviceDefinition> devicesFor(String imageTag, String abi) {
+        List<DeviceDefinition> matching = new ArrayList<>();
+        for (DeviceDefinition device : DEVICE_DEFINITIONS) {
+            boolean tagMatches = device.tagId.isEmpty() || device.tagId.equals(imageTag);
+            boolean abiMatches = device.abis.isEmpty() || Arrays.asList(device.abis.split(" ")).contains(abi);
+            if (tagMatches && abiMatches) {
+                matching.add(device);
+            }
+        }
+        return matching.isEmpty() ? new ArrayList<>(DEVICE_DEFINITIONS) : matching;
+    }
+}
@@ -0,0 +1,339 @@
+package org.jimedrand.avidia.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Reads device definitions straight from the devices.xml files avdmanager uses (built into the
+// cmdline-tools jars, shipped with some system images, and ~/.android/devices.xml) and keeps a
+// compact binary index keyed by the sources' size and mtime so later runs skip the XML entirely.
+public final class DeviceCatalog {
+    private static final int INDEX_MAGIC = 0x41564458;
+    private static final int INDEX_VERSION = 2;
+    private static final String BUILT_IN_PREFIX = "com/android/sdklib/devices/";
+
+    private final Path sdkRoot;
+    private final Path indexFile;
+
+    public DeviceCatalog(Path sdkRoot, Path indexFile) {
+        this.sdkRoot = sdkRoot;
+        this.indexFile = indexFile;
+    }
+
+    List<DeviceDefinition> load() throws IOException {
+        List<Path> jars = new ArrayList<>();
+        List<Path> xmlFiles = new ArrayList<>();
+        collectSources(jars, xmlFiles);
+
+        long fingerprint = 17;
+        for (Path source : jars) {
+            fingerprint = fingerprint * 31 + fileStamp(source);
+        }
+        for (Path source : xmlFiles) {
+            fingerprint = fingerprint * 31 + fileStamp(source);
+        }
+
+        List<DeviceDefinition> cached = readIndex(fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+
+        Map<String, DeviceDefinition> devices = new LinkedHashMap<>();
+        for (Path jar : jars) {
+            try (ZipFile zip = new ZipFile(jar.toFile())) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String entryName = entry.getName();
+                    if (entryName.startsWith(BUILT_IN_PREFIX) && entryName.endsWith(".xml")
+                            && entryName.indexOf('/', BUILT_IN_PREFIX.length()) < 0) {
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            parse(in, "built-in", devices);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // Not a readable jar; skip it
+            }
+        }
+        for (Path xml : xmlFiles) {
+            try (InputStream in = Files.newInputStream(xml)) {
+                parse(in, xml.startsWith(sdkRoot) ? "image" : "user", devices);
+            } catch (IOException e) {
+                // Broken user file should not hide the built-in devices
+            }
+        }
+
+        List<DeviceDefinition> result = new ArrayList<>(devices.values());
+        if (!result.isEmpty()) {
+            writeIndex(fingerprint, result);
+        }
+        return result;
+    }
+
+    private void collectSources(List<Path> jars, List<Path> xmlFiles) throws IOException {
+        Path lib = sdkRoot.resolve("cmdline-tools/latest/lib");
+        if (Files.isDirectory(lib)) {
+            try (Stream<Path> walk = Files.walk(lib, 3)) {
+                walk.filter(path -> path.toString().endsWith(".jar")).sorted().forEach(jars::add);
+            }
+        }
+
+        for (InstalledImage image : getInstalledImages().images().values()) {
+            Path imageDevices = image.directory.resolve("devices.xml");
+            if (Files.isRegularFile(imageDevices)) {
+                xmlFiles.add(imageDevices);
+            }
+        }
+
+        String userHome = getenv("ANDROID_USER_HOME");
+        Path userDevices = userHome != null && !userHome.isEmpty()
+            ? Paths.get(userHome, "devices.xml")
+            : Paths.get(homeDir, ".android", "devices.xml");
+        if (Files.isRegularFile(userDevices)) {
+            xmlFiles.add(userDevices);
+        }
+    }
+
+    private static long fileStamp(Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return attrs.lastModifiedTime().toMillis() * 31 + attrs.size() + file.toString().hashCode();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Streaming parse of <d:devices>; later files override earlier ones with the same id
+    public static void parse(InputStream in, String source, Map<String, DeviceDefinition> devices) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            List<String> path = new ArrayList<>();
+            Map<String, String> fields = null;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    path.add(name);
+                    if (name.equals("device") && path.size() == 2) {
+                        fields = new HashMap<>();
+                    } else if (fields != null && name.equals("ram") && path.size() == 4) {
+                        String unit = reader.getAttributeValue(null, "unit");
+                        fields.put("ram-unit", unit != null ? unit : "MiB");
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS && fields != null && path.size() > 2) {
+                    String key = String.join("/", path.subList(2, path.size()));
+                    fields.merge(key, reader.getText(), String::concat);
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (fields != null && path.size() == 2) {
+                        DeviceDefinition device = toDevice(fields, source);
+                        if (device != null) {
+                            devices.put(device.id, device);
+                        }
+                        fields = null;
+                    }
+                    path.remove(path.size() - 1);
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid devices.xml: " + e.getMessage(), e);
+        }
+    }
+
+    private static DeviceDefinition toDevice(Map<String, String> fields, String source) {
+        String id = field(fields, "id");
+        String name = field(fields, "name");
+        if (id.isEmpty() || name.isEmpty()) {
+            return null;
+        }
+        return new DeviceDefinition(
+            id,
+            name,
+            field(fields, "manufacturer"),
+            field(fields, "tag-id"),
+            parseDouble(field(fields, "hardware/screen/diagonal-length")),
+            parseInt(field(fields, "hardware/screen/dimensions/x-dimension")),
+            parseInt(field(fields, "hardware/screen/dimensions/y-dimension")),
+            parseDensity(field(fields, "hardware/screen/pixel-density")),
+            parseRamMb(field(fields, "hardware/ram"), fields.get("ram-unit")),
+            String.join(" ", field(fields, "hardware/abi").split("\\s+")).trim(),
+            source,
+            hardwareConfig(fields, id)
+        );
+    }
+
+    // What sdklib's DeviceManager.getHardwareProperties() puts in config.ini, except the
+    // hw.device.hash2 digest of its own Device.toString(), which only Android Studio compares.
+    // PlayStore.enabled is the device's side only; the image has to carry Play too.
+    private static String hardwareConfig(Map<String, String> fields, String id) {
+        if (field(fields, "hardware/screen/dimensions/x-dimension").isEmpty()) {
+            return "";
+        }
+        Set<String> sensors = new HashSet<>();
+        for (String sensor : field(fields, "hardware/sensors").split("\\s+")) {
+            sensors.add(sensor.toLowerCase(Locale.ROOT));
+        }
+        String nav = field(fields, "hardware/nav");
+        String storage = field(fields, "hardware/removable-storage");
+
+        Map<String, String> config = new TreeMap<>();
+        config.put("PlayStore.enabled", Boolean.toString(field(fields, "playstore-enabled").equals("true")));
+        config.put("hw.accelerometer", yesNo(sensors.contains("accelerometer")));
+        config.put("hw.audioInput", yesNo(field(fields, "hardware/mic").equals("true")));
+        config.put("hw.battery", yesNo(field(fields, "hardware/power-type").equals("battery")));
+        config.put("hw.dPad", yesNo(nav.equals("dpad")));
+        config.put("hw.device.manufacturer", field(fields, "manufacturer"));
+        config.put("hw.device.name", id);
+        config.put("hw.gps", yesNo(sensors.contains("gps")));
+        config.put("hw.keyboard", yesNo(field(fields, "hardware/keyboard").equals("qwerty")));
+        if (field(fields, "state/keyboard-state").contains("keyshidden")) {
+            config.put("hw.keyboard.lid", "yes");
+        }
+        config.put("hw.lcd.density", Integer.toString(parseDensity(field(fields, "hardware/screen/pixel-density"))));
+        config.put("hw.lcd.height", field(fields, "hardware/screen/dimensions/y-dimension"));
+        config.put("hw.lcd.width", field(fields, "hardware/screen/dimensions/x-dimension"));
+        config.put("hw.mainKeys", yesNo(field(fields, "hardware/buttons").equals("hard")));
+        config.put("hw.sdCard", yesNo(parseDouble(storage) > 0));
+        config.put("hw.sensors.orientation", yesNo(sensors.contains("gyroscope")));
+        config.put("hw.sensors.proximity", yesNo(sensors.contains("proximitysensor")));
+        config.put("hw.trackBall", yesNo(nav.equals("trackball")));
+
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, String> entry : config.entrySet()) {
+            out.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String yesNo(boolean value) {
+        return value ? "yes" : "no";
+    }
+
+    private static String field(Map<String, String> fields, String key) {
+        String value = fields.get(key);
+        return value == null ? "" : value.trim();
+    }
+
+    private static int parseDensity(String value) {
+        switch (value) {
+            case "ldpi": return 120;
+            case "mdpi": return 160;
+            case "tvdpi": return 213;
+            case "hdpi": return 240;
+            case "xhdpi": return 320;
+            case "xxhdpi": return 480;
+            case "xxxhdpi": return 640;
+            default: return parseInt(value.replace("dpi", ""));
+        }
+    }
+
+    private static int parseRamMb(String value, String unit) {
+        long amount = parseInt(value);
+        switch (unit == null ? "MiB" : unit) {
+            case "B": return (int) (amount >> 20);
+            case "KiB": return (int) (amount >> 10);
+            case "GiB": return (int) (amount << 10);
+            case "TiB": return (int) (amount << 20);
+            default: return (int) amount;
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private List<DeviceDefinition> readIndex(long fingerprint) {
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION || in.readLong() != fingerprint) {
+                return null;
+            }
+            int count = in.readInt();
+            List<DeviceDefinition> devices = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                devices.add(new DeviceDefinition(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+                    in.readDouble(), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                    in.readUTF(), in.readUTF(), in.readUTF()));
+            }
+            return devices;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeIndex(long fingerprint, List<DeviceDefinition> devices) {
+        try {
+            Files.createDirectories(indexFile.getParent());
+            Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeLong(fingerprint);
+                out.writeInt(devices.size());
+                for (DeviceDefinition device : devices) {
+                    out.writeUTF(device.id);
+                    out.writeUTF(device.name);
+                    out.writeUTF(device.manufacturer);
+                    out.writeUTF(device.tagId);
+                    out.writeDouble(device.diagonalInches);
+                    out.writeInt(device.widthPx);
+                    out.writeInt(device.heightPx);
+                    out.writeInt(device.densityDpi);
+                    out.writeInt(device.ramMb);
+                    out.writeUTF(device.abis);
+                    out.writeUTF(device.source);
+                    out.writeUTF(device.hardwareConfig);
+                }
+            }
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The index is only an accelerator
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.jimedrand.avidia.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class DeviceDefinition {
+    public final String id;
+    final String name;
+    final String manufacturer;
+    final String tagId;
+    final double diagonalInches;
+    final int widthPx;
+    final int heightPx;
+    final int densityDpi;
+    final int ramMb;
+    final String abis;
+    final String source;
+    // The config.ini hardware entries avdmanager derives from the definition, one "key=value"
+    // per line; empty for the built-in fallbacks, which have no hardware section
+    final String hardwareConfig;
+
+    DeviceDefinition(String id, String name, String manufacturer, String tagId, double diagonalInches,
+                     int widthPx, int heightPx, int densityDpi, int ramMb, String abis, String source,
+                     String hardwareConfig) {
+        this.id = id;
+        this.name = name;
+        this.manufacturer = manufacturer;
+        this.tagId = tagId;
+        this.diagonalInches = diagonalInches;
+        this.widthPx = widthPx;
+        this.heightPx = heightPx;
+        this.densityDpi = densityDpi;
+        this.ramMb = ramMb;
+        this.abis = abis;
+        this.source = source;
+        this.hardwareConfig = hardwareConfig;
+    }
+
+    Map<String, String> hardwareProperties() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (String line : hardwareConfig.split("\n")) {
+            int eq = line.indexOf('=');
+            if (eq > 0) {
+                properties.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+        }
+        return properties;
+    }
+
+    public String label() {
+        if (widthPx == 0 || heightPx == 0) {
+            return name;
+        }
+        return String.format("%s (%.1f\", %dx%d, %ddpi)", name, diagonalInches, widthPx, heightPx, densityDpi);
+    }
+}
@@ -0,0 +1,360 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Fetches one archive into <target>.part over parallel HTTP range requests. Segment progress is
+// kept in <target>.part.state, so an interrupted download resumes where each segment stopped.
+// The checksum follows the contiguous downloaded prefix while the segments are still running,
+// so it is ready as soon as the last byte lands instead of needing a pass over the finished file.
+public final class Downloader {
+    public interface Listener {
+        void progress(long bytes, long total);
+    }
+
+    // Smaller files are not worth more than one connection
+    static final long MIN_SEGMENT = 8L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HASH_BUFFER_SIZE = 1024 * 1024;
+    private static final int RETRIES = 3;
+    private static final long STATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final HttpClient client;
+    private final int connections;
+    private final TokenBucket bucket;
+    private final Listener listener;
+    private volatile boolean cancelled;
+
+    public Downloader(int connections, long bytesPerSecond, Listener listener) {
+        this.client = RepositoryReader.newHttpClient(Duration.ofSeconds(getConfigLong("network.timeout", 30)));
+        this.connections = Math.max(1, connections);
+        this.bucket = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond) : null;
+        this.listener = listener;
+    }
+
+    // Connections and rate cap from [network] download_connections and max_download_rate
+    public static Downloader configured(Listener listener) {
+        return new Downloader((int) getConfigLong("network.download_connections", 4),
+            TokenBucket.parseRate(getConfig().getOrDefault("network.max_download_rate", "")), listener);
+    }
+
+    // Stops the running download; it fails with "cancelled" and keeps its partial file
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // Downloads url to target, checking the checksum unless it is null. The file only appears
+    // under target once it is complete and verified.
+    public void download(URI url, long size, String checksum, String checksumType, Path target)
+            throws IOException, InterruptedException {
+        MessageDigest digest = checksum == null ? null : newDigest(checksumType);
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        Path stateFile = target.resolveSibling(target.getFileName() + ".part.state");
+
+        long[][] segments = readState(stateFile, url, size, part);
+        if (segments == null) {
+            int count = 1;
+            if (size >= 2 * MIN_SEGMENT && connections > 1 && supportsRanges(url)) {
+                count = (int) Math.min(connections, size / MIN_SEGMENT);
+            }
+            segments = split(size, count);
+            Files.deleteIfExists(part);
+        }
+        AtomicLongArray done = new AtomicLongArray(segments.length);
+        for (int i = 0; i < segments.length; i++) {
+            done.set(i, segments[i][2]);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(segments.length, runnable -> {
+            Thread thread = new Thread(runnable, "avidia-download");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < segments.length; i++) {
+                int index = i;
+                long[][] all = segments;
+                workers.add(pool.submit(() -> {
+                    fetchSegment(url, all, index, done, channel);
+                    return null;
+                }));
+            }
+
+            long hashed = 0;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+            long lastState = System.nanoTime();
+            long lastProgress = 0;
+            while (true) {
+                long frontier = frontier(segments, done);
+                if (digest != null && frontier > hashed) {
+                    // Just written, so this reads from the page cache, not the disk
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), frontier - hashed));
+                    int read = channel.read(buffer, hashed);
+                    buffer.flip();
+                    digest.update(buffer);
+                    hashed += read;
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                if (now - lastState > STATE_INTERVAL_NANOS) {
+                    writeState(stateFile, url, size, segments, done);
+                    lastState = now;
+                }
+                if (listener != null && now - lastProgress > PROGRESS_INTERVAL_NANOS) {
+                    listener.progress(total(done), size);
+                    lastProgress = now;
+                }
+
+                if (workers.stream().allMatch(Future::isDone)) {
+                    for (Future<?> worker : workers) {
+                        worker.get();
+                    }
+                    if (digest == null || frontier == hashed) {
+                        break;
+                    }
+                    continue;
+                }
+                Thread.sleep(10);
+            }
+            if (listener != null) {
+                listener.progress(total(done), size);
+            }
+            if (size > 0 && channel.size() != size) {
+                throw new IOException("downloaded " + channel.size() + " bytes, expected " + size);
+            }
+        } catch (ExecutionException e) {
+            cancelled = true;
+            writeState(stateFile, url, size, segments, done);
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause.toString(), cause);
+        } catch (InterruptedException | IOException e) {
+            cancelled = true;
+            writeState(stateFile, url, size, segments, done);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (digest != null) {
+            String actual = hex(digest.digest());
+            if (!actual.equalsIgnoreCase(checksum)) {
+                // A corrupt part cannot be resumed into a good file
+                Files.deleteIfExists(part);
+                Files.deleteIfExists(stateFile);
+                throw new IOException(checksumType + " mismatch for " + url + ": expected " + checksum + ", got " + actual);
+            }
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(stateFile);
+    }
+
+    // Streams one segment into place, reconnecting from where it stopped on I/O errors
+    private void fetchSegment(URI url, long[][] segments, int index, AtomicLongArray done, FileChannel channel)
+            throws IOException, InterruptedException {
+        long start = segments[index][0];
+        long end = segments[index][1];
+        int attempt = 0;
+        while (true) {
+            long offset = start + done.get(index);
+            if (end >= 0 && offset >= end) {
+                return;
+            }
+            HttpRequest.Builder request = HttpRequest.newBuilder(url).header("User-Agent", "avidia");
+            if (offset > 0 || segments.length > 1) {
+                request.header("Range", "bytes=" + offset + "-" + (end >= 0 ? end - 1 : ""));
+            }
+            try {
+                HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+                int status = response.statusCode();
+                if (status == 200 && offset > 0) {
+                    if (segments.length > 1) {
+                        response.body().close();
+                        throw new IOException("server ignored the range request for " + url);
+                    }
+                    // A single stream can simply start over
+                    done.set(index, 0);
+                    offset = start;
+                } else if (status != 200 && status != 206) {
+                    response.body().close();
+                    throw new IOException("HTTP " + status + " for " + url);
+                }
+
+                try (InputStream in = response.body()) {
+                    byte[] bytes = new byte[BUFFER_SIZE];
+                    ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+                    int read;
+                    while ((read = in.read(bytes)) > 0) {
+                        if (cancelled) {
+                            throw new IOException("cancelled");
+                        }
+                        if (end >= 0) {
+                            read = (int) Math.min(read, end - offset);
+                        }
+                        if (bucket != null) {
+                            bucket.acquire(read);
+                        }
+                        wrapped.clear();
+                        wrapped.limit(read);
+                        while (wrapped.hasRemaining()) {
+                            offset += channel.write(wrapped, offset);
+                        }
+                        // Counted only once written, so the state file never claims unwritten bytes
+                        done.addAndGet(index, read);
+                        if (end >= 0 && offset >= end) {
+                            break;
+                        }
+                    }
+                }
+                if (end < 0 || offset >= end) {
+                    return;
+                }
+                throw new IOException("connection closed " + (end - offset) + " bytes early");
+            } catch (IOException e) {
+                if (cancelled || ++attempt > RETRIES) {
+                    throw e;
+                }
+                Thread.sleep(500L * attempt);
+            }
+        }
+    }
+
+    private boolean supportsRanges(URI url) {
+        try {
+            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(url)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .header("User-Agent", "avidia")
+                .build(), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200
+                && response.headers().firstValue("Accept-Ranges").map(value -> value.contains("bytes")).orElse(false);
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Equal [start, end, done] slices; end is -1 when the size is unknown
+    private static long[][] split(long size, int count) {
+        long[][] segments = new long[count][];
+        for (int i = 0; i < count; i++) {
+            long start = size > 0 ? size * i / count : 0;
+            long end = size > 0 ? size * (i + 1) / count : -1;
+            segments[i] = new long[] {start, end, 0};
+        }
+        return segments;
+    }
+
+    // End of the prefix every segment has filled in
+    private static long frontier(long[][] segments, AtomicLongArray done) {
+        for (int i = 0; i < segments.length; i++) {
+            long reached = segments[i][0] + done.get(i);
+            if (segments[i][1] < 0 || reached < segments[i][1]) {
+                return reached;
+            }
+        }
+        return segments[segments.length - 1][1];
+    }
+
+    private static long total(AtomicLongArray done) {
+        long sum = 0;
+        for (int i = 0; i < done.length(); i++) {
+            sum += done.get(i);
+        }
+        return sum;
+    }
+
+    // "url <url>", "size <bytes>", then one "start end done" line per segment
+    private static void writeState(Path stateFile, URI url, long size, long[][] segments, AtomicLongArray done) {
+        StringBuilder state = new StringBuilder();
+        state.append("url ").append(url).append('\n');
+        state.append("size ").append(size).append('\n');
+        for (int i = 0; i < segments.length; i++) {
+            state.append(segments[i][0]).append(' ').append(segments[i][1]).append(' ').append(done.get(i)).append('\n');
+        }
+        try {
+            Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            Files.write(temp, state.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Without a state file the next attempt starts over, which is still correct
+        }
+    }
+
+    // Segments to resume, or null when there is nothing usable for this URL and size
+    private static long[][] readState(Path stateFile, URI url, long size, Path part) {
+        if (!Files.isRegularFile(stateFile) || !Files.isRegularFile(part)) {
+            return null;
+        }
+        try {
+            List<String> lines = Files.readAllLines(stateFile, StandardCharsets.UTF_8);
+            if (lines.size() < 3 || !lines.get(0).equals("url " + url) || !lines.get(1).equals("size " + size)) {
+                return null;
+            }
+            long[][] segments = new long[lines.size() - 2][];
+            for (int i = 2; i < lines.size(); i++) {
+                String[] fields = lines.get(i).split(" ");
+                segments[i - 2] = new long[] {Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])};
+            }
+            return segments;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static MessageDigest newDigest(String checksumType) throws IOException {
+        String type = checksumType == null ? "sha1" : checksumType.toLowerCase(Locale.ROOT);
+        try {
+            switch (type) {
+                case "sha1":
+                case "sha-1":
+                    return MessageDigest.getInstance("SHA-1");
+                case "sha256":
+                case "sha-256":
+                    return MessageDigest.getInstance("SHA-256");
+                default:
+                    throw new IOException("unsupported checksum type " + checksumType);
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder text = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            text.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package org.jimedrand.avidia.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Text protocol spoken by the emulator on its console port (what `telnet localhost 5554` shows)
+public final class EmulatorConsole implements AutoCloseable {
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final OutputStream out;
+
+    public EmulatorConsole(int consolePort) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), consolePort);
+        try {
+            socket.setSoTimeout(10000);
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = socket.getOutputStream();
+
+            List<String> banner = readReply();
+            boolean authRequired = banner.stream().anyMatch(line -> line.contains("Authentication required"));
+            if (authRequired) {
+                Path tokenFile = Paths.get(homeDir, ".emulator_console_auth_token");
+                String token = Files.exists(tokenFile)
+                    ? new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8).trim()
+                    : "";
+                command("auth " + token);
+            }
+        } catch (IOException | RuntimeException e) {
+            // The boot probe retries through here; a console that never answers must not leak its socket
+            try {
+                socket.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw e;
+        }
+    }
+
+    public void setTimeout(int millis) throws IOException {
+        socket.setSoTimeout(millis);
+    }
+
+    static boolean isRunning(int consolePort) {
+        try (EmulatorConsole console = new EmulatorConsole(consolePort)) {
+            return console.command("avd status").stream().anyMatch(line -> line.contains("running"));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Sends one command and returns its output lines; a KO reply becomes an IOException
+    public List<String> command(String command) throws IOException {
+        out.write((command + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        return readReply();
+    }
+
+    private List<String> readReply() throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.equals("OK")) {
+                return lines;
+            }
+            if (line.startsWith("KO")) {
+                throw new IOException(line.length() > 3 ? line.substring(3).trim() : "command failed");
+            }
+            lines.add(line);
+        }
+        throw new IOException("Emulator console closed the connection");
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write("quit\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            // Already gone
+        }
+        socket.close();
+    }
+}
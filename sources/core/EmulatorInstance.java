@@ -0,0 +1,23 @@
+package org.jimedrand.avidia.core;
+
+import java.time.Instant;
+import java.util.List;
+
+public final class EmulatorInstance {
+    final long pid;
+    final long parentPid;
+    final String avdName;
+    public final int consolePort;
+    final Instant startTime;
+    final List<String> arguments;
+
+    EmulatorInstance(long pid, long parentPid, String avdName, int consolePort,
+                     Instant startTime, List<String> arguments) {
+        this.pid = pid;
+        this.parentPid = parentPid;
+        this.avdName = avdName;
+        this.consolePort = consolePort;
+        this.startTime = startTime;
+        this.arguments = arguments;
+    }
+}
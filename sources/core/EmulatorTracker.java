@@ -0,0 +1,202 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Finds running emulators from ProcessHandle + /proc/<pid>/cmdline without forking ps/pgrep.
+// Arguments are matched token by token, so "-avd pixel" never matches "-avd pixel_2".
+public final class EmulatorTracker {
+    private static final Path PROC = Paths.get("/proc");
+
+    public static List<EmulatorInstance> scan() {
+        Map<Long, EmulatorInstance> found = new LinkedHashMap<>();
+        boolean procAvailable = Files.isDirectory(PROC);
+
+        ProcessHandle.allProcesses().forEach(handle -> {
+            EmulatorInstance instance = procAvailable ? fromProc(handle) : fromHandleInfo(handle);
+            if (instance != null) {
+                found.put(instance.pid, instance);
+            }
+        });
+
+        // The emulator launcher spawns qemu with the same -avd argument; report the launcher only
+        List<EmulatorInstance> result = new ArrayList<>();
+        for (EmulatorInstance instance : found.values()) {
+            EmulatorInstance parent = found.get(instance.parentPid);
+            if (parent == null || !parent.avdName.equals(instance.avdName)) {
+                result.add(instance);
+            }
+        }
+        result.sort(Comparator.comparing((EmulatorInstance i) -> i.avdName).thenComparingLong(i -> i.pid));
+        return result;
+    }
+
+    public static List<EmulatorInstance> find(String avdName) {
+        List<EmulatorInstance> matches = new ArrayList<>();
+        for (EmulatorInstance instance : scan()) {
+            if (instance.avdName.equals(avdName)) {
+                matches.add(instance);
+            }
+        }
+        return matches;
+    }
+
+    public static boolean isRunning(String avdName) {
+        return !find(avdName).isEmpty();
+    }
+
+    // SIGTERM the emulator and its children, escalating to SIGKILL after the grace period.
+    // Returns false when the process had to be killed forcibly.
+    static boolean terminate(ProcessHandle handle, int graceSeconds) throws InterruptedException {
+        List<ProcessHandle> descendants = new ArrayList<>();
+        handle.descendants().forEach(descendants::add);
+
+        handle.destroy();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(graceSeconds);
+        while (!hasExited(handle)) {
+            if (System.nanoTime() > deadline) {
+                handle.destroyForcibly();
+                descendants.forEach(ProcessHandle::destroyForcibly);
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        descendants.forEach(ProcessHandle::destroy);
+        return true;
+    }
+
+    // A detached emulator is reparented to init, and a zombie stays "alive" until init reaps
+    // it; containers whose init never reaps would otherwise always hit the grace timeout
+    private static boolean hasExited(ProcessHandle handle) {
+        if (!handle.isAlive()) {
+            return true;
+        }
+        try {
+            String stat = new String(Files.readAllBytes(PROC.resolve(handle.pid() + "/stat")), StandardCharsets.UTF_8);
+            int end = stat.lastIndexOf(')');
+            return end > 0 && end + 2 < stat.length() && stat.charAt(end + 2) == 'Z';
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static EmulatorInstance fromProc(ProcessHandle handle) {
+        Path procDir = PROC.resolve(Long.toString(handle.pid()));
+        try {
+            // comm is tiny and lets us skip reading cmdline for unrelated processes
+            String comm = new String(Files.readAllBytes(procDir.resolve("comm")), StandardCharsets.UTF_8).trim();
+            if (!isEmulatorBinary(comm)) {
+                return null;
+            }
+            List<String> argv = parseCmdline(Files.readAllBytes(procDir.resolve("cmdline")));
+            return fromArguments(handle, argv);
+        } catch (IOException e) {
+            // Process exited or belongs to another user
+            return null;
+        }
+    }
+
+    private static EmulatorInstance fromHandleInfo(ProcessHandle handle) {
+        ProcessHandle.Info info = handle.info();
+        if (!info.command().isPresent() || !info.arguments().isPresent()) {
+            return null;
+        }
+        String command = info.command().get();
+        if (!isEmulatorBinary(Paths.get(command).getFileName().toString())) {
+            return null;
+        }
+        List<String> argv = new ArrayList<>();
+        argv.add(command);
+        argv.addAll(Arrays.asList(info.arguments().get()));
+        return fromArguments(handle, argv);
+    }
+
+    private static boolean isEmulatorBinary(String name) {
+        return name.startsWith("emulator") || name.startsWith("qemu-system");
+    }
+
+    public static List<String> parseCmdline(byte[] raw) {
+        List<String> argv = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < raw.length; i++) {
+            if (raw[i] == 0) {
+                argv.add(new String(raw, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        if (start < raw.length) {
+            argv.add(new String(raw, start, raw.length - start, StandardCharsets.UTF_8));
+        }
+        return argv;
+    }
+
+    private static EmulatorInstance fromArguments(ProcessHandle handle, List<String> argv) {
+        String avdName = null;
+        int port = 0;
+        for (int i = 1; i < argv.size(); i++) {
+            String arg = argv.get(i);
+            if ((arg.equals("-avd") || arg.equals("--avd")) && i + 1 < argv.size()) {
+                avdName = argv.get(++i);
+            } else if (arg.startsWith("@") && arg.length() > 1 && avdName == null) {
+                avdName = arg.substring(1);
+            } else if (arg.equals("-port") && i + 1 < argv.size()) {
+                port = parsePort(argv.get(++i));
+            } else if (arg.equals("-ports") && i + 1 < argv.size()) {
+                port = parsePort(argv.get(++i).split(",")[0]);
+            }
+        }
+        if (avdName == null) {
+            return null;
+        }
+        if (port == 0) {
+            port = portFromRunningFile(handle.pid());
+        }
+
+        long parentPid = handle.parent().map(ProcessHandle::pid).orElse(-1L);
+        Instant startTime = handle.info().startInstant().orElse(null);
+        return new EmulatorInstance(handle.pid(), parentPid, avdName, port, startTime,
+            Collections.unmodifiableList(argv));
+    }
+
+    private static int parsePort(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Without -port the emulator picks the first free pair from 5554 and records it here
+    private static int portFromRunningFile(long pid) {
+        List<Path> candidates = new ArrayList<>();
+        String runtimeDir = getenv("XDG_RUNTIME_DIR");
+        if (runtimeDir != null && !runtimeDir.isEmpty()) {
+            candidates.add(Paths.get(runtimeDir, "avd", "running", "pid_" + pid + ".ini"));
+        }
+        candidates.add(Paths.get(System.getProperty("user.home"), ".android", "avd", "running", "pid_" + pid + ".ini"));
+
+        for (Path candidate : candidates) {
+            if (Files.isRegularFile(candidate)) {
+                String value = readIni(candidate).get("port.serial");
+                if (value != null) {
+                    return parsePort(value);
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,255 @@
+package org.jimedrand.avidia.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Building, launching and stopping emulator processes, and per-AVD snapshot settings
+public final class Emulators {
+    public static void startAVD(String avdName, boolean coldBoot, LaunchProfile profile) {
+        System.out.println(CYAN + "\nStarting virtual device: " + avdName + RESET);
+        System.out.println(YELLOW + "Press Ctrl+C to stop the emulator" + RESET);
+        
+        try {
+            List<String> command = buildEmulatorCommand(avdName, coldBoot, profile);
+            System.out.println(describeBoot(avdName, coldBoot));
+            System.out.println(profile.describe());
+            
+            if (isKvmAvailable()) {
+                System.out.println(GREEN + "KVM acceleration enabled" + RESET);
+            } else {
+                System.out.println(YELLOW + "KVM not available, using software emulation" + RESET);
+            }
+            
+            // In the foreground on this terminal until the user closes it, so not a ProcessRunner job
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.inheritIO();
+            ProcessRunner.putSdkEnvironment(pb.environment());
+            
+            Process process = pb.start();
+            process.waitFor();
+        } catch (Exception e) {
+            System.err.println(RED + "Failed to start virtual device: " + e.getMessage() + RESET);
+            System.out.println(YELLOW + "Press Enter to continue..." + RESET);
+            try {
+                System.in.read();
+            } catch (IOException io) {
+                // Ignore
+            }
+        }
+    }
+
+    // Snapshot a start will boot from: the golden tag, "" for the quickboot snapshot, or null for a cold boot
+    static String bootSnapshot(String avdName, boolean coldBoot) {
+        if (coldBoot) {
+            return null;
+        }
+        String golden = getGoldenSnapshot(avdName);
+        if (golden != null && Files.isDirectory(snapshotDir(avdName, golden))) {
+            return golden;
+        }
+        return "";
+    }
+
+    public static String describeBoot(String avdName, boolean coldBoot) {
+        String snapshot = bootSnapshot(avdName, coldBoot);
+        if (snapshot == null) {
+            return YELLOW + "Cold boot (snapshots ignored)" + RESET;
+        }
+        if (!snapshot.isEmpty()) {
+            return GREEN + "Booting from golden snapshot '" + snapshot + "'" + RESET;
+        }
+        String golden = getGoldenSnapshot(avdName);
+        if (golden != null) {
+            return YELLOW + "Golden snapshot '" + golden + "' is missing, using quickboot" + RESET;
+        }
+        return Files.isDirectory(snapshotDir(avdName, QUICKBOOT_SNAPSHOT))
+            ? GREEN + "Quickboot from the last saved state" + RESET
+            : YELLOW + "No quickboot snapshot yet, this boot will be cold" + RESET;
+    }
+
+    // Boots from the AVD's golden snapshot when one is set, otherwise from the quickboot
+    // snapshot the emulator saves on exit. coldBoot skips both.
+    public static List<String> buildEmulatorCommand(String avdName, boolean coldBoot, LaunchProfile profile) {
+        List<String> command = new ArrayList<>();
+        command.add(sdkPath + "/emulator/emulator");
+        command.add("-avd");
+        command.add(avdName);
+        String snapshot = bootSnapshot(avdName, coldBoot);
+        if (snapshot == null) {
+            command.add("-no-snapshot-load");
+        } else if (!snapshot.isEmpty()) {
+            // Never overwrite the golden image with the state of this run
+            command.add("-snapshot");
+            command.add(snapshot);
+            command.add("-no-snapshot-save");
+        }
+        command.add("-netdelay");
+        command.add("none");
+        command.add("-netspeed");
+        command.add("full");
+        command.add("-no-boot-anim");
+        command.add("-no-audio");
+        profile.addArguments(command);
+        
+        if (isKvmAvailable()) {
+            command.add("-accel");
+            command.add("kvm");
+        }
+        return command;
+    }
+
+    // Launches the emulator in its own session with output going to ~/.avidia/logs/<avd>.log,
+    // so it outlives this process and does not receive the terminal's Ctrl+C
+    public static Process launchDetached(String avdName, int consolePort, boolean coldBoot,
+                                          LaunchProfile profile) throws IOException {
+        Path logDir = Paths.get(avidiaHome, "logs");
+        Files.createDirectories(logDir);
+
+        List<String> command = new ArrayList<>();
+        if (new File("/usr/bin/setsid").canExecute()) {
+            command.add("/usr/bin/setsid");
+        }
+        command.addAll(buildEmulatorCommand(avdName, coldBoot, profile));
+        command.add("-port");
+        command.add(Integer.toString(consolePort));
+
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectErrorStream(true);
+        pb.redirectOutput(ProcessBuilder.Redirect.to(logDir.resolve(avdName + ".log").toFile()));
+        pb.redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")));
+
+        ProcessRunner.putSdkEnvironment(pb.environment());
+        return pb.start();
+    }
+
+    // Console ports come in even/odd pairs (console, adb) between 5554 and 5682
+    public static synchronized int allocateConsolePort(Set<Integer> reserved) {
+        Set<Integer> inUse = new HashSet<>(reserved);
+        for (EmulatorInstance instance : EmulatorTracker.scan()) {
+            inUse.add(instance.consolePort);
+        }
+        for (int port = 5554; port <= 5682; port += 2) {
+            if (!inUse.contains(port) && isPortFree(port) && isPortFree(port + 1)) {
+                reserved.add(port);
+                return port;
+            }
+        }
+        return -1;
+    }
+
+    static boolean isPortFree(int port) {
+        try (ServerSocket socket = new ServerSocket()) {
+            socket.setReuseAddress(false);
+            socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static boolean stopAVD(String avdName) {
+        List<EmulatorInstance> instances = EmulatorTracker.find(avdName);
+        if (instances.isEmpty()) {
+            System.out.println(YELLOW + "No running emulator found for AVD '" + avdName + "'" + RESET);
+            return true;
+        }
+
+        try {
+            for (EmulatorInstance instance : instances) {
+                Optional<ProcessHandle> handle = ProcessHandle.of(instance.pid);
+                if (!handle.isPresent()) {
+                    continue;
+                }
+                if (EmulatorTracker.terminate(handle.get(), 10)) {
+                    System.out.println(GREEN + "Stopped process: " + instance.pid + RESET);
+                } else {
+                    System.out.println(YELLOW + "Force stopped process: " + instance.pid + RESET);
+                }
+            }
+            System.out.println(GREEN + "AVD '" + avdName + "' stopped successfully" + RESET);
+            return true;
+        } catch (Exception e) {
+            System.err.println(RED + "Error stopping AVD: " + e.getMessage() + RESET);
+            return false;
+        }
+    }
+
+    public static List<String> getRunningAVDs() {
+        List<String> avds = new ArrayList<>();
+        for (EmulatorInstance instance : EmulatorTracker.scan()) {
+            String label = instance.avdName + " (PID: " + instance.pid;
+            if (instance.consolePort > 0) {
+                label += ", port: " + instance.consolePort;
+            }
+            avds.add(label + ")");
+        }
+        return avds;
+    }
+
+    public static boolean isAVDRunning(String avdName) {
+        return EmulatorTracker.isRunning(avdName);
+    }
+
+    public static final String QUICKBOOT_SNAPSHOT = "default_boot";
+    static final String AVIDIA_AVD_INI = "avidia.ini";
+    public static final int SNAPSHOT_TIMEOUT_MILLIS = 180000;
+
+    public static Path avdDirectory(String avdName) {
+        AvdInfo info = getInventory().get(avdName);
+        return info != null ? info.avdDir : Paths.get(avdHome, avdName + ".avd");
+    }
+
+    public static Path snapshotDir(String avdName, String tag) {
+        return avdDirectory(avdName).resolve("snapshots").resolve(tag);
+    }
+
+    // The golden tag lives next to the AVD in avidia.ini, so it goes away with the AVD
+    public static String getGoldenSnapshot(String avdName) {
+        return getAvidiaValue(avdName, "snapshot.golden");
+    }
+
+    public static void setGoldenSnapshot(String avdName, String tag) throws IOException {
+        setAvidiaValue(avdName, "snapshot.golden", tag);
+    }
+
+    static String getAvidiaValue(String avdName, String key) {
+        return readIni(avdDirectory(avdName).resolve(AVIDIA_AVD_INI)).get(key);
+    }
+
+    // A null value removes the key
+    static void setAvidiaValue(String avdName, String key, String value) throws IOException {
+        Path file = avdDirectory(avdName).resolve(AVIDIA_AVD_INI);
+        Map<String, String> values = readIni(file);
+        if (value == null) {
+            values.remove(key);
+        } else {
+            values.put(key, value);
+        }
+
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        Path temp = file.resolveSibling(AVIDIA_AVD_INI + ".tmp");
+        Files.write(temp, content.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,338 @@
+package org.jimedrand.avidia.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.jimedrand.avidia.core.Ansi.*;
+
+// Where the SDK and AVDs live, read from the environment and avidia.conf, plus host probes
+public final class Environment {
+    public static final String MAIN_CLASS = "org.jimedrand.avidia.avidia";
+    private static final String ENVIRONMENT_CACHE = "environment";
+    public static String sdkPath;
+    static String userName;
+    public static String homeDir;
+    public static String avdHome;
+    public static String avidiaHome;
+    static Map<String, String> config;
+    // The forwarding client's display and ANDROID_* variables while the daemon runs its command
+    private static final InheritableThreadLocal<Map<String, String>> CALLER_ENVIRONMENT = new InheritableThreadLocal<>();
+
+    // Variables that follow the caller into the daemon: they pick the emulator's window and GPU
+    // mode and configure the SDK tools it runs
+    public static boolean isCallerVariable(String name) {
+        switch (name) {
+            case "DISPLAY":
+            case "WAYLAND_DISPLAY":
+            case "XAUTHORITY":
+            case "XDG_RUNTIME_DIR":
+                return true;
+            default:
+                return name.startsWith("ANDROID_");
+        }
+    }
+
+    public static void setCallerEnvironment(Map<String, String> env) {
+        if (env == null) {
+            CALLER_ENVIRONMENT.remove();
+        } else {
+            CALLER_ENVIRONMENT.set(env);
+        }
+    }
+
+    // System.getenv, except that a forwarded command sees its caller's value (or its absence)
+    public static String getenv(String name) {
+        Map<String, String> caller = CALLER_ENVIRONMENT.get();
+        return caller != null && isCallerVariable(name) ? caller.get(name) : System.getenv(name);
+    }
+
+    // Replaces the inherited caller variables in a child process environment
+    static void putCallerEnvironment(Map<String, String> env) {
+        Map<String, String> caller = CALLER_ENVIRONMENT.get();
+        if (caller == null) {
+            return;
+        }
+        env.keySet().removeIf(Environment::isCallerVariable);
+        env.putAll(caller);
+    }
+
+    // Reads ~/.avidia/avidia.conf (written by install.sh) as "section.key" entries
+    static synchronized Map<String, String> getConfig() {
+        if (config == null) {
+            config = new HashMap<>();
+            String section = "";
+            Path configFile = Paths.get(avidiaHome, "avidia.conf");
+            try (BufferedReader reader = Files.newBufferedReader(configFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#") || line.startsWith(";")) {
+                        continue;
+                    }
+                    if (line.startsWith("[") && line.endsWith("]")) {
+                        section = line.substring(1, line.length() - 1).trim();
+                        continue;
+                    }
+                    int eq = line.indexOf('=');
+                    if (eq > 0) {
+                        String key = line.substring(0, eq).trim();
+                        config.put(section.isEmpty() ? key : section + "." + key, line.substring(eq + 1).trim());
+                    }
+                }
+            } catch (IOException e) {
+                // No config file: every lookup falls back to its default
+            }
+        }
+        return config;
+    }
+
+    public static long getConfigLong(String key, long defaultValue) {
+        String value = getConfig().get(key);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static boolean validateEnvironment() {
+        userName = System.getProperty("user.name");
+        homeDir = System.getProperty("user.home");
+        avidiaHome = homeDir + "/.avidia";
+        avdHome = avidiaHome + "/avd";
+        
+        // Check if Avidia is setup
+        File avidiaDir = new File(avidiaHome);
+        if (!avidiaDir.exists()) {
+            System.err.println(RED + "AVIDIA not initialized!" + RESET);
+            System.err.println("Please run: " + CYAN + "avidia setup" + RESET);
+            return false;
+        }
+        
+        // The probes below only rerun when the SDK tool directories or the SDK variables change
+        sdkPath = readEnvironmentCache();
+        if (sdkPath != null) {
+            exportEnvironment();
+            return true;
+        }
+        
+        // Try to find SDK in multiple locations
+        String[] possiblePaths = {
+            avidiaHome + "/sdk",
+            System.getenv("ANDROID_SDK_ROOT"),
+            System.getenv("ANDROID_HOME"),
+            homeDir + "/Android/Sdk",
+            "/usr/share/android",
+            "/usr/lib/android-sdk"
+        };
+        
+        for (String path : possiblePaths) {
+            if (path != null && !path.isEmpty()) {
+                File sdkDir = new File(path);
+                if (sdkDir.exists() && sdkDir.isDirectory()) {
+                    sdkPath = path;
+                    break;
+                }
+            }
+        }
+        
+        // If not found, use Avidia's SDK directory
+        if (sdkPath == null) {
+            sdkPath = avidiaHome + "/sdk";
+        }
+        
+        File sdkDir = new File(sdkPath);
+        if (!sdkDir.exists()) {
+            System.err.println(YELLOW + "Android SDK not found at: " + sdkPath + RESET);
+            System.err.println("Please install Android CLI tools first.");
+            System.err.println("Run: " + CYAN + "avidia tui" + RESET + " and select 'Install System Image'");
+            return false;
+        }
+        
+        // Check for required tools
+        File emulator = new File(sdkPath + "/emulator/emulator");
+        File avdmanager = new File(sdkPath + "/cmdline-tools/latest/bin/avdmanager");
+        File sdkmanager = new File(sdkPath + "/cmdline-tools/latest/bin/sdkmanager");
+        
+        boolean toolsAvailable = true;
+        
+        if (!emulator.exists() || !emulator.canExecute()) {
+            System.err.println(YELLOW + "Emulator not found at: " + emulator.getAbsolutePath() + RESET);
+            toolsAvailable = false;
+        }
+        
+        if (!avdmanager.exists() || !avdmanager.canExecute()) {
+            System.err.println(YELLOW + "AVD Manager not found at: " + avdmanager.getAbsolutePath() + RESET);
+            toolsAvailable = false;
+        }
+        
+        if (!sdkmanager.exists() || !sdkmanager.canExecute()) {
+            System.err.println(YELLOW + "SDK Manager not found at: " + sdkmanager.getAbsolutePath() + RESET);
+            toolsAvailable = false;
+        }
+        
+        if (!toolsAvailable) {
+            System.err.println("\nPlease install Android CLI tools:");
+            System.err.println("  1. Run: " + CYAN + "avidia tui" + RESET);
+            System.err.println("  2. Select 'Install System Image'");
+            System.err.println("  3. Or download manually and extract to: " + sdkPath);
+            return false;
+        }
+        
+        writeEnvironmentCache();
+        exportEnvironment();
+        return true;
+    }
+
+    private static void exportEnvironment() {
+        // Set environment variables for child processes
+        System.setProperty("ANDROID_SDK_ROOT", sdkPath);
+        System.setProperty("ANDROID_HOME", sdkPath);
+        System.setProperty("AVD_HOME", avdHome);
+        
+        // Ensure AVD directory exists
+        File avdDir = new File(avdHome);
+        if (!avdDir.exists()) {
+            avdDir.mkdirs();
+        }
+    }
+
+    private static Path environmentCacheFile() {
+        return Paths.get(avidiaHome, "cache", ENVIRONMENT_CACHE);
+    }
+
+    // Everything the SDK probe depends on; installing or removing tools bumps a directory mtime
+    private static Map<String, String> environmentKey(String sdk) {
+        Map<String, String> key = new LinkedHashMap<>();
+        key.put("sdk_path", sdk);
+        key.put("ANDROID_SDK_ROOT", String.valueOf(System.getenv("ANDROID_SDK_ROOT")));
+        key.put("ANDROID_HOME", String.valueOf(System.getenv("ANDROID_HOME")));
+        key.put("avidia_sdk", String.valueOf(new File(avidiaHome + "/sdk").isDirectory()));
+        key.put("emulator_mtime", String.valueOf(new File(sdk + "/emulator").lastModified()));
+        key.put("tools_mtime", String.valueOf(new File(sdk + "/cmdline-tools/latest/bin").lastModified()));
+        return key;
+    }
+
+    // Returns the cached SDK path if nothing it was derived from has changed, otherwise null
+    private static String readEnvironmentCache() {
+        Map<String, String> cached = readIni(environmentCacheFile());
+        String sdk = cached.get("sdk_path");
+        if (sdk == null || !cached.equals(environmentKey(sdk))) {
+            return null;
+        }
+        return sdk;
+    }
+
+    private static void writeEnvironmentCache() {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : environmentKey(sdkPath).entrySet()) {
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+        }
+        try {
+            Path file = environmentCacheFile();
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(ENVIRONMENT_CACHE + ".tmp");
+            Files.write(tmp, content.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Without a cache the next run simply probes again
+        }
+    }
+
+    // AVIDIA_KVM_DEVICE points the check at another path, e.g. a stand-in file in benchmarks
+    public static boolean isKvmAvailable() {
+        String device = System.getenv("AVIDIA_KVM_DEVICE");
+        return new File(device != null && !device.isEmpty() ? device : "/dev/kvm").exists();
+    }
+
+    // Reads /proc/meminfo into kB values; empty on systems without procfs
+    public static Map<String, Long> readMemInfo() {
+        Map<String, Long> values = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get("/proc/meminfo"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (colon < 0) continue;
+                String[] parts = line.substring(colon + 1).trim().split("\\s+");
+                try {
+                    values.put(line.substring(0, colon), Long.parseLong(parts[0]));
+                } catch (NumberFormatException e) {
+                    // Skip malformed lines
+                }
+            }
+        } catch (IOException e) {
+            // Not Linux, or /proc is not mounted
+        }
+        return values;
+    }
+
+    public static String formatSize(long bytes) {
+        if (bytes >= 1L << 30) {
+            return String.format("%.1f GB", bytes / (double) (1L << 30));
+        }
+        if (bytes >= 1L << 20) {
+            return String.format("%.1f MB", bytes / (double) (1L << 20));
+        }
+        return String.format("%d KB", bytes >> 10);
+    }
+
+    // Removes a file or a whole directory tree; a missing path is not an error
+    public static void deleteTree(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // Reads a flat key=value file as written by avdmanager and the emulator
+    public static Map<String, String> readIni(Path file) {
+        Map<String, String> values = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith(";")) {
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                if (eq > 0) {
+                    values.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+                }
+            }
+        } catch (IOException e) {
+            // Missing or unreadable files are treated as empty
+        }
+        return values;
+    }
+}
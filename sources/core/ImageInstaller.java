@@ -0,0 +1,193 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Map;
+
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Installs system images straight from the repository manifests: the archive is fetched by
+// Downloader (parallel, resumable, checksummed), unpacked next to its final directory and moved
+// into place with a package.xml, so sdkmanager and avidia both see it as installed
+public final class ImageInstaller {
+    private static final int BAR_WIDTH = 30;
+
+    private ImageInstaller() {
+    }
+
+    // False when the package is not in the repository or has no archive for this host, so
+    // the caller can fall back to sdkmanager
+    public static boolean install(String packagePath) {
+        if (!packagePath.startsWith("system-images;") || packagePath.split(";").length != 4) {
+            return false;
+        }
+        RemotePackage pkg;
+        try {
+            Map<String, RemotePackage> packages = new RepositoryReader(RepositoryReader.configuredUrl(),
+                Paths.get(avidiaHome, "cache", "repository")).read();
+            pkg = packages.get(packagePath);
+        } catch (IOException e) {
+            System.out.println(YELLOW + "Could not read the SDK repository: " + e.getMessage() + RESET);
+            return false;
+        }
+        if (pkg == null || pkg.archiveUrl == null) {
+            return false;
+        }
+
+        String[] segments = packagePath.split(";");
+        Path imagesRoot = Paths.get(sdkPath, "system-images");
+        Path destination = imagesRoot.resolve(segments[1]).resolve(segments[2]).resolve(segments[3]);
+        // Outside android-*, so the installed-image index never lists a half-extracted image
+        Path staging = imagesRoot.resolve(".installing").resolve(segments[1] + "-" + segments[2] + "-" + segments[3]);
+
+        long started = System.nanoTime();
+        boolean downloading = false;
+        Path archive = null;
+        try {
+            URI url = URI.create(pkg.archiveUrl);
+            if (url.getScheme().equals("file")) {
+                archive = Paths.get(url);
+                verify(archive, pkg);
+            } else {
+                Path downloads = Paths.get(avidiaHome, "cache", "downloads");
+                Files.createDirectories(downloads);
+                String fileName = url.getPath().substring(url.getPath().lastIndexOf('/') + 1);
+                archive = downloads.resolve(fileName.isEmpty() ? "archive.zip" : fileName);
+                System.out.println(CYAN + "Downloading " + pkg.displayName + " (" + formatSize(pkg.archiveSize) + ")" + RESET);
+                downloading = true;
+                Downloader.configured(progressPrinter(fileName)).download(url, pkg.archiveSize, pkg.checksum,
+                    pkg.checksumType, archive);
+                downloading = false;
+                System.out.println();
+            }
+
+            System.out.println(CYAN + "Unpacking " + packagePath + "..." + RESET);
+            deleteTree(staging);
+            ArchiveExtractor.Result unpacked = ArchiveExtractor.extract(archive, staging);
+            System.out.println("Unpacked " + unpacked.files + " file(s), " + formatSize(unpacked.bytes)
+                + " (" + formatSize(unpacked.allocated) + " written, the rest left as holes) at "
+                + formatSize((long) unpacked.bytesPerSecond()) + "/s");
+            writePackageXml(staging.resolve("package.xml"), pkg);
+
+            Files.createDirectories(destination.getParent());
+            deleteTree(destination);
+            Files.move(staging, destination, StandardCopyOption.ATOMIC_MOVE);
+            if (!url.getScheme().equals("file")) {
+                Files.deleteIfExists(archive);
+            }
+            Sdk.getInstalledImages().invalidate();
+            System.out.printf(GREEN + "✓ Installed %s in %.1f s" + RESET + "%n", packagePath,
+                (System.nanoTime() - started) / 1e9);
+            return true;
+        } catch (InterruptedException e) {
+            if (downloading) {
+                System.out.println();
+            }
+            Thread.currentThread().interrupt();
+            System.err.println(RED + "Installation of " + packagePath + " interrupted" + RESET);
+        } catch (Exception e) {
+            if (downloading) {
+                // End the progress line first
+                System.out.println();
+            }
+            System.err.println(RED + "Error installing " + packagePath + ": " + e.getMessage() + RESET);
+        }
+        try {
+            deleteTree(staging);
+        } catch (IOException e) {
+            // Left for the next attempt, which clears it first
+        }
+        // The partial download stays, so the next attempt resumes it
+        return false;
+    }
+
+    // sdkmanager-style "[=====      ] 45% Downloading x.zip 12.3 MB/s", redrawn in place
+    private static Downloader.Listener progressPrinter(String fileName) {
+        long started = System.nanoTime();
+        long[] first = {-1};
+        return (bytes, total) -> {
+            if (first[0] < 0) {
+                // Resumed bytes do not count towards the rate
+                first[0] = bytes;
+            }
+            int percent = total > 0 ? (int) (bytes * 100 / total) : 0;
+            int filled = percent * BAR_WIDTH / 100;
+            double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+            StringBuilder bar = new StringBuilder("\r[");
+            for (int i = 0; i < BAR_WIDTH; i++) {
+                bar.append(i < filled ? '=' : ' ');
+            }
+            bar.append("] ").append(percent).append("% Downloading ").append(fileName).append(' ')
+                .append(formatSize((long) ((bytes - first[0]) / seconds))).append("/s   ");
+            System.out.print(bar);
+            System.out.flush();
+        };
+    }
+
+    // Local archives are not downloaded, but still checked against the manifest
+    private static void verify(Path archive, RemotePackage pkg) throws IOException {
+        if (pkg.checksum == null) {
+            return;
+        }
+        MessageDigest digest = Downloader.newDigest(pkg.checksumType);
+        byte[] buffer = new byte[1024 * 1024];
+        try (InputStream in = Files.newInputStream(archive)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        String actual = Downloader.hex(digest.digest());
+        if (!actual.equalsIgnoreCase(pkg.checksum)) {
+            throw new IOException(pkg.checksumType + " mismatch for " + archive + ": expected " + pkg.checksum + ", got " + actual);
+        }
+    }
+
+    // The package.xml sdkmanager writes, reduced to what it and InstalledImageIndex read back
+    private static void writePackageXml(Path file, RemotePackage pkg) throws IOException {
+        String[] segments = pkg.path.split(";");
+        String apiLevel = pkg.apiLevel.isEmpty() ? segments[1].replace("android-", "") : pkg.apiLevel;
+        String[] revision = pkg.revision.split(" ")[0].split("\\.");
+
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        xml.append("<ns2:repository xmlns:ns2=\"http://schemas.android.com/repository/android/common/02\"")
+            .append(" xmlns:ns3=\"http://schemas.android.com/sdk/android/repo/sys-img2/03\"")
+            .append(" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n");
+        xml.append("  <localPackage path=\"").append(escape(pkg.path)).append("\" obsolete=\"false\">\n");
+        xml.append("    <type-details xsi:type=\"ns3:sysImgDetailsType\">\n");
+        xml.append("      <api-level>").append(escape(apiLevel)).append("</api-level>\n");
+        xml.append("      <tag><id>").append(escape(segments[2])).append("</id><display>")
+            .append(escape(pkg.tagDisplay.isEmpty() ? segments[2] : pkg.tagDisplay)).append("</display></tag>\n");
+        if (!pkg.vendorId.isEmpty()) {
+            xml.append("      <vendor><id>").append(escape(pkg.vendorId)).append("</id><display>")
+                .append(escape(pkg.vendorDisplay)).append("</display></vendor>\n");
+        }
+        xml.append("      <abi>").append(escape(segments[3])).append("</abi>\n");
+        xml.append("    </type-details>\n");
+        xml.append("    <revision><major>").append(revision[0]).append("</major>");
+        if (revision.length > 1) {
+            xml.append("<minor>").append(revision[1]).append("</minor>");
+        }
+        if (revision.length > 2) {
+            xml.append("<micro>").append(revision[2]).append("</micro>");
+        }
+        xml.append("</revision>\n");
+        xml.append("    <display-name>").append(escape(pkg.displayName)).append("</display-name>\n");
+        xml.append("  </localPackage>\n");
+        xml.append("</ns2:repository>\n");
+        Files.write(file, xml.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,27 @@
+package org.jimedrand.avidia.core;
+
+import java.nio.file.Path;
+
+public final class InstalledImage {
+    public final String packagePath;
+    final String apiLevel;
+    final String tag;
+    final String abi;
+    public final String revision;
+    // "Google APIs" for google_apis; the tag id when the image does not say
+    final String tagDisplay;
+    final Path directory;
+    public final long sizeBytes;
+
+    InstalledImage(String packagePath, String apiLevel, String tag, String abi,
+                   String revision, String tagDisplay, Path directory, long sizeBytes) {
+        this.packagePath = packagePath;
+        this.apiLevel = apiLevel;
+        this.tag = tag;
+        this.abi = abi;
+        this.revision = revision;
+        this.tagDisplay = tagDisplay;
+        this.directory = directory;
+        this.sizeBytes = sizeBytes;
+    }
+}
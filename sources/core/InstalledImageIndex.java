@@ -0,0 +1,203 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Index of system-images/android-*/<tag>/<abi> built from package.xml (or source.properties)
+// instead of `sdkmanager --list_installed`. Rebuilt only when a directory mtime changes.
+public final class InstalledImageIndex {
+    private final Path root;
+    private Map<String, InstalledImage> images = Collections.emptyMap();
+    private long fingerprint = -1;
+
+    public InstalledImageIndex(Path root) {
+        this.root = root;
+    }
+
+    boolean isInstalled(String packagePath) {
+        return get(packagePath) != null;
+    }
+
+    InstalledImage get(String packagePath) {
+        return images().get(packagePath);
+    }
+
+    public synchronized Map<String, InstalledImage> images() {
+        List<Path> imageDirs = new ArrayList<>();
+        long current = scanDirectories(imageDirs);
+        if (current != fingerprint) {
+            Map<String, InstalledImage> rebuilt = new TreeMap<>();
+            for (Path dir : imageDirs) {
+                InstalledImage image = readImage(dir);
+                if (image != null) {
+                    rebuilt.put(image.packagePath, image);
+                }
+            }
+            images = Collections.unmodifiableMap(rebuilt);
+            fingerprint = current;
+        }
+        return images;
+    }
+
+    synchronized void invalidate() {
+        fingerprint = -1;
+    }
+
+    // Collects <api>/<tag>/<abi> directories and folds every level's mtime into one value
+    private long scanDirectories(List<Path> imageDirs) {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long hash = mtime(root);
+        try (DirectoryStream<Path> apis = Files.newDirectoryStream(root, "android-*")) {
+            for (Path api : apis) {
+                if (!Files.isDirectory(api)) continue;
+                hash = hash * 31 + mtime(api);
+                try (DirectoryStream<Path> tags = Files.newDirectoryStream(api, Files::isDirectory)) {
+                    for (Path tag : tags) {
+                        hash = hash * 31 + mtime(tag);
+                        try (DirectoryStream<Path> abis = Files.newDirectoryStream(tag, Files::isDirectory)) {
+                            for (Path abi : abis) {
+                                hash = hash * 31 + mtime(abi);
+                                imageDirs.add(abi);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Partially readable trees still produce a usable index
+        }
+        return hash;
+    }
+
+    private static long mtime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private InstalledImage readImage(Path dir) {
+        String api = dir.getParent().getParent().getFileName().toString();
+        String tag = dir.getParent().getFileName().toString();
+        String abi = dir.getFileName().toString();
+        String packagePath = "system-images;" + api + ";" + tag + ";" + abi;
+        String revision = null;
+        String tagDisplay = null;
+
+        Path packageXml = dir.resolve("package.xml");
+        Path sourceProperties = dir.resolve("source.properties");
+        if (Files.isRegularFile(packageXml)) {
+            String[] parsed = readPackageXml(packageXml);
+            if (parsed[0] != null) {
+                packagePath = parsed[0];
+            }
+            revision = parsed[1];
+            tagDisplay = parsed[2];
+        } else if (Files.isRegularFile(sourceProperties)) {
+            Map<String, String> properties = readIni(sourceProperties);
+            revision = properties.get("Pkg.Revision");
+            tagDisplay = properties.get("SystemImage.TagDisplay");
+        } else {
+            // Half-extracted or foreign directory: sdkmanager would not list it either
+            return null;
+        }
+
+        String[] segments = packagePath.split(";");
+        if (segments.length == 4) {
+            api = segments[1];
+            tag = segments[2];
+            abi = segments[3];
+        }
+        String apiLevel = api.startsWith("android-") ? api.substring("android-".length()) : api;
+        return new InstalledImage(packagePath, apiLevel, tag, abi, revision,
+            tagDisplay != null ? tagDisplay : tag, dir, directorySize(dir));
+    }
+
+    // Returns {localPackage@path, "major.minor.micro", tag display name}
+    private static String[] readPackageXml(Path file) {
+        String[] result = new String[3];
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        try (InputStream in = Files.newInputStream(file)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            StringBuilder revision = new StringBuilder();
+            boolean inRevision = false;
+            boolean inTag = false;
+            int depth = 0;
+            int revisionDepth = -1;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String name = reader.getLocalName();
+                    if (name.equals("localPackage")) {
+                        result[0] = reader.getAttributeValue(null, "path");
+                    } else if (name.equals("revision") && revisionDepth < 0) {
+                        inRevision = true;
+                        revisionDepth = depth;
+                    } else if (inRevision && (name.equals("major") || name.equals("minor") || name.equals("micro"))) {
+                        if (revision.length() > 0) revision.append('.');
+                        revision.append(reader.getElementText().trim());
+                        depth--;
+                    } else if (name.equals("tag")) {
+                        inTag = true;
+                    } else if (inTag && name.equals("display")) {
+                        result[2] = reader.getElementText().trim();
+                        depth--;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (inRevision && depth == revisionDepth) {
+                        inRevision = false;
+                    }
+                    if (reader.getLocalName().equals("tag")) {
+                        inTag = false;
+                    }
+                    depth--;
+                }
+            }
+            reader.close();
+            if (revision.length() > 0) {
+                result[1] = revision.toString();
+            }
+        } catch (IOException | XMLStreamException e) {
+            // Fall back to the directory-derived package path
+        }
+        return result;
+    }
+
+    public static long directorySize(Path dir) {
+        long[] total = {0};
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    total[0] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // Report what we could count
+        }
+        return total[0];
+    }
+}
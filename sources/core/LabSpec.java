@@ -0,0 +1,296 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Emulators.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// A lab: the AVDs one spec file declares, with their image, device and config.ini overrides.
+// plan() compares it with the AVDs on disk; AVDs it creates are marked with the lab's name in
+// avidia.ini, so dropping one from the spec deletes it while AVDs made by hand are never touched.
+//
+//   lab: ci
+//   defaults:
+//     image: system-images;android-34;google_apis;x86_64
+//     hardware: {hw.ramSize: 2048}
+//   avds:
+//     - name: phone
+//       count: 4                     # phone_1 .. phone_4
+//       device: pixel_5
+//       hardware:
+//         hw.lcd.density: 420
+public final class LabSpec {
+    // What `avidia create` uses
+    static final String DEFAULT_IMAGE = "system-images;android-34;google_apis_playstore;x86_64";
+    static final String DEFAULT_DEVICE = "pixel_5";
+    static final String LAB_KEY = "lab";
+    private static final Set<String> TOP_KEYS = new HashSet<>(Arrays.asList("lab", "defaults", "avds"));
+    private static final Set<String> AVD_KEYS = new HashSet<>(Arrays.asList("name", "count", "image", "device", "hardware"));
+
+    public static final class Avd {
+        public final String name;
+        public final String image;
+        public final String device;
+        // config.ini keys set after the device's own
+        public final Map<String, String> hardware;
+
+        Avd(String name, String image, String device, Map<String, String> hardware) {
+            this.name = name;
+            this.image = image;
+            this.device = device;
+            this.hardware = hardware;
+        }
+    }
+
+    public enum Action { CREATE, RECREATE, UPDATE, DELETE }
+
+    public static final class Change {
+        public final Action action;
+        public final String name;
+        // Null for DELETE
+        public final Avd avd;
+        public final String reason;
+
+        Change(Action action, String name, Avd avd, String reason) {
+            this.action = action;
+            this.name = name;
+            this.avd = avd;
+            this.reason = reason;
+        }
+    }
+
+    public final String name;
+    public final List<Avd> avds;
+
+    private LabSpec(String name, List<Avd> avds) {
+        this.name = name;
+        this.avds = avds;
+    }
+
+    // IllegalArgumentException for a spec that parses but does not make sense
+    public static LabSpec read(Path file) throws IOException {
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        Object root = SpecParser.parse(text);
+        if (!(root instanceof Map)) {
+            throw new IllegalArgumentException("a spec is a mapping with an 'avds' list");
+        }
+        Map<String, Object> spec = asMap(root, "the spec");
+        checkKeys(spec, TOP_KEYS, "the spec");
+
+        String fileName = file.getFileName().toString();
+        String name = spec.containsKey("lab") ? asString(spec.get("lab"), "lab")
+            : fileName.replaceFirst("\\.(ya?ml|json)$", "");
+        if (!name.matches("[A-Za-z0-9._-]+")) {
+            throw new IllegalArgumentException("invalid lab name '" + name + "'");
+        }
+
+        Map<String, Object> defaults = spec.containsKey("defaults") ? asMap(spec.get("defaults"), "defaults")
+            : Collections.emptyMap();
+        checkKeys(defaults, AVD_KEYS, "defaults");
+        if (defaults.containsKey("name") || defaults.containsKey("count")) {
+            throw new IllegalArgumentException("defaults cannot set name or count");
+        }
+
+        Object list = spec.get("avds");
+        if (list != null && !(list instanceof List)) {
+            throw new IllegalArgumentException("'avds' must be a list");
+        }
+        List<Avd> avds = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Object item : list == null ? Collections.emptyList() : (List<?>) list) {
+            Map<String, Object> entry = asMap(item, "each entry of 'avds'");
+            if (!entry.containsKey("name")) {
+                throw new IllegalArgumentException("every entry of 'avds' needs a name");
+            }
+            String base = asString(entry.get("name"), "name");
+            checkKeys(entry, AVD_KEYS, "'" + base + "'");
+
+            String image = entry.containsKey("image") ? asString(entry.get("image"), "image")
+                : defaults.containsKey("image") ? asString(defaults.get("image"), "image") : DEFAULT_IMAGE;
+            String[] segments = image.split(";");
+            if (segments.length != 4 || !segments[0].equals("system-images")) {
+                throw new IllegalArgumentException("'" + base + "': image must look like " + DEFAULT_IMAGE);
+            }
+            String device = entry.containsKey("device") ? asString(entry.get("device"), "device")
+                : defaults.containsKey("device") ? asString(defaults.get("device"), "device") : DEFAULT_DEVICE;
+
+            Map<String, String> hardware = new LinkedHashMap<>();
+            if (defaults.containsKey("hardware")) {
+                hardware.putAll(asStrings(defaults.get("hardware"), "defaults hardware"));
+            }
+            if (entry.containsKey("hardware")) {
+                hardware.putAll(asStrings(entry.get("hardware"), "'" + base + "' hardware"));
+            }
+
+            int count = 1;
+            boolean numbered = entry.containsKey("count");
+            if (numbered) {
+                try {
+                    count = Integer.parseInt(asString(entry.get("count"), "count"));
+                } catch (NumberFormatException e) {
+                    count = 0;
+                }
+                if (count < 1) {
+                    throw new IllegalArgumentException("'" + base + "': count must be a positive number");
+                }
+            }
+            for (int i = 1; i <= count; i++) {
+                String avdName = numbered ? base + "_" + i : base;
+                if (!avdName.matches("[A-Za-z0-9._-]+")) {
+                    throw new IllegalArgumentException("invalid AVD name '" + avdName + "'");
+                }
+                if (!names.add(avdName)) {
+                    throw new IllegalArgumentException("'" + avdName + "' is declared twice");
+                }
+                avds.add(new Avd(avdName, image, device, hardware));
+            }
+        }
+        return new LabSpec(name, avds);
+    }
+
+    // What apply would do, in spec order with deletions last. Reads only the .ini files, so an
+    // unchanged lab plans in milliseconds.
+    public List<Change> plan() {
+        AvdInventory inventory = getInventory();
+        inventory.reload();
+        List<Change> changes = new ArrayList<>();
+        Set<String> declared = new HashSet<>();
+        for (Avd avd : avds) {
+            declared.add(avd.name);
+            AvdInfo info = inventory.get(avd.name);
+            if (info == null) {
+                changes.add(new Change(Action.CREATE, avd.name, avd, shortImage(avd.image) + " on " + avd.device));
+                continue;
+            }
+
+            info.invalidateConfig();
+            Map<String, String> config = info.config();
+            String sysdir = config.getOrDefault("image.sysdir.1", "");
+            String image = sysdir.replaceAll("/+$", "").replace('/', ';');
+            String device = config.getOrDefault("hw.device.name", "");
+            if (!image.equals(avd.image)) {
+                changes.add(new Change(Action.RECREATE, avd.name, avd,
+                    "image " + shortImage(image) + " → " + shortImage(avd.image)));
+                continue;
+            }
+            if (!device.equals(avd.device)) {
+                changes.add(new Change(Action.RECREATE, avd.name, avd, "device " + device + " → " + avd.device));
+                continue;
+            }
+
+            List<String> differences = new ArrayList<>();
+            for (Map.Entry<String, String> entry : avd.hardware.entrySet()) {
+                String current = config.get(entry.getKey());
+                if (!entry.getValue().equals(current)) {
+                    differences.add(entry.getKey() + " " + (current == null ? "unset" : current) + " → " + entry.getValue());
+                }
+            }
+            if (!name.equals(readLab(info))) {
+                differences.add("join lab " + name);
+            }
+            if (!differences.isEmpty()) {
+                changes.add(new Change(Action.UPDATE, avd.name, avd, String.join(", ", differences)));
+            }
+        }
+
+        for (String existing : inventory.names()) {
+            if (!declared.contains(existing) && name.equals(readLab(inventory.get(existing)))) {
+                changes.add(new Change(Action.DELETE, existing, null, "no longer in the spec"));
+            }
+        }
+        return changes;
+    }
+
+    // Carries out one change; output goes to System.out/err like the other commands
+    public boolean apply(Change change) {
+        if (change.action != Action.CREATE && isAVDRunning(change.name)) {
+            System.err.println(RED + "AVD '" + change.name + "' is running; stop it first" + RESET);
+            return false;
+        }
+        switch (change.action) {
+            case DELETE:
+                return deleteAVD(change.name);
+            case CREATE:
+            case RECREATE:
+                if (!createAVD(change.name, change.avd.image, change.avd.device)) {
+                    return false;
+                }
+                return configure(change.avd);
+            default:
+                return configure(change.avd);
+        }
+    }
+
+    private boolean configure(Avd avd) {
+        AvdInfo info = getInventory().get(avd.name);
+        if (info == null) {
+            System.err.println(RED + "AVD '" + avd.name + "' is missing after creation" + RESET);
+            return false;
+        }
+        try {
+            if (!avd.hardware.isEmpty()) {
+                AvdWriter.updateConfig(info.avdDir.resolve("config.ini"), avd.hardware);
+                info.invalidateConfig();
+            }
+            if (!name.equals(readLab(info))) {
+                setAvidiaValue(avd.name, LAB_KEY, name);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println(RED + "Error configuring '" + avd.name + "': " + e.getMessage() + RESET);
+            return false;
+        }
+    }
+
+    private static String readLab(AvdInfo info) {
+        return Environment.readIni(info.avdDir.resolve(AVIDIA_AVD_INI)).get(LAB_KEY);
+    }
+
+    // "android-34;google_apis;x86_64"
+    static String shortImage(String image) {
+        return image.startsWith("system-images;") ? image.substring("system-images;".length()) : image;
+    }
+
+    private static void checkKeys(Map<String, Object> map, Set<String> allowed, String where) {
+        for (String key : map.keySet()) {
+            if (!allowed.contains(key)) {
+                throw new IllegalArgumentException("unknown key '" + key + "' in " + where);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value, String what) {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException(what + " must be a mapping");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static String asString(Object value, String what) {
+        if (!(value instanceof String) || ((String) value).isEmpty()) {
+            throw new IllegalArgumentException(what + " must be a plain value");
+        }
+        return (String) value;
+    }
+
+    private static Map<String, String> asStrings(Object value, String what) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : asMap(value, what).entrySet()) {
+            values.put(entry.getKey(), asString(entry.getValue(), what + " " + entry.getKey()));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,117 @@
+package org.jimedrand.avidia.core;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Per-instance emulator resources. "auto" splits the free memory and cores between the
+// emulators that are running or about to start; the named profiles trade speed for density.
+public final class LaunchProfile {
+    static final String[] NAMES = {"auto", "fast", "dense", "ci"};
+    private static final int MIN_MEMORY_MB = 1536;
+
+    final String name;
+    public final int memoryMb;
+    final int cores;
+    final String gpu;
+    final boolean noWindow;
+    final boolean noSnapshotSave;
+
+    private LaunchProfile(String name, int memoryMb, int cores, String gpu, boolean noWindow, boolean noSnapshotSave) {
+        this.name = name;
+        this.memoryMb = memoryMb;
+        this.cores = cores;
+        this.gpu = gpu;
+        this.noWindow = noWindow;
+        this.noSnapshotSave = noSnapshotSave;
+    }
+
+    // name == null selects [performance] profile from avidia.conf; starting is the number of
+    // emulators this command is about to launch
+    public static LaunchProfile resolve(String name, int starting) {
+        if (name == null) {
+            name = getConfig().getOrDefault("performance.profile", "auto");
+            if (!Arrays.asList(NAMES).contains(name)) {
+                System.out.println(YELLOW + "Unknown profile '" + name + "' in avidia.conf, using auto" + RESET);
+                name = "auto";
+            }
+        }
+        if (!Arrays.asList(NAMES).contains(name)) {
+            throw new IllegalArgumentException("unknown profile " + name + " (" + String.join(", ", NAMES) + ")");
+        }
+
+        int running = EmulatorTracker.scan().size();
+        int sharing = Math.max(1, starting) + running;
+        int cpus = Runtime.getRuntime().availableProcessors();
+        // MemAvailable already nets out the pages running guests have touched, but their RAM keeps
+        // growing, so they still count towards the split
+        long availableMb = readMemInfo().getOrDefault("MemAvailable", 0L) / 1024;
+        long shareMb = availableMb > 0 ? availableMb * 8 / 10 / sharing : 4096;
+
+        boolean display = hasDisplay();
+        String gpu = display && hasGpu() ? getConfig().getOrDefault("performance.gpu_mode", "host") : "swiftshader_indirect";
+        if (gpu.isEmpty()) {
+            gpu = "host";
+        }
+
+        switch (name) {
+            case "fast":
+                return new LaunchProfile(name, clampMemory(shareMb, 8192), clamp(cpus / 2, Math.min(2, cpus), 8), gpu, !display, false);
+            case "dense":
+                return new LaunchProfile(name, MIN_MEMORY_MB, 1, "swiftshader_indirect", !display, false);
+            case "ci":
+                return new LaunchProfile(name, clampMemory(shareMb, 2048), clamp(cpus / sharing, 1, 2),
+                    "swiftshader_indirect", true, true);
+            default:
+                // ram_size and cores in avidia.conf are the upper bounds for auto
+                int maxMemory = (int) getConfigLong("performance.ram_size", 4096);
+                int maxCores = (int) getConfigLong("performance.cores", 2);
+                return new LaunchProfile(name, clampMemory(shareMb, maxMemory),
+                    clamp(cpus / sharing, 1, Math.max(1, maxCores)), gpu, !display, false);
+        }
+    }
+
+    private static int clampMemory(long shareMb, int maxMb) {
+        // Guests below 1.5 GB fail to boot recent images; round down to 256 MB steps
+        long memory = Math.min(shareMb, Math.max(maxMb, MIN_MEMORY_MB)) / 256 * 256;
+        return (int) Math.max(MIN_MEMORY_MB, memory);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static boolean hasDisplay() {
+        String x11 = getenv("DISPLAY");
+        String wayland = getenv("WAYLAND_DISPLAY");
+        return (x11 != null && !x11.isEmpty()) || (wayland != null && !wayland.isEmpty());
+    }
+
+    private static boolean hasGpu() {
+        String[] nodes = new File("/dev/dri").list();
+        return nodes != null && nodes.length > 0;
+    }
+
+    void addArguments(List<String> command) {
+        command.add("-gpu");
+        command.add(gpu);
+        command.add("-memory");
+        command.add(Integer.toString(memoryMb));
+        command.add("-cores");
+        command.add(Integer.toString(cores));
+        if (noWindow) {
+            command.add("-no-window");
+        }
+        if (noSnapshotSave && !command.contains("-no-snapshot-save")) {
+            command.add("-no-snapshot-save");
+        }
+    }
+
+    public String describe() {
+        return "Profile " + name + ": " + memoryMb + " MB, " + cores + (cores == 1 ? " core" : " cores")
+            + ", gpu " + gpu + (noWindow ? ", no window" : "");
+    }
+}
@@ -0,0 +1,265 @@
+package org.jimedrand.avidia.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The SDK package catalog, keyed by path, with system images indexed by API level, tag and
+// ABI so queries only walk the smallest matching bucket
+public final class PackageIndex {
+    private static final String CACHE_HEADER = "# AVIDIA package catalog cache v2";
+
+    // Numeric levels newest first, then codenames and extension levels ("34-ext10") after their base
+    static final Comparator<String> API_ORDER = (a, b) -> {
+        int numberA = leadingNumber(a);
+        int numberB = leadingNumber(b);
+        if (numberA != numberB) {
+            return Integer.compare(numberB, numberA);
+        }
+        return a.compareTo(b);
+    };
+
+    private final Map<String, SdkPackage> byPath;
+    private final List<SdkPackage> images = new ArrayList<>();
+    private final Map<String, List<SdkPackage>> imagesByApi = new LinkedHashMap<>();
+    private final Map<String, List<SdkPackage>> imagesByTag = new HashMap<>();
+    private final Map<String, List<SdkPackage>> imagesByAbi = new HashMap<>();
+
+    private PackageIndex(Map<String, SdkPackage> byPath) {
+        this.byPath = byPath;
+        for (SdkPackage pkg : byPath.values()) {
+            if (pkg.isSystemImage()) {
+                images.add(pkg);
+            }
+        }
+        // Sorted once here, so every bucket below comes out newest API first
+        images.sort(Comparator.comparing((SdkPackage pkg) -> pkg.apiLevel, API_ORDER)
+            .thenComparing(pkg -> pkg.tag)
+            .thenComparing(pkg -> pkg.abi));
+        for (SdkPackage image : images) {
+            imagesByApi.computeIfAbsent(image.apiLevel, key -> new ArrayList<>()).add(image);
+            imagesByTag.computeIfAbsent(image.tag, key -> new ArrayList<>()).add(image);
+            imagesByAbi.computeIfAbsent(image.abi, key -> new ArrayList<>()).add(image);
+        }
+    }
+
+    public static PackageIndex empty() {
+        return new PackageIndex(new LinkedHashMap<>());
+    }
+
+    // One pass over `sdkmanager --list`: the section headers say whether a row is installed,
+    // available or an update, and each row is cut at its '|' separators without regexes
+    public static PackageIndex parse(BufferedReader reader) throws IOException {
+        Map<String, SdkPackage> packages = new LinkedHashMap<>();
+        char section = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.endsWith(":") && line.indexOf('|') < 0) {
+                if (line.contains("Updates")) {
+                    section = 'U';
+                } else if (line.startsWith("Installed")) {
+                    section = 'I';
+                } else if (line.startsWith("Available")) {
+                    section = 'A';
+                }
+                continue;
+            }
+
+            int first = line.indexOf('|');
+            if (section == 0 || first <= 0) {
+                continue;
+            }
+            String path = line.substring(0, first).trim();
+            if (path.equals("Path") || path.equals("ID") || path.startsWith("---")) {
+                continue;
+            }
+            int second = line.indexOf('|', first + 1);
+            String column2 = line.substring(first + 1, second < 0 ? line.length() : second).trim();
+            String column3 = "";
+            if (second >= 0) {
+                int third = line.indexOf('|', second + 1);
+                column3 = line.substring(second + 1, third < 0 ? line.length() : third).trim();
+            }
+
+            SdkPackage existing = packages.get(path);
+            SdkPackage pkg;
+            if (section == 'I') {
+                pkg = existing == null ? new SdkPackage(path, column2, null, column3)
+                    : existing.withInstalled(column2);
+            } else if (section == 'A') {
+                pkg = existing == null ? new SdkPackage(path, null, column2, column3)
+                    : existing.withAvailable(column2, column3);
+            } else {
+                // Updates list "ID | Installed | Available"
+                pkg = existing == null ? new SdkPackage(path, column2, column3, "")
+                    : existing.withAvailable(column3, "");
+            }
+            packages.put(path, pkg);
+        }
+        return new PackageIndex(packages);
+    }
+
+    // Remote packages from the repository manifests, marked with the revisions installed on disk
+    public static PackageIndex fromRepository(Map<String, String> installed, Collection<RemotePackage> remote) {
+        Map<String, SdkPackage> packages = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : installed.entrySet()) {
+            packages.put(entry.getKey(), new SdkPackage(entry.getKey(), entry.getValue(), null, ""));
+        }
+        for (RemotePackage pkg : remote) {
+            SdkPackage existing = packages.get(pkg.path);
+            packages.put(pkg.path, existing == null ? new SdkPackage(pkg.path, null, pkg.revision, pkg.displayName)
+                : existing.withAvailable(pkg.revision, pkg.displayName));
+        }
+        return new PackageIndex(packages);
+    }
+
+    // Null when the cache is missing, unreadable or from an older format
+    public static PackageIndex read(Path cacheFile) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        Map<String, SdkPackage> packages = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+            if (!CACHE_HEADER.equals(reader.readLine())) {
+                return null;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", 4);
+                if (fields.length == 4) {
+                    packages.put(fields[0], new SdkPackage(fields[0], emptyToNull(fields[1]),
+                        emptyToNull(fields[2]), fields[3]));
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return packages.isEmpty() ? null : new PackageIndex(packages);
+    }
+
+    public void write(Path cacheFile) throws IOException {
+        StringBuilder content = new StringBuilder();
+        content.append(CACHE_HEADER).append('\n');
+        content.append("# Generated on: ").append(java.time.LocalDateTime.now()).append('\n');
+        for (SdkPackage pkg : byPath.values()) {
+            content.append(pkg.path).append('\t')
+                .append(nullToEmpty(pkg.installedRevision)).append('\t')
+                .append(nullToEmpty(pkg.availableRevision)).append('\t')
+                .append(pkg.description.replace('\t', ' ')).append('\n');
+        }
+
+        // Write next to the target and rename so readers never see a half-written file
+        Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        Files.write(temp, content.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public SdkPackage get(String path) {
+        return byPath.get(path);
+    }
+
+    public Collection<SdkPackage> packages() {
+        return Collections.unmodifiableCollection(byPath.values());
+    }
+
+    public int size() {
+        return byPath.size();
+    }
+
+    public boolean hasSystemImages() {
+        return !images.isEmpty();
+    }
+
+    // System images matching every non-null filter, newest API first
+    public List<SdkPackage> systemImages(String apiLevel, String tag, String abi) {
+        List<SdkPackage> candidates = images;
+        candidates = smaller(candidates, apiLevel, imagesByApi);
+        candidates = smaller(candidates, tag, imagesByTag);
+        candidates = smaller(candidates, abi, imagesByAbi);
+
+        List<SdkPackage> matching = new ArrayList<>();
+        for (SdkPackage image : candidates) {
+            if ((apiLevel == null || apiLevel.equals(image.apiLevel))
+                    && (tag == null || tag.equals(image.tag))
+                    && (abi == null || abi.equals(image.abi))) {
+                matching.add(image);
+            }
+        }
+        return matching;
+    }
+
+    // API levels with at least one system image, newest first
+    public Set<String> apiLevels() {
+        return Collections.unmodifiableSet(imagesByApi.keySet());
+    }
+
+    public Set<String> tags(String apiLevel) {
+        Set<String> tags = new LinkedHashSet<>();
+        for (SdkPackage image : imagesByApi.getOrDefault(apiLevel, Collections.emptyList())) {
+            tags.add(image.tag);
+        }
+        return tags;
+    }
+
+    public Set<String> abis(String apiLevel, String tag) {
+        Set<String> abis = new LinkedHashSet<>();
+        for (SdkPackage image : systemImages(apiLevel, tag, null)) {
+            abis.add(image.abi);
+        }
+        return abis;
+    }
+
+    // Display name to API level, in the shape the version pickers take
+    public Map<String, String> androidVersions() {
+        Map<String, String> versions = new LinkedHashMap<>();
+        for (String apiLevel : imagesByApi.keySet()) {
+            versions.put("Android API " + apiLevel, apiLevel);
+        }
+        return versions;
+    }
+
+    private static List<SdkPackage> smaller(List<SdkPackage> current, String key,
+                                            Map<String, List<SdkPackage>> index) {
+        if (key == null) {
+            return current;
+        }
+        List<SdkPackage> bucket = index.getOrDefault(key, Collections.emptyList());
+        return bucket.size() < current.size() ? bucket : current;
+    }
+
+    private static int leadingNumber(String apiLevel) {
+        int value = 0;
+        int i = 0;
+        while (i < apiLevel.length() && Character.isDigit(apiLevel.charAt(i))) {
+            value = value * 10 + (apiLevel.charAt(i) - '0');
+            i++;
+        }
+        // Codenames (preview images) have no number and sort as the newest
+        return i == 0 ? Integer.MAX_VALUE : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
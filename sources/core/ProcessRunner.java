@@ -0,0 +1,440 @@
+package org.jimedrand.avidia.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Runs the SDK tools and other child processes that avidia waits for. stdout and stderr are
+// read on their own threads (virtual threads on Java 21+, pooled daemon threads before), so
+// a chatty tool never blocks on a full pipe and the caller can give up at a deadline or on
+// cancel(); the process tree is then terminated, forcibly if it does not go within a few
+// seconds. Output is passed to an optional line listener and kept up to a size limit, newest
+// lines last. Detached launches (emulators, background refreshes) keep their own ProcessBuilder.
+public final class ProcessRunner {
+    private static final long DEFAULT_MAX_OUTPUT = 1024 * 1024;
+    private static final long TERMINATE_GRACE_MILLIS = 5000;
+    private static final long POLL_MILLIS = 100;
+    // Lines read ahead of a slow listener; past this the pumps stop reading and the child blocks
+    // on its pipe
+    private static final int LINE_QUEUE = 1024;
+    // Marks the end of one stream in a handle's line queue; compared by identity
+    private static final String END = new String("");
+    private static final ExecutorService PUMPS = Executors.newCachedThreadPool(pumpThreads());
+
+    public interface LineListener {
+        // Called on the thread in Handle.await(), one line at a time
+        void line(String line);
+    }
+
+    // Echoes every line to System.out, as the SDK tools' own output
+    public static final LineListener PRINT_LINES = new PrintLines();
+
+    public static final class Result {
+        // -1 when the process was killed before it exited on its own
+        public final int exitCode;
+        public final boolean timedOut;
+        public final boolean cancelled;
+        // stdout and stderr, interleaved by line as they arrived
+        public final String output;
+        public final boolean truncated;
+        public final long millis;
+
+        Result(int exitCode, boolean timedOut, boolean cancelled, String output, boolean truncated, long millis) {
+            this.exitCode = exitCode;
+            this.timedOut = timedOut;
+            this.cancelled = cancelled;
+            this.output = output;
+            this.truncated = truncated;
+            this.millis = millis;
+        }
+
+        public boolean succeeded() {
+            return exitCode == 0 && !timedOut && !cancelled;
+        }
+
+        // "exit code 1", "timed out after 120 s" and so on, for error messages
+        public String describe() {
+            if (timedOut) {
+                return "timed out after " + (millis / 1000) + " s";
+            }
+            if (cancelled) {
+                return "cancelled";
+            }
+            return "exit code " + exitCode;
+        }
+    }
+
+    // A started process
+    public static final class Handle {
+        private final Process process;
+        private final long started;
+        // 0 for no deadline
+        private final long timeoutNanos;
+        private final LineListener listener;
+        // Lines waiting for the listener, then one END per stream as it closes
+        private final BlockingQueue<String> lines;
+        // Set once await() stops taking lines, so no pump waits on the full queue forever
+        private final AtomicBoolean abandoned;
+        private final Output output;
+        private volatile boolean cancelled;
+
+        Handle(Process process, long started, long timeoutNanos, LineListener listener,
+               BlockingQueue<String> lines, AtomicBoolean abandoned, Output output) {
+            this.process = process;
+            this.started = started;
+            this.timeoutNanos = timeoutNanos;
+            this.listener = listener;
+            this.lines = lines;
+            this.abandoned = abandoned;
+            this.output = output;
+        }
+
+        public long pid() {
+            return process.pid();
+        }
+
+        public boolean isAlive() {
+            return process.isAlive();
+        }
+
+        // Safe from any thread; await() then reports the result as cancelled
+        public void cancel() {
+            cancelled = true;
+            terminate(process);
+        }
+
+        // Waits for exit or the deadline, calling the listener on this thread, so its output
+        // lands wherever this thread's output goes. Interrupting the waiting thread kills the
+        // process too, so no tool outlives the command that started it.
+        public Result await() throws InterruptedException {
+            boolean timedOut = false;
+            try {
+                int open = 2;
+                long exitedAt = 0;
+                while (open > 0) {
+                    String line = lines.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (line == END) {
+                        open--;
+                    } else if (line != null) {
+                        listener.line(line);
+                    } else {
+                        if (overdue(timedOut)) {
+                            timedOut = true;
+                            terminate(process);
+                        }
+                        // A grandchild that inherited the pipes must not hold us past the grace period
+                        if (!process.isAlive()) {
+                            long now = System.nanoTime();
+                            if (exitedAt == 0) {
+                                exitedAt = now;
+                            } else if (now - exitedAt > TimeUnit.MILLISECONDS.toNanos(TERMINATE_GRACE_MILLIS)) {
+                                break;
+                            }
+                        }
+                    }
+                }
+                // The pipes are closed, but the process may still be on its way out
+                while (!process.waitFor(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (overdue(timedOut)) {
+                        timedOut = true;
+                        terminate(process);
+                    }
+                }
+            } catch (InterruptedException e) {
+                cancel();
+                throw e;
+            } finally {
+                abandoned.set(true);
+                lines.clear();
+            }
+            int exitCode = timedOut || cancelled ? -1 : process.exitValue();
+            return new Result(exitCode, timedOut, cancelled, output.text(), output.truncated(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+
+        private boolean overdue(boolean timedOut) {
+            return !timedOut && !cancelled && timeoutNanos > 0 && System.nanoTime() - started > timeoutNanos;
+        }
+    }
+
+    private final ProcessBuilder builder;
+    private String input;
+    private Duration timeout;
+    private LineListener listener;
+    private long maxOutput = DEFAULT_MAX_OUTPUT;
+    private boolean discard;
+
+    public ProcessRunner(List<String> command) {
+        builder = new ProcessBuilder(command);
+    }
+
+    public ProcessRunner(String... command) {
+        this(Arrays.asList(command));
+    }
+
+    // ANDROID_HOME, ANDROID_SDK_ROOT and AVD_HOME for this avidia's SDK and AVDs, and the
+    // cmdline-tools on PATH
+    public ProcessRunner sdkEnvironment() {
+        putSdkEnvironment(builder.environment());
+        return this;
+    }
+
+    public ProcessRunner environment(String key, String value) {
+        builder.environment().put(key, value);
+        return this;
+    }
+
+    // Written to stdin once the process starts, after which stdin is closed; without it the
+    // process reads end-of-file straight away
+    public ProcessRunner input(String text) {
+        input = text;
+        return this;
+    }
+
+    public ProcessRunner timeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public ProcessRunner onLine(LineListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    // No pipes at all, for tools like `adb start-server` whose daemons would hold them open
+    public ProcessRunner discardOutput() {
+        builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        discard = true;
+        return this;
+    }
+
+    // Characters of output kept for the result (default 1M); older lines are dropped first
+    public ProcessRunner maxOutput(long chars) {
+        maxOutput = chars;
+        return this;
+    }
+
+    public Handle start() throws IOException {
+        long started = System.nanoTime();
+        Process process = builder.start();
+        Output output = new Output(maxOutput);
+        BlockingQueue<String> lines = new ArrayBlockingQueue<>(LINE_QUEUE);
+        AtomicBoolean abandoned = new AtomicBoolean();
+        LineListener forward = listener;
+        if (discard) {
+            lines.add(END);
+            lines.add(END);
+        } else {
+            PUMPS.execute(new Pump(process.getInputStream(), output, lines, abandoned, forward != null));
+            PUMPS.execute(new Pump(process.getErrorStream(), output, lines, abandoned, forward != null));
+        }
+        PUMPS.execute(new Feed(process.getOutputStream(), input));
+        return new Handle(process, started, timeout == null ? 0 : timeout.toNanos(), forward, lines, abandoned, output);
+    }
+
+    public Result run() throws IOException, InterruptedException {
+        return start().await();
+    }
+
+    static void putSdkEnvironment(Map<String, String> env) {
+        putCallerEnvironment(env);
+        env.put("ANDROID_HOME", sdkPath);
+        env.put("ANDROID_SDK_ROOT", sdkPath);
+        env.put("AVD_HOME", avdHome);
+        env.put("PATH", env.getOrDefault("PATH", "") + ":" + sdkPath + "/cmdline-tools/latest/bin");
+    }
+
+    // The threads' work is spelled out as classes: a cold `avidia delete` runs no other lambda,
+    // and bootstrapping the first one costs it tens of milliseconds
+
+    // Reads one stream to its end; lines go to the listener queue when there is a listener,
+    // waiting for room there so a slow listener slows the child down instead of filling memory
+    private static final class Pump implements Runnable {
+        private final InputStream stream;
+        private final Output output;
+        private final BlockingQueue<String> lines;
+        private final AtomicBoolean abandoned;
+        private final boolean forward;
+
+        Pump(InputStream stream, Output output, BlockingQueue<String> lines, AtomicBoolean abandoned, boolean forward) {
+            this.stream = stream;
+            this.output = output;
+            this.lines = lines;
+            this.abandoned = abandoned;
+            this.forward = forward;
+        }
+
+        @Override
+        public void run() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    output.add(line);
+                    if (forward) {
+                        put(line);
+                    }
+                }
+            } catch (IOException e) {
+                // Closed under us when the process was killed
+            } finally {
+                put(END);
+            }
+        }
+
+        // Once await() has given up on the queue, lines are only kept in the output
+        private void put(String line) {
+            try {
+                if (!abandoned.get()) {
+                    lines.put(line);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final class Feed implements Runnable {
+        private final OutputStream stdin;
+        private final String text;
+
+        Feed(OutputStream stdin, String text) {
+            this.stdin = stdin;
+            this.text = text;
+        }
+
+        @Override
+        public void run() {
+            try (OutputStream out = stdin) {
+                if (text != null) {
+                    out.write(text.getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                // The process exited without reading it all
+            }
+        }
+    }
+
+    // Kills what is left of a process tree once the grace period is over
+    private static final class Reaper implements Runnable {
+        private final Process process;
+        private final List<ProcessHandle> tree;
+
+        Reaper(Process process, List<ProcessHandle> tree) {
+            this.process = process;
+            this.tree = tree;
+        }
+
+        @Override
+        public void run() {
+            try {
+                process.waitFor(TERMINATE_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Killed below all the same
+            }
+            for (ProcessHandle handle : tree) {
+                if (handle.isAlive()) {
+                    handle.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    private static final class DaemonThreads implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "avidia-process");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static final class PrintLines implements LineListener {
+        @Override
+        public void line(String line) {
+            System.out.println(line);
+        }
+    }
+
+    // SIGTERM to the process and its descendants, SIGKILL to whatever is left after the grace period
+    private static void terminate(Process process) {
+        List<ProcessHandle> tree = new ArrayList<>();
+        process.descendants().forEach(tree::add);
+        tree.add(process.toHandle());
+        for (ProcessHandle handle : tree) {
+            handle.destroy();
+        }
+        PUMPS.execute(new Reaper(process, tree));
+    }
+
+    // Virtual threads where the JDK has them (21+); looked up reflectively so Java 11 still runs
+    private static ThreadFactory pumpThreads() {
+        try {
+            // Through the public Thread.Builder interface; the builder's own class is internal
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method name = builderType.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, "avidia-process-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return new DaemonThreads();
+        }
+    }
+
+    // The last maxChars of output, as whole lines
+    private static final class Output {
+        private final long maxChars;
+        private final Deque<String> lines = new ArrayDeque<>();
+        private long chars;
+        private boolean truncated;
+
+        Output(long maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        synchronized void add(String line) {
+            // A limit of 0 keeps nothing, which is not a truncation
+            if (maxChars <= 0) {
+                return;
+            }
+            lines.addLast(line);
+            chars += line.length() + 1;
+            while (chars > maxChars && !lines.isEmpty()) {
+                chars -= lines.removeFirst().length() + 1;
+                truncated = true;
+            }
+        }
+
+        synchronized String text() {
+            StringBuilder text = new StringBuilder();
+            for (String line : lines) {
+                text.append(line).append('\n');
+            }
+            return text.toString();
+        }
+
+        synchronized boolean truncated() {
+            return truncated;
+        }
+    }
+}
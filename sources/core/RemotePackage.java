@@ -0,0 +1,35 @@
+package org.jimedrand.avidia.core;
+
+// A <remotePackage> from a repository manifest, with the archive built for this host
+public final class RemotePackage {
+    public final String path;
+    public final String revision;
+    public final String displayName;
+    // Absolute, resolved against the manifest it came from; null when no archive fits this host
+    public final String archiveUrl;
+    public final long archiveSize;
+    public final String checksum;
+    // "sha1" or "sha-256", as the manifest spells it
+    public final String checksumType;
+    // From <type-details>, for the package.xml of an install; empty when the manifest has none
+    final String apiLevel;
+    final String tagDisplay;
+    final String vendorId;
+    final String vendorDisplay;
+
+    RemotePackage(String path, String revision, String displayName, String archiveUrl,
+                  long archiveSize, String checksum, String checksumType,
+                  String apiLevel, String tagDisplay, String vendorId, String vendorDisplay) {
+        this.path = path;
+        this.revision = revision;
+        this.displayName = displayName;
+        this.archiveUrl = archiveUrl;
+        this.archiveSize = archiveSize;
+        this.checksum = checksum;
+        this.checksumType = checksumType;
+        this.apiLevel = apiLevel;
+        this.tagDisplay = tagDisplay;
+        this.vendorId = vendorId;
+        this.vendorDisplay = vendorDisplay;
+    }
+}
@@ -0,0 +1,533 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import static org.jimedrand.avidia.core.Environment.*;
+
+// Reads the SDK repository manifests (repository2, and the sys-img2 sites the addons list
+// names) straight from a mirror URL or a local directory, so the catalog needs no sdkmanager.
+// HTTP manifests are kept under the cache directory and re-fetched only when the server says
+// they changed (ETag / Last-Modified).
+public final class RepositoryReader {
+    public static final String DEFAULT_URL = "https://dl.google.com/android/repository/";
+    static final String ADDONS_LIST = "addons_list-5.xml";
+    static final String REPOSITORY = "repository2-3.xml";
+
+    // Used when the addons list cannot be read
+    static final String[] DEFAULT_IMAGE_SITES = {
+        "sys-img/android/sys-img2-3.xml",
+        "sys-img/google_apis/sys-img2-3.xml",
+        "sys-img/google_apis_playstore/sys-img2-3.xml",
+        "sys-img/android-tv/sys-img2-3.xml",
+        "sys-img/google-tv/sys-img2-3.xml",
+        "sys-img/android-wear/sys-img2-3.xml",
+        "sys-img/android-automotive/sys-img2-3.xml"
+    };
+
+    private static final String XSI = "http://www.w3.org/2001/XMLSchema-instance";
+    static final String HOST_OS = hostOs();
+    static final String HOST_ARCH = hostArch();
+
+    private final URI baseUrl;
+    private final Path cacheDir;
+    private final Duration timeout;
+    private HttpClient client;
+    private final AtomicInteger downloaded = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+
+    // baseUrl is an http(s) or file URL, or a plain directory path
+    public RepositoryReader(String baseUrl, Path cacheDir) {
+        URI uri = baseUrl.contains("://") ? URI.create(baseUrl) : Paths.get(baseUrl).toAbsolutePath().toUri();
+        if (!uri.getPath().endsWith("/")) {
+            uri = URI.create(uri + "/");
+        }
+        this.baseUrl = uri;
+        this.cacheDir = cacheDir;
+        this.timeout = Duration.ofSeconds(getConfigLong("network.timeout", 30));
+    }
+
+    // The repository URL from AVIDIA_REPOSITORY_URL, then avidia.conf, then Google's
+    public static String configuredUrl() {
+        String url = System.getenv("AVIDIA_REPOSITORY_URL");
+        if (url == null || url.isEmpty()) {
+            url = getConfig().getOrDefault("network.repository_url", "");
+        }
+        return url.isEmpty() ? DEFAULT_URL : url;
+    }
+
+    public URI baseUrl() {
+        return baseUrl;
+    }
+
+    // Manifests fetched over HTTP in the last read(), and those the server reported unchanged
+    public int downloaded() {
+        return downloaded.get();
+    }
+
+    public int unchanged() {
+        return unchanged.get();
+    }
+
+    // Every stable package for this host, keyed by path. The main repository must be readable;
+    // image sites that fail are skipped.
+    public Map<String, RemotePackage> read() throws IOException {
+        // Fetched concurrently, each manifest parsed on its own thread as soon as it lands. The
+        // main repository does not wait for the addons list, which only names the image sites.
+        URI repository = baseUrl.resolve(REPOSITORY);
+        List<CompletableFuture<Map<String, RemotePackage>>> parsed = new ArrayList<>();
+        parsed.add(fetch(repository).thenApplyAsync(file -> parseFile(file, repository)));
+
+        CompletableFuture<Path> addonsList = fetch(baseUrl.resolve(ADDONS_LIST));
+        List<URI> sites = new ArrayList<>();
+        try {
+            sites.addAll(imageSites(addonsList.join(), baseUrl.resolve(ADDONS_LIST)));
+        } catch (CompletionException | IOException | XMLStreamException e) {
+            for (String site : DEFAULT_IMAGE_SITES) {
+                sites.add(baseUrl.resolve(site));
+            }
+        }
+        for (URI site : sites) {
+            parsed.add(fetch(site).thenApplyAsync(file -> parseFile(file, site)));
+        }
+
+        Map<String, RemotePackage> packages = new LinkedHashMap<>();
+        for (int i = 0; i < parsed.size(); i++) {
+            try {
+                for (RemotePackage pkg : parsed.get(i).join().values()) {
+                    packages.merge(pkg.path, pkg, RepositoryReader::newer);
+                }
+            } catch (CompletionException e) {
+                if (i == 0) {
+                    Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                    // Connection failures often carry no message of their own
+                    throw cause instanceof IOException && cause.getMessage() != null ? (IOException) cause
+                        : new IOException(cause.toString(), cause);
+                }
+                // A missing image site only leaves its images out
+            }
+        }
+        return packages;
+    }
+
+    // A local file as is; an HTTP manifest through the cache with a conditional GET
+    CompletableFuture<Path> fetch(URI uri) {
+        if ("file".equals(uri.getScheme())) {
+            Path file = Paths.get(uri);
+            return Files.isRegularFile(file) ? CompletableFuture.completedFuture(file)
+                : CompletableFuture.failedFuture(new UncheckedIOException(new NoSuchFileException(file.toString())));
+        }
+
+        Path cached = cacheFile(uri);
+        Path meta = cached.resolveSibling(cached.getFileName() + ".meta");
+        Path temp;
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+            .timeout(timeout)
+            .header("User-Agent", "avidia");
+        try {
+            Files.createDirectories(cached.getParent());
+            // One per fetch, so installs reading the repository at the same time never share it
+            temp = Files.createTempFile(cached.getParent(), "." + cached.getFileName(), ".tmp");
+            if (Files.isRegularFile(cached) && Files.isRegularFile(meta)) {
+                Map<String, String> validators = readIni(meta);
+                if (validators.containsKey("etag")) {
+                    request.header("If-None-Match", validators.get("etag"));
+                }
+                if (validators.containsKey("last_modified")) {
+                    request.header("If-Modified-Since", validators.get("last_modified"));
+                }
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new UncheckedIOException(e));
+        }
+
+        return client().sendAsync(request.build(), HttpResponse.BodyHandlers.ofFile(temp)).thenApply(response -> {
+            try {
+                if (response.statusCode() == 304) {
+                    Files.deleteIfExists(temp);
+                    unchanged.incrementAndGet();
+                    return cached;
+                }
+                if (response.statusCode() != 200) {
+                    Files.deleteIfExists(temp);
+                    throw new IOException("HTTP " + response.statusCode() + " for " + uri);
+                }
+                Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                StringBuilder validators = new StringBuilder();
+                response.headers().firstValue("ETag").ifPresent(etag -> validators.append("etag=").append(etag).append('\n'));
+                response.headers().firstValue("Last-Modified").ifPresent(date -> validators.append("last_modified=").append(date).append('\n'));
+                Files.write(meta, validators.toString().getBytes(StandardCharsets.UTF_8));
+                downloaded.incrementAndGet();
+                return cached;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).whenComplete((path, error) -> {
+            if (error != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // Only a stray temp file
+                }
+            }
+        });
+    }
+
+    // Manifests under the base URL keep their relative layout; others go under their host
+    private Path cacheFile(URI uri) {
+        URI relative = baseUrl.relativize(uri);
+        String path = relative.isAbsolute() ? uri.getHost() + uri.getPath() : relative.getPath();
+        return cacheDir.resolve(path.replace("..", "_"));
+    }
+
+    private synchronized HttpClient client() {
+        if (client == null) {
+            client = newHttpClient(timeout);
+        }
+        return client;
+    }
+
+    // Honours the [network] proxy settings; shared with the downloader
+    static HttpClient newHttpClient(Duration connectTimeout) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .version(HttpClient.Version.HTTP_1_1);
+        String proxyHost = getConfig().getOrDefault("network.proxy_host", "");
+        if (!proxyHost.isEmpty()) {
+            int proxyPort = (int) getConfigLong("network.proxy_port", 8080);
+            builder.proxy(ProxySelector.of(new InetSocketAddress(proxyHost, proxyPort)));
+        }
+        return builder.build();
+    }
+
+    // URLs of the sys-img sites listed in addons_list-*.xml, resolved against where it was
+    // fetched from rather than the cache file it was read out of
+    static List<URI> imageSites(Path addonsList, URI manifest) throws IOException, XMLStreamException {
+        List<URI> sites = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(addonsList)) {
+            XMLStreamReader reader = newReader(in);
+            boolean imageSite = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                if (name.equals("site")) {
+                    String type = reader.getAttributeValue(XSI, "type");
+                    imageSite = type != null && type.endsWith("sysImgSiteType");
+                } else if (name.equals("url") && imageSite) {
+                    sites.add(manifest.resolve(reader.getElementText().trim()));
+                }
+            }
+            reader.close();
+        }
+        if (sites.isEmpty()) {
+            throw new IOException("no system image sites in " + addonsList);
+        }
+        return sites;
+    }
+
+    private static Map<String, RemotePackage> parseFile(Path file, URI manifest) {
+        try (InputStream in = Files.newInputStream(file)) {
+            Map<String, RemotePackage> packages = new HashMap<>();
+            parse(in, manifest, packages);
+            return packages;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (XMLStreamException e) {
+            throw new UncheckedIOException(new IOException("Cannot parse " + manifest + ": " + e.getMessage(), e));
+        }
+    }
+
+    // One pass over a repository2 or sys-img2 manifest. Keeps stable-channel packages and, of
+    // each package's archives, the first one built for this host.
+    public static void parse(InputStream in, URI manifest, Map<String, RemotePackage> packages)
+            throws XMLStreamException {
+        XMLStreamReader reader = newReader(in);
+        Map<String, String> channels = new HashMap<>();
+
+        String path = null;
+        String channel = null;
+        String displayName = "";
+        String[] revision = new String[4];
+        String apiLevel = "";
+        String tagDisplay = "";
+        String vendorId = "";
+        String vendorDisplay = "";
+        String detailsGroup = null;
+        int packageDepth = -1;
+        boolean inRevision = false;
+        boolean inPatches = false;
+
+        boolean inArchive = false;
+        String hostOs = null;
+        String hostArch = null;
+        String url = null;
+        long size = 0;
+        String checksum = null;
+        String checksumType = null;
+        String chosenUrl = null;
+        long chosenSize = 0;
+        String chosenChecksum = null;
+        String chosenChecksumType = null;
+
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String name = reader.getLocalName();
+                switch (name) {
+                    case "channel":
+                        if (path == null) {
+                            channels.put(reader.getAttributeValue(null, "id"), reader.getElementText().trim());
+                            depth--;
+                        }
+                        break;
+                    case "remotePackage":
+                        path = reader.getAttributeValue(null, "path");
+                        packageDepth = depth;
+                        channel = null;
+                        displayName = "";
+                        revision = new String[4];
+                        apiLevel = "";
+                        tagDisplay = "";
+                        vendorId = "";
+                        vendorDisplay = "";
+                        chosenUrl = null;
+                        chosenSize = 0;
+                        chosenChecksum = null;
+                        chosenChecksumType = null;
+                        break;
+                    case "channelRef":
+                        channel = reader.getAttributeValue(null, "ref");
+                        break;
+                    case "display-name":
+                        if (depth == packageDepth + 1) {
+                            displayName = reader.getElementText().trim();
+                            depth--;
+                        }
+                        break;
+                    case "revision":
+                        inRevision = depth == packageDepth + 1;
+                        break;
+                    case "api-level":
+                        if (path != null) {
+                            apiLevel = reader.getElementText().trim();
+                            depth--;
+                        }
+                        break;
+                    case "tag":
+                    case "vendor":
+                        detailsGroup = path != null ? name : null;
+                        break;
+                    case "id":
+                    case "display":
+                        if ("vendor".equals(detailsGroup)) {
+                            String text = reader.getElementText().trim();
+                            depth--;
+                            if (name.equals("id")) {
+                                vendorId = text;
+                            } else {
+                                vendorDisplay = text;
+                            }
+                        } else if ("tag".equals(detailsGroup) && name.equals("display")) {
+                            tagDisplay = reader.getElementText().trim();
+                            depth--;
+                        }
+                        break;
+                    case "major":
+                    case "minor":
+                    case "micro":
+                    case "preview":
+                        if (inRevision) {
+                            int part = Arrays.asList("major", "minor", "micro", "preview").indexOf(name);
+                            revision[part] = reader.getElementText().trim();
+                            depth--;
+                        }
+                        break;
+                    case "archive":
+                        inArchive = true;
+                        hostOs = null;
+                        hostArch = null;
+                        url = null;
+                        size = 0;
+                        checksum = null;
+                        checksumType = null;
+                        break;
+                    case "patches":
+                        inPatches = true;
+                        break;
+                    case "host-os":
+                        if (inArchive) {
+                            hostOs = reader.getElementText().trim();
+                            depth--;
+                        }
+                        break;
+                    case "host-arch":
+                        if (inArchive) {
+                            hostArch = reader.getElementText().trim();
+                            depth--;
+                        }
+                        break;
+                    case "size":
+                        if (inArchive && !inPatches) {
+                            size = Long.parseLong(reader.getElementText().trim());
+                            depth--;
+                        }
+                        break;
+                    case "checksum":
+                        if (inArchive && !inPatches) {
+                            String type = reader.getAttributeValue(null, "type");
+                            checksumType = type == null ? "sha1" : type;
+                            checksum = reader.getElementText().trim();
+                            depth--;
+                        }
+                        break;
+                    case "url":
+                        if (inArchive && !inPatches) {
+                            url = reader.getElementText().trim();
+                            depth--;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "revision":
+                        inRevision = false;
+                        break;
+                    case "tag":
+                    case "vendor":
+                        detailsGroup = null;
+                        break;
+                    case "patches":
+                        inPatches = false;
+                        break;
+                    case "archive":
+                        inArchive = false;
+                        boolean osMatches = hostOs == null || hostOs.equals(HOST_OS);
+                        boolean archMatches = hostArch == null || hostArch.equals(HOST_ARCH);
+                        if (chosenUrl == null && url != null && osMatches && archMatches) {
+                            chosenUrl = manifest.resolve(url).toString();
+                            chosenSize = size;
+                            chosenChecksum = checksum;
+                            chosenChecksumType = checksumType;
+                        }
+                        break;
+                    case "remotePackage":
+                        // sdkmanager's default channel is 0, "stable"
+                        boolean stable = channel == null || channel.equals("channel-0")
+                            || "stable".equals(channels.get(channel));
+                        if (path != null && stable && revision[0] != null) {
+                            RemotePackage pkg = new RemotePackage(path, formatRevision(revision), displayName,
+                                chosenUrl, chosenSize, chosenChecksum, chosenChecksumType,
+                                apiLevel, tagDisplay, vendorId, vendorDisplay);
+                            packages.merge(path, pkg, RepositoryReader::newer);
+                        }
+                        path = null;
+                        packageDepth = -1;
+                        break;
+                    default:
+                        break;
+                }
+                depth--;
+            }
+        }
+        reader.close();
+    }
+
+    // newInstance() walks the service loader every call; one configured factory is shared
+    private static XMLInputFactory xmlInputFactory;
+
+    private static synchronized XMLStreamReader newReader(InputStream in) throws XMLStreamException {
+        if (xmlInputFactory == null) {
+            xmlInputFactory = XMLInputFactory.newInstance();
+            xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        }
+        return xmlInputFactory.createXMLStreamReader(in);
+    }
+
+    // "major[.minor[.micro]]", like the installed package.xml revisions, plus " rcN" for previews
+    private static String formatRevision(String[] revision) {
+        StringBuilder text = new StringBuilder(revision[0]);
+        for (int i = 1; i < 3 && revision[i] != null; i++) {
+            text.append('.').append(revision[i]);
+        }
+        if (revision[3] != null) {
+            text.append(" rc").append(revision[3]);
+        }
+        return text.toString();
+    }
+
+    private static RemotePackage newer(RemotePackage a, RemotePackage b) {
+        return compareRevisions(a.revision, b.revision) >= 0 ? a : b;
+    }
+
+    static int compareRevisions(String a, String b) {
+        String[] partsA = a.split("[. ]");
+        String[] partsB = b.split("[. ]");
+        for (int i = 0; i < Math.max(partsA.length, partsB.length); i++) {
+            int valueA = i < partsA.length ? revisionPart(partsA[i]) : 0;
+            int valueB = i < partsB.length ? revisionPart(partsB[i]) : 0;
+            if (valueA != valueB) {
+                return Integer.compare(valueA, valueB);
+            }
+        }
+        return 0;
+    }
+
+    private static int revisionPart(String part) {
+        try {
+            return Integer.parseInt(part.startsWith("rc") ? part.substring(2) : part);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String hostOs() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        if (os.contains("mac")) return "macosx";
+        if (os.contains("win")) return "windows";
+        return "linux";
+    }
+
+    private static String hostArch() {
+        String arch = System.getProperty("os.arch", "").toLowerCase(Locale.ROOT);
+        if (arch.equals("amd64") || arch.equals("x86_64")) return "x64";
+        if (arch.equals("arm64")) return "aarch64";
+        return arch;
+    }
+}
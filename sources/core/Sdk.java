@@ -0,0 +1,143 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Environment.*;
+
+// SDK tool wrappers (sdkmanager, avdmanager) and the in-process AVD and image indexes
+public final class Sdk {
+    static AvdInventory inventory;
+    static InstalledImageIndex installedImages;
+    public static final Object INSTALL_LOCK = new Object();
+    static final Duration AVDMANAGER_TIMEOUT = Duration.ofMinutes(2);
+    private static final int LICENSE_ANSWERS = 32;
+
+    public static synchronized AvdInventory getInventory() {
+        if (inventory == null) {
+            inventory = new AvdInventory(Paths.get(avdHome));
+        }
+        return inventory;
+    }
+
+    public static List<String> getAvailableAVDs() {
+        return getInventory().names();
+    }
+
+    public static boolean isSystemImageInstalled(String packageName) {
+        return getInstalledImages().isInstalled(packageName);
+    }
+
+    public static synchronized InstalledImageIndex getInstalledImages() {
+        if (installedImages == null) {
+            installedImages = new InstalledImageIndex(Paths.get(sdkPath, "system-images"));
+        }
+        return installedImages;
+    }
+
+    public static boolean installSDKPackage(String packageName) {
+        // System images come straight from the repository; anything else, or an image the
+        // repository cannot serve for this host, still goes through sdkmanager
+        if (packageName.startsWith("system-images;")) {
+            if (ImageInstaller.install(packageName)) {
+                return true;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                // Cancelled, not unavailable
+                return false;
+            }
+            System.out.println(YELLOW + "Falling back to sdkmanager for " + packageName + RESET);
+        }
+        List<String> command = new ArrayList<>();
+        command.add(sdkPath + "/cmdline-tools/latest/bin/sdkmanager");
+        command.add(packageName.isEmpty() ? "--update" : packageName);
+        command.add("--verbose");
+        long minutes = getConfigLong("network.install_timeout_minutes", 60);
+        try {
+            ProcessRunner.Result result = new ProcessRunner(command)
+                .sdkEnvironment()
+                // One answer per license prompt; sdkmanager asks once for each unaccepted license
+                .input(String.join("", Collections.nCopies(LICENSE_ANSWERS, "y\n")))
+                .timeout(Duration.ofMinutes(minutes))
+                .onLine(ProcessRunner.PRINT_LINES)
+                .maxOutput(0)
+                .run();
+            if (!result.succeeded()) {
+                System.err.println(RED + "sdkmanager failed (" + result.describe() + ")" + RESET);
+            }
+            return result.succeeded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println(RED + "Installation of " + packageName + " interrupted" + RESET);
+            return false;
+        } catch (Exception e) {
+            System.err.println(RED + "Error installing package: " + e.getMessage() + RESET);
+            return false;
+        }
+    }
+
+    public static boolean createAVD(String avdName, String packageName, String deviceId) {
+        if (AvdWriter.enabled()) {
+            try {
+                if (AvdWriter.create(avdName, packageName, deviceId)) {
+                    getInventory().refresh(avdName);
+                    return true;
+                }
+            } catch (IOException e) {
+                System.out.println(YELLOW + "Could not write the AVD directly (" + e.getMessage()
+                    + "), using avdmanager" + RESET);
+            }
+        }
+        try {
+            // "no" to the custom hardware profile question; --force replaces an existing AVD
+            ProcessRunner.Result result = new ProcessRunner(sdkPath + "/cmdline-tools/latest/bin/avdmanager",
+                    "create", "avd", "-n", avdName, "-k", packageName, "-d", deviceId, "--force")
+                .sdkEnvironment()
+                .input("no\n")
+                .timeout(AVDMANAGER_TIMEOUT)
+                .onLine(ProcessRunner.PRINT_LINES)
+                .maxOutput(0)
+                .run();
+            getInventory().refresh(avdName);
+            if (result.timedOut) {
+                System.err.println(RED + "avdmanager " + result.describe() + RESET);
+            }
+            return result.succeeded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            System.err.println(RED + "Error during device creation: " + e.getMessage() + RESET);
+            return false;
+        }
+    }
+
+    public static boolean deleteAVD(String avdName) {
+        try {
+            ProcessRunner.Result result = new ProcessRunner(sdkPath + "/cmdline-tools/latest/bin/avdmanager",
+                    "delete", "avd", "-n", avdName)
+                .sdkEnvironment()
+                .input("yes\n")
+                .timeout(AVDMANAGER_TIMEOUT)
+                .onLine(ProcessRunner.PRINT_LINES)
+                .maxOutput(0)
+                .run();
+            getInventory().refresh(avdName);
+            if (result.timedOut) {
+                System.err.println(RED + "avdmanager " + result.describe() + RESET);
+            }
+            return result.succeeded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            System.err.println(RED + "Error during device deletion: " + e.getMessage() + RESET);
+            return false;
+        }
+    }
+}
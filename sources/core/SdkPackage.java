@@ -0,0 +1,70 @@
+package org.jimedrand.avidia.core;
+
+// One row of `sdkmanager --list`, split into the fields its path encodes
+public final class SdkPackage {
+    public final String path;
+    public final String category;
+    // Null for packages that are not tied to one API level (emulator, build-tools, ...)
+    public final String apiLevel;
+    // Set for system images only
+    public final String tag;
+    public final String abi;
+    public final String installedRevision;
+    public final String availableRevision;
+    public final String description;
+
+    SdkPackage(String path, String installedRevision, String availableRevision, String description) {
+        this.path = path;
+        this.installedRevision = installedRevision;
+        this.availableRevision = availableRevision;
+        this.description = description;
+
+        // Path segments: category;android-API[;tag;abi], e.g. system-images;android-34;google_apis;x86_64
+        int first = path.indexOf(';');
+        this.category = first < 0 ? path : path.substring(0, first);
+        String api = null;
+        String tag = null;
+        String abi = null;
+        if (first >= 0 && path.startsWith("android-", first + 1)) {
+            int second = path.indexOf(';', first + 1);
+            api = path.substring(first + 1 + "android-".length(), second < 0 ? path.length() : second);
+            if (second >= 0 && category.equals("system-images")) {
+                int third = path.indexOf(';', second + 1);
+                if (third > 0) {
+                    tag = path.substring(second + 1, third);
+                    abi = path.substring(third + 1);
+                }
+            }
+        }
+        this.apiLevel = api;
+        this.tag = tag;
+        this.abi = abi;
+    }
+
+    public boolean isSystemImage() {
+        return tag != null;
+    }
+
+    public boolean isInstalled() {
+        return installedRevision != null;
+    }
+
+    // Newest revision known: the available one when the catalog lists it, else what is installed
+    public String revision() {
+        return availableRevision != null ? availableRevision : installedRevision;
+    }
+
+    public boolean hasUpdate() {
+        return installedRevision != null && availableRevision != null
+            && !installedRevision.equals(availableRevision);
+    }
+
+    SdkPackage withInstalled(String revision) {
+        return new SdkPackage(path, revision, availableRevision, description);
+    }
+
+    SdkPackage withAvailable(String revision, String description) {
+        return new SdkPackage(path, installedRevision, revision,
+            description.isEmpty() ? this.description : description);
+    }
+}
@@ -0,0 +1,73 @@
+package org.jimedrand.avidia.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Writes a stream to a new file, leaving every all-zero block as a hole. Disk images are mostly
+// zeros, so unpacked and copied images only allocate the blocks that hold data.
+final class SparseWriter {
+    // Filesystem block: the smallest hole worth leaving
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BUFFER_SIZE = 256 * BLOCK_SIZE;
+    private static final byte[] ZEROS = new byte[BLOCK_SIZE];
+
+    private SparseWriter() {
+    }
+
+    // Returns {size, bytes actually written}
+    static long[] write(InputStream in, Path target) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = 0;
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            int filled;
+            while ((filled = fill(in, buffer)) > 0) {
+                // Runs of non-zero blocks go out in one positional write straight from the buffer
+                int runStart = -1;
+                for (int offset = 0; offset < filled; offset += BLOCK_SIZE) {
+                    int length = Math.min(BLOCK_SIZE, filled - offset);
+                    boolean zero = Arrays.mismatch(buffer, offset, offset + length, ZEROS, 0, length) < 0;
+                    if (!zero && runStart < 0) {
+                        runStart = offset;
+                    } else if (zero && runStart >= 0) {
+                        written += write(channel, buffer, runStart, offset - runStart, position + runStart);
+                        runStart = -1;
+                    }
+                }
+                if (runStart >= 0) {
+                    written += write(channel, buffer, runStart, filled - runStart, position + runStart);
+                }
+                position += filled;
+            }
+            // A trailing hole still has to count towards the file size
+            if (channel.size() < position) {
+                written += write(channel, ZEROS, 0, 1, position - 1);
+            }
+        }
+        return new long[] {position, written};
+    }
+
+    private static int write(FileChannel channel, byte[] buffer, int offset, int length, long position) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(buffer, offset, length);
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+        return length;
+    }
+
+    // Reads until the buffer is full or the stream ends, so blocks stay aligned to the file
+    private static int fill(InputStream in, byte[] buffer) throws IOException {
+        int filled = 0;
+        int read;
+        while (filled < buffer.length && (read = in.read(buffer, filled, buffer.length - filled)) > 0) {
+            filled += read;
+        }
+        return filled;
+    }
+}
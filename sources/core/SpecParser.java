@@ -0,0 +1,365 @@
+package org.jimedrand.avidia.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reads spec files into Map / List / String trees. JSON is read as is; YAML is the block subset
+// people write by hand (nested mappings and "- " sequences, quoted or plain scalars, comments),
+// with [a, b] and {k: v} flow collections handled by the JSON reader, which also takes unquoted
+// words. Scalars stay strings; a spec decides what they mean.
+final class SpecParser {
+    private SpecParser() {
+    }
+
+    static Object parse(String text) {
+        String trimmed = text.trim();
+        if (trimmed.startsWith("{") || trimmed.startsWith("[")) {
+            Flow flow = new Flow(trimmed, 0);
+            Object value = flow.value();
+            flow.skipSpace();
+            if (flow.pos < trimmed.length()) {
+                throw flow.error("unexpected '" + trimmed.charAt(flow.pos) + "'");
+            }
+            return value;
+        }
+        return new Block(text).document();
+    }
+
+    // Indentation-structured YAML, one significant line at a time
+    private static final class Block {
+        private final List<Integer> numbers = new ArrayList<>();
+        private final List<Integer> indents = new ArrayList<>();
+        private final List<String> contents = new ArrayList<>();
+        private int index;
+
+        Block(String text) {
+            String[] lines = text.split("\r?\n", -1);
+            for (int i = 0; i < lines.length; i++) {
+                String line = stripComment(lines[i]);
+                if (line.trim().isEmpty() || line.trim().equals("---")) {
+                    continue;
+                }
+                int indent = 0;
+                while (line.charAt(indent) == ' ') {
+                    indent++;
+                }
+                if (line.charAt(indent) == '\t') {
+                    throw new IllegalArgumentException("line " + (i + 1) + ": tabs cannot indent YAML");
+                }
+                numbers.add(i + 1);
+                indents.add(indent);
+                contents.add(line.trim());
+            }
+        }
+
+        Object document() {
+            if (contents.isEmpty()) {
+                return new LinkedHashMap<String, Object>();
+            }
+            Object value = node(indents.get(0));
+            if (index < contents.size()) {
+                throw error("unexpected indentation");
+            }
+            return value;
+        }
+
+        private Object node(int indent) {
+            return isItem(contents.get(index)) ? sequence(indent) : mapping(indent);
+        }
+
+        private List<Object> sequence(int indent) {
+            List<Object> items = new ArrayList<>();
+            while (index < contents.size() && indents.get(index) == indent && isItem(contents.get(index))) {
+                String rest = contents.get(index).substring(1).trim();
+                if (rest.isEmpty()) {
+                    index++;
+                    items.add(nested(indent));
+                } else if (keyEnd(rest) > 0) {
+                    // "- name: x" opens a mapping whose keys line up with "name"
+                    int column = indent + contents.get(index).indexOf(rest);
+                    indents.set(index, column);
+                    contents.set(index, rest);
+                    items.add(mapping(column));
+                } else {
+                    index++;
+                    items.add(scalar(rest));
+                }
+            }
+            return items;
+        }
+
+        private Map<String, Object> mapping(int indent) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            while (index < contents.size() && indents.get(index) == indent && !isItem(contents.get(index))) {
+                String line = contents.get(index);
+                int end = keyEnd(line);
+                if (end <= 0) {
+                    throw error("expected 'key: value'");
+                }
+                String key = unquote(line.substring(0, end).trim());
+                String rest = line.substring(end + 1).trim();
+                if (values.containsKey(key)) {
+                    throw error("duplicate key '" + key + "'");
+                }
+                index++;
+                if (!rest.isEmpty()) {
+                    values.put(key, scalar(rest));
+                } else if (index < contents.size() && indents.get(index) == indent && isItem(contents.get(index))) {
+                    // YAML lets a sequence sit at its key's own indentation
+                    values.put(key, sequence(indent));
+                } else {
+                    values.put(key, nested(indent));
+                }
+            }
+            return values;
+        }
+
+        // The block under a key or "-" with nothing after it; null when there is none
+        private Object nested(int parentIndent) {
+            if (index >= contents.size() || indents.get(index) <= parentIndent) {
+                return null;
+            }
+            return node(indents.get(index));
+        }
+
+        private Object scalar(String text) {
+            if (text.startsWith("[") || text.startsWith("{")) {
+                Flow flow = new Flow(text, numbers.get(index - 1));
+                Object value = flow.value();
+                flow.skipSpace();
+                if (flow.pos < text.length()) {
+                    throw flow.error("unexpected '" + text.charAt(flow.pos) + "'");
+                }
+                return value;
+            }
+            if (text.equals("~") || text.equals("null")) {
+                return null;
+            }
+            return unquote(text);
+        }
+
+        private IllegalArgumentException error(String message) {
+            int line = numbers.get(Math.min(index, numbers.size() - 1));
+            return new IllegalArgumentException("line " + line + ": " + message);
+        }
+
+        private static boolean isItem(String content) {
+            return content.equals("-") || content.startsWith("- ");
+        }
+
+        // Position of the ':' that ends a key, or -1
+        private static int keyEnd(String line) {
+            char quote = 0;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (i == 0 && (c == '"' || c == '\'')) {
+                    quote = c;
+                } else if (c == ':' && (i + 1 == line.length() || line.charAt(i + 1) == ' ')) {
+                    return i;
+                } else if (i == 0 && (c == '[' || c == '{')) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        // A '#' starts a comment at the line start or after a space, outside quotes
+        private static String stripComment(String line) {
+            char quote = 0;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '#' && (i == 0 || line.charAt(i - 1) == ' ')) {
+                    return line.substring(0, i);
+                }
+            }
+            return line;
+        }
+    }
+
+    private static String unquote(String text) {
+        if (text.length() >= 2 && text.startsWith("'") && text.endsWith("'")) {
+            return text.substring(1, text.length() - 1).replace("''", "'");
+        }
+        if (text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")) {
+            return new Flow(text, 0).value().toString();
+        }
+        return text;
+    }
+
+    // JSON, plus the unquoted words of YAML flow collections
+    private static final class Flow {
+        private final String text;
+        private final int line;
+        int pos;
+
+        Flow(String text, int line) {
+            this.text = text;
+            this.line = line;
+        }
+
+        Object value() {
+            skipSpace();
+            if (pos >= text.length()) {
+                throw error("unexpected end");
+            }
+            char c = text.charAt(pos);
+            if (c == '{') {
+                return object();
+            }
+            if (c == '[') {
+                return array();
+            }
+            if (c == '"') {
+                return string();
+            }
+            String word = word();
+            return word.equals("null") ? null : word;
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> values = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return values;
+            }
+            while (true) {
+                skipSpace();
+                Object key = peek() == '"' ? string() : word();
+                skipSpace();
+                expect(':');
+                values.put(String.valueOf(key), value());
+                skipSpace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect('}');
+                    return values;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> values = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (peek() == ']') {
+                pos++;
+                return values;
+            }
+            while (true) {
+                values.add(value());
+                skipSpace();
+                if (peek() == ',') {
+                    pos++;
+                } else {
+                    expect(']');
+                    return values;
+                }
+            }
+        }
+
+        private String string() {
+            StringBuilder value = new StringBuilder();
+            pos++;
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("bad \\u escape");
+                        }
+                        value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        // A bare number, true/false/null or unquoted YAML word, up to the next delimiter
+        private String word() {
+            int start = pos;
+            while (pos < text.length() && ",:]}".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String word = text.substring(start, pos).trim();
+            if (word.isEmpty()) {
+                throw error("expected a value");
+            }
+            return unquote(word);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private char peek() {
+            return pos < text.length() ? text.charAt(pos) : 0;
+        }
+
+        void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            if (line > 0) {
+                return new IllegalArgumentException("line " + line + ": " + message);
+            }
+            // JSON documents report the line the offset falls on
+            int number = 1;
+            for (int i = 0; i < Math.min(pos, text.length()); i++) {
+                if (text.charAt(i) == '\n') {
+                    number++;
+                }
+            }
+            return new IllegalArgumentException("line " + number + ": " + message);
+        }
+    }
+}
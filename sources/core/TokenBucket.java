@@ -0,0 +1,59 @@
+package org.jimedrand.avidia.core;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Caps the combined rate of every download segment. Takers go into debt and sleep it off
+// outside the lock, so one slow reader never holds up the others' bookkeeping.
+final class TokenBucket {
+    private final long bytesPerSecond;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+    }
+
+    void acquire(int bytes) throws InterruptedException {
+        long sleepNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            // At most one second of burst
+            tokens = Math.min(bytesPerSecond, tokens + (now - lastRefill) * bytesPerSecond / 1e9);
+            lastRefill = now;
+            tokens -= bytes;
+            sleepNanos = tokens < 0 ? (long) (-tokens * 1e9 / bytesPerSecond) : 0;
+        }
+        if (sleepNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        }
+    }
+
+    // "10M", "512K" or plain bytes per second; 0 or empty means no cap
+    static long parseRate(String value) {
+        String rate = value.trim().toUpperCase(Locale.ROOT);
+        if (rate.isEmpty()) {
+            return 0;
+        }
+        long unit = 1;
+        if (rate.endsWith("B")) {
+            rate = rate.substring(0, rate.length() - 1);
+        }
+        if (rate.endsWith("K")) {
+            unit = 1024;
+        } else if (rate.endsWith("M")) {
+            unit = 1024 * 1024;
+        } else if (rate.endsWith("G")) {
+            unit = 1024L * 1024 * 1024;
+        }
+        if (unit > 1) {
+            rate = rate.substring(0, rate.length() - 1);
+        }
+        try {
+            return (long) (Double.parseDouble(rate) * unit);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
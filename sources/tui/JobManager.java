@@ -0,0 +1,321 @@
+package org.jimedrand.avidia.tui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jimedrand.avidia.cli.RoutedOutput;
+
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Runs the TUI's installs and creates off the Lanterna thread. Installs and creates have their own
+// pools, and a create only reaches its pool once the image it needs is in, so waiting creates never
+// hold up installs. Each job's output is captured; the last "NN%" it printed is its progress.
+final class JobManager {
+    enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED, SKIPPED }
+
+    private static final int LOG_LINES = 200;
+    private static final Pattern PERCENT = Pattern.compile("(\\d{1,3})%");
+    private static final Pattern ANSI_CODE = Pattern.compile("\u001B\\[[0-9;]*m");
+    // The "[=====     ]" of a progress bar; the percentage column already shows it
+    private static final Pattern BAR = Pattern.compile("^\\[[=> -]*\\]\\s*");
+    private static final List<Job> JOBS = new CopyOnWriteArrayList<>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+    private static ExecutorService installPool;
+    private static ExecutorService createPool;
+
+    static final class Job {
+        final int id;
+        final String kind;
+        final String target;
+        volatile State state = State.QUEUED;
+        // -1 until the job prints a percentage
+        volatile int percent = -1;
+        // Last line the job printed
+        volatile String status = "";
+        volatile long startedAt;
+        volatile long finishedAt;
+        private final Deque<String> log = new ArrayDeque<>();
+        private final CompletableFuture<Boolean> done = new CompletableFuture<>();
+        private boolean cancelRequested;
+        private Thread worker;
+
+        Job(String kind, String target) {
+            this.id = NEXT_ID.getAndIncrement();
+            this.kind = kind;
+            this.target = target;
+        }
+
+        boolean finished() {
+            State current = state;
+            return current != State.QUEUED && current != State.RUNNING;
+        }
+
+        // Interrupts a running job, which stops its download or kills its child process
+        void cancel() {
+            synchronized (this) {
+                if (finished()) {
+                    return;
+                }
+                cancelRequested = true;
+                if (state == State.RUNNING) {
+                    worker.interrupt();
+                    return;
+                }
+                finish(State.CANCELLED);
+            }
+            done.complete(false);
+        }
+
+        List<String> log() {
+            synchronized (log) {
+                return new ArrayList<>(log);
+            }
+        }
+
+        private void run(BooleanSupplier work) {
+            synchronized (this) {
+                if (state != State.QUEUED) {
+                    return;
+                }
+                state = State.RUNNING;
+                status = "";
+                startedAt = System.currentTimeMillis();
+                worker = Thread.currentThread();
+            }
+            JobOutput output = new JobOutput(this);
+            OutputStream previousOut = RoutedOutput.stdoutRouter.route(output);
+            OutputStream previousErr = RoutedOutput.stderrRouter.route(output);
+            boolean success;
+            try {
+                success = work.getAsBoolean();
+            } catch (RuntimeException e) {
+                System.err.println(RED + "Job failed: " + e + RESET);
+                success = false;
+            } finally {
+                System.out.flush();
+                System.err.flush();
+                RoutedOutput.stdoutRouter.route(previousOut);
+                RoutedOutput.stderrRouter.route(previousErr);
+                output.close();
+            }
+            synchronized (this) {
+                worker = null;
+                // A cancel that came in as the work ended must not reach the pool's next job
+                Thread.interrupted();
+                finish(cancelRequested ? State.CANCELLED : success ? State.DONE : State.FAILED);
+            }
+            done.complete(state == State.DONE);
+        }
+
+        private void skip(String reason) {
+            synchronized (this) {
+                if (state != State.QUEUED) {
+                    return;
+                }
+                status = reason;
+                finish(State.SKIPPED);
+            }
+            done.complete(false);
+        }
+
+        private void finish(State result) {
+            if (result == State.DONE) {
+                percent = 100;
+            }
+            finishedAt = System.currentTimeMillis();
+            state = result;
+        }
+
+        private void addLine(String line, boolean keep) {
+            String plain = ANSI_CODE.matcher(line).replaceAll("").trim();
+            if (plain.isEmpty()) {
+                return;
+            }
+            status = BAR.matcher(plain).replaceFirst("");
+            Matcher matcher = PERCENT.matcher(plain);
+            if (matcher.find()) {
+                percent = Math.min(100, Integer.parseInt(matcher.group(1)));
+            }
+            if (keep) {
+                synchronized (log) {
+                    log.addLast(plain);
+                    if (log.size() > LOG_LINES) {
+                        log.removeFirst();
+                    }
+                }
+            }
+        }
+    }
+
+    // Splits a job's output into lines; "\r" progress redraws update the status but only the
+    // last state of a bar is logged
+    private static final class JobOutput extends OutputStream {
+        private final Job job;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private String redrawn;
+
+        JobOutput(Job job) {
+            this.job = job;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (b == '\n') {
+                String text = text();
+                if (text.trim().isEmpty() && redrawn != null) {
+                    text = redrawn;
+                }
+                job.addLine(text, true);
+                redrawn = null;
+            } else if (b == '\r') {
+                String text = text();
+                if (!text.trim().isEmpty()) {
+                    redrawn = text;
+                    job.addLine(text, false);
+                }
+            } else {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            job.addLine(redrawn != null && line.size() == 0 ? redrawn : text(), true);
+        }
+
+        private String text() {
+            String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+            line.reset();
+            return text;
+        }
+    }
+
+    private JobManager() {
+    }
+
+    // Installs the image, or returns the queued or running install of it
+    static synchronized Job install(String packagePath) {
+        for (Job job : JOBS) {
+            if (job.kind.equals("install") && job.target.equals(packagePath) && !job.finished()) {
+                return job;
+            }
+        }
+        Job job = add(new Job("install", packagePath));
+        pools();
+        installPool.execute(() -> job.run(() -> installSDKPackage(packagePath)));
+        return job;
+    }
+
+    // Creates the AVD once `image` (an install job, or null) has succeeded
+    static synchronized Job create(String avdName, String packagePath, String deviceId, Job image) {
+        Job job = add(new Job("create", avdName));
+        pools();
+        Runnable run = () -> job.run(() -> createAVD(avdName, packagePath, deviceId));
+        if (image == null) {
+            createPool.execute(run);
+        } else {
+            job.status = "Waiting for " + packagePath;
+            image.done.thenAccept(installed -> {
+                if (installed) {
+                    createPool.execute(run);
+                } else {
+                    job.skip("Image " + packagePath + " was not installed");
+                }
+            });
+        }
+        return job;
+    }
+
+    // The unfinished create for this AVD, if any
+    static Job pendingCreate(String avdName) {
+        for (Job job : JOBS) {
+            if (job.kind.equals("create") && job.target.equals(avdName) && !job.finished()) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    static List<Job> jobs() {
+        return new ArrayList<>(JOBS);
+    }
+
+    static int active() {
+        int count = 0;
+        for (Job job : JOBS) {
+            if (!job.finished()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static void clearFinished() {
+        JOBS.removeIf(Job::finished);
+    }
+
+    // Cancels everything and waits for running jobs to stop their child processes
+    static boolean cancelAll(long timeoutMillis) {
+        List<Job> jobs = jobs();
+        for (Job job : jobs) {
+            job.cancel();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Job job : jobs) {
+            long left = deadline - System.currentTimeMillis();
+            try {
+                job.done.get(Math.max(0, left), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Job add(Job job) {
+        JOBS.add(job);
+        return job;
+    }
+
+    private static void pools() {
+        if (installPool != null) {
+            return;
+        }
+        // Job output is captured per thread through the routed System.out/err
+        RoutedOutput.installOutputRouting();
+        // [performance] background_installs: images downloaded at once
+        int installs = (int) Math.max(1, getConfigLong("performance.background_installs", 3));
+        installPool = Executors.newFixedThreadPool(installs, runnable -> {
+            Thread thread = new Thread(runnable, "avidia-tui-install");
+            thread.setDaemon(true);
+            return thread;
+        });
+        createPool = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "avidia-tui-create");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
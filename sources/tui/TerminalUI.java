@@ -0,0 +1,995 @@
+package org.jimedrand.avidia.tui;
+
+import com.googlecode.lanterna.TextColor;
+import com.googlecode.lanterna.graphics.TextGraphics;
+import com.googlecode.lanterna.input.KeyStroke;
+import com.googlecode.lanterna.input.KeyType;
+import com.googlecode.lanterna.screen.Screen;
+import com.googlecode.lanterna.screen.TerminalScreen;
+import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
+import com.googlecode.lanterna.terminal.Terminal;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.jimedrand.avidia.cli.InteractiveMenu;
+import org.jimedrand.avidia.core.DeviceDefinition;
+import org.jimedrand.avidia.core.LaunchProfile;
+import org.jimedrand.avidia.core.PackageIndex;
+
+import static org.jimedrand.avidia.core.Ansi.*;
+import static org.jimedrand.avidia.core.Catalogs.*;
+import static org.jimedrand.avidia.core.Emulators.*;
+import static org.jimedrand.avidia.core.Environment.*;
+import static org.jimedrand.avidia.core.Sdk.*;
+
+// Lanterna terminal UI. Loaded reflectively by `avidia tui` so other commands never touch Lanterna.
+public final class TerminalUI {
+    // How often screens redraw job progress while jobs run
+    static final long REFRESH_MILLIS = 250;
+    // Long enough for sdkmanager to be stopped and a download to save its resume state
+    static final long CANCEL_TIMEOUT_MILLIS = 15_000;
+    static Screen screen;
+    static TextGraphics graphics;
+
+    public static void startTerminalUI() {
+        try {
+            Terminal terminal = new DefaultTerminalFactory().createTerminal();
+            screen = new TerminalScreen(terminal);
+            screen.startScreen();
+            screen.doResizeIfNecessary();
+            graphics = screen.newTextGraphics();
+            getInventory().watch();
+            
+            showMainMenu();
+        } catch (Exception e) {
+            cleanupTerminal();
+            System.err.println(RED + "Terminal UI error: " + e.getMessage() + RESET);
+            System.out.println("Falling back to command-line interface...");
+            InteractiveMenu.showCLIMenu();
+        } finally {
+            cleanupTerminal();
+        }
+    }
+
+    static void cleanupTerminal() {
+        if (screen != null) {
+            try {
+                screen.stopScreen();
+            } catch (IOException e) {
+                // Ignore
+            }
+            screen = null;
+        }
+    }
+
+    static void showMainMenu() throws IOException {
+        boolean running = true;
+        int selectedItem = 0;
+        final String[] menuItems = {
+            "List Virtual Devices",
+            "Create New Device",
+            "Start Virtual Device",
+            "Stop Virtual Device",
+            "Remove Virtual Device",
+            "Install System Image",
+            "Background Jobs",
+            "System Information",
+            "Exit to Shell"
+        };
+        
+        while (running) {
+            screen.clear();
+            drawHeader("AVIDIA - Android Virtual Device Manager");
+            
+            int menuStartY = 6;
+            for (int i = 0; i < menuItems.length; i++) {
+                if (i == selectedItem) {
+                    graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+                    graphics.putString(4, menuStartY + i, "> " + menuItems[i]);
+                } else {
+                    graphics.setForegroundColor(TextColor.ANSI.WHITE);
+                    graphics.putString(4, menuStartY + i, "  " + menuItems[i]);
+                }
+            }
+            drawJobsPanel(menuStartY + menuItems.length + 2);
+            
+            drawFooter("Use Arrow keys to navigate, Enter to select, J for jobs, Q to quit");
+            screen.refresh();
+            
+            KeyStroke keyStroke = readInputOrTick();
+            if (keyStroke != null) {
+                switch (keyStroke.getKeyType()) {
+                    case ArrowDown:
+                        selectedItem = (selectedItem + 1) % menuItems.length;
+                        break;
+                    case ArrowUp:
+                        selectedItem = (selectedItem - 1 + menuItems.length) % menuItems.length;
+                        break;
+                    case Enter:
+                        switch (selectedItem) {
+                            case 0:
+                                listAVDsTUI();
+                                break;
+                            case 1:
+                                createAVDTUI();
+                                break;
+                            case 2:
+                                startAVDTUI();
+                                break;
+                            case 3:
+                                stopAVDTUI();
+                                break;
+                            case 4:
+                                deleteAVDTUI();
+                                break;
+                            case 5:
+                                installImageTUI();
+                                break;
+                            case 6:
+                                showJobsTUI();
+                                break;
+                            case 7:
+                                showSystemInfo();
+                                break;
+                            case 8:
+                                running = !confirmExit();
+                                break;
+                        }
+                        break;
+                    case Character:
+                        char c = Character.toLowerCase(keyStroke.getCharacter());
+                        if (c == 'q') {
+                            running = !confirmExit();
+                        } else if (c == 'j') {
+                            showJobsTUI();
+                        }
+                        break;
+                    case Escape:
+                        running = !confirmExit();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        
+        cleanupTerminal();
+        System.out.println(CYAN + "\nReturning to Terminal..." + RESET);
+    }
+
+    static void drawHeader(String title) {
+        int width = screen.getTerminalSize().getColumns();
+        graphics.setForegroundColor(TextColor.ANSI.CYAN);
+        graphics.putString(0, 0, "=".repeat(width));
+        graphics.putString(0, 1, centerText(title, width));
+        graphics.putString(0, 2, "=".repeat(width));
+    }
+
+    static void drawFooter(String text) {
+        int width = screen.getTerminalSize().getColumns();
+        int height = screen.getTerminalSize().getRows();
+        
+        graphics.setForegroundColor(TextColor.ANSI.BLUE);
+        graphics.putString(0, height - 2, "-".repeat(width));
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(0, height - 1, centerText(text, width));
+    }
+
+    static String centerText(String text, int width) {
+        int padding = (width - text.length()) / 2;
+        return " ".repeat(Math.max(0, padding)) + text;
+    }
+
+    // Blocks for a key while nothing runs in the background; otherwise returns null every
+    // REFRESH_MILLIS so the caller redraws job progress
+    static KeyStroke readInputOrTick() throws IOException {
+        if (JobManager.active() == 0) {
+            return screen.readInput();
+        }
+        long deadline = System.currentTimeMillis() + REFRESH_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            KeyStroke keyStroke = screen.pollInput();
+            if (keyStroke != null) {
+                return keyStroke;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // The most recent jobs under the main menu, as many as fit above the footer
+    static void drawJobsPanel(int y) {
+        List<JobManager.Job> jobs = JobManager.jobs();
+        int width = screen.getTerminalSize().getColumns();
+        int rows = screen.getTerminalSize().getRows() - 3 - (y + 1);
+        if (jobs.isEmpty() || rows <= 0) {
+            return;
+        }
+        graphics.setForegroundColor(TextColor.ANSI.CYAN);
+        graphics.putString(4, y, "Background jobs (" + JobManager.active() + " active)");
+        List<JobManager.Job> shown = jobs.subList(Math.max(0, jobs.size() - rows), jobs.size());
+        for (int i = 0; i < shown.size(); i++) {
+            drawJob(6, y + 1 + i, shown.get(i), width);
+        }
+    }
+
+    static void drawJob(int x, int y, JobManager.Job job, int width) {
+        switch (job.state) {
+            case RUNNING:
+                graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+                break;
+            case DONE:
+                graphics.setForegroundColor(TextColor.ANSI.GREEN);
+                break;
+            case FAILED:
+                graphics.setForegroundColor(TextColor.ANSI.RED);
+                break;
+            default:
+                graphics.setForegroundColor(TextColor.ANSI.WHITE);
+                break;
+        }
+        String target = job.target.startsWith("system-images;") ? job.target.substring("system-images;".length()) : job.target;
+        String line = String.format("%-9s %4s  %-7s %s", job.state, job.percent >= 0 ? job.percent + "%" : "", job.kind, target);
+        if (job.state != JobManager.State.DONE && !job.status.isEmpty()) {
+            line += "  " + job.status;
+        }
+        int room = width - x - 1;
+        graphics.putString(x, y, line.length() > room ? line.substring(0, Math.max(0, room)) : line);
+    }
+
+    static void showJobsTUI() throws IOException {
+        int selected = 0;
+        while (true) {
+            List<JobManager.Job> jobs = JobManager.jobs();
+            selected = Math.max(0, Math.min(selected, jobs.size() - 1));
+            int width = screen.getTerminalSize().getColumns();
+            int visible = Math.max(1, screen.getTerminalSize().getRows() - 8);
+            int first = Math.max(0, selected - visible + 1);
+
+            screen.clear();
+            drawHeader("BACKGROUND JOBS");
+            if (jobs.isEmpty()) {
+                graphics.setForegroundColor(TextColor.ANSI.WHITE);
+                graphics.putString(4, 5, "No background jobs. Installs and creates queued from the menu show up here.");
+            }
+            for (int i = first; i < jobs.size() && i - first < visible; i++) {
+                graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+                graphics.putString(2, 5 + i - first, i == selected ? ">" : " ");
+                drawJob(4, 5 + i - first, jobs.get(i), width);
+            }
+            drawFooter("Enter for output, C to cancel, X to clear finished, Esc to return");
+            screen.refresh();
+
+            KeyStroke keyStroke = readInputOrTick();
+            if (keyStroke == null) continue;
+
+            switch (keyStroke.getKeyType()) {
+                case ArrowUp:
+                    selected = Math.max(0, selected - 1);
+                    break;
+                case ArrowDown:
+                    selected = Math.min(jobs.size() - 1, selected + 1);
+                    break;
+                case Enter:
+                    if (!jobs.isEmpty()) {
+                        showJobOutput(jobs.get(selected));
+                    }
+                    break;
+                case Escape:
+                    return;
+                case Character:
+                    char c = Character.toLowerCase(keyStroke.getCharacter());
+                    if (c == 'c' && !jobs.isEmpty()) {
+                        jobs.get(selected).cancel();
+                    } else if (c == 'x') {
+                        JobManager.clearFinished();
+                    } else if (c == 'q') {
+                        return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // The tail of what the job printed, as it stood when opened
+    static void showJobOutput(JobManager.Job job) throws IOException {
+        List<String> log = job.log();
+        int room = Math.max(1, screen.getTerminalSize().getRows() - 11);
+        StringBuilder text = new StringBuilder("State: " + job.state);
+        if (job.percent >= 0) {
+            text.append(" (").append(job.percent).append("%)");
+        }
+        text.append("\n");
+        if (log.isEmpty()) {
+            text.append("\n").append(job.status.isEmpty() ? "No output yet" : job.status);
+        }
+        for (String line : log.subList(Math.max(0, log.size() - room), log.size())) {
+            text.append("\n").append(line);
+        }
+        showMessage("JOB " + job.id + ": " + job.kind.toUpperCase() + " " + job.target, text.toString());
+    }
+
+    // True when the TUI may close: nothing is running, or the user agrees to cancel what is
+    static boolean confirmExit() throws IOException {
+        int active = JobManager.active();
+        if (active == 0) {
+            return true;
+        }
+        screen.clear();
+        drawHeader("BACKGROUND JOBS RUNNING");
+        graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+        graphics.putString(4, 6, active + " background job(s) have not finished.");
+        graphics.putString(4, 8, "Cancel them and exit?");
+        if (!"yes".equals(selectYesNo(4, 10))) {
+            return false;
+        }
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 12, "Stopping background jobs...");
+        screen.refresh();
+        JobManager.cancelAll(CANCEL_TIMEOUT_MILLIS);
+        return true;
+    }
+
+    static void listAVDsTUI() throws IOException {
+        screen.clear();
+        drawHeader("AVAILABLE VIRTUAL DEVICES");
+        
+        List<String> avds = getAvailableAVDs();
+        if (avds.isEmpty()) {
+            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+            graphics.putString(4, 6, "No virtual devices found.");
+            graphics.setForegroundColor(TextColor.ANSI.WHITE);
+            graphics.putString(4, 8, "Create one using the 'Create New Device' option");
+        } else {
+            graphics.setForegroundColor(TextColor.ANSI.WHITE);
+            graphics.putString(4, 5, "Available AVDs:");
+            for (int i = 0; i < avds.size() && i < 15; i++) {
+                graphics.putString(6, 7 + i, "[" + (i+1) + "] " + avds.get(i));
+            }
+            if (avds.size() > 15) {
+                graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+                graphics.putString(6, 23, "Showing first 15 devices of " + avds.size() + " total");
+            }
+        }
+        
+        drawFooter("Press Enter to return to main menu");
+        screen.refresh();
+        waitForEnter();
+    }
+
+    static void createAVDTUI() throws IOException {
+        awaitAndroidVersions();
+        screen.clear();
+        drawHeader("CREATE NEW VIRTUAL DEVICE");
+        
+        String avdName = inputField(4, 5, "Device name:", 30);
+        if (avdName == null || avdName.trim().isEmpty()) {
+            showMessage("Error", "Device name cannot be empty");
+            return;
+        }
+        
+        // Validate name (alphanumeric and underscores only)
+        if (!Pattern.matches("[a-zA-Z0-9_]+", avdName)) {
+            showMessage("Error", "Device name can only contain letters, numbers, and underscores");
+            return;
+        }
+        
+        String apiLevel = selectFromList(4, 8, "Select Android version:", ANDROID_VERSIONS.entrySet().stream()
+            .map(e -> e.getKey() + " (API " + e.getValue() + ")")
+            .toArray(String[]::new), 20);
+        if (apiLevel == null) return;
+        
+        String selectedApi = ANDROID_VERSIONS.entrySet().stream()
+            .filter(e -> (e.getKey() + " (API " + e.getValue() + ")").equals(apiLevel))
+            .findFirst()
+            .map(Map.Entry::getValue)
+            .orElse("34");
+        
+        String abiSelection = selectFromList(4, 12, "Select Architecture:", ABI_TYPES, 15);
+        if (abiSelection == null) return;
+        
+        String abi = "x86_64";
+        if (abiSelection.contains("x86 (")) abi = "x86";
+        else if (abiSelection.contains("arm64-v8a")) abi = "arm64-v8a";
+        
+        String[][] filteredImageTypes = IMAGE_TYPES;
+        if (selectedApi.equals("23") || Integer.parseInt(selectedApi) < 23) {
+            filteredImageTypes = new String[][] {
+                {"google_apis", "Google APIs (No Play Store, with Google Services)"},
+                {"android", "AOSP (Android Open Source Project, no Google services)"}
+            };
+        }
+        
+        String imageTypeSelection = selectFromList(4, 16, "Select Image Type:",
+            Arrays.stream(filteredImageTypes)
+                .map(t -> t[1])
+                .toArray(String[]::new), 15);
+        if (imageTypeSelection == null) return;
+        
+        String imageType = "google_apis";
+        for (String[] type : filteredImageTypes) {
+            if (type[1].equals(imageTypeSelection)) {
+                imageType = type[0];
+                break;
+            }
+        }
+        
+        awaitDeviceDefinitions();
+        List<DeviceDefinition> devices = devicesFor(imageType, abi);
+        String[] deviceNames = devices.stream()
+            .map(DeviceDefinition::label)
+            .toArray(String[]::new);
+        
+        String deviceSelection = selectFromList(4, 20, "Select Device Model:", deviceNames, 15);
+        if (deviceSelection == null) return;
+        
+        String deviceId = "pixel_5";
+        for (DeviceDefinition device : devices) {
+            if (device.label().equals(deviceSelection)) {
+                deviceId = device.id;
+                break;
+            }
+        }
+        
+        String packageName = String.format("system-images;android-%s;%s;%s", selectedApi, imageType, abi);
+        
+        JobManager.Job install = null;
+        if (!isSystemImageInstalled(packageName)) {
+            screen.clear();
+            drawHeader("SYSTEM IMAGE NOT INSTALLED");
+            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+            graphics.putString(4, 6, "The required system image is not installed:");
+            graphics.setForegroundColor(TextColor.ANSI.WHITE);
+            graphics.putString(6, 8, packageName);
+            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+            graphics.putString(4, 10, "Would you like to install it now?");
+            
+            String confirm = selectYesNo(4, 12);
+            if (!"yes".equals(confirm)) {
+                showMessage("Cancelled", "AVD creation cancelled");
+                return;
+            }
+            
+            // Downloads while the rest is confirmed
+            install = JobManager.install(packageName);
+        }
+        
+        screen.clear();
+        drawHeader("CREATE VIRTUAL DEVICE - CONFIRMATION");
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 6, "Device Name: " + avdName);
+        graphics.putString(4, 8, "Android Version: " + apiLevel);
+        graphics.putString(4, 10, "Architecture: " + abiSelection.split(" ")[0]);
+        graphics.putString(4, 12, "Image Type: " + imageTypeSelection);
+        graphics.putString(4, 14, "Device Model: " + deviceSelection);
+        
+        graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+        graphics.putString(4, 17, "Do you want to create this virtual device?");
+        String confirm = selectYesNo(4, 19);
+        if (!"yes".equals(confirm)) {
+            showMessage("Cancelled", "AVD creation cancelled");
+            return;
+        }
+        
+        if (JobManager.pendingCreate(avdName) != null) {
+            showMessage("Error", "A job creating '" + avdName + "' is already queued");
+            return;
+        }
+        
+        // Runs in the background once the image is in; progress shows under the main menu
+        JobManager.create(avdName, packageName, deviceId, install);
+    }
+
+    static String inputField(int x, int y, String prompt, int maxLength) throws IOException {
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(x, y, prompt);
+        
+        StringBuilder input = new StringBuilder();
+        int cursorPos = 0;
+        
+        while (true) {
+            graphics.setForegroundColor(TextColor.ANSI.WHITE);
+            graphics.putString(x + prompt.length() + 1, y, " ".repeat(maxLength));
+            graphics.putString(x + prompt.length() + 1, y, input.toString());
+            
+            graphics.setForegroundColor(TextColor.ANSI.GREEN);
+            if (cursorPos < input.length()) {
+                graphics.putString(x + prompt.length() + 1 + cursorPos, y, input.charAt(cursorPos) + "");
+            } else {
+                graphics.putString(x + prompt.length() + 1 + cursorPos, y, "_");
+            }
+            
+            screen.refresh();
+            KeyStroke keyStroke = screen.readInput();
+            if (keyStroke == null) continue;
+            
+            switch (keyStroke.getKeyType()) {
+                case Enter:
+                    return input.toString();
+                case Backspace:
+                    if (cursorPos > 0) {
+                        input.deleteCharAt(cursorPos - 1);
+                        cursorPos--;
+                    }
+                    break;
+                case Delete:
+                    if (cursorPos < input.length()) {
+                        input.deleteCharAt(cursorPos);
+                    }
+                    break;
+                case ArrowLeft:
+                    cursorPos = Math.max(0, cursorPos - 1);
+                    break;
+                case ArrowRight:
+                    cursorPos = Math.min(input.length(), cursorPos + 1);
+                    break;
+                case Character:
+                    char c = keyStroke.getCharacter();
+                    if (Character.isLetterOrDigit(c) || "-_.".indexOf(c) >= 0) {
+                        if (input.length() < maxLength) {
+                            input.insert(cursorPos, c);
+                            cursorPos++;
+                        }
+                    }
+                    break;
+                case Escape:
+                    return null;
+                default:
+                    break;
+            }
+        }
+    }
+
+    static String selectFromList(int x, int y, String title, String[] options, int maxHeight) throws IOException {
+        if (options.length == 0) {
+            showMessage("Error", "No options available");
+            return null;
+        }
+        
+        int selectedIndex = 0;
+        int currentPage = 0;
+        int itemsPerPage = Math.min(maxHeight, options.length);
+        int totalPages = (options.length + itemsPerPage - 1) / itemsPerPage;
+        
+        while (true) {
+            screen.clear();
+            drawHeader(title);
+            
+            if (totalPages > 1) {
+                graphics.setForegroundColor(TextColor.ANSI.CYAN);
+                graphics.putString(x, y, "Page " + (currentPage + 1) + "/" + totalPages);
+                y += 2;
+            }
+            
+            int startIndex = currentPage * itemsPerPage;
+            int endIndex = Math.min(startIndex + itemsPerPage, options.length);
+            
+            for (int i = startIndex; i < endIndex; i++) {
+                if (i == selectedIndex) {
+                    graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+                    graphics.putString(x + 1, y + (i - startIndex), "> " + options[i]);
+                } else {
+                    graphics.setForegroundColor(TextColor.ANSI.WHITE);
+                    graphics.putString(x + 2, y + (i - startIndex), "  " + options[i]);
+                }
+            }
+            
+            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+            graphics.putString(x, y + itemsPerPage + 2, "Use arrow keys to navigate, Enter to select, Esc to cancel");
+            screen.refresh();
+            
+            KeyStroke keyStroke = screen.readInput();
+            if (keyStroke == null) continue;
+            
+            switch (keyStroke.getKeyType()) {
+                case Enter:
+                    return options[selectedIndex];
+                case ArrowUp:
+                    if (selectedIndex > 0) {
+                        selectedIndex--;
+                        if (selectedIndex < startIndex) {
+                            currentPage = Math.max(0, currentPage - 1);
+                        }
+                    }
+                    break;
+                case ArrowDown:
+                    if (selectedIndex < options.length - 1) {
+                        selectedIndex++;
+                        if (selectedIndex >= endIndex) {
+                            currentPage = Math.min(totalPages - 1, currentPage + 1);
+                        }
+                    }
+                    break;
+                case Escape:
+                    return null;
+                case Character:
+                    char c = keyStroke.getCharacter();
+                    if (Character.isDigit(c)) {
+                        int num = Character.getNumericValue(c);
+                        if (num > 0 && num <= options.length) {
+                            return options[num - 1];
+                        }
+                    } else if (Character.toLowerCase(c) == 'q') {
+                        return null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    static String selectYesNo(int x, int y) throws IOException {
+        int selected = 0;
+        String[] options = {"Yes", "No"};
+        
+        while (true) {
+            for (int i = 0; i < options.length; i++) {
+                if (i == selected) {
+                    graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+                    graphics.putString(x + (i * 10), y, "[ " + options[i] + " ]");
+                } else {
+                    graphics.setForegroundColor(TextColor.ANSI.WHITE);
+                    graphics.putString(x + (i * 10), y, "  " + options[i] + "  ");
+                }
+            }
+            
+            screen.refresh();
+            KeyStroke keyStroke = screen.readInput();
+            if (keyStroke == null) continue;
+            
+            switch (keyStroke.getKeyType()) {
+                case ArrowLeft:
+                    selected = Math.max(0, selected - 1);
+                    break;
+                case ArrowRight:
+                    selected = Math.min(1, selected + 1);
+                    break;
+                case Enter:
+                    return selected == 0 ? "yes" : "no";
+                case Character:
+                    char c = Character.toLowerCase(keyStroke.getCharacter());
+                    if (c == 'y') return "yes";
+                    if (c == 'n') return "no";
+                    if (c == 'q' || keyStroke.getKeyType() == KeyType.Escape) return "no";
+                    break;
+                case Escape:
+                    return "no";
+                default:
+                    break;
+            }
+        }
+    }
+
+    static void showMessage(String title, String message) throws IOException {
+        screen.clear();
+        drawHeader(title);
+        
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        String[] lines = message.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            graphics.putString(4, 6 + i, lines[i]);
+        }
+        
+        drawFooter("Press Enter to continue");
+        screen.refresh();
+        waitForEnter();
+    }
+
+    static void waitForEnter() throws IOException {
+        while (true) {
+            KeyStroke keyStroke = screen.readInput();
+            if (keyStroke == null) continue;
+            if (keyStroke.getKeyType() == KeyType.Enter ||
+                (keyStroke.getKeyType() == KeyType.Character && keyStroke.getCharacter() == '\n') ||
+                keyStroke.getKeyType() == KeyType.Escape) {
+                break;
+            }
+        }
+    }
+
+    static void startAVDTUI() throws IOException {
+        List<String> avds = getAvailableAVDs();
+        if (avds.isEmpty()) {
+            showMessage("No AVDs Found", "No Android Virtual Devices found.\nCreate one using the 'Create New Device' option.");
+            return;
+        }
+        
+        String selectedAvd = selectFromList(4, 5, "SELECT AVD TO START",
+            avds.toArray(new String[0]), 15);
+        if (selectedAvd == null) return;
+        
+        screen.clear();
+        drawHeader("START VIRTUAL DEVICE: " + selectedAvd);
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 6, "Starting AVD: " + selectedAvd);
+        
+        if (isKvmAvailable()) {
+            graphics.setForegroundColor(TextColor.ANSI.GREEN);
+            graphics.putString(4, 8, "KVM acceleration: ENABLED");
+        } else {
+            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+            graphics.putString(4, 8, "KVM acceleration: DISABLED (software emulation only)");
+        }
+        
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 10, "Controls:");
+        graphics.putString(6, 12, "- Press Ctrl+C to stop the emulator");
+        graphics.putString(6, 13, "- Press F1 inside emulator for help");
+        
+        graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+        graphics.putString(4, 16, "Start this virtual device?");
+        String confirm = selectYesNo(4, 18);
+        if (!"yes".equals(confirm)) {
+            showMessage("Cancelled", "AVD start cancelled");
+            return;
+        }
+        
+        cleanupTerminal();
+        System.out.println(CYAN + "\nStarting " + selectedAvd + "...\n" + RESET);
+        startAVD(selectedAvd, false, LaunchProfile.resolve(null, 1));
+        
+        // Return to TUI after emulator closes
+        System.out.println(YELLOW + "\nEmulator closed. Returning to Avidia..." + RESET);
+        startTerminalUI();
+    }
+
+    static void stopAVDTUI() throws IOException {
+        List<String> avds = getRunningAVDs();
+        if (avds.isEmpty()) {
+            showMessage("No Running AVDs", "No Android Virtual Devices are currently running.");
+            return;
+        }
+        
+        String selectedAvd = selectFromList(4, 5, "SELECT AVD TO STOP",
+            avds.toArray(new String[0]), 15);
+        if (selectedAvd == null) return;
+        
+        String avdName = selectedAvd.split(" ")[0];
+        
+        screen.clear();
+        drawHeader("STOP VIRTUAL DEVICE");
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 6, "Stop AVD: " + avdName);
+        
+        graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+        graphics.putString(4, 9, "Are you sure you want to stop this AVD?");
+        graphics.putString(4, 11, "All unsaved data will be lost.");
+        
+        String confirm = selectYesNo(4, 14);
+        if (!"yes".equals(confirm)) {
+            showMessage("Cancelled", "AVD stop cancelled");
+            return;
+        }
+        
+        screen.clear();
+        drawHeader("STOPPING VIRTUAL DEVICE");
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 6, "Stopping AVD: " + avdName);
+        graphics.putString(4, 8, "Please wait...");
+        screen.refresh();
+        
+        stopAVD(avdName);
+        showMessage("Success", "AVD '" + avdName + "' stopped successfully");
+    }
+
+    static void deleteAVDTUI() throws IOException {
+        List<String> avds = getAvailableAVDs();
+        if (avds.isEmpty()) {
+            showMessage("No AVDs Found", "No Android Virtual Devices found.");
+            return;
+        }
+        
+        String selectedAvd = selectFromList(4, 5, "SELECT AVD TO DELETE",
+            avds.toArray(new String[0]), 15);
+        if (selectedAvd == null) return;
+        
+        screen.clear();
+        drawHeader("DELETE VIRTUAL DEVICE");
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 6, "Delete AVD: " + selectedAvd);
+        
+        boolean running = isAVDRunning(selectedAvd);
+        if (running) {
+            graphics.setForegroundColor(TextColor.ANSI.RED);
+            graphics.putString(4, 9, "WARNING: This AVD is currently running!");
+            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+            graphics.putString(4, 11, "It must be stopped before deletion.");
+            graphics.putString(4, 13, "Stop and delete this AVD?");
+        } else {
+            graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+            graphics.putString(4, 9, "This will permanently delete:");
+            graphics.putString(6, 11, "- AVD configuration");
+            graphics.putString(6, 12, "- User data");
+            graphics.putString(6, 13, "- SD card contents");
+            graphics.putString(4, 15, "Are you sure you want to delete this AVD?");
+        }
+        
+        String confirm = selectYesNo(4, 18);
+        if (!"yes".equals(confirm)) {
+            showMessage("Cancelled", "AVD deletion cancelled");
+            return;
+        }
+        
+        if (running) {
+            screen.clear();
+            drawHeader("STOPPING AVD");
+            graphics.setForegroundColor(TextColor.ANSI.WHITE);
+            graphics.putString(4, 6, "Stopping running AVD before deletion...");
+            screen.refresh();
+            stopAVD(selectedAvd);
+        }
+        
+        screen.clear();
+        drawHeader("DELETING VIRTUAL DEVICE");
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 6, "Deleting AVD: " + selectedAvd);
+        graphics.putString(4, 8, "Please wait...");
+        screen.refresh();
+        
+        boolean success = deleteAVD(selectedAvd);
+        if (success) {
+            showMessage("Success", "AVD '" + selectedAvd + "' deleted successfully");
+        } else {
+            showMessage("Error", "Failed to delete AVD '" + selectedAvd + "'");
+        }
+    }
+
+    static void installImageTUI() throws IOException {
+        awaitAndroidVersions();
+        screen.clear();
+        drawHeader("INSTALL SYSTEM IMAGE");
+        
+        String apiSelection = selectFromList(4, 5, "Select Android version:", ANDROID_VERSIONS.entrySet().stream()
+            .map(e -> e.getKey() + " (API " + e.getValue() + ")")
+            .toArray(String[]::new), 15);
+        if (apiSelection == null) return;
+        
+        String apiLevel = ANDROID_VERSIONS.entrySet().stream()
+            .filter(e -> (e.getKey() + " (API " + e.getValue() + ")").equals(apiSelection))
+            .findFirst()
+            .map(Map.Entry::getValue)
+            .orElse("34");
+        
+        // Only what the catalog actually offers for this API level
+        PackageIndex index = PACKAGE_INDEX;
+        String[][] imageTypes = imageTypesFor(index, apiLevel);
+        String imageTypeSelection = selectFromList(4, 10, "Select Image Type:",
+            Arrays.stream(imageTypes)
+                .map(t -> t[1])
+                .toArray(String[]::new), 15);
+        if (imageTypeSelection == null) return;
+        
+        String imageType = "google_apis";
+        for (String[] type : imageTypes) {
+            if (type[1].equals(imageTypeSelection)) {
+                imageType = type[0];
+                break;
+            }
+        }
+        
+        String abiSelection = selectFromList(4, 15, "Select Architecture:", abiTypesFor(index, apiLevel, imageType), 10);
+        if (abiSelection == null) return;
+        
+        String abi = abiSelection.split(" ")[0];
+        
+        String packageName = String.format("system-images;android-%s;%s;%s", apiLevel, imageType, abi);
+        
+        screen.clear();
+        drawHeader("INSTALL SYSTEM IMAGE - CONFIRMATION");
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 6, "Android Version: " + apiSelection);
+        graphics.putString(4, 8, "Image Type: " + imageTypeSelection);
+        graphics.putString(4, 10, "Architecture: " + abiSelection);
+        graphics.putString(4, 12, "Package: " + packageName);
+        
+        graphics.setForegroundColor(TextColor.ANSI.YELLOW);
+        graphics.putString(4, 15, "This will download approximately 1-2 GB of data.");
+        graphics.putString(4, 17, "Do you want to proceed with installation?");
+        
+        String confirm = selectYesNo(4, 19);
+        if (!"yes".equals(confirm)) {
+            showMessage("Cancelled", "Installation cancelled");
+            return;
+        }
+        
+        JobManager.install(packageName);
+    }
+
+    // Tags the catalog lists for an API level, labelled like IMAGE_TYPES; IMAGE_TYPES itself
+    // when there is no catalog yet
+    static String[][] imageTypesFor(PackageIndex index, String apiLevel) {
+        Set<String> tags = index.tags(apiLevel);
+        if (tags.isEmpty()) {
+            return IMAGE_TYPES;
+        }
+        List<String[]> types = new ArrayList<>();
+        for (String tag : tags) {
+            String label = tag;
+            for (String[] type : IMAGE_TYPES) {
+                if (type[0].equals(tag)) {
+                    label = type[1];
+                }
+            }
+            types.add(new String[] {tag, label});
+        }
+        return types.toArray(new String[0][]);
+    }
+
+    // Entries start with the ABI itself, so the caller takes the first word
+    static String[] abiTypesFor(PackageIndex index, String apiLevel, String tag) {
+        Set<String> abis = index.abis(apiLevel, tag);
+        if (abis.isEmpty()) {
+            return ABI_TYPES;
+        }
+        List<String> entries = new ArrayList<>();
+        for (String abi : abis) {
+            String label = abi;
+            for (String type : ABI_TYPES) {
+                if (type.startsWith(abi + " (")) {
+                    label = type;
+                }
+            }
+            if (isSystemImageInstalled("system-images;android-" + apiLevel + ";" + tag + ";" + abi)) {
+                label += " [installed]";
+            }
+            entries.add(label);
+        }
+        return entries.toArray(new String[0]);
+    }
+
+    static void showSystemInfo() throws IOException {
+        screen.clear();
+        drawHeader("SYSTEM INFORMATION");
+        
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 5, "AVIDIA Status: Operational");
+        graphics.putString(4, 7, "Android SDK Path: " + sdkPath);
+        graphics.putString(4, 9, "AVD Home: " + avdHome);
+        
+        graphics.putString(4, 11, "Java Environment:");
+        try {
+            Process process = Runtime.getRuntime().exec("java -version");
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getErrorStream())
+            );
+            String line = reader.readLine();
+            if (line != null) {
+                graphics.putString(6, 13, line.trim());
+            }
+        } catch (Exception e) {
+            graphics.putString(6, 13, "Error retrieving Java version");
+        }
+        
+        graphics.putString(4, 15, "Hardware Acceleration:");
+        if (isKvmAvailable()) {
+            graphics.setForegroundColor(TextColor.ANSI.GREEN);
+            graphics.putString(6, 17, "[✓] KVM available");
+        } else {
+            graphics.setForegroundColor(TextColor.ANSI.RED);
+            graphics.putString(6, 17, "[✗] KVM not available");
+        }
+        
+        List<String> avds = getAvailableAVDs();
+        graphics.setForegroundColor(TextColor.ANSI.WHITE);
+        graphics.putString(4, 19, "Virtual Devices:");
+        graphics.putString(6, 21, "Total AVDs: " + avds.size());
+        
+        drawFooter("Press Enter to return to main menu");
+        screen.refresh();
+        waitForEnter();
+    }
+}